@@ -0,0 +1,434 @@
+package com.telesign.phoneid;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.telesign.phoneid.response.PhoneIdContactResponse;
+import com.telesign.phoneid.response.PhoneIdLiveResponse;
+import com.telesign.phoneid.response.PhoneIdScoreResponse;
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+
+/**
+ * The BulkPhoneId class looks up many phone numbers with one of the PhoneID products, keeping a bounded number of calls in flight.
+ * <p>
+ * The calls are the asynchronous calls of a {@link PhoneId} object, so they use its credentials, its Transport and its executor. The
+ * phone numbers are read from an Iterator as permits become free, so a very large input is never held in memory. Each result is
+ * handed to a {@link Listener}, either as it completes or in the order of the input, and a failed call is reported as an
+ * {@link Item} that carries the error instead of stopping the run.
+ * </p>
+ */
+public class BulkPhoneId {
+
+	private final PhoneId phoneId;
+
+	private final int concurrency;
+
+	/**
+	 * The BulkPhoneId class constructor.
+	 *
+	 * @param phoneId		[Required] The PhoneId object that makes the calls.
+	 * @param concurrency	[Required] The maximum number of calls in flight at once.
+	 */
+	public BulkPhoneId(PhoneId phoneId, int concurrency) {
+
+		if (phoneId == null) {
+
+			throw new IllegalArgumentException("phoneId must not be null");
+		}
+
+		if (concurrency < 1) {
+
+			throw new IllegalArgumentException("concurrency must be at least 1");
+		}
+
+		this.phoneId = phoneId;
+		this.concurrency = concurrency;
+	}
+
+	/** @return The maximum number of calls in flight at once. */
+	public int getConcurrency() {
+
+		return concurrency;
+	}
+
+	/**
+	 * Looks up a collection of phone numbers, and returns the results in the order of the collection.
+	 *
+	 * @param lookup		[Required] The PhoneID product to call, for example {@link Lookup#STANDARD}.
+	 * @param phone_numbers	[Required] The phone numbers.
+	 * @param ucid			[Optional] The Use Case Code. Required by every product except PhoneID Standard.
+	 * @return One Item per phone number, in the order of the collection.
+	 * @throws InterruptedException If the calling thread is interrupted while it waits for the calls.
+	 */
+	public <T> List<Item<T>> lookupAll(Lookup<T> lookup, Collection<String> phone_numbers, String ucid) throws InterruptedException {
+
+		final List<Item<T>> items = new ArrayList<Item<T>>(phone_numbers.size());
+
+		run(lookup, phone_numbers.iterator(), ucid, true, new Listener<T>() {
+
+			@Override
+			public void onItem(Item<T> item) {
+
+				items.add(item);
+			}
+		});
+
+		return items;
+	}
+
+	/**
+	 * Looks up every phone number of an Iterator, and returns when all the calls have completed.
+	 * <p>
+	 * The Listener is called by one thread at a time, from the threads that complete the calls. A Listener that returns slowly
+	 * holds back the delivery of other results, but not the calls themselves.
+	 * </p>
+	 *
+	 * @param lookup		[Required] The PhoneID product to call, for example {@link Lookup#STANDARD}.
+	 * @param phone_numbers	[Required] The phone numbers. The Iterator is only used by the calling thread.
+	 * @param ucid			[Optional] The Use Case Code. Required by every product except PhoneID Standard.
+	 * @param ordered		[Required] True to deliver the results in the order of the input. At most twice the concurrency of results
+	 *						are then held back while an earlier call is still in flight.
+	 * @param listener		[Required] Receives one Item per phone number.
+	 * @return The number of calls, the number of failed calls and the throughput of the run.
+	 * @throws InterruptedException If the calling thread is interrupted. Calls already started still complete and are delivered.
+	 */
+	public <T> Summary run(Lookup<T> lookup, Iterator<String> phone_numbers, String ucid, boolean ordered, Listener<T> listener) throws InterruptedException {
+
+		Run<T> run = new Run<T>(ordered, listener);
+		long index = 0;
+
+		while (phone_numbers.hasNext()) {
+
+			String phone_number = phone_numbers.next();
+
+			run.admit(index);
+			run.start(index++, phone_number, lookup, ucid);
+		}
+
+		return run.await(index);
+	}
+
+	/** The state of one run: the calls in flight, the results held back for ordering, and the counters. */
+	private class Run<T> {
+
+		private final boolean ordered;
+		private final Listener<T> listener;
+		private final long started = System.nanoTime();
+
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition changed = lock.newCondition();
+
+		/** The results that completed before an earlier one, by index. Guarded by the lock. */
+		private final Map<Long, Item<T>> pending = new HashMap<Long, Item<T>>();
+
+		private int inFlight;
+		private long delivered;
+		private long failed;
+		private RuntimeException listenerFailure;
+
+		Run(boolean ordered, Listener<T> listener) {
+
+			this.ordered = ordered;
+			this.listener = listener;
+		}
+
+		/** Waits until a call may start for the item at an index. */
+		void admit(long index) throws InterruptedException {
+
+			lock.lockInterruptibly();
+
+			try {
+
+				while (inFlight >= concurrency || (ordered && index - delivered >= 2L * concurrency)) {
+
+					changed.await();
+				}
+
+				inFlight++;
+			}
+			finally {
+
+				lock.unlock();
+			}
+		}
+
+		void start(final long index, final String phone_number, Lookup<T> lookup, String ucid) {
+
+			CompletableFuture<T> call;
+
+			try {
+
+				if (phone_number == null) {
+
+					throw new IllegalArgumentException("phone_number must not be null");
+				}
+
+				call = lookup.call.start(phoneId, phone_number, ucid);
+			}
+			catch (RuntimeException e) {
+
+				call = new CompletableFuture<T>();
+				call.completeExceptionally(e);
+			}
+
+			call.whenComplete((response, error) -> complete(new Item<T>(index, phone_number, response, unwrap(error))));
+		}
+
+		private void complete(Item<T> item) {
+
+			lock.lock();
+
+			try {
+
+				inFlight--;
+
+				if (ordered) {
+
+					pending.put(item.getIndex(), item);
+
+					for (Item<T> next; (next = pending.remove(delivered)) != null; ) {
+
+						deliver(next);
+					}
+				}
+				else {
+
+					deliver(item);
+				}
+
+				changed.signalAll();
+			}
+			finally {
+
+				lock.unlock();
+			}
+		}
+
+		private void deliver(Item<T> item) {
+
+			delivered++;
+
+			if (item.getError() != null) {
+
+				failed++;
+			}
+
+			try {
+
+				listener.onItem(item);
+			}
+			catch (RuntimeException e) {
+
+				if (listenerFailure == null) {
+
+					listenerFailure = e;
+				}
+			}
+		}
+
+		/** Waits for the calls in flight, and summarizes the run. */
+		Summary await(long count) throws InterruptedException {
+
+			lock.lockInterruptibly();
+
+			try {
+
+				while (delivered < count) {
+
+					changed.await();
+				}
+
+				if (listenerFailure != null) {
+
+					throw listenerFailure;
+				}
+
+				return new Summary(count, failed, System.nanoTime() - started);
+			}
+			finally {
+
+				lock.unlock();
+			}
+		}
+	}
+
+	private static Throwable unwrap(Throwable error) {
+
+		while ((error instanceof CompletionException || error instanceof ExecutionException) && error.getCause() != null) {
+
+			error = error.getCause();
+		}
+
+		return error;
+	}
+
+	/**
+	 * Receives the results of a run.
+	 *
+	 * @param <T> The response type of the PhoneID product.
+	 */
+	public interface Listener<T> {
+
+		/**
+		 * Called once for each phone number.
+		 *
+		 * @param item The result of the call.
+		 */
+		void onItem(Item<T> item);
+	}
+
+	/** Starts the asynchronous call for one phone number. */
+	private interface Call<T> {
+
+		CompletableFuture<T> start(PhoneId phoneId, String phone_number, String ucid);
+	}
+
+	/**
+	 * A PhoneID product that can be looked up in bulk.
+	 *
+	 * @param <T> The response type of the product.
+	 */
+	public static final class Lookup<T> {
+
+		/** PhoneID Standard. It takes no Use Case Code. */
+		public static final Lookup<PhoneIdStandardResponse> STANDARD = new Lookup<PhoneIdStandardResponse>("standard",
+				(phoneId, phone_number, ucid) -> phoneId.standardAsync(phone_number));
+
+		/** PhoneID Score. */
+		public static final Lookup<PhoneIdScoreResponse> SCORE = new Lookup<PhoneIdScoreResponse>("score",
+				(phoneId, phone_number, ucid) -> phoneId.scoreAsync(phone_number, ucid));
+
+		/** PhoneID Contact. */
+		public static final Lookup<PhoneIdContactResponse> CONTACT = new Lookup<PhoneIdContactResponse>("contact",
+				(phoneId, phone_number, ucid) -> phoneId.contactAsync(phone_number, ucid));
+
+		/** PhoneID Live. */
+		public static final Lookup<PhoneIdLiveResponse> LIVE = new Lookup<PhoneIdLiveResponse>("live",
+				(phoneId, phone_number, ucid) -> phoneId.liveAsync(phone_number, ucid));
+
+		private final String name;
+		private final Call<T> call;
+
+		private Lookup(String name, Call<T> call) {
+
+			this.name = name;
+			this.call = call;
+		}
+
+		@Override
+		public String toString() {
+
+			return name;
+		}
+	}
+
+	/**
+	 * The result of the lookup of one phone number: either the response of the web service, or the error that kept the call from
+	 * returning one. A response can still carry errors reported by the web service, in its <em>errors</em> field.
+	 *
+	 * @param <T> The response type of the PhoneID product.
+	 */
+	public static final class Item<T> {
+
+		private final long index;
+		private final String phone_number;
+		private final T response;
+		private final Throwable error;
+
+		Item(long index, String phone_number, T response, Throwable error) {
+
+			this.index = index;
+			this.phone_number = phone_number;
+			this.response = response;
+			this.error = error;
+		}
+
+		/** @return The position of the phone number in the input, starting at zero. */
+		public long getIndex() {
+
+			return index;
+		}
+
+		/** @return The phone number. */
+		public String getPhoneNumber() {
+
+			return phone_number;
+		}
+
+		/** @return The response, or null when the call failed. */
+		public T getResponse() {
+
+			return response;
+		}
+
+		/** @return The error that failed the call, or null when a response was received. */
+		public Throwable getError() {
+
+			return error;
+		}
+
+		/** @return True when a response was received. */
+		public boolean isSuccessful() {
+
+			return error == null;
+		}
+	}
+
+	/** The counters of a completed run. */
+	public static final class Summary {
+
+		private final long count;
+		private final long failed;
+		private final long elapsedNanos;
+
+		Summary(long count, long failed, long elapsedNanos) {
+
+			this.count = count;
+			this.failed = failed;
+			this.elapsedNanos = elapsedNanos;
+		}
+
+		/** @return The number of phone numbers looked up. */
+		public long getCount() {
+
+			return count;
+		}
+
+		/** @return The number of calls that failed without a response. */
+		public long getFailedCount() {
+
+			return failed;
+		}
+
+		/**
+		 * @param unit [Required] The unit of the result.
+		 * @return The duration of the run.
+		 */
+		public long getElapsed(TimeUnit unit) {
+
+			return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+		}
+
+		/** @return The number of lookups completed per second. */
+		public double getThroughput() {
+
+			return (elapsedNanos == 0) ? 0 : count / (elapsedNanos / 1e9);
+		}
+
+		@Override
+		public String toString() {
+
+			return String.format("%d lookups, %d failed, %.1f per second", count, failed, getThroughput());
+		}
+	}
+}
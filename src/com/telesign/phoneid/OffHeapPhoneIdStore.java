@@ -0,0 +1,554 @@
+package com.telesign.phoneid;
+
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.util.PhoneNumbers;
+
+/**
+ * The OffHeapPhoneIdStore class keeps PhoneID Standard responses outside the Java heap, so that the results for tens of millions of
+ * phone numbers can be held in memory without lengthening the garbage collection pauses.
+ * <p>
+ * A response is stored in direct memory as a compact binary record, about a third of its JSON-formatted body, and is only decoded
+ * again when it is read. The phone type code is read in place by {@link #getPhoneTypeCode(String)}, without decoding the rest of the
+ * record. The index is an open-addressing table of the E.164 keys of the phone numbers, in direct memory as well. The responses are
+ * written one after the other into a ring: when the memory is full, the oldest responses are overwritten, so the store never grows
+ * beyond its capacity. Every response is kept for the same time to live.
+ * </p>
+ * <p>
+ * {@link #standard(String)} answers like {@link PhoneId#standard(String)}, from the store when it can. Only responses without
+ * errors, for phone numbers with an E.164 key, are stored. The direct memory of the JVM must allow for the capacity and the index,
+ * which takes 32 to 64 bytes per entry; see the -XX:MaxDirectMemorySize option.
+ * </p>
+ */
+public class OffHeapPhoneIdStore {
+
+	/** The largest block of direct memory, since a ByteBuffer is indexed by an int. */
+	private static final int MAX_SLAB_SIZE = 1 << 30;
+
+	/** The phone number, the expiry time in milliseconds since the epoch, and the length of the record. */
+	private static final int HEADER_SIZE = 8 + 8 + 4;
+
+	/** The most entries, since each table of the index is one ByteBuffer. */
+	private static final int MAX_ENTRIES = 1 << 26;
+
+	/** The number of age groups of the responses, when the oldest are dropped from a full index. */
+	private static final int REBUILD_BUCKETS = 64;
+
+	private final PhoneId phoneId;
+	private final long ttlMillis;
+	private final int maxEntries;
+
+	private final ByteBuffer[] slabs;
+	private final int slabSize;
+	private final long capacity;
+
+	/** The E.164 key of each slot of the index; {@link PhoneNumbers#INVALID} marks a free slot. */
+	private LongBuffer keys;
+
+	/** The position in the ring of the response of each slot. */
+	private LongBuffer positions;
+
+	private int mask;
+	private int occupied;
+
+	/** The position in the ring where the next response is written. It only grows. */
+	private long writePosition;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong stored = new AtomicLong();
+
+	/**
+	 * The OffHeapPhoneIdStore class constructor.
+	 *
+	 * @param phoneId		[Required] The PhoneId object that looks up the phone numbers that are not stored.
+	 * @param maxEntries	[Required] The most phone numbers indexed at once.
+	 * @param capacity		[Required] The direct memory for the responses, in bytes. About 350 bytes are needed per response.
+	 * @param timeToLive	[Required] The time a response is kept.
+	 * @param unit			[Required] The unit of the time to live.
+	 */
+	public OffHeapPhoneIdStore(PhoneId phoneId, int maxEntries, long capacity, long timeToLive, TimeUnit unit) {
+
+		if (phoneId == null) {
+
+			throw new IllegalArgumentException("phoneId must not be null");
+		}
+
+		if (maxEntries < 1 || maxEntries > MAX_ENTRIES || capacity < HEADER_SIZE || timeToLive <= 0) {
+
+			throw new IllegalArgumentException("maxEntries must be between 1 and " + MAX_ENTRIES + ", capacity hold a response, and timeToLive be positive");
+		}
+
+		this.phoneId = phoneId;
+		this.ttlMillis = unit.toMillis(timeToLive);
+		this.maxEntries = maxEntries;
+
+		this.slabSize = (int) Math.min(capacity, MAX_SLAB_SIZE);
+		this.slabs = new ByteBuffer[(int) ((capacity + slabSize - 1) / slabSize)];
+		this.capacity = (long) slabs.length * slabSize;
+
+		for (int i = 0; i < slabs.length; i++) {
+
+			slabs[i] = ByteBuffer.allocateDirect(slabSize);
+		}
+
+		allocateIndex();
+	}
+
+	/**
+	 * Returns information about a specified phone number's type, numbering structure, cleansing details, and location details,
+	 * from the store, or from {@link PhoneId#standard(String)} when it is not stored.
+	 *
+	 * @param phone_number	[Required] A string representing the phone number you want information about.
+	 * @return A {@link com.telesign.phoneid.response.PhoneIdStandardResponse} object, which contains the JSON-formatted response body
+	 *         from the TeleSign server.
+	 */
+	public PhoneIdStandardResponse standard(String phone_number) {
+
+		PhoneIdStandardResponse response = get(phone_number);
+
+		if (response == null) {
+
+			response = phoneId.standard(phone_number);
+			put(phone_number, response);
+		}
+
+		return response;
+	}
+
+	/**
+	 * The asynchronous form of {@link #standard(String)}.
+	 *
+	 * @param phone_number	[Required] A string representing the phone number you want information about.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.phoneid.response.PhoneIdStandardResponse}, or
+	 *         exceptionally if the request failed.
+	 */
+	public CompletableFuture<PhoneIdStandardResponse> standardAsync(final String phone_number) {
+
+		PhoneIdStandardResponse response = get(phone_number);
+
+		if (response != null) {
+
+			return CompletableFuture.completedFuture(response);
+		}
+
+		return phoneId.standardAsync(phone_number).thenApply(fetched -> {
+
+			put(phone_number, fetched);
+
+			return fetched;
+		});
+	}
+
+	/**
+	 * Returns a stored response. Each call decodes the response again, so the caller owns the object it gets.
+	 *
+	 * @param phone_number	[Required] The phone number.
+	 * @return The response, or null if it is not stored or has expired.
+	 */
+	public PhoneIdStandardResponse get(String phone_number) {
+
+		long key = PhoneNumbers.toKey(phone_number);
+		byte[] record = (key == PhoneNumbers.INVALID) ? null : read(key);
+
+		if (record == null) {
+
+			misses.incrementAndGet();
+
+			return null;
+		}
+
+		hits.incrementAndGet();
+
+		// The record is decoded outside the lock.
+		return StandardRecord.decode(record);
+	}
+
+	/**
+	 * Returns the phone type code of a stored response, read in place without decoding the response.
+	 *
+	 * @param phone_number	[Required] The phone number.
+	 * @return The phone type code, or -1 if the response is not stored, has expired, or has no phone type.
+	 */
+	public int getPhoneTypeCode(String phone_number) {
+
+		long key = PhoneNumbers.toKey(phone_number);
+		int code = -1;
+
+		if (key != PhoneNumbers.INVALID) {
+
+			lock.readLock().lock();
+
+			try {
+
+				long position = locate(key);
+
+				if (position >= 0) {
+
+					ByteBuffer slab = slabs[slab(position)];
+					int record = offset(position) + HEADER_SIZE;
+
+					if (StandardRecord.hasPhoneType(slab.getInt(record + StandardRecord.FLAGS_OFFSET))) {
+
+						code = slab.getInt(record + StandardRecord.PHONE_TYPE_CODE_OFFSET);
+					}
+				}
+			}
+			finally {
+
+				lock.readLock().unlock();
+			}
+		}
+
+		if (code < 0) {
+
+			misses.incrementAndGet();
+		}
+		else {
+
+			hits.incrementAndGet();
+		}
+
+		return code;
+	}
+
+	/**
+	 * Stores a response, unless it has errors, or its phone number has no E.164 key.
+	 *
+	 * @param phone_number	[Required] The phone number.
+	 * @param response		[Required] The response of the phone number.
+	 * @return True if the response was stored.
+	 */
+	public boolean put(String phone_number, PhoneIdStandardResponse response) {
+
+		long key = PhoneNumbers.toKey(phone_number);
+
+		if (key == PhoneNumbers.INVALID || response == null || !PhoneIdCache.isSuccessful(response)) {
+
+			return false;
+		}
+
+		byte[] record = StandardRecord.encode(response);
+
+		if (record == null || HEADER_SIZE + record.length > slabSize) {
+
+			return false;
+		}
+
+		lock.writeLock().lock();
+
+		try {
+
+			write(key, System.currentTimeMillis() + ttlMillis, record);
+		}
+		finally {
+
+			lock.writeLock().unlock();
+		}
+
+		stored.incrementAndGet();
+
+		return true;
+	}
+
+	/** Removes every stored response. The statistics are kept. */
+	public void clear() {
+
+		lock.writeLock().lock();
+
+		try {
+
+			for (int i = 0; i < keys.capacity(); i++) {
+
+				keys.put(i, 0);
+			}
+
+			occupied = 0;
+		}
+		finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** @return The number of lookups answered from the store. */
+	public long getHitCount() {
+
+		return hits.get();
+	}
+
+	/** @return The number of lookups that were not stored, or had expired. */
+	public long getMissCount() {
+
+		return misses.get();
+	}
+
+	/** @return The number of responses written to the store. */
+	public long getStoredCount() {
+
+		return stored.get();
+	}
+
+	/** @return The direct memory for the responses, in bytes. */
+	public long getCapacity() {
+
+		return capacity;
+	}
+
+	/** Finds the record of a live response under the read lock, and copies it out of the ring. */
+	private byte[] read(long key) {
+
+		lock.readLock().lock();
+
+		try {
+
+			long position = locate(key);
+
+			if (position < 0) {
+
+				return null;
+			}
+
+			ByteBuffer slab = slabs[slab(position)];
+			int offset = offset(position);
+			byte[] record = new byte[slab.getInt(offset + 16)];
+			ByteBuffer view = slab.duplicate();
+			view.position(offset + HEADER_SIZE);
+			view.get(record);
+
+			return record;
+		}
+		finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	/** @return The position in the ring of the live response of a phone number, or -1. Called with a lock held. */
+	private long locate(long key) {
+
+		int slot = find(key);
+
+		if (slot < 0) {
+
+			return -1;
+		}
+
+		long position = positions.get(slot);
+
+		if (!isLive(position)) {
+
+			return -1;
+		}
+
+		ByteBuffer slab = slabs[slab(position)];
+		int offset = offset(position);
+
+		if (slab.getLong(offset) != key || slab.getLong(offset + 8) <= System.currentTimeMillis()) {
+
+			return -1;
+		}
+
+		return position;
+	}
+
+	/** Appends a response to the ring and points the index at it. Called with the write lock held. */
+	private void write(long key, long expiresAt, byte[] record) {
+
+		int size = HEADER_SIZE + record.length;
+		int offset = offset(writePosition);
+
+		// A response does not straddle two slabs: the end of the slab is skipped.
+		if (offset + size > slabSize) {
+
+			writePosition += slabSize - offset;
+			offset = 0;
+		}
+
+		long position = writePosition;
+		ByteBuffer slab = slabs[slab(position)];
+
+		slab.putLong(offset, key);
+		slab.putLong(offset + 8, expiresAt);
+		slab.putInt(offset + 16, record.length);
+
+		ByteBuffer view = slab.duplicate();
+		view.position(offset + HEADER_SIZE);
+		view.put(record);
+
+		writePosition += size;
+
+		int slot = claim(key);
+
+		if (slot < 0) {
+
+			rebuildIndex();
+			slot = claim(key);
+		}
+
+		if (slot >= 0) {
+
+			keys.put(slot, key);
+			positions.put(slot, position);
+		}
+	}
+
+	/** @return The slot of a phone number, or -1 if it is not indexed. */
+	private int find(long key) {
+
+		for (int slot = PhoneNumbers.hash(key) & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+
+			long current = keys.get(slot);
+
+			if (current == key) {
+
+				return slot;
+			}
+
+			if (current == 0) {
+
+				return -1;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Returns the slot a phone number is written to: its own slot, a free one, or one whose response is gone. A slot reused ahead of an
+	 * older slot of the same number hides it, and that older response is always gone first, since the ring overwrites in order.
+	 *
+	 * @return The slot, or -1 if the index is full.
+	 */
+	private int claim(long key) {
+
+		for (int slot = PhoneNumbers.hash(key) & mask, probes = 0; probes <= mask; slot = (slot + 1) & mask, probes++) {
+
+			long current = keys.get(slot);
+
+			if (current == key || (current != 0 && !isLive(positions.get(slot)))) {
+
+				return slot;
+			}
+
+			if (current == 0) {
+
+				if (occupied >= maxEntries) {
+
+					return -1;
+				}
+
+				occupied++;
+
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Drops the slots whose responses are gone or expired, and the oldest responses beyond three quarters of the entries, so that the
+	 * index has room again for a while. Called with the write lock held.
+	 */
+	private void rebuildIndex() {
+
+		LongBuffer oldKeys = keys;
+		LongBuffer oldPositions = positions;
+		long now = System.currentTimeMillis();
+		long oldest = writePosition - capacity;
+		long span = Math.max(1, capacity / REBUILD_BUCKETS);
+
+		// The live responses are counted by their age in the ring, to find the oldest position that is kept.
+		int[] counts = new int[REBUILD_BUCKETS];
+
+		for (int i = 0; i < oldKeys.capacity(); i++) {
+
+			if (isIndexed(oldKeys.get(i), oldPositions.get(i), now)) {
+
+				counts[bucket(oldPositions.get(i), oldest, span)]++;
+			}
+		}
+
+		int bucket = REBUILD_BUCKETS;
+		int kept = 0;
+
+		while (bucket > 0 && kept + counts[bucket - 1] <= maxEntries * 3L / 4) {
+
+			kept += counts[--bucket];
+		}
+
+		allocateIndex();
+
+		for (int i = 0; i < oldKeys.capacity(); i++) {
+
+			long key = oldKeys.get(i);
+			long position = oldPositions.get(i);
+
+			if (!isIndexed(key, position, now) || bucket(position, oldest, span) < bucket) {
+
+				continue;
+			}
+
+			int slot = claim(key);
+
+			// Of two slots of a number, the later response wins.
+			if (slot >= 0 && (keys.get(slot) != key || positions.get(slot) < position)) {
+
+				keys.put(slot, key);
+				positions.put(slot, position);
+			}
+		}
+	}
+
+	private boolean isIndexed(long key, long position, long now) {
+
+		return key != 0 && isLive(position) && slabs[slab(position)].getLong(offset(position) + 8) > now;
+	}
+
+	private static int bucket(long position, long oldest, long span) {
+
+		return (int) Math.min(REBUILD_BUCKETS - 1, (position - oldest) / span);
+	}
+
+	private void allocateIndex() {
+
+		// At least twice as many slots as entries keep the probe sequences short.
+		int slots = Integer.highestOneBit(Math.max(1, maxEntries - 1)) << 2;
+
+		keys = ByteBuffer.allocateDirect(slots * 8).asLongBuffer();
+		positions = ByteBuffer.allocateDirect(slots * 8).asLongBuffer();
+		mask = slots - 1;
+		occupied = 0;
+	}
+
+	/** A response is live until the ring has come round and written over its start. */
+	private boolean isLive(long position) {
+
+		return writePosition - position <= capacity;
+	}
+
+	private int slab(long position) {
+
+		return (int) ((position % capacity) / slabSize);
+	}
+
+	private int offset(long position) {
+
+		return (int) ((position % capacity) % slabSize);
+	}
+
+	@Override
+	public String toString() {
+
+		return String.format("OffHeapPhoneIdStore[%d MB, %d hits, %d misses]", capacity >> 20, hits.get(), misses.get());
+	}
+}
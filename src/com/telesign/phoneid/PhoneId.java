@@ -14,8 +14,23 @@ import com.telesign.phoneid.response.PhoneIdContactResponse;
 import com.telesign.phoneid.response.PhoneIdLiveResponse;
 import com.telesign.phoneid.response.PhoneIdScoreResponse;
 import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.util.CircuitBreakerRegistry;
+import com.telesign.util.HedgePolicy;
+import com.telesign.util.NegativeCache;
+import com.telesign.util.PhoneNumbers;
+import com.telesign.util.RateLimiter;
+import com.telesign.util.RateLimiterRegistry;
+import com.telesign.util.RequestSigner;
+import com.telesign.util.RequestTemplate;
+import com.telesign.util.RetryPolicy;
+import com.telesign.util.SingleFlight;
+import com.telesign.util.TeleSignExecutors;
 import com.telesign.util.TeleSignRequest;
+import com.telesign.util.Transport;
+import com.telesign.util.UrlConnectionTransport;
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * The PhoneId class abstracts your interactions with the
@@ -29,6 +44,9 @@ public class PhoneId {
 	private int connectTimeout = 30000;
 	private int readTimeout = 30000;
 	private String httpsProtocol = "TLSv1.2";
+
+	/** The signer of the Secret Key, shared by the templates of all endpoints. */
+	private final RequestSigner signer;
 	
 	private static final String API_BASE_URL = "https://rest.telesign.com";
 	
@@ -40,6 +58,33 @@ public class PhoneId {
 	
 	private final Gson gson = new Gson();
 
+	/** The executor that runs the asynchronous calls. Null means {@link TeleSignExecutors#getDefault()}. */
+	private volatile Executor executor;
+
+	/** The Transport that sends the requests. */
+	private Transport transport = UrlConnectionTransport.getDefault();
+
+	/** The policy that retries the requests after a connection failure, or a 5xx or 429 response. */
+	private volatile RetryPolicy retryPolicy = RetryPolicy.getDefault();
+
+	/** The policy that hedges the GET requests. Null means no hedging. */
+	private volatile HedgePolicy hedgePolicy;
+
+	/** Whether concurrent identical lookups share one request. Off by default. */
+	private volatile boolean coalescing;
+
+	/** The lookups in flight, keyed by endpoint and parameters. */
+	private final SingleFlight<String, ?> flights = new SingleFlight<String, Object>();
+
+	/** The cache of the responses. Null means no caching. */
+	private volatile PhoneIdCache cache;
+
+	/** The cache of the phone numbers that were rejected. Null means none. */
+	private volatile NegativeCache negativeCache;
+
+	/** The request templates of the endpoints, created on first use from the settings of this PhoneId. */
+	private volatile Templates templates;
+
 	/**
 	 * The PhoneId class constructor. Once you instantiate a PhoneId object, you
 	 * can use it to make instance calls to <em>PhoneID Standard</em>,
@@ -57,6 +102,7 @@ public class PhoneId {
 
 		this.customer_id = customer_id;
 		this.secret_key = secret_key;
+		this.signer = new RequestSigner(secret_key);
 	}
 	
 	/**
@@ -80,6 +126,7 @@ public class PhoneId {
 
 		this.customer_id = customer_id;
 		this.secret_key = secret_key;
+		this.signer = new RequestSigner(secret_key);
 		this.connectTimeout = connectTimeout;
 		this.readTimeout = readTimeout;
 	}
@@ -103,6 +150,7 @@ public class PhoneId {
 
 		this.customer_id = customer_id;
 		this.secret_key = secret_key;
+		this.signer = new RequestSigner(secret_key);
 		this.httpsProtocol = httpsProtocol;
 	}
 	
@@ -128,10 +176,145 @@ public class PhoneId {
 
 		this.customer_id = customer_id;
 		this.secret_key = secret_key;
+		this.signer = new RequestSigner(secret_key);
 		this.connectTimeout = connectTimeout;
 		this.readTimeout = readTimeout;
 		this.httpsProtocol = httpsProtocol;
 	}
+
+	/**
+	 * The PhoneId class constructor. Once you instantiate a PhoneId object, you
+	 * can use it to make instance calls to <em>PhoneID Standard</em>,
+	 * <em>PhoneID Score</em>, <em>PhoneID Contact</em>, and
+	 * <em>PhoneID Live</em>.
+	 * 
+	 * @param customer_id
+	 *            [Required] A string representing your TeleSign Customer ID.
+	 *            This represents your TeleSign account number.
+	 * @param secret_key
+	 *            [Required] A string representing your TeleSign Secret Key
+	 *            (available from the TeleSign Client Portal).
+	 * @param transport
+	 *            [Required] The {@link Transport} that sends the requests,
+	 *            for example a {@link com.telesign.util.NioEngine}.
+	 */
+	public PhoneId(String customer_id, String secret_key, Transport transport) {
+
+		this(customer_id, secret_key, 30000, 30000, "TLSv1.2", transport);
+	}
+
+	/**
+	 * The PhoneId class constructor. Once you instantiate a PhoneId object, you
+	 * can use it to make instance calls to <em>PhoneID Standard</em>,
+	 * <em>PhoneID Score</em>, <em>PhoneID Contact</em>, and
+	 * <em>PhoneID Live</em>.
+	 * 
+	 * @param customer_id
+	 *            [Required] A string representing your TeleSign Customer ID.
+	 *            This represents your TeleSign account number.
+	 * @param secret_key
+	 *            [Required] A string representing your TeleSign Secret Key
+	 *            (available from the TeleSign Client Portal).
+	 * @param connectTimeout 
+	 * 			[Required] A integer representing connection timeout value while connecting to Telesign api.
+	 * @param readTimeout
+	 * 			[Required] A integer representing read timeout value while reading response returned from Telesign api.
+	 * @param httpsProtocol [Optional]	Specify the protocol version to use. ex: TLSv1.1, TLSv1.2. default is TLSv1.2
+	 * @param transport
+	 *            [Required] The {@link Transport} that sends the requests,
+	 *            for example a {@link com.telesign.util.NioEngine}.
+	 */
+	public PhoneId(String customer_id, String secret_key, int connectTimeout, int readTimeout, String httpsProtocol, Transport transport) {
+
+		this(customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
+
+		if (transport == null) {
+
+			throw new IllegalArgumentException("transport must not be null");
+		}
+
+		this.transport = transport;
+	}
+
+	/**
+	 * Sets the executor that runs the asynchronous calls of this PhoneId object, such as {@link #standardAsync(String)}.
+	 * By default they run on {@link TeleSignExecutors#getDefault()}.
+	 * 
+	 * @param executor
+	 *            [Optional] The Executor to use. Set this value to null to
+	 *            restore the default.
+	 */
+	public void setExecutor(Executor executor) {
+
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the policy that retries the requests of this PhoneId object, such as {@link #standard(String)}, after a connection
+	 * failure or a 5xx or 429 response. By default the GET requests are retried with {@link RetryPolicy#getDefault()}, which has no
+	 * deadline; a policy with one cuts the connect and read timeouts of this PhoneId object to the rest of its budget on every attempt.
+	 * @param retryPolicy	[Required]	The RetryPolicy to use, or {@link RetryPolicy#NONE} to send each request once.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+
+		if (retryPolicy == null) {
+
+			throw new IllegalArgumentException("retryPolicy must not be null");
+		}
+
+		this.retryPolicy = retryPolicy;
+		templates = null;
+	}
+
+	/**
+	 * Sets the policy that sends the PhoneID requests a second time when the response is late, and keeps the response that arrives first.
+	 * Hedging is off by default. The hedge rate and win rate can be read from the policy.
+	 * @param hedgePolicy	[Optional]	The HedgePolicy to use. Set this value to null to turn hedging off.
+	 */
+	public void setHedgePolicy(HedgePolicy hedgePolicy) {
+
+		this.hedgePolicy = hedgePolicy;
+		templates = null;
+	}
+
+	/**
+	 * Sets whether concurrent identical lookups share one request. A lookup made while an identical one is in flight, for the same
+	 * product, phone number and parameters, then waits for that request and gets the same response object, which callers must not
+	 * change. Nothing is cached: a lookup made after the response arrived sends a new request. Coalescing is off by default.
+	 * 
+	 * @param coalescing
+	 *            [Required] True to share one request between concurrent identical lookups.
+	 */
+	public void setCoalescing(boolean coalescing) {
+
+		this.coalescing = coalescing;
+	}
+
+	/**
+	 * Sets the cache that answers repeated lookups of this PhoneId object without a request, for as long as the time to live of
+	 * the product. A lookup is only answered from the cache when its phone number, in E.164 form, and every parameter match.
+	 * Caching is off by default. One cache can be shared by several PhoneId objects of the same account.
+	 * 
+	 * @param cache
+	 *            [Optional] The PhoneIdCache to use. Set this value to null to turn caching off.
+	 */
+	public void setCache(PhoneIdCache cache) {
+
+		this.cache = cache;
+	}
+
+	/**
+	 * Sets the cache that answers the lookups of the phone numbers that PhoneID rejected, without a request, for as long as the
+	 * time to live of the error. The numbers are keyed by product, so a number rejected by {@link #standard(String)} is answered
+	 * locally only by that product, and is still sent to the others. It is off by default.
+	 * 
+	 * @param negativeCache
+	 *            [Optional] The NegativeCache to use. Set this value to null to send a request for every lookup.
+	 */
+	public void setNegativeCache(NegativeCache negativeCache) {
+
+		this.negativeCache = negativeCache;
+	}
 	
 	/**
 	 * Returns information about a specified phone number�s type, numbering
@@ -224,23 +407,11 @@ public class PhoneId {
 	 */
 	public PhoneIdStandardResponse standard(String phone_number, String originating_ip, String session_id) {
 
-		String result = null;
+		PhoneIdStandardResponse response = null;
 
 		try {
 
-			TeleSignRequest tr = new TeleSignRequest(API_BASE_URL, V1_PHONEID_STANDARD + phone_number, "GET", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-
-			if(originating_ip != null) {
-
-				tr.addParam("originating_ip", originating_ip);
-			}
-			
-			if(session_id != null) {
-
-				tr.addParam("session_id", session_id);
-			}
-
-			result = tr.executeRequest();
+			response = execute(RateLimiterRegistry.PHONEID_STANDARD, phone_number, key("standard", phone_number, originating_ip, session_id), () -> standardRequest(phone_number, originating_ip, session_id), PhoneIdStandardResponse.class);
 		} catch (IOException e) {
 
 			System.err.println("IOException while executing phoneid standard API: "
@@ -248,12 +419,26 @@ public class PhoneId {
 			throw new RuntimeException(e);
 		}
 
-		PhoneIdStandardResponse response = gson.fromJson(result,
-				PhoneIdStandardResponse.class);
-
 		return response;
 	}
 
+	private TeleSignRequest standardRequest(String phone_number, String originating_ip, String session_id) throws IOException {
+
+		TeleSignRequest tr = templates().standard.newRequest(phone_number);
+
+		if(originating_ip != null) {
+
+			tr.addParam("originating_ip", originating_ip);
+		}
+		
+		if(session_id != null) {
+
+			tr.addParam("session_id", session_id);
+		}
+
+		return tr;
+	}
+
 	/**
 	 * Returns risk information about a specified phone number, including a
 	 * real-time risk score, threat level, and recommendation for action.
@@ -273,24 +458,11 @@ public class PhoneId {
 	 */
 	public PhoneIdScoreResponse score(String phone_number, String ucid, String originating_ip, String session_id) {
 
-		String result = null;
+		PhoneIdScoreResponse response = null;
 
 		try {
 
-			TeleSignRequest tr = new TeleSignRequest(API_BASE_URL, V1_PHONEID_SCORE + phone_number, "GET", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-			tr.addParam("ucid", ucid);
-
-			if(originating_ip != null) {
-
-				tr.addParam("originating_ip", originating_ip);
-			}
-			
-			if(session_id != null) {
-
-				tr.addParam("session_id", session_id);
-			}
-
-			result = tr.executeRequest();
+			response = execute(RateLimiterRegistry.PHONEID_SCORE, phone_number, key("score", phone_number, ucid, originating_ip, session_id), () -> scoreRequest(phone_number, ucid, originating_ip, session_id), PhoneIdScoreResponse.class);
 		} catch (IOException e) {
 
 			System.err.println("IOException while executing phoneid score API: "
@@ -298,12 +470,27 @@ public class PhoneId {
 			throw new RuntimeException(e);
 		}
 
-		PhoneIdScoreResponse response = gson.fromJson(result,
-				PhoneIdScoreResponse.class);
-
 		return response;
 	}
 
+	private TeleSignRequest scoreRequest(String phone_number, String ucid, String originating_ip, String session_id) throws IOException {
+
+		TeleSignRequest tr = templates().score.newRequest(phone_number);
+		tr.addParam("ucid", ucid);
+
+		if(originating_ip != null) {
+
+			tr.addParam("originating_ip", originating_ip);
+		}
+		
+		if(session_id != null) {
+
+			tr.addParam("session_id", session_id);
+		}
+
+		return tr;
+	}
+
 	/**
 	 * Returns contact details for a specified phone number�s subscriber. This
 	 * includes the subscriber's First Name, Last Name, Street Address, City,
@@ -324,24 +511,11 @@ public class PhoneId {
 	 */
 	public PhoneIdContactResponse contact(String phone_number, String ucid, String originating_ip, String session_id) {
 
-		String result = null;
+		PhoneIdContactResponse response = null;
 
 		try {
 
-			TeleSignRequest tr = new TeleSignRequest(API_BASE_URL, V1_PHONEID_CONTACT + phone_number, "GET", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-			tr.addParam("ucid", ucid);
-			
-			if(originating_ip != null) {
-
-				tr.addParam("originating_ip", originating_ip);
-			}
-			
-			if(session_id != null) {
-
-				tr.addParam("session_id", session_id);
-			}
-
-			result = tr.executeRequest();
+			response = execute(RateLimiterRegistry.PHONEID_CONTACT, phone_number, key("contact", phone_number, ucid, originating_ip, session_id), () -> contactRequest(phone_number, ucid, originating_ip, session_id), PhoneIdContactResponse.class);
 		} catch (IOException e) {
 
 			System.err.println("IOException while executing phoneid contact API: "
@@ -349,12 +523,27 @@ public class PhoneId {
 			throw new RuntimeException(e);
 		}
 
-		PhoneIdContactResponse response = gson.fromJson(result,
-				PhoneIdContactResponse.class);
-
 		return response;
 	}
 
+	private TeleSignRequest contactRequest(String phone_number, String ucid, String originating_ip, String session_id) throws IOException {
+
+		TeleSignRequest tr = templates().contact.newRequest(phone_number);
+		tr.addParam("ucid", ucid);
+		
+		if(originating_ip != null) {
+
+			tr.addParam("originating_ip", originating_ip);
+		}
+		
+		if(session_id != null) {
+
+			tr.addParam("session_id", session_id);
+		}
+
+		return tr;
+	}
+
 	/**
 	 * Returns information about a specified phone number�s
 	 * <em>state of operation</em>. You can use it to find out if:
@@ -379,34 +568,376 @@ public class PhoneId {
 	 */
 	public PhoneIdLiveResponse live(String phone_number, String ucid, String originating_ip, String session_id) {
 
-		String result = null;
+		PhoneIdLiveResponse response = null;
+
+		try {
+
+			response = execute(RateLimiterRegistry.PHONEID_LIVE, phone_number, key("live", phone_number, ucid, originating_ip, session_id), () -> liveRequest(phone_number, ucid, originating_ip, session_id), PhoneIdLiveResponse.class);
+		} catch (IOException e) {
+
+			System.err.println("IOException while executing phoneid live API: "
+					+ e.getMessage());
+			throw new RuntimeException(e);
+		}
+
+		return response;
+	}
+
+	private TeleSignRequest liveRequest(String phone_number, String ucid, String originating_ip, String session_id) throws IOException {
+
+		TeleSignRequest tr = templates().live.newRequest(phone_number);
+		tr.addParam("ucid", ucid);
+
+		if(originating_ip != null) {
+
+			tr.addParam("originating_ip", originating_ip);
+		}
+		
+		if(session_id != null) {
+
+			tr.addParam("session_id", session_id);
+		}
+
+		return tr;
+	}
+
+	/**
+	 * The asynchronous form of {@link #standard(String)}.
+	 * 
+	 * @param phone_number
+	 *            [Required] A string representing the phone number you want
+	 *            information about.
+	 * @return A CompletableFuture that completes with the
+	 *         {@link com.telesign.phoneid.response.PhoneIdStandardResponse},
+	 *         or exceptionally if the request failed.
+	 */
+	public CompletableFuture<PhoneIdStandardResponse> standardAsync(String phone_number) {
+
+		return standardAsync(phone_number, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #standard(String, String, String)}.
+	 * The parameters are described there.
+	 * 
+	 * @return A CompletableFuture that completes with the
+	 *         {@link com.telesign.phoneid.response.PhoneIdStandardResponse},
+	 *         or exceptionally if the request failed.
+	 */
+	public CompletableFuture<PhoneIdStandardResponse> standardAsync(final String phone_number, final String originating_ip, final String session_id) {
+
+		return executeAsync(RateLimiterRegistry.PHONEID_STANDARD, phone_number, key("standard", phone_number, originating_ip, session_id), () -> standardRequest(phone_number, originating_ip, session_id), PhoneIdStandardResponse.class);
+	}
+
+	/**
+	 * The asynchronous form of {@link #score(String, String)}.
+	 * 
+	 * @param phone_number
+	 *            [Required] A string representing the phone number you want
+	 *            information about.
+	 * @param ucid
+	 *            [Required] A string specifying one of the Use Case Codes.
+	 * @return A CompletableFuture that completes with the
+	 *         {@link com.telesign.phoneid.response.PhoneIdScoreResponse},
+	 *         or exceptionally if the request failed.
+	 */
+	public CompletableFuture<PhoneIdScoreResponse> scoreAsync(String phone_number, String ucid) {
+
+		return scoreAsync(phone_number, ucid, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #score(String, String, String, String)}.
+	 * The parameters are described there.
+	 * 
+	 * @return A CompletableFuture that completes with the
+	 *         {@link com.telesign.phoneid.response.PhoneIdScoreResponse},
+	 *         or exceptionally if the request failed.
+	 */
+	public CompletableFuture<PhoneIdScoreResponse> scoreAsync(final String phone_number, final String ucid, final String originating_ip, final String session_id) {
+
+		return executeAsync(RateLimiterRegistry.PHONEID_SCORE, phone_number, key("score", phone_number, ucid, originating_ip, session_id), () -> scoreRequest(phone_number, ucid, originating_ip, session_id), PhoneIdScoreResponse.class);
+	}
+
+	/**
+	 * The asynchronous form of {@link #contact(String, String)}.
+	 * 
+	 * @param phone_number
+	 *            [Required] A string representing the phone number you want
+	 *            information about.
+	 * @param ucid
+	 *            [Required] A string specifying one of the Use Case Codes.
+	 * @return A CompletableFuture that completes with the
+	 *         {@link com.telesign.phoneid.response.PhoneIdContactResponse},
+	 *         or exceptionally if the request failed.
+	 */
+	public CompletableFuture<PhoneIdContactResponse> contactAsync(String phone_number, String ucid) {
+
+		return contactAsync(phone_number, ucid, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #contact(String, String, String, String)}.
+	 * The parameters are described there.
+	 * 
+	 * @return A CompletableFuture that completes with the
+	 *         {@link com.telesign.phoneid.response.PhoneIdContactResponse},
+	 *         or exceptionally if the request failed.
+	 */
+	public CompletableFuture<PhoneIdContactResponse> contactAsync(final String phone_number, final String ucid, final String originating_ip, final String session_id) {
+
+		return executeAsync(RateLimiterRegistry.PHONEID_CONTACT, phone_number, key("contact", phone_number, ucid, originating_ip, session_id), () -> contactRequest(phone_number, ucid, originating_ip, session_id), PhoneIdContactResponse.class);
+	}
+
+	/**
+	 * The asynchronous form of {@link #live(String, String)}.
+	 * 
+	 * @param phone_number
+	 *            [Required] A string representing the phone number you want
+	 *            information about.
+	 * @param ucid
+	 *            [Required] A string specifying one of the Use Case Codes.
+	 * @return A CompletableFuture that completes with the
+	 *         {@link com.telesign.phoneid.response.PhoneIdLiveResponse},
+	 *         or exceptionally if the request failed.
+	 */
+	public CompletableFuture<PhoneIdLiveResponse> liveAsync(String phone_number, String ucid) {
+
+		return liveAsync(phone_number, ucid, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #live(String, String, String, String)}.
+	 * The parameters are described there.
+	 * 
+	 * @return A CompletableFuture that completes with the
+	 *         {@link com.telesign.phoneid.response.PhoneIdLiveResponse},
+	 *         or exceptionally if the request failed.
+	 */
+	public CompletableFuture<PhoneIdLiveResponse> liveAsync(final String phone_number, final String ucid, final String originating_ip, final String session_id) {
+
+		return executeAsync(RateLimiterRegistry.PHONEID_LIVE, phone_number, key("live", phone_number, ucid, originating_ip, session_id), () -> liveRequest(phone_number, ucid, originating_ip, session_id), PhoneIdLiveResponse.class);
+	}
+
+	private Executor executor() {
+
+		Executor current = executor;
+
+		return (current != null) ? current : TeleSignExecutors.getDefault();
+	}
+
+	private Templates templates() {
+
+		Templates current = templates;
+
+		// Templates are immutable, so a race only builds a second, identical set.
+		if (current == null) {
+
+			current = new Templates();
+			templates = current;
+		}
+
+		return current;
+	}
+
+	/** The request template of each endpoint. */
+	private final class Templates {
+
+		final RequestTemplate standard = template(V1_PHONEID_STANDARD, RateLimiterRegistry.PHONEID_STANDARD);
+		final RequestTemplate score = template(V1_PHONEID_SCORE, RateLimiterRegistry.PHONEID_SCORE);
+		final RequestTemplate contact = template(V1_PHONEID_CONTACT, RateLimiterRegistry.PHONEID_CONTACT);
+		final RequestTemplate live = template(V1_PHONEID_LIVE, RateLimiterRegistry.PHONEID_LIVE);
+
+		private RequestTemplate template(String resource, String endpoint) {
+
+			RequestTemplate template = new RequestTemplate(API_BASE_URL, resource, "GET", customer_id, secret_key, signer, connectTimeout, readTimeout,
+					httpsProtocol, transport)
+					.withRateLimit(RateLimiterRegistry.getDefault(), endpoint)
+					.withRetryPolicy(retryPolicy)
+					.withCircuitBreaker(CircuitBreakerRegistry.getDefault(), endpoint);
+			HedgePolicy hedging = hedgePolicy;
+
+			return (hedging != null) ? template.withHedging(hedging) : template;
+		}
+	}
+
+	/** Builds the request of a call; may fail while encoding its parameters. */
+	private interface RequestBuilder {
+
+		TeleSignRequest build() throws IOException;
+	}
+
+	private <T> T execute(final String endpoint, final String phone_number, final String key, final RequestBuilder builder, final Class<T> responseType)
+			throws IOException {
+
+		final NegativeCache rejected = negativeCache;
+		T known = (rejected == null) ? null : rejected.get(endpoint, phone_number, responseType);
+
+		if (known != null) {
+
+			return known;
+		}
+
+		final PhoneIdCache current = cache;
+
+		if (current != null) {
+
+			T cached = current.get(key, responseType, loader(builder, responseType));
+
+			if (cached != null) {
+
+				return cached;
+			}
+		}
+
+		// Only the request that is sent stores its response, not the lookups that shared it.
+		SingleFlight.Call<T> call = () -> store(current, rejected, endpoint, phone_number, key, builder.build().executeRequest(gson, responseType));
+
+		return coalescing ? this.<T>flights().execute(key, call) : call.call();
+	}
+
+	private <T> CompletableFuture<T> executeAsync(final String endpoint, final String phone_number, final String key, final RequestBuilder builder,
+			final Class<T> responseType) {
+
+		final NegativeCache rejected = negativeCache;
+		T known = (rejected == null) ? null : rejected.get(endpoint, phone_number, responseType);
+
+		if (known != null) {
+
+			return CompletableFuture.completedFuture(known);
+		}
+
+		final PhoneIdCache current = cache;
+
+		if (current != null) {
+
+			T cached = current.get(key, responseType, loader(builder, responseType));
+
+			if (cached != null) {
+
+				return CompletableFuture.completedFuture(cached);
+			}
+		}
+
+		SingleFlight.AsyncCall<T> call = () -> startAsync(builder, responseType).thenApply(response -> store(current, rejected, endpoint, phone_number, key, response));
+
+		return coalescing ? this.<T>flights().executeAsync(key, call) : call.start();
+	}
+
+	private <T> CompletableFuture<T> startAsync(RequestBuilder builder, Class<T> responseType) {
 
 		try {
 
-			TeleSignRequest tr = new TeleSignRequest(API_BASE_URL, V1_PHONEID_LIVE + phone_number, "GET", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-			tr.addParam("ucid", ucid);
+			return builder.build().executeRequestAsync(gson, responseType, executor());
+		}
+		catch (IOException e) {
+
+			CompletableFuture<T> failed = new CompletableFuture<T>();
+			failed.completeExceptionally(e);
+
+			return failed;
+		}
+	}
+
+	/**
+	 * Builds the Loader that refreshes a cached response in the background. It only takes a rate limit permit that is free now, so
+	 * that the refreshes never queue ahead of the lookups that wait for one.
+	 */
+	private <T> PhoneIdCache.Loader loader(final RequestBuilder builder, final Class<T> responseType) {
+
+		return () -> {
 
-			if(originating_ip != null) {
+			TeleSignRequest request;
 
-				tr.addParam("originating_ip", originating_ip);
+			try {
+
+				request = builder.build();
 			}
-			
-			if(session_id != null) {
+			catch (IOException e) {
+
+				CompletableFuture<T> failed = new CompletableFuture<T>();
+				failed.completeExceptionally(e);
 
-				tr.addParam("session_id", session_id);
+				return failed;
 			}
 
-			result = tr.executeRequest();
-		} catch (IOException e) {
+			RateLimiter limiter = request.getRateLimiter();
 
-			System.err.println("IOException while executing phoneid live API: "
-					+ e.getMessage());
-			throw new RuntimeException(e);
+			if (limiter != null) {
+
+				if (!limiter.tryAcquire()) {
+
+					return null;
+				}
+
+				// The permit is taken, so the request does not wait for another one.
+				request.setRateLimiter(null);
+			}
+
+			return request.executeRequestAsync(gson, responseType, executor());
+		};
+	}
+
+	private static <T> T store(PhoneIdCache cache, NegativeCache rejected, String endpoint, String phone_number, String key, T response) {
+
+		if (cache != null && response != null) {
+
+			cache.put(key, response);
 		}
 
-		PhoneIdLiveResponse response = gson.fromJson(result,
-				PhoneIdLiveResponse.class);
+		// A successful response is never remembered, so only a response with errors is handed to the NegativeCache.
+		if (rejected != null && response != null && !PhoneIdCache.isSuccessful(response)) {
+
+			rejected.put(endpoint, phone_number, response);
+		}
 
 		return response;
 	}
+
+	/** The flights of every endpoint share one map. Their keys start with the endpoint, so the calls of one key share a response type. */
+	@SuppressWarnings("unchecked")
+	private <T> SingleFlight<String, T> flights() {
+
+		return (SingleFlight<String, T>) flights;
+	}
+
+	/**
+	 * Builds the key of identical calls from the endpoint, the E.164 key of the phone number and every other parameter, keeping a
+	 * missing parameter apart from any value. A phone number with no E.164 key is used as it is; it cannot match an E.164 key, whose
+	 * digits never start with 0 and number 7 to 15.
+	 */
+	private static String key(String endpoint, String phone_number, String... parameters) {
+
+		StringBuilder key = new StringBuilder(64).append(endpoint).append('\n');
+		long e164 = PhoneNumbers.toKey(phone_number);
+
+		if (e164 != PhoneNumbers.INVALID) {
+
+			key.append(e164);
+		}
+		else if (phone_number == null) {
+
+			key.append('\u0000');
+		}
+		else {
+
+			key.append(phone_number);
+		}
+
+		for (String parameter : parameters) {
+
+			key.append('\n');
+
+			if (parameter == null) {
+
+				key.append('\u0000');
+			}
+			else {
+
+				key.append(parameter);
+			}
+		}
+
+		return key.toString();
+	}
 }
@@ -0,0 +1,583 @@
+package com.telesign.phoneid;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.telesign.phoneid.response.PhoneIdContactResponse;
+import com.telesign.phoneid.response.PhoneIdLiveResponse;
+import com.telesign.phoneid.response.PhoneIdScoreResponse;
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+
+/**
+ * The PhoneIdCache class keeps the parsed responses of the PhoneID web services in memory, so that a repeated lookup is answered
+ * without a request.
+ * <p>
+ * Each PhoneID product has a time to live of its own: by default Standard and Contact responses are kept for an hour, Score responses
+ * for five minutes, and Live responses, which describe the current state of the line, are not kept. The cache holds at most its
+ * maximum number of responses, and evicts the least recently used ones beyond it. The entries are spread over stripes that are
+ * locked separately, so concurrent lookups of different numbers seldom wait for each other.
+ * </p>
+ * <p>
+ * Only responses without errors are kept. A cached response is shared by every lookup that gets it, and must not be changed.
+ * </p>
+ * <p>
+ * A {@link PhoneIdCacheFile} can be set as a second tier, which keeps every response on disk as well, so that a restarted process
+ * starts with the responses of the last one. A lookup that misses in memory is then looked up in the file.
+ * </p>
+ * <p>
+ * So that popular numbers do not all expire on the request path, a response can be refreshed ahead: a lookup that hits a response
+ * in the last part of its time to live gets it at once, while a new request for it is sent in the background. With
+ * stale-while-revalidate, a response that expired a short while ago is still returned at once, and refreshed in the same way. A
+ * refresh only takes a rate limit permit that is free at the time; otherwise it is tried again a little later, for as long as the
+ * response may still be used, so the refreshes never hold up the lookups that wait for a permit.
+ * </p>
+ */
+public class PhoneIdCache {
+
+	/** The PhoneID products, each with a time to live of its own. */
+	public enum Product {
+
+		STANDARD(PhoneIdStandardResponse.class, TimeUnit.HOURS.toNanos(1)),
+		SCORE(PhoneIdScoreResponse.class, TimeUnit.MINUTES.toNanos(5)),
+		CONTACT(PhoneIdContactResponse.class, TimeUnit.HOURS.toNanos(1)),
+		LIVE(PhoneIdLiveResponse.class, 0);
+
+		private final Class<?> responseType;
+		private final long defaultTtlNanos;
+
+		private Product(Class<?> responseType, long defaultTtlNanos) {
+
+			this.responseType = responseType;
+			this.defaultTtlNanos = defaultTtlNanos;
+		}
+
+		static Product of(Class<?> responseType) {
+
+			for (Product product : values()) {
+
+				if (product.responseType == responseType) {
+
+					return product;
+				}
+			}
+
+			throw new IllegalArgumentException("Not a PhoneID response type: " + responseType.getName());
+		}
+	}
+
+	/** The number of stripes, a power of two. */
+	private static final int STRIPES = 16;
+
+	/** The time after which a refresh that found no free permit, or that failed, is tried again, in milliseconds. */
+	private static final long REFRESH_RETRY_MILLIS = 100;
+
+	/** Sends the request that refreshes a cached response. */
+	interface Loader {
+
+		/** @return A CompletableFuture of the new response, or null if the rate limit has no free permit now. */
+		CompletableFuture<?> reload();
+	}
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	private final long[] ttlNanos = new long[Product.values().length];
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong expirations = new AtomicLong();
+	private final AtomicLong staleHits = new AtomicLong();
+	private final AtomicLong refreshes = new AtomicLong();
+	private final AtomicLong failedRefreshes = new AtomicLong();
+	private final AtomicLong deferredRefreshes = new AtomicLong();
+
+	/** The share of the time to live after which a hit refreshes the response; 0 means no refresh ahead. */
+	private volatile double refreshAhead;
+
+	/** The time after its expiry during which a response is still returned while it is refreshed. */
+	private volatile long staleNanos;
+
+	/** The file that keeps the responses across restarts. Null means none. */
+	private volatile PhoneIdCacheFile file;
+
+	/**
+	 * The PhoneIdCache class constructor.
+	 *
+	 * @param maxEntries	[Required] The most responses kept. Beyond it, the least recently used ones are evicted.
+	 */
+	public PhoneIdCache(int maxEntries) {
+
+		if (maxEntries < 1) {
+
+			throw new IllegalArgumentException("maxEntries must be positive");
+		}
+
+		// The capacity is split evenly; a stripe keeps at least one entry, so a small cache may hold a few more than asked.
+		int perStripe = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+
+		for (int i = 0; i < STRIPES; i++) {
+
+			stripes[i] = new Stripe(perStripe);
+		}
+
+		for (Product product : Product.values()) {
+
+			ttlNanos[product.ordinal()] = product.defaultTtlNanos;
+		}
+	}
+
+	/**
+	 * Sets the time a response of a product is kept. The responses already cached keep the time they were given.
+	 *
+	 * @param product		[Required] The PhoneID product.
+	 * @param timeToLive	[Required] The time to live. Set this value to 0 to not cache the product.
+	 * @param unit			[Required] The unit of the time to live.
+	 */
+	public void setTimeToLive(Product product, long timeToLive, TimeUnit unit) {
+
+		if (timeToLive < 0) {
+
+			throw new IllegalArgumentException("timeToLive must not be negative");
+		}
+
+		synchronized (ttlNanos) {
+
+			ttlNanos[product.ordinal()] = unit.toNanos(timeToLive);
+		}
+	}
+
+	/**
+	 * Sets when a cached response is refreshed ahead of its expiry. A lookup that hits it after this share of its time to live
+	 * gets it at once, and sends a request for a new one in the background. Refresh ahead is off by default. The responses already
+	 * cached keep the time they were given.
+	 *
+	 * @param fraction	[Required] The share of the time to live, from 0 to 1, for example 0.8. Set this value to 0 to refresh only
+	 *					the stale responses.
+	 */
+	public void setRefreshAhead(double fraction) {
+
+		if (!(fraction >= 0 && fraction < 1)) {
+
+			throw new IllegalArgumentException("fraction must be at least 0 and less than 1");
+		}
+
+		this.refreshAhead = fraction;
+	}
+
+	/**
+	 * Sets the time after its expiry during which a response is still returned, while a request for a new one is sent in the
+	 * background. It is 0 by default: an expired response is never returned.
+	 *
+	 * @param staleTime	[Required] The time a response may be used after it expired.
+	 * @param unit		[Required] The unit of the time.
+	 */
+	public void setStaleWhileRevalidate(long staleTime, TimeUnit unit) {
+
+		if (staleTime < 0) {
+
+			throw new IllegalArgumentException("staleTime must not be negative");
+		}
+
+		this.staleNanos = unit.toNanos(staleTime);
+	}
+
+	/**
+	 * Sets the file that keeps the responses across restarts. The responses are written to it as they are cached, and a lookup that
+	 * misses in memory is answered from it until the response expires.
+	 *
+	 * @param file	[Optional] The PhoneIdCacheFile, which this cache does not close. Set this value to null to keep the responses in
+	 *				memory only.
+	 */
+	public void setFile(PhoneIdCacheFile file) {
+
+		this.file = file;
+	}
+
+	/** @return The file that keeps the responses across restarts, or null. */
+	public PhoneIdCacheFile getFile() {
+
+		return file;
+	}
+
+	/**
+	 * @param product	[Required] The PhoneID product.
+	 * @param unit		[Required] The unit of the result.
+	 * @return The time a response of the product is kept.
+	 */
+	public long getTimeToLive(Product product, TimeUnit unit) {
+
+		return unit.convert(ttl(product), TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns a cached response, and starts its refresh if it is due.
+	 *
+	 * @param key			[Required] The key of the lookup.
+	 * @param responseType	[Required] The response type of the product.
+	 * @param loader		[Optional] The Loader that refreshes the response. Set this value to null to not refresh it.
+	 * @return The response, or null if it is not cached, or has expired and is not used while stale.
+	 */
+	<T> T get(String key, Class<T> responseType, Loader loader) {
+
+		if (ttl(Product.of(responseType)) == 0) {
+
+			return null;
+		}
+
+		long now = System.nanoTime();
+		Stripe stripe = stripe(key);
+		Entry entry;
+		boolean stale = false;
+
+		synchronized (stripe) {
+
+			entry = stripe.get(key);
+
+			if (entry != null && now - entry.expiresAt >= 0) {
+
+				if (now - entry.expiresAt >= staleNanos) {
+
+					stripe.remove(key);
+					expirations.incrementAndGet();
+					entry = null;
+				}
+				else {
+
+					stale = true;
+				}
+			}
+		}
+
+		if (entry == null) {
+
+			entry = load(key, responseType, stripe);
+		}
+
+		if (entry == null) {
+
+			misses.incrementAndGet();
+
+			return null;
+		}
+
+		hits.incrementAndGet();
+
+		if (stale) {
+
+			staleHits.incrementAndGet();
+		}
+
+		if (loader != null && now - entry.refreshAt >= 0 && entry.refreshing.compareAndSet(false, true)) {
+
+			refresh(key, entry, loader);
+		}
+
+		return responseType.cast(entry.response);
+	}
+
+	/** Sends the refresh of an entry that this thread has marked as refreshing. The new response replaces the entry. */
+	private void refresh(final String key, final Entry entry, final Loader loader) {
+
+		CompletableFuture<?> reloaded;
+
+		try {
+
+			reloaded = loader.reload();
+		}
+		catch (RuntimeException e) {
+
+			reloaded = new CompletableFuture<Object>();
+			reloaded.completeExceptionally(e);
+		}
+
+		if (reloaded == null) {
+
+			deferredRefreshes.incrementAndGet();
+
+			// The entry stays marked, so that the lookups in the meantime do not schedule more retries.
+			CompletableFuture.delayedExecutor(REFRESH_RETRY_MILLIS, TimeUnit.MILLISECONDS).execute(() -> {
+
+				if (System.nanoTime() - entry.expiresAt < staleNanos && isCurrent(key, entry)) {
+
+					refresh(key, entry, loader);
+				}
+				else {
+
+					entry.refreshing.set(false);
+				}
+			});
+
+			return;
+		}
+
+		refreshes.incrementAndGet();
+
+		reloaded.whenComplete((response, error) -> {
+
+			if (error == null && response != null && isSuccessful(response)) {
+
+				put(key, response);
+			}
+			else {
+
+				failedRefreshes.incrementAndGet();
+
+				// A failed refresh is not tried again at once, so a hot key that keeps failing does not send a request per lookup.
+				CompletableFuture.delayedExecutor(REFRESH_RETRY_MILLIS, TimeUnit.MILLISECONDS).execute(() -> entry.refreshing.set(false));
+			}
+		});
+	}
+
+	private boolean isCurrent(String key, Entry entry) {
+
+		Stripe stripe = stripe(key);
+
+		synchronized (stripe) {
+
+			return stripe.get(key) == entry;
+		}
+	}
+
+	/** Looks up a response in the file, and caches it in memory until it expires. */
+	private Entry load(String key, Class<?> responseType, Stripe stripe) {
+
+		PhoneIdCacheFile current = file;
+		PhoneIdCacheFile.Found<?> found = (current == null) ? null : current.get(key, responseType);
+
+		if (found == null) {
+
+			return null;
+		}
+
+		Entry entry = newEntry(found.response, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(found.expiresAt - System.currentTimeMillis()),
+				ttl(Product.of(responseType)));
+
+		synchronized (stripe) {
+
+			stripe.put(key, entry);
+		}
+
+		return entry;
+	}
+
+	/**
+	 * Caches a response, unless it has errors or its product is not cached.
+	 *
+	 * @param key		[Required] The key of the lookup.
+	 * @param response	[Required] The parsed response.
+	 */
+	void put(String key, Object response) {
+
+		long ttl = ttl(Product.of(response.getClass()));
+
+		if (ttl == 0 || !isSuccessful(response)) {
+
+			return;
+		}
+
+		Stripe stripe = stripe(key);
+
+		synchronized (stripe) {
+
+			stripe.put(key, newEntry(response, System.nanoTime() + ttl, ttl));
+		}
+
+		PhoneIdCacheFile current = file;
+
+		if (current != null) {
+
+			current.put(key, response, System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(ttl));
+		}
+	}
+
+	/** Removes every cached response from memory. The statistics are kept, and so is the file. */
+	public void clear() {
+
+		for (Stripe stripe : stripes) {
+
+			synchronized (stripe) {
+
+				stripe.clear();
+			}
+		}
+	}
+
+	/** @return The number of cached responses, including the expired ones not yet removed. */
+	public int size() {
+
+		int size = 0;
+
+		for (Stripe stripe : stripes) {
+
+			synchronized (stripe) {
+
+				size += stripe.size();
+			}
+		}
+
+		return size;
+	}
+
+	/** @return The number of lookups answered from the cache, in memory or from the file. */
+	public long getHitCount() {
+
+		return hits.get();
+	}
+
+	/** @return The number of lookups that were not cached, or had expired. */
+	public long getMissCount() {
+
+		return misses.get();
+	}
+
+	/** @return The number of responses evicted to keep the cache within its size. */
+	public long getEvictionCount() {
+
+		return evictions.get();
+	}
+
+	/** @return The number of responses removed because they had expired. */
+	public long getExpiredCount() {
+
+		return expirations.get();
+	}
+
+	/** @return The number of lookups answered with a response that had expired, while it was refreshed. */
+	public long getStaleHitCount() {
+
+		return staleHits.get();
+	}
+
+	/** @return The number of refresh requests sent in the background. */
+	public long getRefreshCount() {
+
+		return refreshes.get();
+	}
+
+	/** @return The number of refresh requests that failed, or returned errors. */
+	public long getFailedRefreshCount() {
+
+		return failedRefreshes.get();
+	}
+
+	/** @return The number of times a refresh was put off because the rate limit had no free permit. */
+	public long getDeferredRefreshCount() {
+
+		return deferredRefreshes.get();
+	}
+
+	/** @return The share of lookups answered from the cache, between 0 and 1. */
+	public double getHitRate() {
+
+		long hitCount = hits.get();
+		long count = hitCount + misses.get();
+
+		return (count == 0) ? 0 : (double) hitCount / count;
+	}
+
+	/** The refresh of an entry is due once the share of its time to live has passed, or once it has expired. */
+	private Entry newEntry(Object response, long expiresAt, long ttl) {
+
+		double fraction = refreshAhead;
+
+		return new Entry(response, expiresAt, (fraction > 0) ? expiresAt - (long) (ttl * (1 - fraction)) : expiresAt);
+	}
+
+	private long ttl(Product product) {
+
+		synchronized (ttlNanos) {
+
+			return ttlNanos[product.ordinal()];
+		}
+	}
+
+	private Stripe stripe(String key) {
+
+		int hash = key.hashCode();
+
+		return stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+	}
+
+	/** A response is successful when it has a status and no errors. */
+	static boolean isSuccessful(Object response) {
+
+		if (response instanceof PhoneIdStandardResponse) {
+
+			PhoneIdStandardResponse standard = (PhoneIdStandardResponse) response;
+
+			return standard.status != null && (standard.errors == null || standard.errors.length == 0);
+		}
+
+		if (response instanceof PhoneIdScoreResponse) {
+
+			PhoneIdScoreResponse score = (PhoneIdScoreResponse) response;
+
+			return score.status != null && (score.errors == null || score.errors.length == 0);
+		}
+
+		if (response instanceof PhoneIdContactResponse) {
+
+			PhoneIdContactResponse contact = (PhoneIdContactResponse) response;
+
+			return contact.status != null && (contact.errors == null || contact.errors.length == 0);
+		}
+
+		PhoneIdLiveResponse live = (PhoneIdLiveResponse) response;
+
+		return live.status != null && (live.errors == null || live.errors.length == 0);
+	}
+
+	@Override
+	public String toString() {
+
+		return String.format("PhoneIdCache[%d entries, hit rate %.3f, %d evictions]", size(), getHitRate(), evictions.get());
+	}
+
+	private static final class Entry {
+
+		final Object response;
+		final long expiresAt;
+		final long refreshAt;
+
+		/** Set while a refresh of the entry is in flight or scheduled. */
+		final AtomicBoolean refreshing = new AtomicBoolean();
+
+		Entry(Object response, long expiresAt, long refreshAt) {
+
+			this.response = response;
+			this.expiresAt = expiresAt;
+			this.refreshAt = refreshAt;
+		}
+	}
+
+	/** One stripe of the cache: a map in access order, which drops its least recently used entry when it is full. */
+	@SuppressWarnings("serial")
+	private final class Stripe extends LinkedHashMap<String, Entry> {
+
+		private final int capacity;
+
+		Stripe(int capacity) {
+
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		// Inside a Map, the simple name Entry is Map.Entry, so the entry type of the cache is qualified.
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, PhoneIdCache.Entry> eldest) {
+
+			if (size() > capacity) {
+
+				evictions.incrementAndGet();
+
+				return true;
+			}
+
+			return false;
+		}
+	}
+}
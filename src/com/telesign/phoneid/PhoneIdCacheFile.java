@@ -0,0 +1,592 @@
+package com.telesign.phoneid;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import com.google.gson.Gson;
+
+/**
+ * The PhoneIdCacheFile class keeps the responses of a {@link PhoneIdCache} in a memory-mapped file, so that they survive a restart
+ * of the process.
+ * <p>
+ * The file is a segment of records that are only ever appended: each has its length, a CRC-32 checksum, the expiry time of the
+ * response, its key and its JSON-formatted body. When the file is opened, the records are read from the start, and the first one that
+ * is incomplete or fails its checksum ends the segment, so a process that stopped in the middle of a write leaves a file that opens
+ * cleanly. The index, of the 64-bit hashes of the keys, is rebuilt from the records and kept in memory.
+ * </p>
+ * <p>
+ * When the segment is full, it is compacted: the live records are copied to a new file, which then replaces the old one, so a crash
+ * during compaction leaves the old file whole. Expired and replaced records are dropped, and so are the oldest records when the live
+ * ones would still fill more than three quarters of the file. The records are written through the mapping and reach the disk when the
+ * operating system writes the pages back, or on {@link #force()} and {@link #close()}: a process that crashes loses nothing, while a
+ * machine that loses power may lose the last responses. A file must only be opened by one process at a time.
+ * </p>
+ */
+public class PhoneIdCacheFile implements Closeable {
+
+	/** "TSPC", and the version of the format. */
+	private static final int MAGIC = 0x54535043;
+	private static final int VERSION = 1;
+
+	private static final int FILE_HEADER_SIZE = 8;
+
+	/** The length and the checksum of the payload. */
+	private static final int RECORD_HEADER_SIZE = 8;
+
+	/** The expiry time and the length of the key, at the start of the payload. */
+	private static final int PAYLOAD_HEADER_SIZE = 12;
+
+	private final File file;
+	private final int capacity;
+
+	private final Gson gson = new Gson();
+
+	private MappedByteBuffer segment;
+	private int end;
+	private boolean closed;
+
+	/** The hash of the key of each slot of the index; 0 marks a free slot. */
+	private long[] hashes;
+
+	/** The offset of the record of each slot. */
+	private int[] offsets;
+
+	private int indexed;
+
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private volatile int recovered;
+
+	/** A response found in the file, with the time it expires. */
+	static final class Found<T> {
+
+		final T response;
+		final long expiresAt;
+
+		Found(T response, long expiresAt) {
+
+			this.response = response;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/**
+	 * The PhoneIdCacheFile class constructor. Opens the file, or creates it, and reads the records it holds.
+	 *
+	 * @param file		[Required] The file.
+	 * @param capacity	[Required] The size of the file, in bytes. A file that is already larger keeps its size.
+	 * @throws IOException If the file cannot be opened or mapped.
+	 */
+	public PhoneIdCacheFile(File file, int capacity) throws IOException {
+
+		if (capacity < FILE_HEADER_SIZE + RECORD_HEADER_SIZE + PAYLOAD_HEADER_SIZE) {
+
+			throw new IllegalArgumentException("capacity must hold a record");
+		}
+
+		this.file = file;
+		this.capacity = (int) Math.max(capacity, Math.min(Integer.MAX_VALUE, file.length()));
+
+		// A compaction that did not finish left its new file behind; the old one is whole.
+		Files.deleteIfExists(compactionFile().toPath());
+
+		open();
+	}
+
+	/** @return The file. */
+	public File getFile() {
+
+		return file;
+	}
+
+	/** @return The size of the file, in bytes. */
+	public int getCapacity() {
+
+		return capacity;
+	}
+
+	/** @return The number of bytes of the file taken by records, live or not. */
+	public int getUsedBytes() {
+
+		lock.readLock().lock();
+
+		try {
+
+			return end;
+		}
+		finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	/** @return The number of keys in the index. */
+	public int size() {
+
+		lock.readLock().lock();
+
+		try {
+
+			return indexed;
+		}
+		finally {
+
+			lock.readLock().unlock();
+		}
+	}
+
+	/** @return The number of live records found when the file was last opened or compacted. */
+	public int getRecoveredCount() {
+
+		return recovered;
+	}
+
+	/** @return The number of lookups answered from the file. */
+	public long getHitCount() {
+
+		return hits.get();
+	}
+
+	/** @return The number of lookups that were not in the file, or had expired. */
+	public long getMissCount() {
+
+		return misses.get();
+	}
+
+	/**
+	 * Returns a response kept in the file.
+	 *
+	 * @param key			[Required] The key of the lookup.
+	 * @param responseType	[Required] The response type of the product.
+	 * @return The response and its expiry time, or null if it is not in the file or has expired.
+	 */
+	<T> Found<T> get(String key, Class<T> responseType) {
+
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		long expiresAt;
+		byte[] body;
+
+		lock.readLock().lock();
+
+		try {
+
+			int offset = closed ? 0 : find(hash(keyBytes));
+
+			if (offset == 0) {
+
+				misses.incrementAndGet();
+
+				return null;
+			}
+
+			int payload = offset + RECORD_HEADER_SIZE;
+			int length = segment.getInt(offset);
+			int keyLength = segment.getInt(payload + 8);
+
+			expiresAt = segment.getLong(payload);
+
+			if (expiresAt <= System.currentTimeMillis() || !keyEquals(payload + PAYLOAD_HEADER_SIZE, keyLength, keyBytes)) {
+
+				misses.incrementAndGet();
+
+				return null;
+			}
+
+			body = new byte[length - PAYLOAD_HEADER_SIZE - keyLength];
+			read(payload + PAYLOAD_HEADER_SIZE + keyLength, body);
+		}
+		finally {
+
+			lock.readLock().unlock();
+		}
+
+		hits.incrementAndGet();
+
+		return new Found<T>(gson.fromJson(new String(body, StandardCharsets.UTF_8), responseType), expiresAt);
+	}
+
+	/**
+	 * Appends a response to the file, and compacts the file first when it is full.
+	 *
+	 * @param key		[Required] The key of the lookup.
+	 * @param response	[Required] The response.
+	 * @param expiresAt	[Required] The time the response expires, in milliseconds since the epoch.
+	 */
+	void put(String key, Object response, long expiresAt) {
+
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		byte[] body = gson.toJson(response).getBytes(StandardCharsets.UTF_8);
+		int length = PAYLOAD_HEADER_SIZE + keyBytes.length + body.length;
+
+		if (FILE_HEADER_SIZE + RECORD_HEADER_SIZE + length > capacity) {
+
+			return;
+		}
+
+		lock.writeLock().lock();
+
+		try {
+
+			if (closed) {
+
+				return;
+			}
+
+			if (end + RECORD_HEADER_SIZE + length > capacity) {
+
+				compactLocked();
+			}
+
+			if (end + RECORD_HEADER_SIZE + length > capacity) {
+
+				return;
+			}
+
+			int offset = end;
+			int payload = offset + RECORD_HEADER_SIZE;
+
+			segment.putLong(payload, expiresAt);
+			segment.putInt(payload + 8, keyBytes.length);
+			write(payload + PAYLOAD_HEADER_SIZE, keyBytes);
+			write(payload + PAYLOAD_HEADER_SIZE + keyBytes.length, body);
+
+			// The length is written last, so the record only counts once the rest of it is in place.
+			segment.putInt(offset + 4, checksum(payload, length));
+			segment.putInt(offset, length);
+
+			end = payload + length;
+			index(hash(keyBytes), offset);
+		}
+		catch (IOException e) {
+
+			// The compaction failed; the response is not kept, and the file stays as it was.
+		}
+		finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Copies the live records to a new file that replaces this one, dropping the expired and replaced records.
+	 *
+	 * @throws IOException If the new file cannot be written, in which case the old one is kept.
+	 */
+	public void compact() throws IOException {
+
+		lock.writeLock().lock();
+
+		try {
+
+			if (!closed) {
+
+				compactLocked();
+			}
+		}
+		finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** Writes the records to the disk. */
+	public void force() {
+
+		lock.writeLock().lock();
+
+		try {
+
+			if (!closed) {
+
+				segment.force();
+			}
+		}
+		finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** Writes the records to the disk, and closes the file. Later lookups miss, and later responses are not kept. */
+	@Override
+	public void close() {
+
+		lock.writeLock().lock();
+
+		try {
+
+			if (!closed) {
+
+				segment.force();
+				closed = true;
+				segment = null;
+				hashes = null;
+				offsets = null;
+			}
+		}
+		finally {
+
+			lock.writeLock().unlock();
+		}
+	}
+
+	/** Maps the file and rebuilds the index from its records. */
+	private void open() throws IOException {
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+
+			segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		}
+
+		hashes = new long[64];
+		offsets = new int[64];
+		indexed = 0;
+
+		if (segment.getInt(0) != MAGIC || segment.getInt(4) != VERSION) {
+
+			// A new file, or one of another format, starts empty.
+			segment.putInt(4, VERSION);
+			segment.putInt(0, MAGIC);
+			segment.putInt(FILE_HEADER_SIZE, 0);
+			end = FILE_HEADER_SIZE;
+			recovered = 0;
+
+			return;
+		}
+
+		long now = System.currentTimeMillis();
+		int offset = FILE_HEADER_SIZE;
+		int live = 0;
+
+		while (offset + RECORD_HEADER_SIZE <= capacity) {
+
+			int length = segment.getInt(offset);
+			int payload = offset + RECORD_HEADER_SIZE;
+
+			if (length < PAYLOAD_HEADER_SIZE || length > capacity - payload || segment.getInt(offset + 4) != checksum(payload, length)) {
+
+				break;
+			}
+
+			int keyLength = segment.getInt(payload + 8);
+
+			if (keyLength < 0 || keyLength > length - PAYLOAD_HEADER_SIZE) {
+
+				break;
+			}
+
+			// A later record of the same key replaces the earlier one.
+			if (segment.getLong(payload) > now) {
+
+				byte[] key = new byte[keyLength];
+				read(payload + PAYLOAD_HEADER_SIZE, key);
+				index(hash(key), offset);
+				live++;
+			}
+
+			offset = payload + length;
+		}
+
+		end = offset;
+		recovered = live;
+	}
+
+	/** Called with the write lock held. */
+	private void compactLocked() throws IOException {
+
+		long now = System.currentTimeMillis();
+		int[] live = new int[indexed];
+		int count = 0;
+
+		for (int i = 0; i < hashes.length; i++) {
+
+			if (hashes[i] != 0 && segment.getLong(offsets[i] + RECORD_HEADER_SIZE) > now) {
+
+				live[count++] = offsets[i];
+			}
+		}
+
+		// The records are kept in the order they were written, and the oldest are dropped to leave a quarter of the file free.
+		Arrays.sort(live, 0, count);
+
+		long bytes = 0;
+
+		for (int i = 0; i < count; i++) {
+
+			bytes += RECORD_HEADER_SIZE + segment.getInt(live[i]);
+		}
+
+		int first = 0;
+
+		while (first < count && FILE_HEADER_SIZE + bytes > capacity * 3L / 4) {
+
+			bytes -= RECORD_HEADER_SIZE + segment.getInt(live[first++]);
+		}
+
+		File compacted = compactionFile();
+
+		try (RandomAccessFile raf = new RandomAccessFile(compacted, "rw"); FileChannel channel = raf.getChannel()) {
+
+			raf.setLength(0);
+
+			ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+			header.putInt(MAGIC).putInt(VERSION).flip();
+			channel.write(header);
+
+			for (int i = first; i < count; i++) {
+
+				ByteBuffer record = segment.duplicate();
+				record.position(live[i]);
+				record.limit(live[i] + RECORD_HEADER_SIZE + segment.getInt(live[i]));
+
+				while (record.hasRemaining()) {
+
+					channel.write(record);
+				}
+			}
+
+			channel.force(true);
+		}
+
+		Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		open();
+	}
+
+	private File compactionFile() {
+
+		return new File(file.getPath() + ".compact");
+	}
+
+	/** @return The offset of the record of a hash, or 0. */
+	private int find(long hash) {
+
+		int mask = hashes.length - 1;
+
+		for (int slot = (int) hash & mask; hashes[slot] != 0; slot = (slot + 1) & mask) {
+
+			if (hashes[slot] == hash) {
+
+				return offsets[slot];
+			}
+		}
+
+		return 0;
+	}
+
+	/** Points a hash at a record. Two keys with the same hash share a slot, and the record of the other key is forgotten. */
+	private void index(long hash, int offset) {
+
+		if ((indexed + 1) * 2 > hashes.length) {
+
+			long[] oldHashes = hashes;
+			int[] oldOffsets = offsets;
+
+			hashes = new long[oldHashes.length * 2];
+			offsets = new int[oldOffsets.length * 2];
+			indexed = 0;
+
+			for (int i = 0; i < oldHashes.length; i++) {
+
+				if (oldHashes[i] != 0) {
+
+					index(oldHashes[i], oldOffsets[i]);
+				}
+			}
+		}
+
+		int mask = hashes.length - 1;
+		int slot = (int) hash & mask;
+
+		while (hashes[slot] != 0 && hashes[slot] != hash) {
+
+			slot = (slot + 1) & mask;
+		}
+
+		if (hashes[slot] == 0) {
+
+			indexed++;
+		}
+
+		hashes[slot] = hash;
+		offsets[slot] = offset;
+	}
+
+	private boolean keyEquals(int position, int length, byte[] key) {
+
+		if (length != key.length) {
+
+			return false;
+		}
+
+		for (int i = 0; i < length; i++) {
+
+			if (segment.get(position + i) != key[i]) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void read(int position, byte[] bytes) {
+
+		ByteBuffer view = segment.duplicate();
+		view.position(position);
+		view.get(bytes);
+	}
+
+	private void write(int position, byte[] bytes) {
+
+		ByteBuffer view = segment.duplicate();
+		view.position(position);
+		view.put(bytes);
+	}
+
+	private int checksum(int position, int length) {
+
+		ByteBuffer view = segment.duplicate();
+		view.position(position);
+		view.limit(position + length);
+
+		CRC32 crc = new CRC32();
+		crc.update(view);
+
+		return (int) crc.getValue();
+	}
+
+	/** The 64-bit FNV-1a hash of a key, never 0. */
+	private static long hash(byte[] key) {
+
+		long hash = 0xcbf29ce484222325L;
+
+		for (byte b : key) {
+
+			hash ^= (b & 0xff);
+			hash *= 0x100000001b3L;
+		}
+
+		return (hash == 0) ? 1 : hash;
+	}
+
+	@Override
+	public String toString() {
+
+		return "PhoneIdCacheFile[" + file + ", " + size() + " keys]";
+	}
+}
@@ -0,0 +1,357 @@
+package com.telesign.phoneid;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.phoneid.response.PhoneIdStandardResponse.Carrier;
+import com.telesign.phoneid.response.PhoneIdStandardResponse.Location;
+import com.telesign.phoneid.response.PhoneIdStandardResponse.Numbering;
+import com.telesign.phoneid.response.PhoneIdStandardResponse.PhoneType;
+import com.telesign.phoneid.response.PhoneIdStandardResponse.Status;
+
+/**
+ * The StandardRecord class encodes a PhoneID Standard response in the compact binary layout of an {@link OffHeapPhoneIdStore}.
+ * <p>
+ * A record starts with a fixed block: the flags of the objects that are present, then the numbers of the response at fixed offsets,
+ * so that the store can read a hot field, such as the phone type code, in place without decoding the rest. The strings follow in a
+ * fixed order, each as an unsigned 16-bit length and its UTF-8 bytes; the length 0xFFFF marks a null string. A record takes about a
+ * third of the JSON-formatted body, and is decoded without a parser. Only responses without errors are stored, so the errors are
+ * kept as a flag that tells an empty array from a missing one.
+ * </p>
+ */
+final class StandardRecord {
+
+	private static final int PHONE_TYPE = 1;
+	private static final int STATUS = 1 << 1;
+	private static final int NUMBERING = 1 << 2;
+	private static final int ORIGINAL = 1 << 3;
+	private static final int CLEANSING = 1 << 4;
+	private static final int SMS = 1 << 5;
+	private static final int CALL = 1 << 6;
+	private static final int LOCATION = 1 << 7;
+	private static final int COUNTRY = 1 << 8;
+	private static final int TIME_ZONE = 1 << 9;
+	private static final int COORDINATES = 1 << 10;
+	private static final int CARRIER = 1 << 11;
+	private static final int ERRORS = 1 << 12;
+
+	/** The offset of the flags in a record. */
+	static final int FLAGS_OFFSET = 0;
+
+	/** The offset of the phone type code in a record. */
+	static final int PHONE_TYPE_CODE_OFFSET = 4;
+
+	/** The flags, the phone type and status codes, the coordinates, and the lengths and cleansed codes of sms and call. */
+	private static final int FIXED_SIZE = 4 + 4 + 4 + 8 + 8 + 12 + 12;
+
+	private static final int NULL_STRING = 0xFFFF;
+
+	/** The number of strings of a record. */
+	private static final int STRINGS = 26;
+
+	private StandardRecord() {
+	}
+
+	/**
+	 * @param flags [Required] The flags of a record.
+	 * @return True if the response of the record has a phone type.
+	 */
+	static boolean hasPhoneType(int flags) {
+
+		return (flags & PHONE_TYPE) != 0;
+	}
+
+	/**
+	 * Encodes a response without errors.
+	 *
+	 * @param response	[Required] The response.
+	 * @return The record, or null if a string of the response is too long for the layout.
+	 */
+	static byte[] encode(PhoneIdStandardResponse response) {
+
+		Numbering numbering = response.numbering;
+		Numbering.OriginalNumber original = (numbering != null) ? numbering.original : null;
+		Numbering.CleansingNumber cleansing = (numbering != null) ? numbering.cleansing : null;
+		Numbering.CleansingNumber.Number sms = (cleansing != null) ? cleansing.sms : null;
+		Numbering.CleansingNumber.Number call = (cleansing != null) ? cleansing.call : null;
+		Location location = response.location;
+		Location.Country country = (location != null) ? location.country : null;
+		Location.TimeZone timeZone = (location != null) ? location.time_zone : null;
+		Location.Coordinates coordinates = (location != null) ? location.coordinates : null;
+
+		int flags = (response.phone_type != null ? PHONE_TYPE : 0)
+				| (response.status != null ? STATUS : 0)
+				| (numbering != null ? NUMBERING : 0)
+				| (original != null ? ORIGINAL : 0)
+				| (cleansing != null ? CLEANSING : 0)
+				| (sms != null ? SMS : 0)
+				| (call != null ? CALL : 0)
+				| (location != null ? LOCATION : 0)
+				| (country != null ? COUNTRY : 0)
+				| (timeZone != null ? TIME_ZONE : 0)
+				| (coordinates != null ? COORDINATES : 0)
+				| (response.carrier != null ? CARRIER : 0)
+				| (response.errors != null ? ERRORS : 0);
+
+		String[] strings = {
+				response.reference_id,
+				response.resource_uri,
+				response.sub_resource,
+				response.signature_string,
+				(response.phone_type != null) ? response.phone_type.description : null,
+				(response.status != null) ? response.status.updated_on : null,
+				(response.status != null) ? response.status.description : null,
+				(original != null) ? original.phone_number : null,
+				(original != null) ? original.complete_phone_number : null,
+				(original != null) ? original.country_code : null,
+				(sms != null) ? sms.phone_number : null,
+				(sms != null) ? sms.country_code : null,
+				(call != null) ? call.phone_number : null,
+				(call != null) ? call.country_code : null,
+				(location != null) ? location.county : null,
+				(location != null) ? location.city : null,
+				(location != null) ? location.state : null,
+				(location != null) ? location.zip : null,
+				(location != null) ? location.metro_code : null,
+				(country != null) ? country.iso2 : null,
+				(country != null) ? country.iso3 : null,
+				(country != null) ? country.name : null,
+				(timeZone != null) ? timeZone.name : null,
+				(timeZone != null) ? timeZone.utc_offset_min : null,
+				(timeZone != null) ? timeZone.utc_offset_max : null,
+				(response.carrier != null) ? response.carrier.name : null
+		};
+
+		byte[][] encoded = new byte[STRINGS][];
+		int size = FIXED_SIZE + 2 * STRINGS;
+
+		for (int i = 0; i < STRINGS; i++) {
+
+			if (strings[i] != null) {
+
+				encoded[i] = strings[i].getBytes(StandardCharsets.UTF_8);
+
+				if (encoded[i].length >= NULL_STRING) {
+
+					return null;
+				}
+
+				size += encoded[i].length;
+			}
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(size);
+
+		record.putInt(flags);
+		record.putInt((response.phone_type != null) ? response.phone_type.code : 0);
+		record.putInt((response.status != null) ? response.status.code : 0);
+		record.putDouble((coordinates != null) ? coordinates.latitude : 0);
+		record.putDouble((coordinates != null) ? coordinates.longitude : 0);
+		putNumber(record, sms);
+		putNumber(record, call);
+
+		for (byte[] string : encoded) {
+
+			if (string == null) {
+
+				record.putShort((short) NULL_STRING);
+			}
+			else {
+
+				record.putShort((short) string.length);
+				record.put(string);
+			}
+		}
+
+		return record.array();
+	}
+
+	/**
+	 * Decodes a record into a new response.
+	 *
+	 * @param record [Required] The record.
+	 * @return The response.
+	 */
+	static PhoneIdStandardResponse decode(byte[] record) {
+
+		ByteBuffer in = ByteBuffer.wrap(record);
+		int flags = in.getInt();
+		int phoneTypeCode = in.getInt();
+		int statusCode = in.getInt();
+		double latitude = in.getDouble();
+		double longitude = in.getDouble();
+
+		PhoneIdStandardResponse response = new PhoneIdStandardResponse();
+		Numbering.CleansingNumber.Number sms = getNumber(in, (flags & SMS) != 0);
+		Numbering.CleansingNumber.Number call = getNumber(in, (flags & CALL) != 0);
+
+		response.reference_id = getString(in);
+		response.resource_uri = getString(in);
+		response.sub_resource = getString(in);
+		response.signature_string = getString(in);
+
+		String description = getString(in);
+
+		if ((flags & PHONE_TYPE) != 0) {
+
+			response.phone_type = new PhoneType();
+			response.phone_type.code = phoneTypeCode;
+			response.phone_type.description = description;
+		}
+
+		String updatedOn = getString(in);
+		description = getString(in);
+
+		if ((flags & STATUS) != 0) {
+
+			response.status = new Status();
+			response.status.code = statusCode;
+			response.status.updated_on = updatedOn;
+			response.status.description = description;
+		}
+
+		String phoneNumber = getString(in);
+		String completePhoneNumber = getString(in);
+		String countryCode = getString(in);
+
+		if ((flags & NUMBERING) != 0) {
+
+			response.numbering = new Numbering();
+
+			if ((flags & ORIGINAL) != 0) {
+
+				response.numbering.original = new Numbering.OriginalNumber();
+				response.numbering.original.phone_number = phoneNumber;
+				response.numbering.original.complete_phone_number = completePhoneNumber;
+				response.numbering.original.country_code = countryCode;
+			}
+
+			if ((flags & CLEANSING) != 0) {
+
+				response.numbering.cleansing = new Numbering.CleansingNumber();
+				response.numbering.cleansing.sms = sms;
+				response.numbering.cleansing.call = call;
+			}
+		}
+
+		getStrings(in, sms);
+		getStrings(in, call);
+
+		String county = getString(in);
+		String city = getString(in);
+		String state = getString(in);
+		String zip = getString(in);
+		String metroCode = getString(in);
+		String iso2 = getString(in);
+		String iso3 = getString(in);
+		String countryName = getString(in);
+		String timeZoneName = getString(in);
+		String utcOffsetMin = getString(in);
+		String utcOffsetMax = getString(in);
+
+		if ((flags & LOCATION) != 0) {
+
+			Location location = new Location();
+			location.county = county;
+			location.city = city;
+			location.state = state;
+			location.zip = zip;
+			location.metro_code = metroCode;
+
+			if ((flags & COUNTRY) != 0) {
+
+				location.country = new Location.Country();
+				location.country.iso2 = iso2;
+				location.country.iso3 = iso3;
+				location.country.name = countryName;
+			}
+
+			if ((flags & TIME_ZONE) != 0) {
+
+				location.time_zone = new Location.TimeZone();
+				location.time_zone.name = timeZoneName;
+				location.time_zone.utc_offset_min = utcOffsetMin;
+				location.time_zone.utc_offset_max = utcOffsetMax;
+			}
+
+			if ((flags & COORDINATES) != 0) {
+
+				location.coordinates = new Location.Coordinates();
+				location.coordinates.latitude = latitude;
+				location.coordinates.longitude = longitude;
+			}
+
+			response.location = location;
+		}
+
+		String carrier = getString(in);
+
+		if ((flags & CARRIER) != 0) {
+
+			response.carrier = new Carrier();
+			response.carrier.name = carrier;
+		}
+
+		if ((flags & ERRORS) != 0) {
+
+			response.errors = new PhoneIdStandardResponse.Error[0];
+		}
+
+		return response;
+	}
+
+	private static void putNumber(ByteBuffer record, Numbering.CleansingNumber.Number number) {
+
+		record.putInt((number != null) ? number.min_length : 0);
+		record.putInt((number != null) ? number.max_length : 0);
+		record.putInt((number != null) ? number.cleansed_code : 0);
+	}
+
+	/** Reads the numbers of a cleansed number. Its strings come later, and are read by {@link #getStrings}. */
+	private static Numbering.CleansingNumber.Number getNumber(ByteBuffer in, boolean present) {
+
+		int minLength = in.getInt();
+		int maxLength = in.getInt();
+		int cleansedCode = in.getInt();
+
+		if (!present) {
+
+			return null;
+		}
+
+		Numbering.CleansingNumber.Number number = new Numbering.CleansingNumber.Number();
+		number.min_length = minLength;
+		number.max_length = maxLength;
+		number.cleansed_code = cleansedCode;
+
+		return number;
+	}
+
+	private static void getStrings(ByteBuffer in, Numbering.CleansingNumber.Number number) {
+
+		String phoneNumber = getString(in);
+		String countryCode = getString(in);
+
+		if (number != null) {
+
+			number.phone_number = phoneNumber;
+			number.country_code = countryCode;
+		}
+	}
+
+	private static String getString(ByteBuffer in) {
+
+		int length = in.getShort() & 0xFFFF;
+
+		if (length == NULL_STRING) {
+
+			return null;
+		}
+
+		String string = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+		in.position(in.position() + length);
+
+		return string;
+	}
+}
@@ -0,0 +1,427 @@
+package com.telesign.util;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * The CircuitBreaker class stops sending Requests to a TeleSign host and endpoint that keeps failing, or keeps answering slowly.
+ * <p>
+ * The breaker records the outcome of the last calls in a sliding window. It opens when the share of failed calls, or of calls slower
+ * than the slow call duration, reaches its threshold. While it is open, a Request fails at once with a
+ * {@link CircuitBreakerOpenException}, or gets the body of the {@link Fallback} of the breaker, instead of waiting out its timeouts.
+ * After the open duration, the breaker is half open: three probe Requests are let through, and the breaker closes again when all of
+ * them succeed quickly, or opens again otherwise. A failure is an IOException, or a 5xx Response.
+ * </p>
+ */
+public class CircuitBreaker {
+
+	/** The states of a breaker. */
+	public enum State {
+
+		/** Requests are sent, and their outcomes recorded. */
+		CLOSED,
+
+		/** Requests fail at once. */
+		OPEN,
+
+		/** A few probe Requests are sent, to decide whether the breaker closes. */
+		HALF_OPEN
+	}
+
+	/** Receives the state changes of a breaker. */
+	public interface Listener {
+
+		/**
+		 * Called after the state of a breaker changed, on the thread that recorded the outcome or asked for a permission.
+		 *
+		 * @param breaker	The breaker.
+		 * @param from		The previous state.
+		 * @param to		The new state.
+		 */
+		void onStateChange(CircuitBreaker breaker, State from, State to);
+	}
+
+	/** Answers in place of the web service while a breaker is open. */
+	public interface Fallback {
+
+		/**
+		 * @param resource The resource of the Request that was not sent.
+		 * @return The JSON-formatted body that the Request returns, or null to fail the Request with a CircuitBreakerOpenException.
+		 */
+		String respond(String resource);
+	}
+
+	/** The number of probe Requests let through while the breaker is half open. */
+	private static final int HALF_OPEN_CALLS = 3;
+
+	private static final byte FAILED = 1;
+	private static final byte SLOW = 2;
+
+	private final String name;
+	private final Config config;
+
+	/** The source of the System.nanoTime() values that time the open duration. */
+	private final LongSupplier nanoTime;
+
+	/** The outcomes of the last calls, as FAILED and SLOW flags. Guarded by this breaker. */
+	private final byte[] window;
+	private int next;
+	private int calls;
+	private int failures;
+	private int slowCalls;
+
+	private volatile State state = State.CLOSED;
+	private long openedAt;
+	private int probesPermitted;
+	private int probesDone;
+
+	private volatile Fallback fallback;
+
+	private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * The CircuitBreaker class constructor. The breaker starts closed.
+	 *
+	 * @param name		[Required] The name of the breaker, for example rest.telesign.com/verify.sms.
+	 * @param config	[Required] The thresholds of the breaker.
+	 */
+	public CircuitBreaker(String name, Config config) {
+
+		this(name, config, System::nanoTime);
+	}
+
+	/**
+	 * The CircuitBreaker class constructor, with the clock that times the open duration. The breaker starts closed.
+	 *
+	 * @param name		[Required] The name of the breaker, for example rest.telesign.com/verify.sms.
+	 * @param config	[Required] The thresholds of the breaker.
+	 * @param nanoTime	[Required] The clock, in nanoseconds, as System.nanoTime() counts them.
+	 */
+	public CircuitBreaker(String name, Config config, LongSupplier nanoTime) {
+
+		if (nanoTime == null) {
+
+			throw new IllegalArgumentException("nanoTime must not be null");
+		}
+
+		this.name = name;
+		this.config = config;
+		this.nanoTime = nanoTime;
+		this.window = new byte[config.windowSize];
+	}
+
+	/** @return The name of the breaker. */
+	public String getName() {
+
+		return name;
+	}
+
+	/** @return The thresholds of the breaker. */
+	public Config getConfig() {
+
+		return config;
+	}
+
+	/** @return The current state. */
+	public State getState() {
+
+		return state;
+	}
+
+	/**
+	 * Sets the Fallback that answers the Requests while the breaker is open.
+	 *
+	 * @param fallback [Optional] The Fallback. Set this value to null to fail the Requests instead.
+	 */
+	public void setFallback(Fallback fallback) {
+
+		this.fallback = fallback;
+	}
+
+	/** @return The Fallback, or null. */
+	public Fallback getFallback() {
+
+		return fallback;
+	}
+
+	/**
+	 * Adds a listener of the state changes.
+	 *
+	 * @param listener [Required] The listener.
+	 */
+	public void addListener(Listener listener) {
+
+		listeners.addIfAbsent(listener);
+	}
+
+	/**
+	 * Asks whether a Request may be sent now. A Request that was let through must have its outcome recorded with
+	 * {@link #record(long, boolean)}.
+	 *
+	 * @return True if the Request may be sent.
+	 */
+	public boolean tryAcquirePermission() {
+
+		if (state == State.CLOSED) {
+
+			return true;
+		}
+
+		State from = null;
+		boolean permitted;
+
+		synchronized (this) {
+
+			if (state == State.OPEN && nanoTime.getAsLong() - openedAt >= config.openNanos) {
+
+				from = moveTo(State.HALF_OPEN);
+			}
+
+			if (state == State.HALF_OPEN && probesPermitted < HALF_OPEN_CALLS) {
+
+				probesPermitted++;
+				permitted = true;
+			}
+			else {
+
+				permitted = (state == State.CLOSED);
+			}
+		}
+
+		if (from != null) {
+
+			notifyListeners(from, State.HALF_OPEN);
+		}
+
+		if (!permitted) {
+
+			rejected.incrementAndGet();
+		}
+
+		return permitted;
+	}
+
+	/**
+	 * Records the outcome of a Request that was let through.
+	 *
+	 * @param durationNanos	[Required] The time the Request took, in nanoseconds.
+	 * @param failed		[Required] True if the Request failed.
+	 */
+	public void record(long durationNanos, boolean failed) {
+
+		byte outcome = (byte) ((failed ? FAILED : 0) | (durationNanos >= config.slowCallNanos ? SLOW : 0));
+		State from = null;
+		State to = null;
+
+		synchronized (this) {
+
+			if (state == State.HALF_OPEN) {
+
+				probesDone++;
+
+				if (outcome != 0) {
+
+					to = State.OPEN;
+				}
+				else if (probesDone >= HALF_OPEN_CALLS) {
+
+					to = State.CLOSED;
+				}
+			}
+			else if (state == State.CLOSED) {
+
+				if (calls == window.length) {
+
+					forget(window[next]);
+				}
+				else {
+
+					calls++;
+				}
+
+				window[next] = outcome;
+				next = (next + 1) % window.length;
+
+				if ((outcome & FAILED) != 0) {
+
+					failures++;
+				}
+
+				if ((outcome & SLOW) != 0) {
+
+					slowCalls++;
+				}
+
+				if (calls == window.length && (failures * 100 >= config.failureRateThreshold * calls || slowCalls * 100 >= config.slowCallRateThreshold * calls)) {
+
+					to = State.OPEN;
+				}
+			}
+
+			// An outcome recorded while the breaker is open belongs to a Request sent before it opened, and is ignored.
+
+			if (to != null) {
+
+				from = moveTo(to);
+			}
+		}
+
+		if (to != null) {
+
+			notifyListeners(from, to);
+		}
+	}
+
+	/** Closes the breaker, and forgets the recorded outcomes. */
+	public void reset() {
+
+		State from;
+
+		synchronized (this) {
+
+			from = moveTo(State.CLOSED);
+		}
+
+		if (from != State.CLOSED) {
+
+			notifyListeners(from, State.CLOSED);
+		}
+	}
+
+	/** @return The share of failed calls in the window, in percent, or -1 until the window is full. */
+	public synchronized float getFailureRate() {
+
+		return (calls < window.length) ? -1 : failures * 100f / calls;
+	}
+
+	/** @return The share of slow calls in the window, in percent, or -1 until the window is full. */
+	public synchronized float getSlowCallRate() {
+
+		return (calls < window.length) ? -1 : slowCalls * 100f / calls;
+	}
+
+	/** @return The number of Requests that were not let through. */
+	public long getRejectedCount() {
+
+		return rejected.get();
+	}
+
+	private void forget(byte outcome) {
+
+		if ((outcome & FAILED) != 0) {
+
+			failures--;
+		}
+
+		if ((outcome & SLOW) != 0) {
+
+			slowCalls--;
+		}
+	}
+
+	/** Changes the state, and clears the state it leaves. Called with the lock held. */
+	private State moveTo(State to) {
+
+		State from = state;
+
+		calls = 0;
+		next = 0;
+		failures = 0;
+		slowCalls = 0;
+		probesPermitted = 0;
+		probesDone = 0;
+
+		if (to == State.OPEN) {
+
+			openedAt = nanoTime.getAsLong();
+		}
+
+		state = to;
+
+		return from;
+	}
+
+	private void notifyListeners(State from, State to) {
+
+		for (Listener listener : listeners) {
+
+			listener.onStateChange(this, from, to);
+		}
+	}
+
+	@Override
+	public String toString() {
+
+		return "CircuitBreaker[" + name + ", " + state + "]";
+	}
+
+	/** The thresholds of a breaker. */
+	public static final class Config {
+
+		private static final Config DEFAULT = new Config(20, 50, 80, 10, 30, TimeUnit.SECONDS);
+
+		private final int windowSize;
+		private final int failureRateThreshold;
+		private final int slowCallRateThreshold;
+		private final long slowCallNanos;
+		private final long openNanos;
+
+		/**
+		 * Returns the thresholds of the breakers that were not given others: a window of 20 calls, which opens at 50% of failed calls
+		 * or at 80% of calls slower than 10 s, and stays open for 30 s.
+		 *
+		 * @return The default Config.
+		 */
+		public static Config getDefault() {
+
+			return DEFAULT;
+		}
+
+		/**
+		 * The Config class constructor.
+		 *
+		 * @param windowSize			[Required] The number of calls whose outcomes are kept. The breaker opens only once it is full.
+		 * @param failureRateThreshold	[Required] The share of failed calls that opens the breaker, in percent.
+		 * @param slowCallRateThreshold	[Required] The share of slow calls that opens the breaker, in percent.
+		 * @param slowCallDuration		[Required] The duration from which a call is slow.
+		 * @param openDuration			[Required] The time the breaker stays open before it lets probe Requests through.
+		 * @param unit					[Required] The unit of the durations.
+		 */
+		public Config(int windowSize, int failureRateThreshold, int slowCallRateThreshold, long slowCallDuration, long openDuration, TimeUnit unit) {
+
+			if (windowSize < 1 || failureRateThreshold < 1 || failureRateThreshold > 100 || slowCallRateThreshold < 1 || slowCallRateThreshold > 100
+					|| slowCallDuration < 0 || openDuration < 0) {
+
+				throw new IllegalArgumentException("windowSize must be positive, the thresholds between 1 and 100, and the durations not negative");
+			}
+
+			this.windowSize = windowSize;
+			this.failureRateThreshold = failureRateThreshold;
+			this.slowCallRateThreshold = slowCallRateThreshold;
+			this.slowCallNanos = unit.toNanos(slowCallDuration);
+			this.openNanos = unit.toNanos(openDuration);
+		}
+
+		/** @return The number of calls whose outcomes are kept. */
+		public int getWindowSize() {
+
+			return windowSize;
+		}
+
+		/** @return The share of failed calls that opens the breaker, in percent. */
+		public int getFailureRateThreshold() {
+
+			return failureRateThreshold;
+		}
+
+		/** @return The share of slow calls that opens the breaker, in percent. */
+		public int getSlowCallRateThreshold() {
+
+			return slowCallRateThreshold;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package com.telesign.util;
+
+import java.io.IOException;
+
+/**
+ * Signals that a Request was not sent, because the {@link CircuitBreaker} of its host and endpoint is open.
+ */
+public class CircuitBreakerOpenException extends IOException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final transient CircuitBreaker breaker;
+
+	/**
+	 * The CircuitBreakerOpenException class constructor.
+	 *
+	 * @param breaker [Required] The breaker that refused the Request.
+	 */
+	public CircuitBreakerOpenException(CircuitBreaker breaker) {
+
+		super("The circuit breaker of " + breaker.getName() + " is " + breaker.getState().toString().toLowerCase().replace('_', ' '));
+
+		this.breaker = breaker;
+	}
+
+	/** @return The breaker that refused the Request. */
+	public CircuitBreaker getBreaker() {
+
+		return breaker;
+	}
+}
@@ -0,0 +1,187 @@
+package com.telesign.util;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The CircuitBreakerRegistry class holds a {@link CircuitBreaker} for each TeleSign host and endpoint, created on first use.
+ * <p>
+ * The breakers are named after the host and one of the endpoint names of {@link RateLimiterRegistry}, for example
+ * rest.telesign.com/verify.sms. The {@link com.telesign.verify.Verify} and {@link com.telesign.phoneid.PhoneId} classes send every
+ * Request through a breaker of {@link #getDefault()}, unless the registry is disabled.
+ * </p>
+ */
+public class CircuitBreakerRegistry {
+
+	private static final CircuitBreakerRegistry DEFAULT = new CircuitBreakerRegistry();
+
+	private final ConcurrentHashMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<String, CircuitBreaker>();
+
+	private final ConcurrentHashMap<String, CircuitBreaker.Fallback> fallbacks = new ConcurrentHashMap<String, CircuitBreaker.Fallback>();
+
+	private final CopyOnWriteArrayList<CircuitBreaker.Listener> listeners = new CopyOnWriteArrayList<CircuitBreaker.Listener>();
+
+	private volatile CircuitBreaker.Config config = CircuitBreaker.Config.getDefault();
+
+	private volatile boolean enabled = true;
+
+	/**
+	 * Returns the registry used by Verify and PhoneId.
+	 *
+	 * @return The default CircuitBreakerRegistry.
+	 */
+	public static CircuitBreakerRegistry getDefault() {
+
+		return DEFAULT;
+	}
+
+	/**
+	 * Sets the thresholds of the breakers. The breakers are created again, closed, on their next use.
+	 *
+	 * @param config [Required] The thresholds.
+	 */
+	public void setConfig(CircuitBreaker.Config config) {
+
+		if (config == null) {
+
+			throw new IllegalArgumentException("config must not be null");
+		}
+
+		this.config = config;
+		breakers.clear();
+	}
+
+	/** @return The thresholds of the breakers. */
+	public CircuitBreaker.Config getConfig() {
+
+		return config;
+	}
+
+	/**
+	 * Turns the breakers on or off. Requests created while the registry is disabled are sent without a breaker.
+	 *
+	 * @param enabled [Required] False to send Requests without a breaker.
+	 */
+	public void setEnabled(boolean enabled) {
+
+		this.enabled = enabled;
+	}
+
+	/** @return True when Requests are sent through a breaker. */
+	public boolean isEnabled() {
+
+		return enabled;
+	}
+
+	/**
+	 * Sets the Fallback of an endpoint, on every host.
+	 *
+	 * @param endpoint	[Required] One of the endpoint names of {@link RateLimiterRegistry}.
+	 * @param fallback	[Optional] The Fallback. Set this value to null to fail the Requests of an open breaker instead.
+	 */
+	public void setFallback(String endpoint, CircuitBreaker.Fallback fallback) {
+
+		if (fallback != null) {
+
+			fallbacks.put(endpoint, fallback);
+		}
+		else {
+
+			fallbacks.remove(endpoint);
+		}
+
+		String suffix = "/" + endpoint;
+
+		for (CircuitBreaker breaker : breakers.values()) {
+
+			if (breaker.getName().endsWith(suffix)) {
+
+				breaker.setFallback(fallback);
+			}
+		}
+	}
+
+	/**
+	 * Adds a listener of the state changes of every breaker.
+	 *
+	 * @param listener [Required] The listener.
+	 */
+	public void addListener(CircuitBreaker.Listener listener) {
+
+		listeners.addIfAbsent(listener);
+
+		for (CircuitBreaker breaker : breakers.values()) {
+
+			breaker.addListener(listener);
+		}
+	}
+
+	/**
+	 * Returns the breaker of a host and endpoint, and creates it if needed.
+	 *
+	 * @param host		[Required] The host name, for example rest.telesign.com.
+	 * @param endpoint	[Required] One of the endpoint names of {@link RateLimiterRegistry}.
+	 * @return The breaker.
+	 */
+	public CircuitBreaker get(String host, String endpoint) {
+
+		return getByKey(key(host, endpoint), endpoint);
+	}
+
+	CircuitBreaker getByKey(String key, String endpoint) {
+
+		CircuitBreaker breaker = breakers.get(key);
+
+		if (breaker == null) {
+
+			CircuitBreaker created = new CircuitBreaker(key, config);
+			created.setFallback(fallbacks.get(endpoint));
+
+			for (CircuitBreaker.Listener listener : listeners) {
+
+				created.addListener(listener);
+			}
+
+			breaker = breakers.putIfAbsent(key, created);
+
+			if (breaker == null) {
+
+				breaker = created;
+			}
+		}
+
+		return breaker;
+	}
+
+	/**
+	 * @return The breakers created so far, keyed by host and endpoint, for reading their state.
+	 */
+	public Map<String, CircuitBreaker> getBreakers() {
+
+		return Collections.unmodifiableMap(new TreeMap<String, CircuitBreaker>(breakers));
+	}
+
+	static String key(String host, String endpoint) {
+
+		return host + "/" + endpoint;
+	}
+
+	/** @return The host name of a Base URI, or the Base URI itself when it has none. */
+	static String host(String base) {
+
+		try {
+
+			String host = URI.create(base).getHost();
+
+			return (host != null) ? host : base;
+		}
+		catch (IllegalArgumentException e) {
+
+			return base;
+		}
+	}
+}
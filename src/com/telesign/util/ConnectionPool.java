@@ -0,0 +1,334 @@
+package com.telesign.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The ConnectionPool class bounds and meters the HTTP connections that a {@link TeleSignRequest} opens to the TeleSign web services.
+ * <p>
+ * Sockets are kept alive and reused through the JDK's own keep-alive cache. That cache only hands a socket back to a request
+ * that uses the same SSL socket factory, and only once the previous response body was read to the end and closed; TeleSignRequest
+ * takes care of both. Idle sockets are evicted by the keep-alive cache after the server's <em>Keep-Alive</em> timeout (five seconds
+ * when the server does not send one). The pool itself limits the number of requests that may be in flight against each host, and
+ * records how long requests had to wait for a free connection.
+ * </p>
+ * <p>
+ * The keep-alive cache keeps only five idle sockets per host, so most of the sockets of a busy host are closed after use. The SDK
+ * leaves that JVM-wide setting alone; an application that wants a larger cache opts in with {@link #setKeepAliveCacheSize(int)}.
+ * </p>
+ * <p>
+ * All TeleSignRequest objects share the {@link #getDefault() default pool} unless another pool is set on the request.
+ * </p>
+ */
+public class ConnectionPool {
+
+	/** The default maximum number of concurrent connections to a single host. */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+	/** The default number of milliseconds a request waits for a free connection before it fails. */
+	public static final long DEFAULT_POOL_WAIT_TIMEOUT = 30000;
+
+	private static final ConnectionPool DEFAULT = new ConnectionPool();
+
+	private final ConcurrentHashMap<String, HostPermits> hosts = new ConcurrentHashMap<String, HostPermits>();
+
+	private volatile int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+	private volatile long poolWaitTimeout = DEFAULT_POOL_WAIT_TIMEOUT;
+
+	private final AtomicLong leaseCount = new AtomicLong();
+	private final AtomicLong waitCount = new AtomicLong();
+	private final AtomicLong waitTimeoutCount = new AtomicLong();
+	private final AtomicLong totalWaitNanos = new AtomicLong();
+	private final AtomicLong maxWaitNanos = new AtomicLong();
+
+	/**
+	 * Returns the process-wide pool shared by every {@link TeleSignRequest} that has not been given a pool of its own.
+	 *
+	 * @return The default ConnectionPool.
+	 */
+	public static ConnectionPool getDefault() {
+
+		return DEFAULT;
+	}
+
+	/**
+	 * Sets the number of idle sockets per host that the JDK keep-alive cache keeps, through the <em>http.maxConnections</em> system
+	 * property.
+	 * <p>
+	 * The property is global: it applies to every HttpURLConnection of the JVM, not only to those of the SDK. The JDK reads it once,
+	 * when the keep-alive cache is first used, so this method must be called at startup, before any HTTP connection is opened, and
+	 * later calls have no effect. It is not tied to {@link #setMaxConnectionsPerHost(int)}; setting the same value to both lets every
+	 * socket that a host was allowed be kept for reuse.
+	 * </p>
+	 *
+	 * @param idleConnectionsPerHost [Required] A positive integer.
+	 */
+	public static void setKeepAliveCacheSize(int idleConnectionsPerHost) {
+
+		if (idleConnectionsPerHost <= 0) {
+
+			throw new IllegalArgumentException("idleConnectionsPerHost must be positive: " + idleConnectionsPerHost);
+		}
+
+		System.setProperty("http.maxConnections", Integer.toString(idleConnectionsPerHost));
+	}
+
+	/**
+	 * Sets the maximum number of requests that may hold a connection to the same host at the same time.
+	 *
+	 * @param maxConnectionsPerHost [Required] A positive integer.
+	 */
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+
+		if (maxConnectionsPerHost <= 0) {
+
+			throw new IllegalArgumentException("maxConnectionsPerHost must be positive: " + maxConnectionsPerHost);
+		}
+
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+
+		for (HostPermits permits : hosts.values()) {
+
+			permits.resize(maxConnectionsPerHost);
+		}
+	}
+
+	/**
+	 * @return The maximum number of concurrent connections to a single host.
+	 */
+	public int getMaxConnectionsPerHost() {
+
+		return maxConnectionsPerHost;
+	}
+
+	/**
+	 * Sets how long a request waits for a free connection before giving up with an {@link IOException}.
+	 *
+	 * @param poolWaitTimeout [Required] The timeout in milliseconds. Zero fails immediately when the host has no free connection.
+	 */
+	public void setPoolWaitTimeout(long poolWaitTimeout) {
+
+		this.poolWaitTimeout = poolWaitTimeout;
+	}
+
+	/**
+	 * @return The number of milliseconds a request waits for a free connection.
+	 */
+	public long getPoolWaitTimeout() {
+
+		return poolWaitTimeout;
+	}
+
+	/**
+	 * Reserves a connection to the host of the given URL, waiting up to the pool wait timeout for one to become free.
+	 *
+	 * @param url [Required] The URL the request is about to open.
+	 * @return A Lease that must be released once the response body has been consumed.
+	 * @throws IOException
+	 *			 If no connection became free in time, or if the calling thread was interrupted while waiting.
+	 */
+	public Lease acquire(URL url) throws IOException {
+
+		String host = url.getHost() + ":" + (url.getPort() == -1 ? url.getDefaultPort() : url.getPort());
+		HostPermits permits = hosts.get(host);
+
+		if (permits == null) {
+
+			HostPermits created = new HostPermits(maxConnectionsPerHost);
+			permits = hosts.putIfAbsent(host, created);
+
+			if (permits == null) {
+
+				permits = created;
+			}
+		}
+
+		if (!permits.tryAcquire()) {
+
+			long start = System.nanoTime();
+			boolean acquired;
+
+			try {
+
+				acquired = permits.tryAcquire(poolWaitTimeout, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for a connection to " + host);
+			}
+
+			recordWait(System.nanoTime() - start);
+
+			if (!acquired) {
+
+				waitTimeoutCount.incrementAndGet();
+				throw new IOException("Timed out after " + poolWaitTimeout + " ms waiting for a connection to " + host);
+			}
+		}
+
+		leaseCount.incrementAndGet();
+
+		return new Lease(permits);
+	}
+
+	private void recordWait(long nanos) {
+
+		waitCount.incrementAndGet();
+		totalWaitNanos.addAndGet(nanos);
+
+		long max = maxWaitNanos.get();
+
+		while (nanos > max && !maxWaitNanos.compareAndSet(max, nanos)) {
+
+			max = maxWaitNanos.get();
+		}
+	}
+
+	/**
+	 * @return The number of connections handed out by this pool.
+	 */
+	public long getLeaseCount() {
+
+		return leaseCount.get();
+	}
+
+	/**
+	 * @return The number of requests that found their host at its connection limit and had to wait.
+	 */
+	public long getWaitCount() {
+
+		return waitCount.get();
+	}
+
+	/**
+	 * @return The number of requests that gave up waiting for a connection.
+	 */
+	public long getWaitTimeoutCount() {
+
+		return waitTimeoutCount.get();
+	}
+
+	/**
+	 * @return The average time, in milliseconds, that waiting requests spent waiting for a connection.
+	 */
+	public double getAverageWaitMillis() {
+
+		long waits = waitCount.get();
+
+		return waits == 0 ? 0 : totalWaitNanos.get() / (waits * 1000000.0);
+	}
+
+	/**
+	 * @return The longest time, in milliseconds, that a request spent waiting for a connection.
+	 */
+	public double getMaxWaitMillis() {
+
+		return maxWaitNanos.get() / 1000000.0;
+	}
+
+	/**
+	 * Returns the number of connections currently leased to a host.
+	 *
+	 * @param host [Required] A host and port, for example <em>rest.telesign.com:443</em>.
+	 * @return The number of connections in use.
+	 */
+	public int getInUse(String host) {
+
+		HostPermits permits = hosts.get(host);
+
+		return permits == null ? 0 : permits.inUse();
+	}
+
+	/**
+	 * @return The number of connections currently leased across all hosts.
+	 */
+	public int getInUse() {
+
+		int inUse = 0;
+
+		for (HostPermits permits : hosts.values()) {
+
+			inUse += permits.inUse();
+		}
+
+		return inUse;
+	}
+
+	/** A reservation of one connection to a host. Releasing a Lease more than once has no effect. */
+	public static class Lease {
+
+		private final HostPermits permits;
+		private boolean released = false;
+
+		private Lease(HostPermits permits) {
+
+			this.permits = permits;
+		}
+
+		/** Returns the connection to the pool. */
+		public void release() {
+
+			if (!released) {
+
+				released = true;
+				permits.release();
+			}
+		}
+	}
+
+	/**
+	 * The connection permits of a single host. The limit may be changed while permits are held.
+	 * Resizing takes a lock rather than a monitor, so a virtual thread never pins its carrier here.
+	 */
+	private static class HostPermits extends Semaphore {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ReentrantLock resizeLock = new ReentrantLock();
+
+		private volatile int limit;
+
+		HostPermits(int limit) {
+
+			super(limit, true);
+			this.limit = limit;
+		}
+
+		int inUse() {
+
+			return Math.max(0, limit - availablePermits());
+		}
+
+		void resize(int newLimit) {
+
+			resizeLock.lock();
+
+			try {
+
+				int delta = newLimit - limit;
+				limit = newLimit;
+
+				if (delta > 0) {
+
+					release(delta);
+				}
+				else if (delta < 0) {
+
+					reducePermits(-delta);
+				}
+			}
+			finally {
+
+				resizeLock.unlock();
+			}
+		}
+	}
+}
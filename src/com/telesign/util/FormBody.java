@@ -0,0 +1,198 @@
+package com.telesign.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The FormBody class builds an <em>application/x-www-form-urlencoded</em> POST body directly as bytes.
+ * <p>
+ * Names and values are percent-encoded from their UTF-8 form exactly as {@link java.net.URLEncoder} does with UTF-8, so localized
+ * SMS templates and TTS messages survive intact. The encoded length is computed first, and the body is then written once into an
+ * array of exactly that size, which the {@link Transport} sends as it is.
+ * </p>
+ */
+public class FormBody {
+
+	private static final byte[] HEX = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+	private final List<String> fields = new ArrayList<String>();
+
+	private byte[] encoded;
+
+	/**
+	 * Appends a field to the body.
+	 *
+	 * @param name	[Required] The field name.
+	 * @param value	[Required] The field value.
+	 * @return This FormBody, so that fields can be chained.
+	 */
+	public FormBody add(String name, String value) {
+
+		if (name == null || value == null) {
+
+			throw new NullPointerException("A form field needs a name and a value");
+		}
+
+		fields.add(name);
+		fields.add(value);
+		encoded = null;
+
+		return this;
+	}
+
+	/**
+	 * @return The number of bytes in the encoded body.
+	 */
+	public int length() {
+
+		return toByteArray().length;
+	}
+
+	/**
+	 * Returns the encoded body. The array is shared with this FormBody and must not be modified.
+	 *
+	 * @return The encoded body.
+	 */
+	public byte[] toByteArray() {
+
+		if (encoded == null) {
+
+			// One '=' per field, and one '&' between fields.
+			int length = Math.max(0, fields.size() - 1);
+
+			for (String field : fields) {
+
+				length += encodedLength(field);
+			}
+
+			byte[] bytes = new byte[length];
+			int position = 0;
+
+			for (int i = 0; i < fields.size(); i += 2) {
+
+				if (i > 0) {
+
+					bytes[position++] = '&';
+				}
+
+				position = encode(fields.get(i), bytes, position);
+				bytes[position++] = '=';
+				position = encode(fields.get(i + 1), bytes, position);
+			}
+
+			encoded = bytes;
+		}
+
+		return encoded;
+	}
+
+	/**
+	 * @return The encoded body as a String. It contains only ASCII characters.
+	 */
+	@Override
+	public String toString() {
+
+		return new String(toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+
+	private static boolean isUnreserved(char c) {
+
+		return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-' || c == '*' || c == '_';
+	}
+
+	private static int encodedLength(String text) {
+
+		int length = 0;
+
+		for (int i = 0; i < text.length(); i++) {
+
+			char c = text.charAt(i);
+
+			if (isUnreserved(c) || c == ' ') {
+
+				length += 1;
+			}
+			else if (c < 0x80) {
+
+				length += 3;
+			}
+			else if (c < 0x800) {
+
+				length += 6;
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+
+				length += 12;
+				i++;
+			}
+			else if (Character.isSurrogate(c)) {
+
+				// An unpaired surrogate is encoded as '?', like the UTF-8 encoder does.
+				length += 3;
+			}
+			else {
+
+				length += 9;
+			}
+		}
+
+		return length;
+	}
+
+	private static int encode(String text, byte[] bytes, int position) {
+
+		for (int i = 0; i < text.length(); i++) {
+
+			char c = text.charAt(i);
+
+			if (isUnreserved(c)) {
+
+				bytes[position++] = (byte) c;
+			}
+			else if (c == ' ') {
+
+				bytes[position++] = '+';
+			}
+			else if (c < 0x80) {
+
+				position = escape(c, bytes, position);
+			}
+			else if (c < 0x800) {
+
+				position = escape(0xc0 | (c >> 6), bytes, position);
+				position = escape(0x80 | (c & 0x3f), bytes, position);
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+
+				position = escape(0xf0 | (codePoint >> 18), bytes, position);
+				position = escape(0x80 | ((codePoint >> 12) & 0x3f), bytes, position);
+				position = escape(0x80 | ((codePoint >> 6) & 0x3f), bytes, position);
+				position = escape(0x80 | (codePoint & 0x3f), bytes, position);
+			}
+			else if (Character.isSurrogate(c)) {
+
+				position = escape('?', bytes, position);
+			}
+			else {
+
+				position = escape(0xe0 | (c >> 12), bytes, position);
+				position = escape(0x80 | ((c >> 6) & 0x3f), bytes, position);
+				position = escape(0x80 | (c & 0x3f), bytes, position);
+			}
+		}
+
+		return position;
+	}
+
+	private static int escape(int b, byte[] bytes, int position) {
+
+		bytes[position++] = '%';
+		bytes[position++] = HEX[(b >> 4) & 0xf];
+		bytes[position++] = HEX[b & 0xf];
+
+		return position;
+	}
+}
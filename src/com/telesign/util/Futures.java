@@ -0,0 +1,64 @@
+package com.telesign.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Helpers for the blocking forms of asynchronous calls.
+ */
+class Futures {
+
+	private Futures() {
+	}
+
+	/**
+	 * @param error [Required] The failure.
+	 * @return A future that has already failed with the error.
+	 */
+	static <T> CompletableFuture<T> failed(Throwable error) {
+
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(error);
+
+		return future;
+	}
+
+	/**
+	 * Waits for a future, and rethrows its failure as the exception the blocking API would have thrown.
+	 *
+	 * @param future [Required] The future to wait for.
+	 * @return The value of the future.
+	 * @throws IOException If the future failed with an IOException, or the calling thread was interrupted.
+	 */
+	static <T> T await(CompletableFuture<T> future) throws IOException {
+
+		try {
+
+			return future.get();
+		}
+		catch (InterruptedException e) {
+
+			future.cancel(true);
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for the response");
+		}
+		catch (ExecutionException e) {
+
+			Throwable cause = e.getCause();
+
+			if (cause instanceof IOException) {
+
+				throw (IOException) cause;
+			}
+
+			if (cause instanceof RuntimeException) {
+
+				throw (RuntimeException) cause;
+			}
+
+			throw new IOException(cause);
+		}
+	}
+}
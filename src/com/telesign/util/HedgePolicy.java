@@ -0,0 +1,306 @@
+package com.telesign.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The HedgePolicy class sends a GET Request a second time when its Response is late, and keeps the Response that arrives first.
+ * <p>
+ * The hedge waits for a percentile of the recent latencies of the endpoint, for example the 95th, so only the slowest calls are
+ * sent twice. Until enough calls were timed, it waits for the initial delay. The same signed Request is sent again, on a connection
+ * of its own; the Response that loses is cancelled, and discarded if it still arrives. The hedges are held to a budget: each Request
+ * earns a fraction of a hedge, and a hedge is only sent when a whole one has been earned, so the extra load stays below that fraction.
+ * </p>
+ * <p>
+ * Hedging is only used for GET Requests, which have no side effect. One policy can be shared by several endpoints: each
+ * {@link RequestTemplate} keeps the latencies of its own endpoint, while the counters of the policy cover them all.
+ * </p>
+ */
+public class HedgePolicy {
+
+	/** The number of latencies kept for the percentile. */
+	private static final int SAMPLES = 256;
+
+	/** The number of latencies recorded before the percentile replaces the initial delay, and between two computations of it. */
+	private static final int REFRESH = 32;
+
+	/** The budget, in thousandths of a hedge. */
+	private static final long HEDGE_COST = 1000;
+
+	/** The most hedges that can be saved up by a quiet endpoint, so that a burst of slow calls does not double the load. */
+	private static final long MAX_SAVED = 10 * HEDGE_COST;
+
+	private final double percentile;
+	private final long initialDelayNanos;
+	private final long earnedPerRequest;
+
+	private final AtomicLong budget = new AtomicLong();
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong hedges = new AtomicLong();
+	private final AtomicLong wins = new AtomicLong();
+
+	/** The latencies of Requests that were not created from a template. */
+	private final Delay sharedDelay = new Delay();
+
+	/**
+	 * The HedgePolicy class constructor.
+	 *
+	 * @param percentile	[Required] The percentile of the recent latencies after which a Request is hedged, for example 95.
+	 * @param initialDelay	[Required] The time after which a Request is hedged, until enough latencies were recorded.
+	 * @param unit			[Required] The unit of the initial delay.
+	 * @param maxHedgeRatio	[Required] The most hedges per Request, for example 0.1 for one hedge every ten Requests.
+	 */
+	public HedgePolicy(double percentile, long initialDelay, TimeUnit unit, double maxHedgeRatio) {
+
+		if (!(percentile > 0 && percentile < 100) || initialDelay < 0 || !(maxHedgeRatio > 0 && maxHedgeRatio <= 1)) {
+
+			throw new IllegalArgumentException("percentile must be between 0 and 100, initialDelay not negative, and maxHedgeRatio between 0 and 1");
+		}
+
+		this.percentile = percentile;
+		this.initialDelayNanos = unit.toNanos(initialDelay);
+		this.earnedPerRequest = Math.round(maxHedgeRatio * HEDGE_COST);
+	}
+
+	/** @return The number of Requests sent under this policy, not counting the hedges. */
+	public long getRequestCount() {
+
+		return requests.get();
+	}
+
+	/** @return The number of hedges sent. */
+	public long getHedgeCount() {
+
+		return hedges.get();
+	}
+
+	/** @return The number of hedges whose Response arrived first. */
+	public long getWinCount() {
+
+		return wins.get();
+	}
+
+	/** @return The share of Requests that were hedged, between 0 and 1. */
+	public double getHedgeRate() {
+
+		long count = requests.get();
+
+		return (count == 0) ? 0 : (double) hedges.get() / count;
+	}
+
+	/** @return The share of hedges whose Response arrived first, between 0 and 1. */
+	public double getWinRate() {
+
+		long count = hedges.get();
+
+		return (count == 0) ? 0 : (double) wins.get() / count;
+	}
+
+	/** @return A new record of latencies, for the Requests of one endpoint. */
+	Delay newDelay() {
+
+		return new Delay();
+	}
+
+	/** @return The record of latencies of the Requests that were not given one. */
+	Delay sharedDelay() {
+
+		return sharedDelay;
+	}
+
+	/**
+	 * Sends a Request, and a hedge of it if it is late and the budget allows one.
+	 *
+	 * @param transport	[Required] The Transport that sends the Request.
+	 * @param request	[Required] The signed Request.
+	 * @param executor	[Required] The Executor for Transports that block.
+	 * @param delay		[Required] The latencies of the endpoint.
+	 * @return A CompletableFuture that completes with the first Response, or with the last error when both sends failed.
+	 */
+	CompletableFuture<TransportResponse> send(final Transport transport, final TransportRequest request, final Executor executor, final Delay delay) {
+
+		requests.incrementAndGet();
+		earn();
+
+		final CompletableFuture<TransportResponse> result = new CompletableFuture<TransportResponse>();
+		final Race race = new Race();
+		final AtomicReference<CompletableFuture<TransportResponse>> hedge = new AtomicReference<CompletableFuture<TransportResponse>>();
+
+		final CompletableFuture<TransportResponse> primary = start(transport, request, executor, delay, result, race, false);
+
+		CompletableFuture.delayedExecutor(delay.current(), TimeUnit.NANOSECONDS).execute(() -> {
+
+			if (!result.isDone() && spend()) {
+
+				hedges.incrementAndGet();
+				race.pending.incrementAndGet();
+				hedge.set(start(transport, request, executor, delay, result, race, true));
+			}
+		});
+
+		// The loser is cancelled. A Transport that cannot stop a Request in flight has its Response discarded when it arrives.
+		result.whenComplete((response, error) -> {
+
+			primary.cancel(true);
+
+			CompletableFuture<TransportResponse> hedged = hedge.get();
+
+			if (hedged != null) {
+
+				hedged.cancel(true);
+			}
+		});
+
+		return result;
+	}
+
+	private CompletableFuture<TransportResponse> start(Transport transport, TransportRequest request, Executor executor, final Delay delay,
+			final CompletableFuture<TransportResponse> result, final Race race, final boolean isHedge) {
+
+		final long started = System.nanoTime();
+		CompletableFuture<TransportResponse> sent;
+
+		try {
+
+			sent = transport.sendAsync(request, executor);
+		}
+		catch (RuntimeException e) {
+
+			sent = Futures.failed(e);
+		}
+
+		sent.whenComplete((response, error) -> {
+
+			if (error == null) {
+
+				delay.record(System.nanoTime() - started);
+
+				// The win is counted before the result completes, so that the counters include every completed Request.
+				if (race.settled.compareAndSet(false, true)) {
+
+					if (isHedge) {
+
+						wins.incrementAndGet();
+					}
+
+					result.complete(response);
+				}
+				else {
+
+					closeQuietly(response);
+				}
+			}
+			else if (race.pending.decrementAndGet() == 0 && race.settled.compareAndSet(false, true)) {
+
+				result.completeExceptionally(error);
+			}
+		});
+
+		return sent;
+	}
+
+	private void earn() {
+
+		while (true) {
+
+			long current = budget.get();
+			long next = Math.min(MAX_SAVED, current + earnedPerRequest);
+
+			if (next == current || budget.compareAndSet(current, next)) {
+
+				return;
+			}
+		}
+	}
+
+	private boolean spend() {
+
+		while (true) {
+
+			long current = budget.get();
+
+			if (current < HEDGE_COST) {
+
+				return false;
+			}
+
+			if (budget.compareAndSet(current, current - HEDGE_COST)) {
+
+				return true;
+			}
+		}
+	}
+
+	private static void closeQuietly(TransportResponse response) {
+
+		try {
+
+			response.close();
+		}
+		catch (IOException e) {
+
+			// The losing Response is discarded.
+		}
+	}
+
+	@Override
+	public String toString() {
+
+		return String.format("HedgePolicy[p%.1f, %d requests, hedge rate %.3f, win rate %.3f]", percentile, requests.get(), getHedgeRate(), getWinRate());
+	}
+
+	/** The sends of one Request that are still in flight, and whether one of them has settled the result. */
+	private static final class Race {
+
+		final AtomicInteger pending = new AtomicInteger(1);
+		final AtomicBoolean settled = new AtomicBoolean();
+	}
+
+	/** The recent latencies of one endpoint, and the hedge delay computed from them. */
+	final class Delay {
+
+		private final AtomicLongArray samples = new AtomicLongArray(SAMPLES);
+		private final AtomicInteger recorded = new AtomicInteger();
+		private volatile long current = initialDelayNanos;
+
+		private Delay() {
+		}
+
+		/** @return The time after which a Request is hedged, in nanoseconds. */
+		long current() {
+
+			return current;
+		}
+
+		void record(long latencyNanos) {
+
+			int count = recorded.incrementAndGet();
+
+			samples.set((count - 1) & (SAMPLES - 1), latencyNanos);
+
+			if (count % REFRESH == 0) {
+
+				int size = Math.min(count, SAMPLES);
+				long[] sorted = new long[size];
+
+				for (int i = 0; i < size; i++) {
+
+					sorted[i] = samples.get(i);
+				}
+
+				Arrays.sort(sorted);
+
+				current = sorted[Math.min(size - 1, (int) Math.ceil(size * percentile / 100) - 1)];
+			}
+		}
+	}
+}
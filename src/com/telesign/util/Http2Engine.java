@@ -0,0 +1,259 @@
+package com.telesign.util;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * The Http2Engine class sends Requests with the JDK's {@link HttpClient}, which speaks HTTP/2 to servers that offer it.
+ * <p>
+ * HTTP/2 is negotiated with ALPN during the TLS handshake. When the server, or a proxy in between, does not select HTTP/2, the
+ * client falls back to HTTP 1.1 on the same connection. Over HTTP/2 all concurrent Requests to one host share a single multiplexed
+ * connection, so a burst of calls to rest.telesign.com costs one socket instead of one socket per call. The numbers of Responses
+ * received over each protocol version are counted, so a fallback can be noticed.
+ * </p>
+ * <p>
+ * One HttpClient is kept per TLS protocol and cipher suite selection, and its SSLContext comes from an {@link SSLContextCache}.
+ * The timeouts are set on each Request rather than on the client, because a {@link RetryPolicy} with a deadline shortens them
+ * from one attempt to the next, and every client holds a selector thread of its own. The JDK 11 HttpClient refuses to send a Date
+ * header, so a {@link TeleSignRequest} sent through this engine is signed with the <em>x-ts-date</em> header instead.
+ * </p>
+ */
+public class Http2Engine implements Transport {
+
+	/** The header fields that the HttpClient sets itself, and refuses to take from the caller. */
+	private static final String[] RESTRICTED_HEADERS = { "Connection", "Content-Length", "Expect", "Host", "Upgrade" };
+
+	private final ConcurrentHashMap<String, HttpClient> clients = new ConcurrentHashMap<String, HttpClient>();
+
+	private final Executor executor;
+
+	private final SSLContextCache sslContexts;
+
+	private final AtomicLong http2Responses = new AtomicLong();
+	private final AtomicLong http11Responses = new AtomicLong();
+
+	/**
+	 * Creates an engine whose clients run their callbacks on the HttpClient's default executor.
+	 */
+	public Http2Engine() {
+
+		this(null);
+	}
+
+	/**
+	 * Creates an engine whose clients run their callbacks, and complete their futures, on the given executor. The engine uses the
+	 * default {@link SSLContextCache}.
+	 *
+	 * @param executor [Optional] The Executor for the HttpClients, or null for the HttpClient default.
+	 */
+	public Http2Engine(Executor executor) {
+
+		this(executor, SSLContextCache.getDefault());
+	}
+
+	/**
+	 * Creates an engine whose clients run their callbacks, and complete their futures, on the given executor.
+	 *
+	 * @param executor		[Optional] The Executor for the HttpClients, or null for the HttpClient default.
+	 * @param sslContexts	[Required] The SSLContextCache that provides the SSLContexts.
+	 */
+	public Http2Engine(Executor executor, SSLContextCache sslContexts) {
+
+		if (sslContexts == null) {
+
+			throw new IllegalArgumentException("sslContexts must not be null");
+		}
+
+		this.executor = executor;
+		this.sslContexts = sslContexts;
+	}
+
+	/**
+	 * Sends a Request. The HttpClient bounds a Request with a single timeout, from the moment it is sent until the Response
+	 * arrives, so a Request with a read timeout is given the sum of its connect and read timeouts, and a Request without one is not
+	 * bounded.
+	 *
+	 * @param method			[Required] The Request method, GET or POST.
+	 * @param url				[Required] The absolute URL, with an http or https scheme.
+	 * @param headers			[Required] The Request header fields. Host, Content-Length and Connection are set by the HttpClient.
+	 * @param body				[Optional] The entity body, or null for none.
+	 * @param connectTimeout	[Required] The connect timeout in milliseconds, zero for none.
+	 * @param readTimeout		[Required] The maximum time in milliseconds to wait for the Response, zero for none.
+	 * @param httpsProtocol		[Required] The TLS protocol, for example TLSv1.2.
+	 * @return A CompletableFuture that completes with the Response, or exceptionally with an IOException.
+	 */
+	public CompletableFuture<HttpResponse<byte[]>> execute(String method, URL url, Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout, String httpsProtocol) {
+
+		try {
+
+			HttpRequest.Builder request = HttpRequest.newBuilder(url.toURI())
+					.method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofByteArray(body));
+
+			if (readTimeout > 0) {
+
+				request.timeout(Duration.ofMillis((long) Math.max(connectTimeout, 0) + readTimeout));
+			}
+
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+
+				if (!isRestricted(header.getKey())) {
+
+					request.header(header.getKey(), header.getValue());
+				}
+			}
+
+			return client(httpsProtocol).sendAsync(request.build(), HttpResponse.BodyHandlers.ofByteArray())
+					.thenApply(response -> {
+
+						if (response.version() == HttpClient.Version.HTTP_2) {
+
+							http2Responses.incrementAndGet();
+						}
+						else {
+
+							http11Responses.incrementAndGet();
+						}
+
+						return response;
+					});
+		}
+		catch (URISyntaxException | IllegalArgumentException | IOException e) {
+
+			CompletableFuture<HttpResponse<byte[]>> failed = new CompletableFuture<HttpResponse<byte[]>>();
+			failed.completeExceptionally(e instanceof IOException ? e : new IOException(e.getMessage(), e));
+
+			return failed;
+		}
+	}
+
+	/**
+	 * @return The number of Responses received over HTTP/2.
+	 */
+	public long getHttp2ResponseCount() {
+
+		return http2Responses.get();
+	}
+
+	/**
+	 * @return The number of Responses received over HTTP 1.1, because the server did not negotiate HTTP/2.
+	 */
+	public long getHttp11ResponseCount() {
+
+		return http11Responses.get();
+	}
+
+	/**
+	 * Sends a Request, and waits for its Response. The calling thread is the only thread that waits.
+	 */
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+
+		return Futures.await(sendAsync(request, null));
+	}
+
+	/**
+	 * Sends a Request through the HttpClient. The executor is not used; the future completes on the HttpClient's executor.
+	 */
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request, Executor executor) {
+
+		return execute(request.getMethod(), request.getUrl(), request.getHeaders(), request.getBody(), request.getConnectTimeout(), request.getReadTimeout(), request.getHttpsProtocol())
+				.thenApply(response -> new TransportResponse(response.statusCode(), headers(response), response.body()));
+	}
+
+	/** @return False, because the JDK 11 HttpClient refuses the Date header. */
+	@Override
+	public boolean acceptsDateHeader() {
+
+		return false;
+	}
+
+	private static Map<String, String> headers(HttpResponse<?> response) {
+
+		Map<String, String> headers = new HashMap<String, String>();
+
+		for (Map.Entry<String, List<String>> field : response.headers().map().entrySet()) {
+
+			headers.put(field.getKey(), String.join(", ", field.getValue()));
+		}
+
+		return headers;
+	}
+
+	private HttpClient client(String httpsProtocol) throws IOException {
+
+		final String[] cipherSuites = sslContexts.getCipherSuites();
+		String key = httpsProtocol + ":" + Arrays.toString(cipherSuites);
+		HttpClient client = clients.get(key);
+
+		if (client == null) {
+
+			final SSLContext context;
+
+			try {
+
+				context = sslContexts.getContext(httpsProtocol);
+			}
+			catch (GeneralSecurityException e) {
+
+				throw new IOException("Could not initialize " + httpsProtocol + ": " + e.getMessage(), e);
+			}
+
+			// Only one client is built per key: each holds a selector thread, which a discarded duplicate would leak.
+			client = clients.computeIfAbsent(key, ignored -> newClient(context, cipherSuites));
+		}
+
+		return client;
+	}
+
+	private HttpClient newClient(SSLContext context, String[] cipherSuites) {
+
+		SSLParameters parameters = context.getDefaultSSLParameters();
+
+		if (cipherSuites != null) {
+
+			parameters.setCipherSuites(cipherSuites);
+		}
+
+		HttpClient.Builder builder = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.sslContext(context)
+				.sslParameters(parameters);
+
+		if (executor != null) {
+
+			builder.executor(executor);
+		}
+
+		return builder.build();
+	}
+
+	private static boolean isRestricted(String name) {
+
+		for (String restricted : RESTRICTED_HEADERS) {
+
+			if (restricted.equalsIgnoreCase(name)) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
@@ -0,0 +1,86 @@
+package com.telesign.util;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * The HttpDateClock class supplies the value of the <strong>Date</strong> and <strong>x-ts-date</strong> Request header fields.
+ * <p>
+ * The date has a resolution of one second, so it is formatted at most once per second and the same String is shared by every Request
+ * signed within that second, on any thread.
+ * </p>
+ */
+public class HttpDateClock {
+
+	private static final HttpDateClock DEFAULT = new HttpDateClock();
+
+	/** Guarded by this clock; SimpleDateFormat is not thread-safe. */
+	private final SimpleDateFormat rfc2616 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss ZZZZ", Locale.US);
+
+	private volatile Stamp stamp;
+
+	/**
+	 * Returns the clock shared by all Requests.
+	 *
+	 * @return The default HttpDateClock.
+	 */
+	public static HttpDateClock getDefault() {
+
+		return DEFAULT;
+	}
+
+	/**
+	 * @return The current time, formatted for a Date Request header field.
+	 */
+	public String now() {
+
+		return format(System.currentTimeMillis());
+	}
+
+	/**
+	 * Formats a time for a Date Request header field. The last formatted second is cached.
+	 *
+	 * @param millis [Required] The time, in milliseconds since the epoch.
+	 * @return The formatted time.
+	 */
+	public String format(long millis) {
+
+		long second = Math.floorDiv(millis, 1000L);
+		Stamp current = stamp;
+
+		if (current == null || current.second != second) {
+
+			current = refresh(second);
+		}
+
+		return current.text;
+	}
+
+	private synchronized Stamp refresh(long second) {
+
+		Stamp current = stamp;
+
+		// Another thread may have formatted this second while we waited for the lock.
+		if (current == null || current.second != second) {
+
+			current = new Stamp(second, rfc2616.format(new Date(second * 1000L)));
+			stamp = current;
+		}
+
+		return current;
+	}
+
+	/** A second, and its formatted text. */
+	private static class Stamp {
+
+		private final long second;
+		private final String text;
+
+		Stamp(long second, String text) {
+
+			this.second = second;
+			this.text = text;
+		}
+	}
+}
@@ -0,0 +1,301 @@
+package com.telesign.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An incremental parser for HTTP 1.1 Response messages, fed with whatever bytes arrive from the network.
+ * Supports fixed-length, chunked and read-until-close bodies, and skips interim 1xx responses.
+ */
+class HttpResponseParser {
+
+	private static final int MAX_LINE_LENGTH = 8192;
+
+	private enum State { STATUS_LINE, HEADERS, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_DATA_END, TRAILERS, UNTIL_CLOSE, DONE }
+
+	private State state = State.STATUS_LINE;
+
+	private final StringBuilder line = new StringBuilder();
+
+	private String version;
+	private int status;
+	private Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+	private final ByteArrayOutputStream body = new ByteArrayOutputStream(512);
+	private long remaining;
+
+	/**
+	 * Consumes bytes from the buffer, up to the end of the Response.
+	 *
+	 * @param in The bytes received. Its position is advanced past the bytes consumed.
+	 * @return True when the Response is complete.
+	 * @throws IOException If the bytes are not a valid HTTP 1.1 Response.
+	 */
+	boolean feed(ByteBuffer in) throws IOException {
+
+		while (in.hasRemaining() && state != State.DONE) {
+
+			switch (state) {
+
+				case STATUS_LINE:
+				case HEADERS:
+				case CHUNK_SIZE:
+				case CHUNK_DATA_END:
+				case TRAILERS:
+					if (readLine(in)) {
+
+						onLine(line.toString());
+						line.setLength(0);
+					}
+					break;
+
+				case BODY:
+				case CHUNK_DATA:
+					int count = (int) Math.min(remaining, in.remaining());
+					copy(in, count);
+					remaining -= count;
+
+					if (remaining == 0) {
+
+						state = (state == State.BODY) ? State.DONE : State.CHUNK_DATA_END;
+					}
+					break;
+
+				case UNTIL_CLOSE:
+					copy(in, in.remaining());
+					break;
+
+				default:
+					break;
+			}
+		}
+
+		return state == State.DONE;
+	}
+
+	/** @return True when the body ends where the server closes the connection. */
+	boolean readsUntilClose() {
+
+		return state == State.UNTIL_CLOSE;
+	}
+
+	/** Ends a read-until-close body at the end of the stream. */
+	void finish() {
+
+		if (state == State.UNTIL_CLOSE) {
+
+			state = State.DONE;
+		}
+	}
+
+	/** @return True once any part of the status line has been received. */
+	boolean hasStarted() {
+
+		return state != State.STATUS_LINE || line.length() > 0;
+	}
+
+	/** @return True when the connection may carry another Request after this Response. */
+	boolean isKeepAlive() {
+
+		String connection = headers.get("Connection");
+
+		if ("HTTP/1.0".equals(version)) {
+
+			return connection != null && connection.equalsIgnoreCase("keep-alive");
+		}
+
+		return connection == null || !connection.equalsIgnoreCase("close");
+	}
+
+	int getStatus() {
+
+		return status;
+	}
+
+	Map<String, String> getHeaders() {
+
+		return headers;
+	}
+
+	byte[] getBody() {
+
+		return body.toByteArray();
+	}
+
+	private void copy(ByteBuffer in, int count) {
+
+		if (in.hasArray()) {
+
+			body.write(in.array(), in.arrayOffset() + in.position(), count);
+			in.position(in.position() + count);
+		}
+		else {
+
+			for (int i = 0; i < count; i++) {
+
+				body.write(in.get());
+			}
+		}
+	}
+
+	private boolean readLine(ByteBuffer in) throws IOException {
+
+		while (in.hasRemaining()) {
+
+			char c = (char) (in.get() & 0xff);
+
+			if (c == '\n') {
+
+				int length = line.length();
+
+				if (length > 0 && line.charAt(length - 1) == '\r') {
+
+					line.setLength(length - 1);
+				}
+
+				return true;
+			}
+
+			if (line.length() == MAX_LINE_LENGTH) {
+
+				throw new IOException("HTTP response line exceeds " + MAX_LINE_LENGTH + " bytes");
+			}
+
+			line.append(c);
+		}
+
+		return false;
+	}
+
+	private void onLine(String text) throws IOException {
+
+		switch (state) {
+
+			case STATUS_LINE:
+				String[] parts = text.split(" ", 3);
+
+				if (parts.length < 2 || !parts[0].startsWith("HTTP/")) {
+
+					throw new IOException("Malformed HTTP status line: " + text);
+				}
+
+				version = parts[0];
+
+				try {
+
+					status = Integer.parseInt(parts[1]);
+				}
+				catch (NumberFormatException e) {
+
+					throw new IOException("Malformed HTTP status line: " + text);
+				}
+
+				state = State.HEADERS;
+				break;
+
+			case HEADERS:
+				if (text.isEmpty()) {
+
+					onHeadersEnd();
+				}
+				else {
+
+					addHeader(text);
+				}
+				break;
+
+			case CHUNK_SIZE:
+				int extension = text.indexOf(';');
+				String size = (extension < 0 ? text : text.substring(0, extension)).trim();
+
+				try {
+
+					remaining = Long.parseLong(size, 16);
+				}
+				catch (NumberFormatException e) {
+
+					throw new IOException("Malformed chunk size: " + text);
+				}
+
+				state = (remaining == 0) ? State.TRAILERS : State.CHUNK_DATA;
+				break;
+
+			case CHUNK_DATA_END:
+				if (!text.isEmpty()) {
+
+					throw new IOException("Missing CRLF after chunk data");
+				}
+
+				state = State.CHUNK_SIZE;
+				break;
+
+			case TRAILERS:
+				if (text.isEmpty()) {
+
+					state = State.DONE;
+				}
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	private void addHeader(String text) throws IOException {
+
+		int colon = text.indexOf(':');
+
+		if (colon <= 0) {
+
+			throw new IOException("Malformed HTTP header: " + text);
+		}
+
+		String name = text.substring(0, colon).trim();
+		String value = text.substring(colon + 1).trim();
+		String previous = headers.get(name);
+
+		headers.put(name, previous == null ? value : previous + ", " + value);
+	}
+
+	private void onHeadersEnd() throws IOException {
+
+		// An interim response is followed by the final one.
+		if (status >= 100 && status < 200) {
+
+			headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+			state = State.STATUS_LINE;
+			return;
+		}
+
+		String transferEncoding = headers.get("Transfer-Encoding");
+		String contentLength = headers.get("Content-Length");
+
+		if (status == 204 || status == 304) {
+
+			state = State.DONE;
+		}
+		else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+
+			state = State.CHUNK_SIZE;
+		}
+		else if (contentLength != null) {
+
+			try {
+
+				remaining = Long.parseLong(contentLength);
+			}
+			catch (NumberFormatException e) {
+
+				throw new IOException("Malformed Content-Length: " + contentLength);
+			}
+
+			state = (remaining == 0) ? State.DONE : State.BODY;
+		}
+		else {
+
+			state = State.UNTIL_CLOSE;
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package com.telesign.util;
+
+import java.util.Arrays;
+
+/**
+ * The LongHashMap class maps long keys, such as the E.164 keys of {@link PhoneNumbers}, to values, without boxing the keys.
+ * <p>
+ * The keys are kept in an open-addressing table with linear probing, which is at most half full, and a removed key shifts the keys
+ * after it back, so no tombstones build up. Like a HashMap, a LongHashMap is not synchronized: a table shared by several threads
+ * must be guarded by its owner.
+ * </p>
+ *
+ * @param <V> The value type.
+ */
+public class LongHashMap<V> {
+
+	/** Receives the entries of a map. */
+	public interface Visitor<V> {
+
+		void visit(long key, V value);
+	}
+
+	/** The key that marks a free slot. An entry with this key is kept apart. */
+	private static final long FREE = 0;
+
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+
+	private boolean hasFreeKey;
+	private Object freeKeyValue;
+
+	/** The LongHashMap class constructor, for a map that starts small. */
+	public LongHashMap() {
+
+		this(16);
+	}
+
+	/**
+	 * The LongHashMap class constructor.
+	 *
+	 * @param expectedSize	[Required] The number of entries the map holds without growing.
+	 */
+	public LongHashMap(int expectedSize) {
+
+		if (expectedSize < 0 || expectedSize > 1 << 29) {
+
+			throw new IllegalArgumentException("expectedSize must be between 0 and " + (1 << 29));
+		}
+
+		allocate(Math.max(4, Integer.highestOneBit(Math.max(1, expectedSize * 2 - 1)) << 1));
+	}
+
+	/** @return The number of entries. */
+	public int size() {
+
+		return size + (hasFreeKey ? 1 : 0);
+	}
+
+	/** @return True if the map has no entries. */
+	public boolean isEmpty() {
+
+		return size() == 0;
+	}
+
+	/**
+	 * @param key	[Required] The key.
+	 * @return The value of the key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+
+		if (key == FREE) {
+
+			return (V) freeKeyValue;
+		}
+
+		int slot = find(key);
+
+		return (slot < 0) ? null : (V) values[slot];
+	}
+
+	/**
+	 * @param key	[Required] The key.
+	 * @return True if the map has an entry for the key.
+	 */
+	public boolean containsKey(long key) {
+
+		return (key == FREE) ? hasFreeKey : find(key) >= 0;
+	}
+
+	/**
+	 * Maps a key to a value.
+	 *
+	 * @param key	[Required] The key.
+	 * @param value	[Optional] The value.
+	 * @return The previous value of the key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+
+		if (key == FREE) {
+
+			V previous = (V) freeKeyValue;
+
+			hasFreeKey = true;
+			freeKeyValue = value;
+
+			return previous;
+		}
+
+		int slot = PhoneNumbers.hash(key) & mask;
+
+		while (keys[slot] != FREE) {
+
+			if (keys[slot] == key) {
+
+				V previous = (V) values[slot];
+				values[slot] = value;
+
+				return previous;
+			}
+
+			slot = (slot + 1) & mask;
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+
+		if (++size * 2 > keys.length) {
+
+			allocate(keys.length * 2);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Removes the entry of a key.
+	 *
+	 * @param key	[Required] The key.
+	 * @return The value of the key, or null.
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+
+		if (key == FREE) {
+
+			V previous = (V) freeKeyValue;
+
+			hasFreeKey = false;
+			freeKeyValue = null;
+
+			return previous;
+		}
+
+		int slot = find(key);
+
+		if (slot < 0) {
+
+			return null;
+		}
+
+		V previous = (V) values[slot];
+
+		// The keys after the free slot that it would cut off from their home slot are moved back into it.
+		int free = slot;
+
+		for (int next = (free + 1) & mask; keys[next] != FREE; next = (next + 1) & mask) {
+
+			int home = PhoneNumbers.hash(keys[next]) & mask;
+
+			if (((next - home) & mask) >= ((next - free) & mask)) {
+
+				keys[free] = keys[next];
+				values[free] = values[next];
+				free = next;
+			}
+		}
+
+		keys[free] = FREE;
+		values[free] = null;
+		size--;
+
+		return previous;
+	}
+
+	/** Removes every entry. */
+	public void clear() {
+
+		Arrays.fill(keys, FREE);
+		Arrays.fill(values, null);
+		size = 0;
+		hasFreeKey = false;
+		freeKeyValue = null;
+	}
+
+	/**
+	 * Hands every entry to a visitor, in no particular order. The map must not be changed while it is visited.
+	 *
+	 * @param visitor	[Required] The visitor.
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(Visitor<? super V> visitor) {
+
+		if (hasFreeKey) {
+
+			visitor.visit(FREE, (V) freeKeyValue);
+		}
+
+		for (int i = 0; i < keys.length; i++) {
+
+			if (keys[i] != FREE) {
+
+				visitor.visit(keys[i], (V) values[i]);
+			}
+		}
+	}
+
+	private int find(long key) {
+
+		for (int slot = PhoneNumbers.hash(key) & mask; keys[slot] != FREE; slot = (slot + 1) & mask) {
+
+			if (keys[slot] == key) {
+
+				return slot;
+			}
+		}
+
+		return -1;
+	}
+
+	private void allocate(int capacity) {
+
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+
+		if (oldKeys == null) {
+
+			return;
+		}
+
+		for (int i = 0; i < oldKeys.length; i++) {
+
+			if (oldKeys[i] != FREE) {
+
+				int slot = PhoneNumbers.hash(oldKeys[i]) & mask;
+
+				while (keys[slot] != FREE) {
+
+					slot = (slot + 1) & mask;
+				}
+
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+
+		return "LongHashMap[" + size() + " entries]";
+	}
+}
@@ -0,0 +1,113 @@
+package com.telesign.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The LoopbackTransport class answers Requests in process with canned Responses, without opening a socket.
+ * <p>
+ * Responses are registered per Request method and resource path prefix; the first matching registration answers. A Request that
+ * matches none is answered with a 404 error in the TeleSign error format. Because no network is involved, a LoopbackTransport
+ * measures the SDK's own cost per call (signing, encoding and parsing), and lets tests run without a TeleSign account.
+ * </p>
+ */
+public class LoopbackTransport implements Transport {
+
+	private static final Map<String, String> JSON = Collections.singletonMap("Content-Type", "application/json");
+
+	private final List<Route> routes = new CopyOnWriteArrayList<Route>();
+
+	private final AtomicLong requestCount = new AtomicLong();
+
+	private final AtomicReference<TransportRequest> lastRequest = new AtomicReference<TransportRequest>();
+
+	/**
+	 * Registers a canned Response.
+	 *
+	 * @param method	[Required] The Request method to answer, GET or POST.
+	 * @param resource	[Required] The resource path prefix to answer, for example /v1/verify/sms.
+	 * @param status	[Required] The HTTP status code of the Response.
+	 * @param json		[Required] The JSON-formatted body of the Response.
+	 * @return This LoopbackTransport, so that registrations can be chained.
+	 */
+	public LoopbackTransport respond(String method, String resource, int status, String json) {
+
+		routes.add(new Route(method, resource, status, json.getBytes(StandardCharsets.UTF_8)));
+
+		return this;
+	}
+
+	/** @return The number of Requests this Transport has answered. */
+	public long getRequestCount() {
+
+		return requestCount.get();
+	}
+
+	/** @return The most recent Request, or null if none was sent. */
+	public TransportRequest getLastRequest() {
+
+		return lastRequest.get();
+	}
+
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+
+		requestCount.incrementAndGet();
+		lastRequest.set(request);
+
+		String path = request.getUrl().getPath();
+
+		for (Route route : routes) {
+
+			if (route.method.equalsIgnoreCase(request.getMethod()) && path.startsWith(route.resource)) {
+
+				return new TransportResponse(route.status, JSON, route.body);
+			}
+		}
+
+		String error = "{\"errors\":[{\"code\":-10000,\"description\":\"No loopback response for " + request.getMethod() + " " + path + "\"}]}";
+
+		return new TransportResponse(404, JSON, error.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/** Answers on the calling thread; there is nothing to wait for. */
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request, Executor executor) {
+
+		try {
+
+			return CompletableFuture.completedFuture(send(request));
+		}
+		catch (IOException e) {
+
+			CompletableFuture<TransportResponse> failed = new CompletableFuture<TransportResponse>();
+			failed.completeExceptionally(e);
+
+			return failed;
+		}
+	}
+
+	private static class Route {
+
+		final String method;
+		final String resource;
+		final int status;
+		final byte[] body;
+
+		Route(String method, String resource, int status, byte[] body) {
+
+			this.method = method;
+			this.resource = resource;
+			this.status = status;
+			this.body = body;
+		}
+	}
+}
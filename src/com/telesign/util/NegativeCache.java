@@ -0,0 +1,414 @@
+package com.telesign.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+/**
+ * The NegativeCache class remembers the phone numbers that the TeleSign web services rejected, so that a repeated Request for one of
+ * them is answered locally instead of paying a round trip.
+ * <p>
+ * A response is remembered when each code in its <code>errors</code> array has a time to live, set with
+ * {@link #setTimeToLive(int, long, TimeUnit)}, and for the shortest of them. No code has one by default: map only the codes that
+ * describe the phone number itself, such as an invalid number or an unsupported country, and not those of the account or of a
+ * transient failure. The phone numbers are keyed by the endpoint that rejected them and by their E.164 key, so "+1 (310) 555-1212"
+ * and "13105551212" are the same number, while a number rejected by Verify SMS is still sent to Verify Call.
+ * </p>
+ * <p>
+ * A remembered number is answered with a new response that holds the status and the errors of the original one, without a reference
+ * ID. Only those are kept, in stripes of at most their share of the entries; beyond it, the oldest number of the stripe is forgotten.
+ * </p>
+ */
+public class NegativeCache {
+
+	/** The number of stripes, a power of two. */
+	private static final int STRIPES = 16;
+
+	/** The bits of an E.164 key, which has at most 15 digits. The id of the endpoint is kept above them, in the same long. */
+	private static final int ENDPOINT_SHIFT = 50;
+
+	/** The most endpoints, so that an entry key stays positive. */
+	private static final int MAX_ENDPOINTS = (1 << (63 - ENDPOINT_SHIFT)) - 1;
+
+	private final Gson gson = new Gson();
+
+	private final Stripe[] stripes = new Stripe[STRIPES];
+
+	private final ConcurrentHashMap<Integer, Long> ttlNanos = new ConcurrentHashMap<Integer, Long>();
+
+	/** The id of each endpoint, already shifted into place. */
+	private final ConcurrentHashMap<String, Long> endpoints = new ConcurrentHashMap<String, Long>();
+	private final AtomicInteger lastEndpoint = new AtomicInteger();
+
+	private final AtomicLong saved = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong stored = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * The NegativeCache class constructor.
+	 *
+	 * @param maxEntries	[Required] The most phone numbers remembered. Beyond it, the oldest are forgotten.
+	 */
+	public NegativeCache(int maxEntries) {
+
+		if (maxEntries < 1) {
+
+			throw new IllegalArgumentException("maxEntries must be positive");
+		}
+
+		int perStripe = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+
+		for (int i = 0; i < STRIPES; i++) {
+
+			stripes[i] = new Stripe(perStripe);
+		}
+	}
+
+	/**
+	 * Sets the time a phone number is remembered after a response with an error code.
+	 *
+	 * @param errorCode		[Required] The code of the error, from the <code>errors</code> array of a response.
+	 * @param timeToLive	[Required] The time to live. Set this value to 0 to stop remembering the numbers with this error.
+	 * @param unit			[Required] The unit of the time to live.
+	 */
+	public void setTimeToLive(int errorCode, long timeToLive, TimeUnit unit) {
+
+		if (timeToLive < 0) {
+
+			throw new IllegalArgumentException("timeToLive must not be negative");
+		}
+
+		if (timeToLive == 0) {
+
+			ttlNanos.remove(errorCode);
+		}
+		else {
+
+			ttlNanos.put(errorCode, unit.toNanos(timeToLive));
+		}
+	}
+
+	/**
+	 * @param errorCode	[Required] The code of the error.
+	 * @param unit		[Required] The unit of the result.
+	 * @return The time a phone number is remembered after a response with this error code, or 0 if it is not.
+	 */
+	public long getTimeToLive(int errorCode, TimeUnit unit) {
+
+		Long ttl = ttlNanos.get(errorCode);
+
+		return (ttl == null) ? 0 : unit.convert(ttl, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Returns the answer for a phone number that an endpoint rejected.
+	 *
+	 * @param endpoint		[Required] The endpoint name, for example {@link RateLimiterRegistry#VERIFY_SMS}.
+	 * @param phone_number	[Required] The phone number.
+	 * @param responseType	[Required] The response type of the Request.
+	 * @return A new response with the remembered status and errors, or null if the number is not remembered, or has expired.
+	 */
+	public <T> T get(String endpoint, String phone_number, Class<T> responseType) {
+
+		if (endpoint == null) {
+
+			throw new IllegalArgumentException("endpoint must not be null");
+		}
+
+		Long id = endpoints.get(endpoint);
+
+		// No number of an endpoint that never rejected one is remembered.
+		if (id == null) {
+
+			misses.incrementAndGet();
+
+			return null;
+		}
+
+		long key = key(id, phone_number);
+
+		if (key == PhoneNumbers.INVALID) {
+
+			return null;
+		}
+
+		Stripe stripe = stripe(key);
+		String body = null;
+
+		synchronized (stripe) {
+
+			Entry entry = stripe.entries.get(key);
+
+			if (entry != null && System.nanoTime() - entry.expiresAt >= 0) {
+
+				stripe.entries.remove(key);
+			}
+			else if (entry != null) {
+
+				body = entry.body;
+			}
+		}
+
+		if (body == null) {
+
+			misses.incrementAndGet();
+
+			return null;
+		}
+
+		saved.incrementAndGet();
+
+		return gson.fromJson(body, responseType);
+	}
+
+	/**
+	 * Remembers a phone number after a response of an endpoint, if each of the errors of the response has a time to live. The callers
+	 * read the typed errors of a response first, and only pass the responses that have some, so a successful response costs nothing.
+	 *
+	 * @param endpoint		[Required] The endpoint name, for example {@link RateLimiterRegistry#VERIFY_SMS}.
+	 * @param phone_number	[Required] The phone number.
+	 * @param response		[Required] The parsed response.
+	 * @return True if the number is remembered.
+	 */
+	public boolean put(String endpoint, String phone_number, Object response) {
+
+		if (ttlNanos.isEmpty()) {
+
+			return false;
+		}
+
+		long key = key(endpointId(endpoint), phone_number);
+
+		if (key == PhoneNumbers.INVALID) {
+
+			return false;
+		}
+
+		JsonObject tree = gson.toJsonTree(response).getAsJsonObject();
+		JsonElement errors = tree.get("errors");
+
+		if (errors == null || !errors.isJsonArray() || errors.getAsJsonArray().size() == 0) {
+
+			return false;
+		}
+
+		long ttl = Long.MAX_VALUE;
+
+		for (JsonElement error : errors.getAsJsonArray()) {
+
+			JsonElement code = error.isJsonObject() ? error.getAsJsonObject().get("code") : null;
+			Long errorTtl = (code == null) ? null : ttlNanos.get(code.getAsInt());
+
+			if (errorTtl == null) {
+
+				return false;
+			}
+
+			ttl = Math.min(ttl, errorTtl);
+		}
+
+		JsonObject answer = new JsonObject();
+
+		if (tree.has("status")) {
+
+			answer.add("status", tree.get("status"));
+		}
+
+		answer.add("errors", errors);
+
+		Stripe stripe = stripe(key);
+
+		synchronized (stripe) {
+
+			stripe.put(key, new Entry(gson.toJson(answer), System.nanoTime() + ttl));
+		}
+
+		stored.incrementAndGet();
+
+		return true;
+	}
+
+	/**
+	 * Forgets a phone number for every endpoint, for example after the user corrected it on their account.
+	 *
+	 * @param phone_number	[Required] The phone number.
+	 */
+	public void invalidate(String phone_number) {
+
+		long number = PhoneNumbers.toKey(phone_number);
+
+		if (number == PhoneNumbers.INVALID) {
+
+			return;
+		}
+
+		for (Long id : endpoints.values()) {
+
+			long key = id | number;
+			Stripe stripe = stripe(key);
+
+			synchronized (stripe) {
+
+				stripe.entries.remove(key);
+			}
+		}
+	}
+
+	/** Forgets every phone number. The statistics are kept. */
+	public void clear() {
+
+		for (Stripe stripe : stripes) {
+
+			synchronized (stripe) {
+
+				stripe.entries.clear();
+			}
+		}
+	}
+
+	/** @return The number of phone numbers remembered, including the expired ones not yet removed. */
+	public int size() {
+
+		int size = 0;
+
+		for (Stripe stripe : stripes) {
+
+			synchronized (stripe) {
+
+				size += stripe.entries.size();
+			}
+		}
+
+		return size;
+	}
+
+	/** @return The number of Requests answered locally, each a round trip saved. */
+	public long getSavedCount() {
+
+		return saved.get();
+	}
+
+	/** @return The number of lookups of numbers that were not remembered, or had expired. */
+	public long getMissCount() {
+
+		return misses.get();
+	}
+
+	/** @return The number of times a phone number was remembered. */
+	public long getStoredCount() {
+
+		return stored.get();
+	}
+
+	/** @return The number of phone numbers forgotten to keep the cache within its size. */
+	public long getEvictionCount() {
+
+		return evictions.get();
+	}
+
+	/** @return The id of an endpoint, shifted into place, given on first use. */
+	private long endpointId(String endpoint) {
+
+		if (endpoint == null) {
+
+			throw new IllegalArgumentException("endpoint must not be null");
+		}
+
+		Long id = endpoints.get(endpoint);
+
+		if (id == null) {
+
+			id = endpoints.computeIfAbsent(endpoint, name -> {
+
+				int next = lastEndpoint.incrementAndGet();
+
+				if (next > MAX_ENDPOINTS) {
+
+					throw new IllegalArgumentException("At most " + MAX_ENDPOINTS + " endpoints are remembered");
+				}
+
+				return (long) next << ENDPOINT_SHIFT;
+			});
+		}
+
+		return id;
+	}
+
+	/** @return The key of the entry of a phone number for an endpoint, or {@link PhoneNumbers#INVALID} if the number has no E.164 key. */
+	private static long key(long endpointId, String phone_number) {
+
+		long number = PhoneNumbers.toKey(phone_number);
+
+		return (number == PhoneNumbers.INVALID) ? PhoneNumbers.INVALID : endpointId | number;
+	}
+
+	private Stripe stripe(long key) {
+
+		return stripes[PhoneNumbers.hash(key) & (STRIPES - 1)];
+	}
+
+	@Override
+	public String toString() {
+
+		return "NegativeCache[" + size() + " numbers, " + saved.get() + " saved]";
+	}
+
+	private static final class Entry {
+
+		final String body;
+		final long expiresAt;
+
+		/** The position of the entry in the ring of its stripe. */
+		int position;
+
+		Entry(String body, long expiresAt) {
+
+			this.body = body;
+			this.expiresAt = expiresAt;
+		}
+	}
+
+	/** One stripe of the cache: the entries, and a ring of their keys in the order they were stored. */
+	private final class Stripe {
+
+		final LongHashMap<Entry> entries;
+
+		private final long[] ring;
+		private int next;
+
+		Stripe(int capacity) {
+
+			entries = new LongHashMap<Entry>(capacity);
+			ring = new long[capacity];
+		}
+
+		/** Stores an entry in the place of the oldest one, unless that one was stored again since and is in a later place. */
+		void put(long key, Entry entry) {
+
+			long oldest = ring[next];
+
+			if (oldest != PhoneNumbers.INVALID && oldest != key) {
+
+				Entry current = entries.get(oldest);
+
+				if (current != null && current.position == next) {
+
+					entries.remove(oldest);
+					evictions.incrementAndGet();
+				}
+			}
+
+			entry.position = next;
+			ring[next] = key;
+			next = (next + 1) % ring.length;
+
+			entries.put(key, entry);
+		}
+	}
+}
@@ -0,0 +1,1170 @@
+package com.telesign.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+
+/**
+ * The NioEngine class sends HTTP 1.1 Requests without holding a thread per Request.
+ * <p>
+ * A small number of event-loop threads multiplex all connections through {@link Selector}s, and TLS is performed with an
+ * {@link SSLEngine} from an {@link SSLContextCache}, which also counts the handshakes. Requests are spread round-robin over the event loops, and each loop
+ * keeps its own kept-alive connections per host, bounded by {@link #setMaxConnectionsPerHost(int)}. Requests beyond that bound wait
+ * in a queue without a thread. Network buffers are direct buffers that are reused across connections. Connect and read timeouts are
+ * enforced by a timer in each event loop.
+ * </p>
+ * <p>
+ * The returned futures are completed on an event-loop thread, so dependent stages that block must be run with an executor.
+ * </p>
+ */
+public class NioEngine implements Transport, Closeable {
+
+	/** The default maximum number of connections that one event loop opens to a single host. */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 64;
+
+	/** The default number of milliseconds an idle connection is kept alive. */
+	public static final long DEFAULT_KEEP_ALIVE_TIME = 30000;
+
+	/** The interval, in milliseconds, at which each event loop checks its timeouts. */
+	private static final long TIMER_TICK = 50;
+
+	/** The size of the pooled network buffers, large enough for one TLS record. */
+	private static final int BUFFER_SIZE = 17 * 1024;
+
+	private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+	private final EventLoop[] loops;
+
+	private final SSLContextCache sslContexts;
+
+	private final AtomicInteger nextLoop = new AtomicInteger();
+
+	private volatile int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+	private volatile long keepAliveTime = DEFAULT_KEEP_ALIVE_TIME;
+
+	private volatile boolean closed = false;
+
+	/**
+	 * Creates an engine with one event loop per processor, up to four.
+	 */
+	public NioEngine() {
+
+		this(Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors())));
+	}
+
+	/**
+	 * Creates an engine with the given number of event loops, which uses the default {@link SSLContextCache}.
+	 *
+	 * @param eventLoops [Required] The number of event-loop threads.
+	 * @throws UncheckedIOException If a selector could not be opened.
+	 */
+	public NioEngine(int eventLoops) {
+
+		this(eventLoops, SSLContextCache.getDefault());
+	}
+
+	/**
+	 * Creates an engine with the given number of event loops.
+	 *
+	 * @param eventLoops	[Required] The number of event-loop threads.
+	 * @param sslContexts	[Required] The SSLContextCache that provides the SSLContexts and counts the handshakes.
+	 * @throws UncheckedIOException If a selector could not be opened.
+	 */
+	public NioEngine(int eventLoops, SSLContextCache sslContexts) {
+
+		if (eventLoops <= 0) {
+
+			throw new IllegalArgumentException("eventLoops must be positive: " + eventLoops);
+		}
+
+		if (sslContexts == null) {
+
+			throw new IllegalArgumentException("sslContexts must not be null");
+		}
+
+		this.sslContexts = sslContexts;
+		loops = new EventLoop[eventLoops];
+
+		try {
+
+			for (int i = 0; i < eventLoops; i++) {
+
+				loops[i] = new EventLoop(i);
+			}
+		}
+		catch (IOException e) {
+
+			for (EventLoop loop : loops) {
+
+				if (loop != null) {
+
+					try {
+
+						loop.selector.close();
+					}
+					catch (IOException suppressed) {
+
+						e.addSuppressed(suppressed);
+					}
+				}
+			}
+
+			throw new UncheckedIOException(e);
+		}
+
+		for (EventLoop loop : loops) {
+
+			loop.thread.start();
+		}
+	}
+
+	/**
+	 * Sets the maximum number of connections that each event loop opens to a single host.
+	 *
+	 * @param maxConnectionsPerHost [Required] A positive integer.
+	 */
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+
+		if (maxConnectionsPerHost <= 0) {
+
+			throw new IllegalArgumentException("maxConnectionsPerHost must be positive: " + maxConnectionsPerHost);
+		}
+
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	/**
+	 * Sets how long an idle connection is kept open for reuse.
+	 *
+	 * @param keepAliveTime [Required] The time in milliseconds. Zero closes connections after each Response.
+	 */
+	public void setKeepAliveTime(long keepAliveTime) {
+
+		this.keepAliveTime = keepAliveTime;
+	}
+
+	/**
+	 * @return The number of connections currently open across all event loops.
+	 */
+	public int getOpenConnections() {
+
+		int open = 0;
+
+		for (EventLoop loop : loops) {
+
+			open += loop.openConnections;
+		}
+
+		return open;
+	}
+
+	/**
+	 * Sends a Request.
+	 *
+	 * @param method			[Required] The Request method, GET or POST.
+	 * @param url				[Required] The absolute URL, with an http or https scheme.
+	 * @param headers			[Required] The Request header fields. Host, Content-Length and Connection are added by the engine.
+	 * @param body				[Optional] The entity body, or null for none.
+	 * @param connectTimeout	[Required] The connect timeout in milliseconds, zero for none.
+	 * @param readTimeout		[Required] The maximum time in milliseconds between two reads, zero for none. Also bounds the TLS handshake.
+	 * @param httpsProtocol		[Required] The TLS protocol, for example TLSv1.2.
+	 * @return A CompletableFuture that completes with the Response, or exceptionally with an IOException.
+	 */
+	public CompletableFuture<Response> execute(String method, URL url, Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout, String httpsProtocol) {
+
+		CompletableFuture<Response> future = new CompletableFuture<Response>();
+
+		try {
+
+			if (closed) {
+
+				throw new IOException("NioEngine is closed");
+			}
+
+			Exchange exchange = new Exchange(method, url, headers, body, connectTimeout, readTimeout, httpsProtocol, future);
+			loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].submit(exchange);
+		}
+		catch (IOException | RuntimeException e) {
+
+			future.completeExceptionally(e);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Sends a Request, and waits for its Response. The calling thread is the only thread that waits.
+	 */
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+
+		return Futures.await(sendAsync(request, null));
+	}
+
+	/**
+	 * Sends a Request through the event loops. The executor is not used; the future completes on an event-loop thread.
+	 */
+	@Override
+	public CompletableFuture<TransportResponse> sendAsync(TransportRequest request, Executor executor) {
+
+		return execute(request.getMethod(), request.getUrl(), request.getHeaders(), request.getBody(), request.getConnectTimeout(), request.getReadTimeout(), request.getHttpsProtocol())
+				.thenApply(response -> new TransportResponse(response.getStatus(), response.getHeaders(), response.getBody()));
+	}
+
+	/**
+	 * Stops the event loops. Requests still in flight complete exceptionally.
+	 */
+	@Override
+	public void close() {
+
+		closed = true;
+
+		for (EventLoop loop : loops) {
+
+			if (loop != null) {
+
+				loop.selector.wakeup();
+			}
+		}
+	}
+
+	/** The status, header fields and body of an HTTP Response. */
+	public static class Response {
+
+		private final int status;
+		private final Map<String, String> headers;
+		private final byte[] body;
+
+		Response(int status, Map<String, String> headers, byte[] body) {
+
+			this.status = status;
+			this.headers = Collections.unmodifiableMap(headers);
+			this.body = body;
+		}
+
+		/** @return The HTTP status code. */
+		public int getStatus() {
+
+			return status;
+		}
+
+		/** @return The Response header fields, with case-insensitive names. */
+		public Map<String, String> getHeaders() {
+
+			return headers;
+		}
+
+		/** @return The entity body. */
+		public byte[] getBody() {
+
+			return body;
+		}
+	}
+
+	/** A Request, its encoded bytes and the future that receives its Response. */
+	private static class Exchange {
+
+		final String key;
+		final String host;
+		final int port;
+		final boolean secure;
+		final InetSocketAddress address;
+		final String httpsProtocol;
+		final int connectTimeout;
+		final int readTimeout;
+		final byte[] request;
+		final CompletableFuture<Response> future;
+		final boolean idempotent;
+		final long queuedAt = System.nanoTime();
+		boolean retried = false;
+
+		Exchange(String method, URL url, Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout, String httpsProtocol,
+				CompletableFuture<Response> future) throws IOException {
+
+			String scheme = url.getProtocol();
+
+			if (!scheme.equals("https") && !scheme.equals("http")) {
+
+				throw new IOException("Unsupported scheme: " + scheme);
+			}
+
+			this.secure = scheme.equals("https");
+			this.host = url.getHost();
+			this.port = (url.getPort() == -1) ? url.getDefaultPort() : url.getPort();
+			this.address = new InetSocketAddress(host, port);
+
+			if (address.isUnresolved()) {
+
+				throw new IOException("Unknown host: " + host);
+			}
+
+			this.key = scheme + "://" + host + ":" + port + "/" + httpsProtocol;
+			this.httpsProtocol = httpsProtocol;
+			this.connectTimeout = connectTimeout;
+			this.readTimeout = readTimeout;
+			this.future = future;
+			this.idempotent = method.equalsIgnoreCase("GET");
+
+			String path = url.getFile().isEmpty() ? "/" : url.getFile();
+			StringBuilder head = new StringBuilder(256).append(method).append(' ').append(path).append(" HTTP/1.1\r\n");
+
+			head.append("Host: ").append(host);
+
+			if (url.getPort() != -1) {
+
+				head.append(':').append(port);
+			}
+
+			head.append("\r\n");
+
+			for (Map.Entry<String, String> header : headers.entrySet()) {
+
+				String value = header.getValue();
+
+				if (value.indexOf('\r') >= 0 || value.indexOf('\n') >= 0) {
+
+					throw new IllegalArgumentException("Header " + header.getKey() + " contains a line break");
+				}
+
+				head.append(header.getKey()).append(": ").append(value).append("\r\n");
+			}
+
+			if (body != null || method.equalsIgnoreCase("POST")) {
+
+				head.append("Content-Length: ").append(body == null ? 0 : body.length).append("\r\n");
+			}
+
+			head.append("Connection: keep-alive\r\n\r\n");
+
+			byte[] headBytes = head.toString().getBytes(StandardCharsets.ISO_8859_1);
+
+			if (body == null || body.length == 0) {
+
+				this.request = headBytes;
+			}
+			else {
+
+				this.request = new byte[headBytes.length + body.length];
+				System.arraycopy(headBytes, 0, request, 0, headBytes.length);
+				System.arraycopy(body, 0, request, headBytes.length, body.length);
+			}
+		}
+	}
+
+	/** The connections of one event loop to one host. Only used by the event-loop thread. */
+	private static class HostPool {
+
+		final ArrayDeque<Connection> idle = new ArrayDeque<Connection>();
+		final ArrayDeque<Exchange> waiting = new ArrayDeque<Exchange>();
+		int open = 0;
+	}
+
+	/** One selector, its thread, and the connections it owns. */
+	private class EventLoop implements Runnable {
+
+		final Selector selector;
+		final Thread thread;
+		final ConcurrentLinkedQueue<Exchange> submitted = new ConcurrentLinkedQueue<Exchange>();
+		final Map<String, HostPool> pools = new HashMap<String, HostPool>();
+		final Set<Connection> connections = new LinkedHashSet<Connection>();
+		final ArrayDeque<ByteBuffer> freeBuffers = new ArrayDeque<ByteBuffer>();
+		volatile int openConnections = 0;
+		boolean stopping = false;
+
+		EventLoop(int index) throws IOException {
+
+			selector = Selector.open();
+			thread = new Thread(this, "telesign-nio-" + index);
+			thread.setDaemon(true);
+		}
+
+		void submit(Exchange exchange) {
+
+			submitted.add(exchange);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+
+			long lastTick = System.nanoTime();
+
+			try {
+
+				while (!closed) {
+
+					selector.select(TIMER_TICK);
+
+					Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+					while (keys.hasNext()) {
+
+						SelectionKey key = keys.next();
+						keys.remove();
+
+						Connection connection = (Connection) key.attachment();
+
+						try {
+
+							connection.onReady(key);
+						}
+						catch (IOException | RuntimeException e) {
+
+							connection.fail(e);
+						}
+					}
+
+					Exchange exchange;
+
+					while ((exchange = submitted.poll()) != null) {
+
+						dispatch(exchange);
+					}
+
+					long now = System.nanoTime();
+
+					if (now - lastTick >= TimeUnit.MILLISECONDS.toNanos(TIMER_TICK)) {
+
+						lastTick = now;
+						checkTimeouts(now);
+					}
+				}
+			}
+			catch (IOException | ClosedSelectorException e) {
+
+				System.err.println("NioEngine event loop stopped: " + e.getMessage());
+			}
+			finally {
+
+				shutdown();
+			}
+		}
+
+		void dispatch(Exchange exchange) {
+
+			if (stopping) {
+
+				exchange.future.completeExceptionally(new IOException("NioEngine is closed"));
+				return;
+			}
+
+			HostPool pool = pools.get(exchange.key);
+
+			if (pool == null) {
+
+				pool = new HostPool();
+				pools.put(exchange.key, pool);
+			}
+
+			Connection connection;
+
+			while ((connection = pool.idle.pollLast()) != null) {
+
+				if (connection.isOpen()) {
+
+					connection.start(exchange, true);
+					return;
+				}
+			}
+
+			if (pool.open < maxConnectionsPerHost) {
+
+				try {
+
+					connection = new Connection(this, pool, exchange);
+				}
+				catch (IOException | GeneralSecurityException | RuntimeException e) {
+
+					exchange.future.completeExceptionally(e instanceof IOException ? e : new IOException(e));
+					return;
+				}
+
+				connection.start(exchange, false);
+			}
+			else {
+
+				pool.waiting.add(exchange);
+			}
+		}
+
+		/** Gives a waiting Request of the pool to an idle connection, or to a new one if the pool has room. */
+		void drain(HostPool pool) {
+
+			Exchange next = pool.waiting.poll();
+
+			if (next != null) {
+
+				dispatch(next);
+			}
+		}
+
+		void checkTimeouts(long now) {
+
+			List<Connection> expired = null;
+
+			for (Connection connection : connections) {
+
+				if (connection.deadline != 0 && now - connection.deadline >= 0) {
+
+					if (expired == null) {
+
+						expired = new ArrayList<Connection>();
+					}
+
+					expired.add(connection);
+				}
+			}
+
+			if (expired != null) {
+
+				for (Connection connection : expired) {
+
+					connection.onTimeout();
+				}
+			}
+
+			for (HostPool pool : pools.values()) {
+
+				Iterator<Exchange> waiting = pool.waiting.iterator();
+
+				while (waiting.hasNext()) {
+
+					Exchange exchange = waiting.next();
+
+					if (exchange.connectTimeout > 0 && now - exchange.queuedAt >= TimeUnit.MILLISECONDS.toNanos(exchange.connectTimeout)) {
+
+						waiting.remove();
+						exchange.future.completeExceptionally(new SocketTimeoutException("Timed out waiting for a connection to " + exchange.host));
+					}
+				}
+			}
+		}
+
+		ByteBuffer takeBuffer(int size) {
+
+			if (size <= BUFFER_SIZE) {
+
+				ByteBuffer buffer = freeBuffers.poll();
+
+				if (buffer != null) {
+
+					buffer.clear();
+					return buffer;
+				}
+
+				size = BUFFER_SIZE;
+			}
+
+			return ByteBuffer.allocateDirect(size);
+		}
+
+		void returnBuffer(ByteBuffer buffer) {
+
+			if (buffer != null && buffer.capacity() == BUFFER_SIZE && freeBuffers.size() < 256) {
+
+				freeBuffers.push(buffer);
+			}
+		}
+
+		void shutdown() {
+
+			stopping = true;
+
+			IOException closedException = new IOException("NioEngine is closed");
+
+			for (Connection connection : new ArrayList<Connection>(connections)) {
+
+				connection.fail(closedException);
+			}
+
+			for (HostPool pool : pools.values()) {
+
+				for (Exchange exchange : pool.waiting) {
+
+					exchange.future.completeExceptionally(closedException);
+				}
+			}
+
+			Exchange exchange;
+
+			while ((exchange = submitted.poll()) != null) {
+
+				exchange.future.completeExceptionally(closedException);
+			}
+
+			try {
+
+				selector.close();
+			}
+			catch (IOException e) {
+
+				System.err.println("IOException while closing selector " + e.getMessage());
+			}
+		}
+	}
+
+	/** A connection to one host, driven by its event loop. */
+	private class Connection {
+
+		final EventLoop loop;
+		final HostPool pool;
+		final SocketChannel channel;
+		final SelectionKey key;
+		final SSLEngine ssl;
+		final long created = System.currentTimeMillis();
+
+		ByteBuffer netIn;
+		ByteBuffer netOut;
+		ByteBuffer appIn;
+
+		Exchange exchange;
+		ByteBuffer request;
+		HttpResponseParser parser;
+		boolean reused;
+		boolean connected = false;
+		boolean handshaking = false;
+		boolean discarded = false;
+
+		/** The time, from System.nanoTime(), at which the current operation times out. Zero means no timeout. */
+		long deadline = 0;
+
+		Connection(EventLoop loop, HostPool pool, Exchange exchange) throws IOException, GeneralSecurityException {
+
+			this.loop = loop;
+			this.pool = pool;
+
+			if (exchange.secure) {
+
+				ssl = sslContexts.getContext(exchange.httpsProtocol).createSSLEngine(exchange.host, exchange.port);
+				ssl.setUseClientMode(true);
+
+				SSLParameters parameters = ssl.getSSLParameters();
+				parameters.setEndpointIdentificationAlgorithm("HTTPS");
+
+				String[] cipherSuites = sslContexts.getCipherSuites();
+
+				if (cipherSuites != null) {
+
+					parameters.setCipherSuites(cipherSuites);
+				}
+
+				ssl.setSSLParameters(parameters);
+			}
+			else {
+
+				ssl = null;
+			}
+
+			channel = SocketChannel.open();
+
+			try {
+
+				channel.configureBlocking(false);
+				channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+				key = channel.register(loop.selector, 0, this);
+			}
+			catch (IOException | RuntimeException e) {
+
+				channel.close();
+				throw e;
+			}
+
+			int packetSize = (ssl == null) ? BUFFER_SIZE : ssl.getSession().getPacketBufferSize();
+			netIn = loop.takeBuffer(packetSize);
+			netOut = loop.takeBuffer(packetSize);
+			appIn = ByteBuffer.allocate((ssl == null) ? 0 : ssl.getSession().getApplicationBufferSize());
+
+			pool.open++;
+			loop.openConnections++;
+			loop.connections.add(this);
+		}
+
+		boolean isOpen() {
+
+			return !discarded && channel.isOpen();
+		}
+
+		void start(Exchange exchange, boolean reused) {
+
+			this.exchange = exchange;
+			this.reused = reused;
+			this.request = ByteBuffer.wrap(exchange.request);
+			this.parser = new HttpResponseParser();
+
+			try {
+
+				if (!connected) {
+
+					deadline = timeout(exchange.connectTimeout);
+
+					if (channel.connect(exchange.address)) {
+
+						onConnected();
+					}
+					else {
+
+						key.interestOps(SelectionKey.OP_CONNECT);
+					}
+				}
+				else {
+
+					deadline = timeout(exchange.readTimeout);
+					progress();
+				}
+			}
+			catch (IOException | RuntimeException e) {
+
+				fail(e);
+			}
+		}
+
+		void onReady(SelectionKey key) throws IOException {
+
+			if (key.isConnectable()) {
+
+				if (channel.finishConnect()) {
+
+					onConnected();
+				}
+
+				return;
+			}
+
+			if (exchange == null) {
+
+				// An idle connection became readable: the server closed it, or sent something unexpected.
+				close();
+				return;
+			}
+
+			if (key.isReadable()) {
+
+				read();
+			}
+
+			if (!discarded && exchange != null && key.isValid() && key.isWritable()) {
+
+				progress();
+			}
+		}
+
+		void onConnected() throws IOException {
+
+			connected = true;
+			deadline = timeout(exchange.readTimeout);
+
+			if (ssl != null) {
+
+				ssl.beginHandshake();
+				handshaking = true;
+			}
+
+			progress();
+		}
+
+		/** Advances the handshake and the writing of the Request as far as the socket allows. */
+		void progress() throws IOException {
+
+			if (handshaking && !handshake()) {
+
+				return;
+			}
+
+			if (request.hasRemaining() || netOut.position() > 0) {
+
+				if (ssl == null) {
+
+					while (request.hasRemaining()) {
+
+						int count = Math.min(request.remaining(), netOut.remaining());
+						netOut.put(request.array(), request.position(), count);
+						request.position(request.position() + count);
+
+						if (!flush()) {
+
+							return;
+						}
+					}
+				}
+				else {
+
+					while (request.hasRemaining()) {
+
+						SSLEngineResult result = ssl.wrap(request, netOut);
+
+						if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+
+							if (!flush()) {
+
+								return;
+							}
+						}
+						else if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+
+							throw new SSLException("SSLEngine closed while writing the request");
+						}
+					}
+				}
+
+				if (!flush() || request.hasRemaining()) {
+
+					return;
+				}
+			}
+
+			key.interestOps(SelectionKey.OP_READ);
+		}
+
+		/** @return True once the handshake is complete, false if it is waiting for the socket. */
+		boolean handshake() throws IOException {
+
+			while (true) {
+
+				switch (ssl.getHandshakeStatus()) {
+
+					case NEED_TASK:
+						Runnable task;
+
+						while ((task = ssl.getDelegatedTask()) != null) {
+
+							task.run();
+						}
+						break;
+
+					case NEED_WRAP:
+						SSLEngineResult result = ssl.wrap(EMPTY, netOut);
+
+						if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+
+							throw new SSLException("SSLEngine closed during the handshake");
+						}
+
+						if (!flush()) {
+
+							return false;
+						}
+						break;
+
+					case NOT_HANDSHAKING:
+					case FINISHED:
+						handshaking = false;
+						sslContexts.countHandshake(ssl.getSession(), created);
+						return flush();
+
+					default:
+						// NEED_UNWRAP, or NEED_UNWRAP_AGAIN on newer JDKs.
+						if (!unwrap()) {
+
+							key.interestOps(SelectionKey.OP_READ);
+							return false;
+						}
+						break;
+				}
+			}
+		}
+
+		/**
+		 * Unwraps buffered TLS records into the application buffer, reading from the socket when no complete record is buffered.
+		 *
+		 * @return True if the engine made progress, false if it needs bytes that have not arrived yet.
+		 */
+		boolean unwrap() throws IOException {
+
+			while (true) {
+
+				netIn.flip();
+				SSLEngineResult result = ssl.unwrap(netIn, appIn);
+				netIn.compact();
+
+				switch (result.getStatus()) {
+
+					case OK:
+						return true;
+
+					case BUFFER_OVERFLOW:
+						ByteBuffer larger = ByteBuffer.allocate(appIn.capacity() + ssl.getSession().getApplicationBufferSize());
+						appIn.flip();
+						larger.put(appIn);
+						appIn = larger;
+						break;
+
+					case BUFFER_UNDERFLOW:
+						if (!netIn.hasRemaining()) {
+
+							ByteBuffer grown = ByteBuffer.allocateDirect(netIn.capacity() * 2);
+							netIn.flip();
+							grown.put(netIn);
+							loop.returnBuffer(netIn);
+							netIn = grown;
+						}
+
+						int count = channel.read(netIn);
+
+						if (count < 0) {
+
+							throw new EOFException("Connection closed during the TLS handshake");
+						}
+
+						if (count == 0) {
+
+							return false;
+						}
+						break;
+
+					case CLOSED:
+					default:
+						throw new EOFException("TLS session closed by the server");
+				}
+			}
+		}
+
+		/** @return True if the network output buffer has been written to the socket completely. */
+		boolean flush() throws IOException {
+
+			netOut.flip();
+			channel.write(netOut);
+			netOut.compact();
+
+			if (netOut.position() > 0) {
+
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+				return false;
+			}
+
+			return true;
+		}
+
+		void read() throws IOException {
+
+			if (handshaking) {
+
+				progress();
+				return;
+			}
+
+			int count = channel.read(netIn);
+
+			if (count > 0) {
+
+				deadline = timeout(exchange.readTimeout);
+			}
+
+			boolean complete;
+
+			if (ssl == null) {
+
+				netIn.flip();
+				complete = parser.feed(netIn);
+				netIn.compact();
+			}
+			else {
+
+				netIn.flip();
+
+				while (netIn.hasRemaining()) {
+
+					SSLEngineResult result = ssl.unwrap(netIn, appIn);
+
+					if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+
+						appIn.flip();
+						parser.feed(appIn);
+						appIn.compact();
+
+						if (appIn.position() == appIn.capacity()) {
+
+							ByteBuffer larger = ByteBuffer.allocate(appIn.capacity() * 2);
+							appIn.flip();
+							larger.put(appIn);
+							appIn = larger;
+						}
+						continue;
+					}
+
+					if (result.getStatus() == SSLEngineResult.Status.CLOSED) {
+
+						count = -1;
+						break;
+					}
+
+					if (result.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+
+						Runnable task;
+
+						while ((task = ssl.getDelegatedTask()) != null) {
+
+							task.run();
+						}
+					}
+
+					if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW || (result.bytesConsumed() == 0 && result.bytesProduced() == 0)) {
+
+						break;
+					}
+				}
+
+				netIn.compact();
+				appIn.flip();
+				complete = parser.feed(appIn);
+				appIn.clear();
+
+				// Post-handshake messages, such as a key update, may need an answer.
+				if (!complete && ssl.getHandshakeStatus() == SSLEngineResult.HandshakeStatus.NEED_WRAP) {
+
+					ssl.wrap(EMPTY, netOut);
+					flush();
+				}
+			}
+
+			if (complete) {
+
+				complete();
+			}
+			else if (count < 0) {
+
+				onEndOfStream();
+			}
+		}
+
+		void onEndOfStream() throws IOException {
+
+			if (parser.readsUntilClose()) {
+
+				parser.finish();
+				complete();
+			}
+			else {
+
+				throw new EOFException("Connection closed before the response was complete");
+			}
+		}
+
+		void complete() {
+
+			Exchange done = exchange;
+			Response response = new Response(parser.getStatus(), parser.getHeaders(), parser.getBody());
+
+			exchange = null;
+			request = null;
+
+			if (parser.isKeepAlive() && keepAliveTime > 0 && !discarded) {
+
+				parser = null;
+				deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(keepAliveTime);
+				key.interestOps(SelectionKey.OP_READ);
+				pool.idle.addLast(this);
+			}
+			else {
+
+				close();
+			}
+
+			done.future.complete(response);
+			loop.drain(pool);
+		}
+
+		void onTimeout() {
+
+			if (exchange == null) {
+
+				close();
+				loop.drain(pool);
+				return;
+			}
+
+			fail(new SocketTimeoutException((connected ? "Read timed out from " : "Connect timed out to ") + exchange.host));
+		}
+
+		void fail(Throwable cause) {
+
+			Exchange failed = exchange;
+			exchange = null;
+
+			// A kept-alive connection may have been closed by the server just before it was reused. The Request is sent once more
+			// on a new connection when the server cannot have acted on it: it was not written completely, or it is a GET.
+			boolean retry = failed != null && reused && !failed.retried && parser != null && !parser.hasStarted()
+					&& cause instanceof IOException && !(cause instanceof SocketTimeoutException)
+					&& (failed.idempotent || request.hasRemaining());
+
+			close();
+
+			if (retry) {
+
+				failed.retried = true;
+				loop.dispatch(failed);
+			}
+			else if (failed != null) {
+
+				failed.future.completeExceptionally(cause instanceof IOException ? cause : new IOException(cause));
+			}
+
+			loop.drain(pool);
+		}
+
+		void close() {
+
+			if (discarded) {
+
+				return;
+			}
+
+			discarded = true;
+			deadline = 0;
+			pool.open--;
+			pool.idle.remove(this);
+			loop.openConnections--;
+			loop.connections.remove(this);
+			key.cancel();
+
+			try {
+
+				channel.close();
+			}
+			catch (IOException e) {
+
+				// The connection is being discarded.
+			}
+
+			loop.returnBuffer(netIn);
+			loop.returnBuffer(netOut);
+			netIn = null;
+			netOut = null;
+		}
+	}
+
+	private static long timeout(int millis) {
+
+		return (millis > 0) ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis) : 0;
+	}
+}
@@ -0,0 +1,122 @@
+package com.telesign.util;
+
+/**
+ * The PhoneNumbers class turns the phone numbers given to the SDK into E.164 keys: the digits of the number in international form,
+ * read as a long.
+ * <p>
+ * The same subscriber may be written "+1 (310) 555-1212", "1-310-555-1212" or "13105551212"; all of them have the key 13105551212.
+ * Keys can be compared and hashed without allocating, so they suit the tables the SDK keeps per phone number. The canonicalizer does
+ * not allocate either. It only removes formatting: a national number, without its country code, cannot be told from an international
+ * one, and gets a key of its own.
+ * </p>
+ */
+public final class PhoneNumbers {
+
+	/** The key of a phone number that cannot be canonicalized. No valid key is 0, since an E.164 number does not start with 0. */
+	public static final long INVALID = 0;
+
+	/** The most digits of an E.164 number, country code included. */
+	public static final int MAX_DIGITS = 15;
+
+	/** The fewest digits of an E.164 number, country code included, as in the smallest numbering plans. */
+	public static final int MIN_DIGITS = 7;
+
+	private PhoneNumbers() {
+	}
+
+	/**
+	 * Turns a phone number into its E.164 key. Spaces, hyphens, dots, slashes and parentheses are ignored. The number may start with
+	 * + or with the international prefix 00.
+	 *
+	 * @param phone_number	[Required] The phone number.
+	 * @return The key, or {@link #INVALID} if the number has another character, starts with 0 after its prefix, or has fewer than
+	 *         {@link #MIN_DIGITS} or more than {@link #MAX_DIGITS} digits.
+	 */
+	public static long toKey(CharSequence phone_number) {
+
+		if (phone_number == null) {
+
+			return INVALID;
+		}
+
+		long key = 0;
+		int digits = 0;
+		int zeros = 0;
+		boolean prefixed = false;
+
+		for (int i = 0; i < phone_number.length(); i++) {
+
+			char c = phone_number.charAt(i);
+
+			if (c >= '0' && c <= '9') {
+
+				if (digits == 0 && c == '0') {
+
+					// Only the international prefix 00 may lead, and only when there is no +.
+					if (prefixed || ++zeros > 2) {
+
+						return INVALID;
+					}
+
+					continue;
+				}
+
+				if (++digits > MAX_DIGITS) {
+
+					return INVALID;
+				}
+
+				key = key * 10 + (c - '0');
+			}
+			else if (c == '+') {
+
+				if (prefixed || digits > 0 || zeros > 0) {
+
+					return INVALID;
+				}
+
+				prefixed = true;
+			}
+			else if (c != ' ' && c != '-' && c != '.' && c != '/' && c != '(' && c != ')') {
+
+				return INVALID;
+			}
+		}
+
+		if (zeros == 1 || digits < MIN_DIGITS) {
+
+			return INVALID;
+		}
+
+		return key;
+	}
+
+	/**
+	 * @param key	[Required] An E.164 key.
+	 * @return The phone number of the key, as digits without a +, the form the TeleSign web services take.
+	 */
+	public static String toDigits(long key) {
+
+		if (key <= INVALID) {
+
+			throw new IllegalArgumentException("Not an E.164 key: " + key);
+		}
+
+		return Long.toString(key);
+	}
+
+	/**
+	 * Spreads the bits of a key, so that keys that differ in their last digits fall far apart in a table.
+	 *
+	 * @param key	[Required] The key.
+	 * @return The hash of the key.
+	 */
+	public static int hash(long key) {
+
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+
+		return (int) key;
+	}
+}
@@ -0,0 +1,206 @@
+package com.telesign.util;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The RateLimiter class is a lock-free token bucket that keeps Requests to a sustained rate, while allowing a burst of them at once.
+ * <p>
+ * The bucket is kept as the time at which it will next be full, in a single {@link AtomicLong} that every permit moves forward by one
+ * interval with a compare-and-set, so no thread ever holds a lock. A permit that is not available yet can be waited for on the calling
+ * thread, refused, or delivered later through a CompletableFuture.
+ * </p>
+ */
+public class RateLimiter {
+
+	private final double permitsPerSecond;
+
+	private final int burst;
+
+	/** The time that one permit adds to the bucket, in nanoseconds. */
+	private final long intervalNanos;
+
+	/** How far ahead of the current time the bucket may be drawn, in nanoseconds: one interval per permit of burst, less one. */
+	private final long toleranceNanos;
+
+	/** The time at which the bucket will be full again if no more permits are taken, as a System.nanoTime() value. */
+	private final AtomicLong fullAt;
+
+	private final AtomicLong granted = new AtomicLong();
+	private final AtomicLong refused = new AtomicLong();
+	private final AtomicLong delayed = new AtomicLong();
+	private final AtomicLong delayNanos = new AtomicLong();
+
+	/**
+	 * The RateLimiter class constructor. The bucket starts full.
+	 *
+	 * @param permitsPerSecond	[Required] The sustained rate.
+	 * @param burst				[Required] The number of permits that can be taken at once after a quiet period.
+	 */
+	public RateLimiter(double permitsPerSecond, int burst) {
+
+		if (!(permitsPerSecond > 0) || burst < 1) {
+
+			throw new IllegalArgumentException("permitsPerSecond and burst must be positive");
+		}
+
+		this.permitsPerSecond = permitsPerSecond;
+		this.burst = burst;
+		this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+		this.toleranceNanos = intervalNanos * (burst - 1);
+		this.fullAt = new AtomicLong(System.nanoTime());
+	}
+
+	/**
+	 * Takes a permit if one is available now.
+	 *
+	 * @return True if a permit was taken.
+	 */
+	public boolean tryAcquire() {
+
+		while (true) {
+
+			long now = System.nanoTime();
+			long current = fullAt.get();
+			long start = Math.max(current, now);
+
+			if (start - now > toleranceNanos) {
+
+				refused.incrementAndGet();
+
+				return false;
+			}
+
+			if (fullAt.compareAndSet(current, start + intervalNanos)) {
+
+				granted.incrementAndGet();
+
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Takes a permit, and waits on the calling thread until it is due.
+	 *
+	 * @throws InterruptedException If the calling thread is interrupted while it waits. The permit is not returned.
+	 */
+	public void acquire() throws InterruptedException {
+
+		long due = reserve();
+
+		for (long wait; (wait = due - System.nanoTime()) > 0; ) {
+
+			LockSupport.parkNanos(this, wait);
+
+			if (Thread.interrupted()) {
+
+				throw new InterruptedException();
+			}
+		}
+	}
+
+	/**
+	 * Takes a permit without blocking.
+	 *
+	 * @return A CompletableFuture that completes when the permit is due. It is already complete when a permit was available.
+	 */
+	public CompletableFuture<Void> acquireAsync() {
+
+		long wait = reserve() - System.nanoTime();
+
+		if (wait <= 0) {
+
+			return CompletableFuture.completedFuture(null);
+		}
+
+		return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(wait, TimeUnit.NANOSECONDS));
+	}
+
+	/**
+	 * Reserves the next permit.
+	 *
+	 * @return The System.nanoTime() value at which the permit is due.
+	 */
+	private long reserve() {
+
+		while (true) {
+
+			long now = System.nanoTime();
+			long current = fullAt.get();
+			long start = Math.max(current, now);
+
+			if (fullAt.compareAndSet(current, start + intervalNanos)) {
+
+				long due = start - toleranceNanos;
+
+				granted.incrementAndGet();
+
+				if (due > now) {
+
+					delayed.incrementAndGet();
+					delayNanos.addAndGet(due - now);
+				}
+
+				return due;
+			}
+		}
+	}
+
+	/** @return The sustained rate, in permits per second. */
+	public double getPermitsPerSecond() {
+
+		return permitsPerSecond;
+	}
+
+	/** @return The number of permits that can be taken at once. */
+	public int getBurst() {
+
+		return burst;
+	}
+
+	/** @return The number of permits that can be taken now without waiting. */
+	public int getAvailablePermits() {
+
+		long now = System.nanoTime();
+		long drawn = Math.max(fullAt.get(), now) - now;
+
+		return (drawn > toleranceNanos) ? 0 : (int) ((toleranceNanos - drawn) / intervalNanos + 1);
+	}
+
+	/** @return The number of permits taken, including those that had to wait. */
+	public long getGrantedCount() {
+
+		return granted.get();
+	}
+
+	/** @return The number of permits refused by {@link #tryAcquire()}. */
+	public long getRefusedCount() {
+
+		return refused.get();
+	}
+
+	/** @return The number of permits that were not available at once, and had to wait. */
+	public long getDelayedCount() {
+
+		return delayed.get();
+	}
+
+	/**
+	 * @param unit [Required] The unit of the result.
+	 * @return The total time that delayed permits waited.
+	 */
+	public long getTotalDelay(TimeUnit unit) {
+
+		return unit.convert(delayNanos.get(), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString() {
+
+		return String.format("RateLimiter[%.1f/s, burst %d, granted %d, refused %d, delayed %d]", permitsPerSecond, burst, granted.get(), refused.get(),
+				delayed.get());
+	}
+}
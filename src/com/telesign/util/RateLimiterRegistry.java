@@ -0,0 +1,113 @@
+package com.telesign.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The RateLimiterRegistry class holds the {@link RateLimiter} of each TeleSign account and endpoint that has a client-side limit.
+ * <p>
+ * A limit is set for a Customer ID and one of the endpoint names below, or for every endpoint of the account with
+ * {@link #ALL_ENDPOINTS}. A Request uses the limit of its endpoint when there is one, and otherwise the limit of its account. The
+ * {@link com.telesign.verify.Verify} and {@link com.telesign.phoneid.PhoneId} classes consult {@link #getDefault()} before every
+ * Request, so a limit takes effect on the next call.
+ * </p>
+ */
+public class RateLimiterRegistry {
+
+	/** The endpoint name that sets a limit shared by all the endpoints of an account. */
+	public static final String ALL_ENDPOINTS = "*";
+
+	public static final String VERIFY_SMS = "verify.sms";
+	public static final String VERIFY_CALL = "verify.call";
+	public static final String VERIFY_SMART = "verify.smart";
+	public static final String VERIFY_STATUS = "verify.status";
+	public static final String VERIFY_PUSH = "verify.push";
+	public static final String VERIFY_SOFT_TOKEN = "verify.soft_token";
+	public static final String VERIFY_REGISTRATION = "verify.registration";
+	public static final String PHONEID_STANDARD = "phoneid.standard";
+	public static final String PHONEID_SCORE = "phoneid.score";
+	public static final String PHONEID_CONTACT = "phoneid.contact";
+	public static final String PHONEID_LIVE = "phoneid.live";
+
+	private static final RateLimiterRegistry DEFAULT = new RateLimiterRegistry();
+
+	private final ConcurrentHashMap<String, RateLimiter> limiters = new ConcurrentHashMap<String, RateLimiter>();
+
+	/**
+	 * Returns the registry consulted by Verify and PhoneId.
+	 *
+	 * @return The default RateLimiterRegistry.
+	 */
+	public static RateLimiterRegistry getDefault() {
+
+		return DEFAULT;
+	}
+
+	/**
+	 * Sets the limit of an endpoint, or of a whole account. A limit set before is replaced, and its permits are forgotten.
+	 *
+	 * @param customer_id		[Required] Your TeleSign Customer ID.
+	 * @param endpoint			[Required] One of the endpoint names of this class, or {@link #ALL_ENDPOINTS}.
+	 * @param permitsPerSecond	[Required] The sustained rate.
+	 * @param burst				[Required] The number of Requests that can be sent at once after a quiet period.
+	 * @return The new RateLimiter, whose metrics can be read while it is in use.
+	 */
+	public RateLimiter setLimit(String customer_id, String endpoint, double permitsPerSecond, int burst) {
+
+		RateLimiter limiter = new RateLimiter(permitsPerSecond, burst);
+
+		limiters.put(key(customer_id, endpoint), limiter);
+
+		return limiter;
+	}
+
+	/**
+	 * Removes the limit of an endpoint, or of a whole account.
+	 *
+	 * @param customer_id	[Required] Your TeleSign Customer ID.
+	 * @param endpoint		[Required] One of the endpoint names of this class, or {@link #ALL_ENDPOINTS}.
+	 */
+	public void removeLimit(String customer_id, String endpoint) {
+
+		limiters.remove(key(customer_id, endpoint));
+	}
+
+	/**
+	 * Returns the limiter that applies to the Requests of an endpoint.
+	 *
+	 * @param customer_id	[Required] Your TeleSign Customer ID.
+	 * @param endpoint		[Required] One of the endpoint names of this class.
+	 * @return The limiter of the endpoint, or else the limiter of the account, or null when the Requests are not limited.
+	 */
+	public RateLimiter find(String customer_id, String endpoint) {
+
+		return findByKeys(key(customer_id, endpoint), key(customer_id, ALL_ENDPOINTS));
+	}
+
+	RateLimiter findByKeys(String endpointKey, String accountKey) {
+
+		if (limiters.isEmpty()) {
+
+			return null;
+		}
+
+		RateLimiter limiter = limiters.get(endpointKey);
+
+		return (limiter != null) ? limiter : limiters.get(accountKey);
+	}
+
+	/**
+	 * @return The limiters, keyed by Customer ID and endpoint name, for reading their metrics.
+	 */
+	public Map<String, RateLimiter> getLimiters() {
+
+		return Collections.unmodifiableMap(new TreeMap<String, RateLimiter>(limiters));
+	}
+
+	static String key(String customer_id, String endpoint) {
+
+		return customer_id + "/" + endpoint;
+	}
+}
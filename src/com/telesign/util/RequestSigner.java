@@ -0,0 +1,176 @@
+package com.telesign.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SignatureException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * The RequestSigner class computes the Signature of the Authorization header for one Secret Key.
+ * <p>
+ * The key is Base64-decoded once, and initialized {@link Mac} instances for each {@link AuthMethod} are kept in a small pool together
+ * with their input and output buffers, so that signing a Request neither looks up a security provider nor sets up the key again. The pool is
+ * shared by all threads rather than held per thread, so that short-lived virtual threads reuse the same instances.
+ * </p>
+ * <p>
+ * There is no registry of signers by key. The owner of the credentials holds its signer: a {@link RequestTemplate}, or a Verify or
+ * PhoneId instance that shares one signer between the templates of its endpoints.
+ * </p>
+ */
+public class RequestSigner {
+
+	/** The number of idle Mac instances kept per AuthMethod. */
+	private static final int POOL_SIZE = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+	/** The largest string to sign whose buffer is kept with a pooled Mac. Larger ones, with long POST bodies, use a buffer of their own. */
+	private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+
+	private final byte[] key;
+
+	private final Map<AuthMethod, BlockingQueue<Engine>> pools = new EnumMap<AuthMethod, BlockingQueue<Engine>>(AuthMethod.class);
+
+	/**
+	 * The RequestSigner class constructor. Keep the instance for as long as the key is used, so that its pooled Mac instances are shared
+	 * between Requests. A missing key makes a signer that fails to sign, as an empty key does.
+	 *
+	 * @param secret_key [Required] Your TeleSign API Key, as a Base64-encoded string.
+	 */
+	public RequestSigner(String secret_key) {
+
+		key = Base64.decodeBase64(secret_key);
+
+		for (AuthMethod auth : AuthMethod.values()) {
+
+			pools.put(auth, new ArrayBlockingQueue<Engine>(POOL_SIZE));
+		}
+	}
+
+	/**
+	 * Signs a string to sign.
+	 *
+	 * @param auth	[Required] The hash algorithm of the HMAC.
+	 * @param data	[Required] The string to sign.
+	 * @return The Base64-encoded HMAC of the UTF-8 encoding of the data.
+	 * @throws SignatureException If the HMAC could not be computed, for example because the key is empty.
+	 */
+	public String sign(AuthMethod auth, String data) throws SignatureException {
+
+		byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+
+		return sign(auth, bytes, 0, bytes.length);
+	}
+
+	/**
+	 * Signs the UTF-8 encoding of a string to sign.
+	 *
+	 * @param auth		[Required] The hash algorithm of the HMAC.
+	 * @param data		[Required] The buffer that holds the encoded string to sign.
+	 * @param offset	[Required] The index of the first byte to sign.
+	 * @param length	[Required] The number of bytes to sign.
+	 * @return The Base64-encoded HMAC of the bytes.
+	 * @throws SignatureException If the HMAC could not be computed, for example because the key is empty.
+	 */
+	public String sign(AuthMethod auth, byte[] data, int offset, int length) throws SignatureException {
+
+		Engine engine = acquire(auth);
+		String signature = engine.sign(data, offset, length);
+
+		release(auth, engine);
+
+		return signature;
+	}
+
+	/**
+	 * Writes a string to sign into a pooled buffer, and signs it.
+	 *
+	 * @param auth			[Required] The hash algorithm of the HMAC.
+	 * @param signingString	[Required] The parts of the string to sign.
+	 * @return The Base64-encoded HMAC of the UTF-8 encoding of the string to sign.
+	 * @throws SignatureException If the HMAC could not be computed, for example because the key is empty.
+	 */
+	public String sign(AuthMethod auth, SigningString signingString) throws SignatureException {
+
+		Engine engine = acquire(auth);
+		int maxLength = signingString.maxLength();
+		byte[] buffer = engine.buffer;
+
+		if (buffer.length < maxLength) {
+
+			buffer = new byte[Math.max(maxLength, 2 * buffer.length)];
+
+			if (buffer.length <= MAX_RETAINED_BUFFER) {
+
+				engine.buffer = buffer;
+			}
+		}
+
+		String signature = engine.sign(buffer, 0, signingString.writeTo(buffer));
+
+		release(auth, engine);
+
+		return signature;
+	}
+
+	private Engine acquire(AuthMethod auth) throws SignatureException {
+
+		Engine engine = pools.get(auth).poll();
+
+		return (engine != null) ? engine : new Engine(auth);
+	}
+
+	private void release(AuthMethod auth, Engine engine) {
+
+		// A full pool drops the engine, which bounds the idle instances after a burst of concurrent Requests.
+		pools.get(auth).offer(engine);
+	}
+
+	/** An initialized Mac with buffers for its input, its output, and the Base64 encoding of that output. */
+	private class Engine {
+
+		private final Mac mac;
+		private final byte[] digest;
+		private final byte[] encoded;
+		private byte[] buffer = new byte[512];
+
+		Engine(AuthMethod auth) throws SignatureException {
+
+			try {
+
+				mac = Mac.getInstance(auth.value());
+				mac.init(new SecretKeySpec(key, auth.value()));
+			}
+			catch (Exception e) {
+
+				throw new SignatureException("Failed to generate HMAC : " + e.getMessage());
+			}
+
+			digest = new byte[mac.getMacLength()];
+			encoded = new byte[4 * ((digest.length + 2) / 3)];
+		}
+
+		String sign(byte[] data, int offset, int length) throws SignatureException {
+
+			try {
+
+				mac.update(data, offset, length);
+				mac.doFinal(digest, 0);
+			}
+			catch (Exception e) {
+
+				mac.reset();
+
+				throw new SignatureException("Failed to generate HMAC : " + e.getMessage());
+			}
+
+			int count = java.util.Base64.getEncoder().encode(digest, encoded);
+
+			return new String(encoded, 0, count, StandardCharsets.ISO_8859_1);
+		}
+	}
+}
@@ -0,0 +1,372 @@
+package com.telesign.util;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The RequestTemplate class holds the parts of a {@link TeleSignRequest} that are the same for every call to one endpoint: the base
+ * URL and resource, the method, the credentials and their {@link RequestSigner}, the timeouts, the Transport, any static header
+ * fields, the endpoint name under which a {@link RateLimiterRegistry} limits its Requests, their {@link RetryPolicy}, and the
+ * {@link CircuitBreakerRegistry} that holds the breaker of their host and endpoint, and the {@link HedgePolicy} of a GET endpoint.
+ * <p>
+ * A RequestTemplate is immutable, so one instance can be shared by all threads. Each call gets a fresh TeleSignRequest from
+ * {@link #newRequest(String)}, and fills in only its own parameters or body.
+ * </p>
+ */
+public final class RequestTemplate {
+
+	private final String base;
+	private final String resource;
+	private final String method;
+	private final boolean post;
+	private final String customer_id;
+	private final String secret_key;
+	private final RequestSigner signer;
+	private final int connectTimeout;
+	private final int readTimeout;
+	private final String httpsProtocol;
+	private final Transport transport;
+	private final Map<String, String> headers;
+	private final RateLimiterRegistry registry;
+	private final String endpoint;
+	private final String endpointKey;
+	private final String accountKey;
+	private final RetryPolicy retryPolicy;
+	private final CircuitBreakerRegistry breakers;
+	private final String breakerEndpoint;
+	private final String breakerKey;
+	private final HedgePolicy hedgePolicy;
+	private final HedgePolicy.Delay hedgeDelay;
+
+	/**
+	 * The RequestTemplate class constructor.
+	 *
+	 * @param base				[Required] The Base URI, for example https://rest.telesign.com.
+	 * @param resource			[Required] The resource of the endpoint, or the fixed prefix of it when each call appends an identifier.
+	 * @param method			[Required] GET or POST.
+	 * @param customer_id		[Required] Your TeleSign Customer ID.
+	 * @param secret_key		[Required] Your TeleSign Secret Key.
+	 * @param connectTimeout	[Required] The connect timeout, in milliseconds.
+	 * @param readTimeout		[Required] The read timeout, in milliseconds.
+	 * @param httpsProtocol		[Required] The TLS protocol, for example TLSv1.2.
+	 * @param transport			[Required] The Transport that sends the Requests.
+	 */
+	public RequestTemplate(String base, String resource, String method, String customer_id, String secret_key, int connectTimeout, int readTimeout,
+			String httpsProtocol, Transport transport) {
+
+		this(base, resource, method, customer_id, secret_key, new RequestSigner(secret_key), connectTimeout, readTimeout, httpsProtocol, transport);
+	}
+
+	/**
+	 * The RequestTemplate class constructor, with the signer of the Secret Key. The templates of the endpoints of one client share one
+	 * signer, and with it its pooled Mac instances.
+	 *
+	 * @param base				[Required] The Base URI, for example https://rest.telesign.com.
+	 * @param resource			[Required] The resource of the endpoint, or the fixed prefix of it when each call appends an identifier.
+	 * @param method			[Required] GET or POST.
+	 * @param customer_id		[Required] Your TeleSign Customer ID.
+	 * @param secret_key		[Required] Your TeleSign Secret Key.
+	 * @param signer			[Required] The RequestSigner of the Secret Key.
+	 * @param connectTimeout	[Required] The connect timeout, in milliseconds.
+	 * @param readTimeout		[Required] The read timeout, in milliseconds.
+	 * @param httpsProtocol		[Required] The TLS protocol, for example TLSv1.2.
+	 * @param transport			[Required] The Transport that sends the Requests.
+	 */
+	public RequestTemplate(String base, String resource, String method, String customer_id, String secret_key, RequestSigner signer, int connectTimeout,
+			int readTimeout, String httpsProtocol, Transport transport) {
+
+		if (signer == null) {
+
+			throw new IllegalArgumentException("signer must not be null");
+		}
+
+		if (transport == null) {
+
+			throw new IllegalArgumentException("transport must not be null");
+		}
+
+		this.base = base;
+		this.resource = resource;
+		this.post = method.equalsIgnoreCase("post");
+		this.method = post ? "POST" : "GET";
+		this.customer_id = customer_id;
+		this.secret_key = secret_key;
+		this.signer = signer;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.httpsProtocol = httpsProtocol;
+		this.transport = transport;
+		this.headers = Collections.emptyMap();
+		this.registry = null;
+		this.endpoint = null;
+		this.endpointKey = null;
+		this.accountKey = null;
+		this.retryPolicy = null;
+		this.breakers = null;
+		this.breakerEndpoint = null;
+		this.breakerKey = null;
+		this.hedgePolicy = null;
+		this.hedgeDelay = null;
+	}
+
+	/** Copies the resolved settings of a template, and replaces the ones that the {@code with} methods change. */
+	private RequestTemplate(RequestTemplate from, TreeMap<String, String> headers, RateLimiterRegistry registry, String endpoint, RetryPolicy retryPolicy,
+			CircuitBreakerRegistry breakers, String breakerEndpoint, HedgePolicy hedgePolicy, HedgePolicy.Delay hedgeDelay) {
+
+		this.base = from.base;
+		this.resource = from.resource;
+		this.post = from.post;
+		this.method = from.method;
+		this.customer_id = from.customer_id;
+		this.secret_key = from.secret_key;
+		this.signer = from.signer;
+		this.connectTimeout = from.connectTimeout;
+		this.readTimeout = from.readTimeout;
+		this.httpsProtocol = from.httpsProtocol;
+		this.transport = from.transport;
+		this.headers = Collections.unmodifiableMap(headers);
+		this.registry = registry;
+		this.endpoint = endpoint;
+		this.retryPolicy = retryPolicy;
+		this.breakers = breakers;
+		this.breakerEndpoint = breakerEndpoint;
+		this.hedgePolicy = hedgePolicy;
+		this.hedgeDelay = hedgeDelay;
+
+		// The registry keys are built once, so that looking up the limit or the breaker of a Request does not allocate.
+		this.endpointKey = (registry != null) ? RateLimiterRegistry.key(customer_id, endpoint) : null;
+		this.accountKey = (registry != null) ? RateLimiterRegistry.key(customer_id, RateLimiterRegistry.ALL_ENDPOINTS) : null;
+		this.breakerKey = (breakers != null) ? CircuitBreakerRegistry.key(CircuitBreakerRegistry.host(base), breakerEndpoint) : null;
+	}
+
+	/**
+	 * Returns a template that also sets a static Request header field on every Request. This template is not changed.
+	 *
+	 * @param key	[Required] The header field name.
+	 * @param value	[Required] The header field value.
+	 * @return The new RequestTemplate.
+	 */
+	public RequestTemplate withHeader(String key, String value) {
+
+		TreeMap<String, String> copy = new TreeMap<String, String>(headers);
+		copy.put(key, value);
+
+		return new RequestTemplate(this, copy, registry, endpoint, retryPolicy, breakers, breakerEndpoint, hedgePolicy, hedgeDelay);
+	}
+
+	/**
+	 * Returns a template whose Requests wait for a permit of the limit that the registry holds for this endpoint, or for this account.
+	 * The limit is looked up for each Request, so it can be set or changed at any time. This template is not changed.
+	 *
+	 * @param registry	[Required] The registry of limits.
+	 * @param endpoint	[Required] The endpoint name, for example {@link RateLimiterRegistry#VERIFY_SMS}.
+	 * @return The new RequestTemplate.
+	 */
+	public RequestTemplate withRateLimit(RateLimiterRegistry registry, String endpoint) {
+
+		if (registry == null || endpoint == null) {
+
+			throw new IllegalArgumentException("registry and endpoint must not be null");
+		}
+
+		return new RequestTemplate(this, new TreeMap<String, String>(headers), registry, endpoint, retryPolicy, breakers,
+				breakerEndpoint, hedgePolicy, hedgeDelay);
+	}
+
+	/**
+	 * Returns a template whose Requests are retried by a policy. Without one, the Requests keep the default of
+	 * {@link TeleSignRequest#setRetryPolicy(RetryPolicy)}. This template is not changed.
+	 *
+	 * @param retryPolicy [Required] The RetryPolicy of the Requests.
+	 * @return The new RequestTemplate.
+	 */
+	public RequestTemplate withRetryPolicy(RetryPolicy retryPolicy) {
+
+		if (retryPolicy == null) {
+
+			throw new IllegalArgumentException("retryPolicy must not be null");
+		}
+
+		return new RequestTemplate(this, new TreeMap<String, String>(headers), registry, endpoint, retryPolicy, breakers,
+				breakerEndpoint, hedgePolicy, hedgeDelay);
+	}
+
+	/**
+	 * Returns a template whose Requests go through the breaker that the registry holds for the host of this template and an endpoint.
+	 * Each Request is given the breaker when it is created, unless the registry is disabled. This template is not changed.
+	 *
+	 * @param breakers	[Required] The registry of breakers.
+	 * @param endpoint	[Required] The endpoint name, for example {@link RateLimiterRegistry#VERIFY_SMS}.
+	 * @return The new RequestTemplate.
+	 */
+	public RequestTemplate withCircuitBreaker(CircuitBreakerRegistry breakers, String endpoint) {
+
+		if (breakers == null || endpoint == null) {
+
+			throw new IllegalArgumentException("breakers and endpoint must not be null");
+		}
+
+		return new RequestTemplate(this, new TreeMap<String, String>(headers), registry, this.endpoint, retryPolicy, breakers,
+				endpoint, hedgePolicy, hedgeDelay);
+	}
+
+	/**
+	 * Returns a template whose Requests are sent a second time when their Response is late. The template keeps the latencies of its
+	 * endpoint, from which the hedge delay is computed. This template is not changed.
+	 *
+	 * @param hedgePolicy [Required] The HedgePolicy of the Requests.
+	 * @return The new RequestTemplate.
+	 * @throws IllegalArgumentException If this is the template of a POST endpoint, whose Requests must not be sent twice.
+	 */
+	public RequestTemplate withHedging(HedgePolicy hedgePolicy) {
+
+		if (hedgePolicy == null) {
+
+			throw new IllegalArgumentException("hedgePolicy must not be null");
+		}
+
+		if (post) {
+
+			throw new IllegalArgumentException("Only the Requests of a GET endpoint can be hedged");
+		}
+
+		return new RequestTemplate(this, new TreeMap<String, String>(headers), registry, endpoint, retryPolicy, breakers, breakerEndpoint, hedgePolicy,
+				hedgePolicy.newDelay());
+	}
+
+	/**
+	 * Creates a Request for the resource of this template.
+	 *
+	 * @return A new TeleSignRequest, which belongs to the caller.
+	 */
+	public TeleSignRequest newRequest() {
+
+		return newRequest("");
+	}
+
+	/**
+	 * Creates a Request for a resource below the resource of this template.
+	 *
+	 * @param suffix [Required] The text appended to the resource, for example a phone number or a reference ID.
+	 * @return A new TeleSignRequest, which belongs to the caller.
+	 */
+	public TeleSignRequest newRequest(String suffix) {
+
+		TeleSignRequest tr = new TeleSignRequest(this, suffix.isEmpty() ? resource : resource + suffix);
+
+		if (registry != null) {
+
+			tr.setRateLimiter(registry.findByKeys(endpointKey, accountKey));
+		}
+
+		if (retryPolicy != null) {
+
+			tr.setRetryPolicy(retryPolicy);
+		}
+
+		if (hedgePolicy != null) {
+
+			tr.setHedging(hedgePolicy, hedgeDelay);
+		}
+
+		if (breakers != null && breakers.isEnabled()) {
+
+			tr.setCircuitBreaker(breakers.getByKey(breakerKey, breakerEndpoint));
+		}
+
+		for (Map.Entry<String, String> header : headers.entrySet()) {
+
+			tr.addHeader(header.getKey(), header.getValue());
+		}
+
+		return tr;
+	}
+
+	/** @return The Base URI. */
+	public String getBase() {
+
+		return base;
+	}
+
+	/** @return The resource, or its fixed prefix. */
+	public String getResource() {
+
+		return resource;
+	}
+
+	/** @return GET or POST. */
+	public String getMethod() {
+
+		return method;
+	}
+
+	/** @return True for a POST endpoint. */
+	boolean isPost() {
+
+		return post;
+	}
+
+	String getCustomerId() {
+
+		return customer_id;
+	}
+
+	String getSecretKey() {
+
+		return secret_key;
+	}
+
+	RequestSigner getSigner() {
+
+		return signer;
+	}
+
+	/** @return The connect timeout, in milliseconds. */
+	public int getConnectTimeout() {
+
+		return connectTimeout;
+	}
+
+	/** @return The read timeout, in milliseconds. */
+	public int getReadTimeout() {
+
+		return readTimeout;
+	}
+
+	/** @return The TLS protocol. */
+	public String getHttpsProtocol() {
+
+		return httpsProtocol;
+	}
+
+	/** @return The Transport that sends the Requests. */
+	public Transport getTransport() {
+
+		return transport;
+	}
+
+	/** @return The endpoint name under which the Requests are rate limited, or null when they are not. */
+	public String getEndpoint() {
+
+		return endpoint;
+	}
+
+	/** @return The RetryPolicy of the Requests, or null when they keep the default. */
+	public RetryPolicy getRetryPolicy() {
+
+		return retryPolicy;
+	}
+
+	/** @return The HedgePolicy of the Requests, or null when they are not hedged. */
+	public HedgePolicy getHedgePolicy() {
+
+		return hedgePolicy;
+	}
+
+	/** @return The static Request header fields, sorted by name. */
+	public Map<String, String> getHeaders() {
+
+		return headers;
+	}
+}
@@ -0,0 +1,256 @@
+package com.telesign.util;
+
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RetryPolicy class decides whether a {@link TeleSignRequest} is sent again after a failure, and how long it waits first.
+ * <p>
+ * A Request is retried when it could not connect, when its connection was reset or timed out, or when the web service answered with
+ * a 5xx status or 429 Too Many Requests. The waits grow with <em>decorrelated jitter</em>: each one is a random time between the base
+ * delay and three times the previous wait, capped at the maximum delay, so that clients that failed together do not retry together.
+ * A Retry-After header field is honored. A policy may also be given a deadline budget: no attempt starts once it has been spent, and
+ * the connect and read timeouts of each attempt are cut to the rest of the budget, so that an attempt still running at the deadline
+ * fails. The default policy has no deadline, so each attempt keeps the timeouts of its Request.
+ * </p>
+ * <p>
+ * GET Requests are retried by default, because they have no side effect. A POST Request, such as Verify SMS, is only retried when
+ * the idempotency guard is on: the Request then carries the same <em>x-ts-nonce</em> header on every attempt, so the web service
+ * refuses an attempt whose predecessor already arrived, instead of sending a second message.
+ * </p>
+ */
+public final class RetryPolicy {
+
+	/** A policy that never retries. */
+	public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, 0, TimeUnit.MILLISECONDS);
+
+	private static final RetryPolicy DEFAULT = new RetryPolicy(3, 100, 2000, 0, TimeUnit.MILLISECONDS);
+
+	private final int maxAttempts;
+	private final long baseDelayNanos;
+	private final long maxDelayNanos;
+	private final long deadlineNanos;
+	private final boolean retryPosts;
+
+	/**
+	 * Returns the policy of Requests that were not given another one: three attempts of GET Requests, waits between 100 ms and 2 s,
+	 * and no deadline budget, so that every attempt keeps the connect and read timeouts of its Request. POST Requests are not retried.
+	 *
+	 * @return The default RetryPolicy.
+	 */
+	public static RetryPolicy getDefault() {
+
+		return DEFAULT;
+	}
+
+	/**
+	 * The RetryPolicy class constructor. The policy retries GET Requests only.
+	 *
+	 * @param maxAttempts	[Required] The number of attempts, including the first one.
+	 * @param baseDelay		[Required] The shortest wait before an attempt.
+	 * @param maxDelay		[Required] The longest wait before an attempt.
+	 * @param deadline		[Required] The time after the first attempt started, past which no attempt starts or keeps running. The connect and read timeouts of each attempt are cut to the rest of this budget. Zero means no deadline.
+	 * @param unit			[Required] The unit of the delays and of the deadline.
+	 */
+	public RetryPolicy(int maxAttempts, long baseDelay, long maxDelay, long deadline, TimeUnit unit) {
+
+		this(maxAttempts, unit.toNanos(baseDelay), unit.toNanos(maxDelay), unit.toNanos(deadline), false);
+	}
+
+	private RetryPolicy(int maxAttempts, long baseDelayNanos, long maxDelayNanos, long deadlineNanos, boolean retryPosts) {
+
+		if (maxAttempts < 1 || baseDelayNanos < 0 || maxDelayNanos < baseDelayNanos || deadlineNanos < 0) {
+
+			throw new IllegalArgumentException("maxAttempts must be positive, and the delays must be ordered and not negative");
+		}
+
+		this.maxAttempts = maxAttempts;
+		this.baseDelayNanos = baseDelayNanos;
+		this.maxDelayNanos = maxDelayNanos;
+		this.deadlineNanos = deadlineNanos;
+		this.retryPosts = retryPosts;
+	}
+
+	/**
+	 * Returns a policy that also retries POST Requests, guarded by a fixed <em>x-ts-nonce</em> header. This policy is not changed.
+	 *
+	 * @param retryPosts [Required] True to retry POST Requests.
+	 * @return The new RetryPolicy.
+	 */
+	public RetryPolicy withIdempotencyGuard(boolean retryPosts) {
+
+		return new RetryPolicy(maxAttempts, baseDelayNanos, maxDelayNanos, deadlineNanos, retryPosts);
+	}
+
+	/** @return The number of attempts, including the first one. */
+	public int getMaxAttempts() {
+
+		return maxAttempts;
+	}
+
+	/** @return True when POST Requests are retried. */
+	public boolean isIdempotencyGuardEnabled() {
+
+		return retryPosts;
+	}
+
+	/**
+	 * @param post [Required] True for a POST Request.
+	 * @return True when a Request of that method can be retried by this policy.
+	 */
+	public boolean retries(boolean post) {
+
+		return maxAttempts > 1 && (!post || retryPosts);
+	}
+
+	/**
+	 * @param status [Required] An HTTP status code.
+	 * @return True when a Response with that status is worth another attempt.
+	 */
+	public static boolean isRetryable(int status) {
+
+		return status == 429 || status >= 500;
+	}
+
+	/**
+	 * @param error [Required] The error of an attempt.
+	 * @return True when the error is one of a failed connection, which another attempt may not meet.
+	 */
+	public static boolean isRetryable(Throwable error) {
+
+		return error instanceof ConnectException
+				|| error instanceof NoRouteToHostException
+				|| error instanceof UnknownHostException
+				|| error instanceof SocketTimeoutException
+				|| error instanceof SocketException;
+	}
+
+	/**
+	 * Starts counting the attempts of one Request.
+	 *
+	 * @return The state of the attempts, which belongs to the Request.
+	 */
+	public Attempts start() {
+
+		return new Attempts();
+	}
+
+	/** The attempts of one Request: how many were made, the last wait, and the deadline. */
+	public final class Attempts {
+
+		private final long started = System.nanoTime();
+		private int made = 1;
+		private long lastDelayNanos = baseDelayNanos;
+
+		private Attempts() {
+		}
+
+		/** @return The number of attempts made so far. */
+		public int getCount() {
+
+			return made;
+		}
+
+		/**
+		 * Cuts a timeout of the next attempt to the rest of the deadline budget.
+		 *
+		 * @param timeoutMillis [Required] The connect or read timeout of the Request, in milliseconds. Zero means no timeout.
+		 * @return The timeout of the attempt, in milliseconds.
+		 * @throws SocketTimeoutException If the deadline budget has been spent.
+		 */
+		public int timeout(int timeoutMillis) throws SocketTimeoutException {
+
+			if (deadlineNanos == 0) {
+
+				return timeoutMillis;
+			}
+
+			long remaining = TimeUnit.NANOSECONDS.toMillis(started + deadlineNanos - System.nanoTime());
+
+			// Zero would mean no timeout at all, so less than a millisecond left is a spent budget.
+			if (remaining <= 0) {
+
+				throw new SocketTimeoutException("The deadline of the request has passed");
+			}
+
+			return (timeoutMillis == 0 || timeoutMillis > remaining) ? (int) remaining : timeoutMillis;
+		}
+
+		/**
+		 * Decides whether the Request is sent again after a Response.
+		 *
+		 * @param response [Required] The Response of the last attempt.
+		 * @return The time to wait before the next attempt, in nanoseconds, or -1 to keep the Response.
+		 */
+		public long delayAfter(TransportResponse response) {
+
+			if (!isRetryable(response.getStatus())) {
+
+				return -1;
+			}
+
+			return next(retryAfterNanos(response.getHeaders().get("Retry-After")));
+		}
+
+		/**
+		 * Decides whether the Request is sent again after an error.
+		 *
+		 * @param error [Required] The error of the last attempt.
+		 * @return The time to wait before the next attempt, in nanoseconds, or -1 to report the error.
+		 */
+		public long delayAfter(Throwable error) {
+
+			return isRetryable(error) ? next(-1) : -1;
+		}
+
+		private long next(long retryAfterNanos) {
+
+			if (made >= maxAttempts) {
+
+				return -1;
+			}
+
+			// Decorrelated jitter: a random wait between the base delay and three times the last one.
+			long upper = Math.min(maxDelayNanos, Math.max(baseDelayNanos, lastDelayNanos * 3));
+			long delay = (upper > baseDelayNanos) ? ThreadLocalRandom.current().nextLong(baseDelayNanos, upper + 1) : baseDelayNanos;
+
+			if (retryAfterNanos > delay) {
+
+				delay = retryAfterNanos;
+			}
+
+			if (deadlineNanos > 0 && System.nanoTime() + delay - started >= deadlineNanos) {
+
+				return -1;
+			}
+
+			lastDelayNanos = delay;
+			made++;
+
+			return delay;
+		}
+	}
+
+	/** Reads a Retry-After value given in seconds. A date, or a missing value, gives -1. */
+	private static long retryAfterNanos(String retryAfter) {
+
+		if (retryAfter != null) {
+
+			try {
+
+				return TimeUnit.SECONDS.toNanos(Long.parseLong(retryAfter.trim()));
+			}
+			catch (NumberFormatException e) {
+
+				// An HTTP date is not worth parsing for the short waits of a retry.
+			}
+		}
+
+		return -1;
+	}
+}
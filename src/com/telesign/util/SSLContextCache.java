@@ -0,0 +1,363 @@
+package com.telesign.util;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.security.KeyManagementException;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.net.ssl.HandshakeCompletedEvent;
+import javax.net.ssl.HandshakeCompletedListener;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/**
+ * The SSLContextCache class holds one initialized {@link SSLContext}, and one socket factory, per TLS protocol for the whole process.
+ * <p>
+ * Sharing the context means that a single SecureRandom is seeded per protocol, and that every connection uses the same client session
+ * cache, so a reconnect to a TeleSign host can resume its TLS session instead of performing a full handshake. The session cache size,
+ * the session timeout and the enabled cipher suites can be tuned, and the number of full and resumed handshakes is counted.
+ * </p>
+ */
+public class SSLContextCache {
+
+	private static final SSLContextCache DEFAULT = new SSLContextCache();
+
+	private final ConcurrentHashMap<String, SSLContext> contexts = new ConcurrentHashMap<String, SSLContext>();
+
+	private final ConcurrentHashMap<String, SSLSocketFactory> socketFactories = new ConcurrentHashMap<String, SSLSocketFactory>();
+
+	/** The maximum number of cached client sessions per protocol. A negative value keeps the JDK default. */
+	private volatile int sessionCacheSize = -1;
+
+	/** The lifetime of a cached client session, in seconds. A negative value keeps the JDK default. */
+	private volatile int sessionTimeout = -1;
+
+	/** The enabled cipher suites. Null keeps the defaults of the security provider. */
+	private volatile String[] cipherSuites = null;
+
+	private final AtomicLong fullHandshakes = new AtomicLong();
+	private final AtomicLong resumedHandshakes = new AtomicLong();
+
+	/**
+	 * Returns the process-wide cache used by {@link TeleSignRequest}.
+	 *
+	 * @return The default SSLContextCache.
+	 */
+	public static SSLContextCache getDefault() {
+
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns the initialized SSLContext for a protocol, creating it on first use.
+	 *
+	 * @param protocol [Required] The protocol name, for example TLSv1.2.
+	 * @return The shared SSLContext.
+	 * @throws NoSuchAlgorithmException If no security provider supports the protocol.
+	 * @throws KeyManagementException If the context could not be initialized.
+	 */
+	public SSLContext getContext(String protocol) throws NoSuchAlgorithmException, KeyManagementException {
+
+		SSLContext context = contexts.get(protocol);
+
+		if (context == null) {
+
+			SSLContext created = SSLContext.getInstance(protocol);
+			created.init(null, null, new SecureRandom());
+			configureSessions(created.getClientSessionContext());
+
+			context = contexts.putIfAbsent(protocol, created);
+
+			if (context == null) {
+
+				context = created;
+			}
+		}
+
+		return context;
+	}
+
+	/**
+	 * Returns the socket factory for a protocol. The same factory instance is returned for as long as the cipher suites are not changed,
+	 * which lets the JDK hand kept-alive connections to later requests.
+	 *
+	 * @param protocol [Required] The protocol name, for example TLSv1.2.
+	 * @return The shared SSLSocketFactory.
+	 * @throws NoSuchAlgorithmException If no security provider supports the protocol.
+	 * @throws KeyManagementException If the context could not be initialized.
+	 */
+	public SSLSocketFactory getSocketFactory(String protocol) throws NoSuchAlgorithmException, KeyManagementException {
+
+		SSLSocketFactory socketFactory = socketFactories.get(protocol);
+
+		if (socketFactory == null) {
+
+			SSLSocketFactory created = new ConfiguredSocketFactory(getContext(protocol).getSocketFactory(), cipherSuites);
+
+			socketFactory = socketFactories.putIfAbsent(protocol, created);
+
+			if (socketFactory == null) {
+
+				socketFactory = created;
+			}
+		}
+
+		return socketFactory;
+	}
+
+	/**
+	 * Sets the maximum number of client sessions kept for resumption, per protocol. Applies to contexts already created.
+	 *
+	 * @param sessionCacheSize [Required] The number of sessions. Zero means no limit.
+	 */
+	public void setSessionCacheSize(int sessionCacheSize) {
+
+		this.sessionCacheSize = sessionCacheSize;
+
+		for (SSLContext context : contexts.values()) {
+
+			configureSessions(context.getClientSessionContext());
+		}
+	}
+
+	/**
+	 * @return The maximum number of cached client sessions, or -1 when the JDK default is used.
+	 */
+	public int getSessionCacheSize() {
+
+		return sessionCacheSize;
+	}
+
+	/**
+	 * Sets how long a client session may be resumed after it was established. Applies to contexts already created.
+	 *
+	 * @param sessionTimeout [Required] The timeout in seconds. Zero means no limit.
+	 */
+	public void setSessionTimeout(int sessionTimeout) {
+
+		this.sessionTimeout = sessionTimeout;
+
+		for (SSLContext context : contexts.values()) {
+
+			configureSessions(context.getClientSessionContext());
+		}
+	}
+
+	/**
+	 * @return The client session timeout in seconds, or -1 when the JDK default is used.
+	 */
+	public int getSessionTimeout() {
+
+		return sessionTimeout;
+	}
+
+	/**
+	 * Restricts new connections to the given cipher suites. The socket factories are replaced, so connections kept alive by the old
+	 * factories are not reused.
+	 *
+	 * @param cipherSuites [Optional] The cipher suite names, in order of preference. Pass null to restore the provider defaults.
+	 * @throws IllegalArgumentException If a cipher suite is not supported by the default security provider.
+	 */
+	public void setCipherSuites(String... cipherSuites) {
+
+		if (cipherSuites != null) {
+
+			List<String> supported;
+
+			try {
+
+				supported = Arrays.asList(SSLContext.getDefault().getSupportedSSLParameters().getCipherSuites());
+			}
+			catch (NoSuchAlgorithmException e) {
+
+				throw new IllegalStateException("No default SSLContext is available", e);
+			}
+
+			for (String suite : cipherSuites) {
+
+				if (!supported.contains(suite)) {
+
+					throw new IllegalArgumentException("Unsupported cipher suite: " + suite);
+				}
+			}
+
+			cipherSuites = cipherSuites.clone();
+		}
+
+		this.cipherSuites = cipherSuites;
+		socketFactories.clear();
+	}
+
+	/**
+	 * @return The enabled cipher suites, or null when the provider defaults are used.
+	 */
+	public String[] getCipherSuites() {
+
+		String[] suites = cipherSuites;
+
+		return suites == null ? null : suites.clone();
+	}
+
+	/**
+	 * Returns the number of TLS handshakes that established a new session. The handshakes of the sockets from
+	 * {@link #getSocketFactory(String)} and of the {@link NioEngine}s that use this cache are counted. Those of the HttpClient behind
+	 * {@link Http2Engine} are not visible to the SDK.
+	 *
+	 * @return The number of full handshakes.
+	 */
+	public long getFullHandshakeCount() {
+
+		return fullHandshakes.get();
+	}
+
+	/**
+	 * @return The number of TLS handshakes that resumed a cached session, counted like {@link #getFullHandshakeCount()}.
+	 */
+	public long getResumedHandshakeCount() {
+
+		return resumedHandshakes.get();
+	}
+
+	/**
+	 * Counts a completed handshake. A handshake resumed a session when the session is older than the connection that performed it.
+	 *
+	 * @param session			[Required] The session of the connection.
+	 * @param connectionCreated	[Required] The time the connection was created, from System.currentTimeMillis().
+	 */
+	void countHandshake(SSLSession session, long connectionCreated) {
+
+		if (session.getCreationTime() < connectionCreated) {
+
+			resumedHandshakes.incrementAndGet();
+		}
+		else {
+
+			fullHandshakes.incrementAndGet();
+		}
+	}
+
+	private void configureSessions(SSLSessionContext sessions) {
+
+		if (sessionCacheSize >= 0) {
+
+			sessions.setSessionCacheSize(sessionCacheSize);
+		}
+
+		if (sessionTimeout >= 0) {
+
+			sessions.setSessionTimeout(sessionTimeout);
+		}
+	}
+
+	/** Counts the completed handshakes of a socket. */
+	private class HandshakeCounter implements HandshakeCompletedListener {
+
+		private final long socketCreated = System.currentTimeMillis();
+
+		@Override
+		public void handshakeCompleted(HandshakeCompletedEvent event) {
+
+			countHandshake(event.getSession(), socketCreated);
+		}
+	}
+
+	/** A socket factory that applies the configured cipher suites, and the handshake counter, to every socket it creates. */
+	private class ConfiguredSocketFactory extends SSLSocketFactory {
+
+		private final SSLSocketFactory delegate;
+		private final String[] cipherSuites;
+
+		ConfiguredSocketFactory(SSLSocketFactory delegate, String[] cipherSuites) {
+
+			this.delegate = delegate;
+			this.cipherSuites = cipherSuites;
+		}
+
+		private Socket configure(Socket socket) {
+
+			if (socket instanceof SSLSocket) {
+
+				SSLSocket sslSocket = (SSLSocket) socket;
+
+				if (cipherSuites != null) {
+
+					Set<String> supported = new HashSet<String>(Arrays.asList(sslSocket.getSupportedCipherSuites()));
+					String[] enabled = new String[cipherSuites.length];
+					int count = 0;
+
+					for (String suite : cipherSuites) {
+
+						if (supported.contains(suite)) {
+
+							enabled[count++] = suite;
+						}
+					}
+
+					sslSocket.setEnabledCipherSuites(Arrays.copyOf(enabled, count));
+				}
+
+				sslSocket.addHandshakeCompletedListener(new HandshakeCounter());
+			}
+
+			return socket;
+		}
+
+		@Override
+		public String[] getDefaultCipherSuites() {
+
+			return cipherSuites == null ? delegate.getDefaultCipherSuites() : cipherSuites.clone();
+		}
+
+		@Override
+		public String[] getSupportedCipherSuites() {
+
+			return delegate.getSupportedCipherSuites();
+		}
+
+		@Override
+		public Socket createSocket() throws IOException {
+
+			return configure(delegate.createSocket());
+		}
+
+		@Override
+		public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+
+			return configure(delegate.createSocket(s, host, port, autoClose));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+
+			return configure(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+
+			return configure(delegate.createSocket(host, port, localHost, localPort));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+
+			return configure(delegate.createSocket(host, port));
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+
+			return configure(delegate.createSocket(address, port, localAddress, localPort));
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package com.telesign.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The SigningString class holds the parts of the string to sign for the Authorization header, and writes them as UTF-8 in one pass.
+ * <p>
+ * The string to sign is made of the Request method, the Content-Type, the Date, the canonicalized <em>TeleSign-specific</em> headers,
+ * the POST body and the resource, each on its own line. The parts are written straight into a buffer that the {@link RequestSigner}
+ * reuses, so the string itself is never built.
+ * </p>
+ */
+public class SigningString {
+
+	private final String method;
+	private final String contentType;
+	private final String date;
+	private final SortedMap<String, String> tsHeaders;
+	private final String resource;
+
+	private String body;
+	private byte[] bodyBytes;
+
+	/**
+	 * The SigningString class constructor.
+	 *
+	 * @param method		[Required] The Request method, GET or POST.
+	 * @param contentType	[Required] The Content-Type, or an empty string for none.
+	 * @param date			[Required] The value of the Date header, or an empty string when the x-ts-date header is used.
+	 * @param tsHeaders		[Required] The TeleSign-specific headers, sorted by name. The map is read when the string is written.
+	 * @param resource		[Required] The resource URI.
+	 */
+	public SigningString(String method, String contentType, String date, SortedMap<String, String> tsHeaders, String resource) {
+
+		this.method = method;
+		this.contentType = contentType;
+		this.date = date;
+		this.tsHeaders = tsHeaders;
+		this.resource = resource;
+	}
+
+	/**
+	 * Adds the POST body to the string to sign.
+	 *
+	 * @param body [Required] The entity body.
+	 * @return This SigningString.
+	 */
+	public SigningString body(String body) {
+
+		this.body = body;
+		this.bodyBytes = null;
+
+		return this;
+	}
+
+	/**
+	 * Adds a POST body that is already encoded to the string to sign.
+	 *
+	 * @param body [Required] The UTF-8 encoded entity body. The array is not copied.
+	 * @return This SigningString.
+	 */
+	public SigningString body(byte[] body) {
+
+		this.bodyBytes = body;
+		this.body = null;
+
+		return this;
+	}
+
+	/**
+	 * @return An upper bound of the number of bytes that {@link #writeTo(byte[])} writes.
+	 */
+	public int maxLength() {
+
+		int chars = method.length() + contentType.length() + date.length() + resource.length() + 3;
+
+		for (Map.Entry<String, String> header : tsHeaders.entrySet()) {
+
+			chars += header.getKey().length() + header.getValue().length() + 2;
+		}
+
+		int length = 3 * chars;
+
+		if (bodyBytes != null) {
+
+			length += bodyBytes.length + 1;
+		}
+		else if (body != null) {
+
+			length += 3 * body.length() + 1;
+		}
+
+		return length;
+	}
+
+	/**
+	 * Writes the UTF-8 encoding of the string to sign.
+	 *
+	 * @param buffer [Required] A buffer of at least {@link #maxLength()} bytes.
+	 * @return The number of bytes written.
+	 */
+	public int writeTo(byte[] buffer) {
+
+		int position = write(method, false, buffer, 0);
+		buffer[position++] = '\n';
+		position = write(contentType, false, buffer, position);
+		buffer[position++] = '\n';
+		position = write(date, false, buffer, position);
+		buffer[position++] = '\n';
+
+		// Header names are lowercased, and each X-TS- name appears once because the map is keyed by name.
+		for (Map.Entry<String, String> header : tsHeaders.entrySet()) {
+
+			position = write(header.getKey(), true, buffer, position);
+			buffer[position++] = ':';
+			position = write(header.getValue(), false, buffer, position);
+			buffer[position++] = '\n';
+		}
+
+		if (bodyBytes != null) {
+
+			System.arraycopy(bodyBytes, 0, buffer, position, bodyBytes.length);
+			position += bodyBytes.length;
+			buffer[position++] = '\n';
+		}
+		else if (body != null) {
+
+			position = write(body, false, buffer, position);
+			buffer[position++] = '\n';
+		}
+
+		return write(resource, false, buffer, position);
+	}
+
+	/**
+	 * @return The string to sign.
+	 */
+	@Override
+	public String toString() {
+
+		byte[] buffer = new byte[maxLength()];
+
+		return new String(buffer, 0, writeTo(buffer), StandardCharsets.UTF_8);
+	}
+
+	private static int write(String text, boolean lowerCase, byte[] buffer, int position) {
+
+		for (int i = 0; i < text.length(); i++) {
+
+			char c = text.charAt(i);
+
+			if (c < 0x80) {
+
+				buffer[position++] = (byte) ((lowerCase && c >= 'A' && c <= 'Z') ? c + ('a' - 'A') : c);
+			}
+			else if (c < 0x800) {
+
+				buffer[position++] = (byte) (0xc0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+			else if (Character.isHighSurrogate(c) && i + 1 < text.length() && Character.isLowSurrogate(text.charAt(i + 1))) {
+
+				int codePoint = Character.toCodePoint(c, text.charAt(++i));
+
+				buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+			}
+			else if (Character.isSurrogate(c)) {
+
+				// An unpaired surrogate is encoded as '?', like String.getBytes does.
+				buffer[position++] = '?';
+			}
+			else {
+
+				buffer[position++] = (byte) (0xe0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+		}
+
+		return position;
+	}
+}
@@ -0,0 +1,187 @@
+package com.telesign.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The SingleFlight class makes concurrent identical calls share one execution.
+ * <p>
+ * The first caller for a key runs the call; a caller that arrives with the same key while it is in flight waits for it, and gets the
+ * same result, or the same failure. The key is forgotten as soon as the call completes, so a later caller runs the call again: this
+ * removes duplicate Requests without caching anything. The result object is shared by every caller of the flight, and must not be
+ * changed by any of them.
+ * </p>
+ *
+ * @param <K> The key type, which identifies identical calls.
+ * @param <V> The result type.
+ */
+public class SingleFlight<K, V> {
+
+	/** A blocking call. */
+	public interface Call<V> {
+
+		V call() throws IOException;
+	}
+
+	/** A call that does not block. */
+	public interface AsyncCall<V> {
+
+		CompletableFuture<V> start();
+	}
+
+	private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<K, CompletableFuture<V>>();
+
+	private final AtomicLong executed = new AtomicLong();
+	private final AtomicLong shared = new AtomicLong();
+
+	/**
+	 * Runs a call on the calling thread, or waits for the identical call in flight.
+	 *
+	 * @param key	[Required] The key of the call.
+	 * @param call	[Required] The call, run only if no identical call is in flight.
+	 * @return The result of the call.
+	 * @throws IOException The failure of the call, or an InterruptedIOException if the thread is interrupted while it waits.
+	 */
+	public V execute(K key, Call<V> call) throws IOException {
+
+		CompletableFuture<V> flight = new CompletableFuture<V>();
+		CompletableFuture<V> current = flights.putIfAbsent(key, flight);
+
+		if (current != null) {
+
+			shared.incrementAndGet();
+
+			return await(current);
+		}
+
+		executed.incrementAndGet();
+
+		V result;
+
+		try {
+
+			result = call.call();
+		}
+		catch (IOException | RuntimeException | Error e) {
+
+			flights.remove(key, flight);
+			flight.completeExceptionally(e);
+
+			throw e;
+		}
+
+		// The key is removed first, so that a caller arriving after the result starts a call of its own.
+		flights.remove(key, flight);
+		flight.complete(result);
+
+		return result;
+	}
+
+	/**
+	 * Starts a call, or joins the identical call in flight.
+	 *
+	 * @param key	[Required] The key of the call.
+	 * @param call	[Required] The call, started only if no identical call is in flight.
+	 * @return A CompletableFuture of the result. Each caller gets its own, so cancelling it does not cancel the shared call.
+	 */
+	public CompletableFuture<V> executeAsync(final K key, AsyncCall<V> call) {
+
+		final CompletableFuture<V> flight = new CompletableFuture<V>();
+		CompletableFuture<V> current = flights.putIfAbsent(key, flight);
+
+		if (current != null) {
+
+			shared.incrementAndGet();
+
+			return current.copy();
+		}
+
+		executed.incrementAndGet();
+
+		CompletableFuture<V> started;
+
+		try {
+
+			started = call.start();
+		}
+		catch (RuntimeException e) {
+
+			started = Futures.failed(e);
+		}
+
+		started.whenComplete((result, error) -> {
+
+			flights.remove(key, flight);
+
+			if (error != null) {
+
+				flight.completeExceptionally((error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error);
+			}
+			else {
+
+				flight.complete(result);
+			}
+		});
+
+		return flight.copy();
+	}
+
+	/** @return The number of calls in flight. */
+	public int getInFlightCount() {
+
+		return flights.size();
+	}
+
+	/** @return The number of calls that were run. */
+	public long getExecutedCount() {
+
+		return executed.get();
+	}
+
+	/** @return The number of callers that shared a call in flight instead of running their own. */
+	public long getSharedCount() {
+
+		return shared.get();
+	}
+
+	/** Waits for a shared call. Unlike {@link Futures#await(CompletableFuture)}, an interrupted caller leaves the call to the others. */
+	private static <V> V await(CompletableFuture<V> flight) throws IOException {
+
+		try {
+
+			return flight.get();
+		}
+		catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("Interrupted while waiting for an identical request");
+		}
+		catch (ExecutionException e) {
+
+			Throwable cause = e.getCause();
+
+			if (cause instanceof IOException) {
+
+				throw (IOException) cause;
+			}
+
+			if (cause instanceof RuntimeException) {
+
+				throw (RuntimeException) cause;
+			}
+
+			if (cause instanceof Error) {
+
+				throw (Error) cause;
+			}
+
+			throw new IOException(cause);
+		}
+	}
+}
@@ -0,0 +1,173 @@
+package com.telesign.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The TeleSignExecutors class holds the executor that runs the asynchronous <em>Verify</em> and <em>PhoneID</em> calls when the caller
+ * does not supply one.
+ * <p>
+ * The default executor is a cached pool of daemon threads, created on first use, so an idle application keeps no threads alive.
+ * </p>
+ * <p>
+ * On a JDK with virtual threads, the calls can instead run one virtual thread per call, either by setting the system property
+ * <em>{@value #VIRTUAL_THREADS_PROPERTY}</em> to true before the first asynchronous call, or by calling {@link #useVirtualThreads()}.
+ * The blocking API then costs no platform thread while a request waits on the network.
+ * </p>
+ */
+public class TeleSignExecutors {
+
+	/** The system property that makes the default executor run each call on its own virtual thread. */
+	public static final String VIRTUAL_THREADS_PROPERTY = "com.telesign.virtualThreads";
+
+	private static volatile Executor defaultExecutor;
+
+	private TeleSignExecutors() {
+	}
+
+	/**
+	 * Returns the executor used for asynchronous calls that were not given an executor of their own.
+	 *
+	 * @return The default Executor.
+	 */
+	public static Executor getDefault() {
+
+		Executor executor = defaultExecutor;
+
+		if (executor == null) {
+
+			synchronized (TeleSignExecutors.class) {
+
+				if (defaultExecutor == null) {
+
+					defaultExecutor = newDefaultExecutor();
+				}
+
+				executor = defaultExecutor;
+			}
+		}
+
+		return executor;
+	}
+
+	private static ExecutorService newDefaultExecutor() {
+
+		if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+
+			try {
+
+				return newVirtualThreadPerTaskExecutor();
+			}
+			catch (UnsupportedOperationException e) {
+
+				System.err.println(VIRTUAL_THREADS_PROPERTY + " is set, but virtual threads are unavailable (" + e.getMessage() + "); using platform threads");
+			}
+		}
+
+		return newCachedPool("telesign-async");
+	}
+
+	/**
+	 * Replaces the default executor, for example with an application-wide pool.
+	 *
+	 * @param executor [Required] The Executor to run asynchronous calls on.
+	 */
+	public static void setDefault(Executor executor) {
+
+		if (executor == null) {
+
+			throw new IllegalArgumentException("executor must not be null");
+		}
+
+		defaultExecutor = executor;
+	}
+
+	/**
+	 * Makes the default executor run each call on its own virtual thread.
+	 *
+	 * @throws UnsupportedOperationException If the running JDK has no virtual threads.
+	 */
+	public static void useVirtualThreads() {
+
+		setDefault(newVirtualThreadPerTaskExecutor());
+	}
+
+	/**
+	 * @return True if the running JDK has the virtual thread API. On JDK 19 and 20 it is a preview feature that may not be enabled.
+	 */
+	public static boolean isVirtualThreadSupported() {
+
+		return virtualThreadFactoryMethod() != null;
+	}
+
+	/**
+	 * Creates an executor that starts a new virtual thread for each task. The method is looked up at run time, so the library
+	 * still runs on JDKs without virtual threads.
+	 *
+	 * @return A new ExecutorService.
+	 * @throws UnsupportedOperationException If the running JDK has no virtual threads.
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor() {
+
+		Method factory = virtualThreadFactoryMethod();
+
+		if (factory == null) {
+
+			throw new UnsupportedOperationException("Virtual threads require JDK 21 or later; running on " + System.getProperty("java.version"));
+		}
+
+		try {
+
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch (IllegalAccessException e) {
+
+			throw new UnsupportedOperationException("Virtual threads are not available", e);
+		}
+		catch (InvocationTargetException e) {
+
+			// Thrown on JDK 19 and 20, where virtual threads are a preview feature that was not enabled.
+			throw new UnsupportedOperationException("Virtual threads are not enabled", e.getCause());
+		}
+	}
+
+	private static Method virtualThreadFactoryMethod() {
+
+		try {
+
+			return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+		}
+		catch (NoSuchMethodException e) {
+
+			return null;
+		}
+	}
+
+	/**
+	 * Creates a cached thread pool whose threads are daemon threads named after the given prefix.
+	 *
+	 * @param prefix [Required] The thread name prefix.
+	 * @return A new ExecutorService.
+	 */
+	static ExecutorService newCachedPool(final String prefix) {
+
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable) {
+
+				Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+
+				return thread;
+			}
+		});
+	}
+}
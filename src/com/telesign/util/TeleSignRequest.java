@@ -9,31 +9,29 @@
  */
 package com.telesign.util;
 
-import java.io.BufferedReader;
-import java.io.DataOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.InterruptedIOException;
 import java.net.URL;
 import java.net.URLEncoder;
-import java.security.KeyManagementException;
-import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
+import java.nio.charset.StandardCharsets;
 import java.security.SignatureException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.Locale;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Set;
 import java.util.TreeMap;
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.commons.codec.binary.Base64;
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.stream.JsonReader;
 
 /** The TeleSignRequest class is an abstraction for creating and sending HTTP 1.1 REST Requests for TeleSign web services. */
 public class TeleSignRequest {
@@ -64,12 +62,12 @@ public class TeleSignRequest {
 	/** The <em>absolute form</em> of the Resource URI */
 	private URL url;
 
-	/** The persistent session connection for the Request. */
-	private HttpURLConnection connection;
-
 	/** The contents of the entity body in the POST Request. */
 	private String body = "";
 
+	/** The encoded entity body, when it was set from a {@link FormBody}. */
+	private byte[] bodyBytes;
+
 	/** A boolean value that indicates whether the <em>TeleSign-specific</em> <strong>Date</strong> Request header field is used. */
 	private boolean ts_date = false;
 
@@ -84,6 +82,30 @@ public class TeleSignRequest {
     
     private String httpsProtocol = "TLSv1.2";
 
+	/** The Transport that sends this Request. Shared by all Requests unless set otherwise. */
+	private Transport transport = UrlConnectionTransport.getDefault();
+
+	/** The limiter that this Request takes a permit from before it is sent. Null means no limit. */
+	private RateLimiter rateLimiter;
+
+	/** The policy that decides whether this Request is sent again after a failure. */
+	private RetryPolicy retryPolicy = RetryPolicy.getDefault();
+
+	/** The breaker that lets this Request through, and records its outcome. Null means no breaker. */
+	private CircuitBreaker circuitBreaker;
+
+	/** The policy that sends this GET Request a second time when it is late. Null means no hedging. */
+	private HedgePolicy hedgePolicy;
+
+	/** The latencies of the endpoint of this Request, which set the hedge delay. */
+	private HedgePolicy.Delay hedgeDelay;
+
+	/** The signer of a Request created from a {@link RequestTemplate}. Otherwise the Request creates its own signer when it is signed. */
+	private RequestSigner signer;
+
+	/** True when the <em>x-ts-date</em> header was set for the Transport rather than by the caller, and must be refreshed on each execution. */
+	private boolean generated_ts_date = false;
+
 
 	/**
 	 * The TeleSitgnRequest class constructor. A TeleSitgnRequest object
@@ -254,6 +276,31 @@ public class TeleSignRequest {
 		params = new HashMap<String, String>();
 	}
 
+	/**
+	 * Creates a Request from the resolved settings of a {@link RequestTemplate}.
+	 *
+	 * @param template	[Required] The template of the endpoint.
+	 * @param resource	[Required] The full resource of this Request.
+	 */
+	TeleSignRequest(RequestTemplate template, String resource) {
+
+		this.base = template.getBase();
+		this.resource = resource;
+		this.customer_id = template.getCustomerId();
+		this.secret_key = template.getSecretKey();
+		this.signer = template.getSigner();
+		this.connectTimeout = template.getConnectTimeout();
+		this.readTimeout = template.getReadTimeout();
+		this.httpsProtocol = template.getHttpsProtocol();
+		this.transport = template.getTransport();
+
+		post = template.isPost();
+
+		ts_headers = new TreeMap<String, String>();
+		headers = new TreeMap<String, String>();
+		params = new HashMap<String, String>();
+	}
+
 	/**
 	 * Adds an HTTP 1.1 request header field/value pair to the set of request
 	 * headers.
@@ -268,10 +315,10 @@ public class TeleSignRequest {
 	public void addHeader(String key, String value) {
 
 		// Check to see if this request header field is a "TeleSign-specific" header field.
-		if ((key.length() > 4) && (key.toLowerCase().substring(0, 5).equals("x-ts-"))) {
+		if (key.regionMatches(true, 0, "x-ts-", 0, 5)) {
 
 			// If using the TeleSign-specific date header, then use a blank line for the standard Date Request header.
-			if (key.toLowerCase().equals("x-ts-date")) {
+			if (key.equalsIgnoreCase("x-ts-date")) {
 
 				ts_date = true;
 			}
@@ -310,6 +357,21 @@ public class TeleSignRequest {
 	public void setPostBody(String post_body) {
 
 		body = post_body;
+		bodyBytes = null;
+	}
+
+	/**
+	 * Sets the entity body of an HTTP 1.1 POST Request message from a form
+	 * that is already encoded, so that its bytes are sent as they are.
+	 *
+	 * @param post_body
+	 *			[Required] The form that makes up the POST Request's entity
+	 *			body.
+	 */
+	public void setPostBody(FormBody post_body) {
+
+		bodyBytes = post_body.toByteArray();
+		body = post_body.toString();
 	}
 
 	/**
@@ -361,6 +423,131 @@ public class TeleSignRequest {
 		return params;
 	}
 
+	/**
+	 * Sets the pool that bounds the connections opened by this request, by sending it with a {@link UrlConnectionTransport}
+	 * over that pool. By default every request uses {@link ConnectionPool#getDefault()}.
+	 *
+	 * @param connectionPool [Required] The ConnectionPool to lease connections from.
+	 */
+	public void setConnectionPool(ConnectionPool connectionPool) {
+
+		this.transport = new UrlConnectionTransport(connectionPool);
+	}
+
+	/**
+	 * Sets the Transport that sends this request.
+	 * By default every request is sent by {@link UrlConnectionTransport#getDefault()}.
+	 *
+	 * @param transport [Required] The Transport to use.
+	 */
+	public void setTransport(Transport transport) {
+
+		if (transport == null) {
+
+			throw new IllegalArgumentException("transport must not be null");
+		}
+
+		this.transport = transport;
+	}
+
+	/**
+	 * @return The Transport that sends this request.
+	 */
+	public Transport getTransport() {
+
+		return transport;
+	}
+
+	/**
+	 * Sets the limiter that this request takes a permit from before it is sent.
+	 * Requests created by Verify and PhoneId get the limiter of their endpoint from {@link RateLimiterRegistry#getDefault()}.
+	 *
+	 * @param rateLimiter [Optional] The RateLimiter to use. Set this value to null to send without a limit.
+	 */
+	public void setRateLimiter(RateLimiter rateLimiter) {
+
+		this.rateLimiter = rateLimiter;
+	}
+
+	/**
+	 * @return The limiter that this request takes a permit from, or null.
+	 */
+	public RateLimiter getRateLimiter() {
+
+		return rateLimiter;
+	}
+
+	/**
+	 * Sets the policy that decides whether this request is sent again after a connection failure, or a 5xx or 429 Response.
+	 * By default a GET request is retried with {@link RetryPolicy#getDefault()}, and a POST request is sent once. The default policy
+	 * has no deadline; a policy with one cuts the connect and read timeouts of this request to the rest of its budget on every attempt.
+	 *
+	 * @param retryPolicy [Required] The RetryPolicy to use, or {@link RetryPolicy#NONE} to send the request once.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+
+		if (retryPolicy == null) {
+
+			throw new IllegalArgumentException("retryPolicy must not be null");
+		}
+
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * @return The policy that decides whether this request is sent again.
+	 */
+	public RetryPolicy getRetryPolicy() {
+
+		return retryPolicy;
+	}
+
+	/**
+	 * Sets the breaker that this request goes through. While the breaker is open, the request is not sent: it gets the body of the
+	 * {@link CircuitBreaker.Fallback} of the breaker, or fails with a {@link CircuitBreakerOpenException}.
+	 * Requests created by Verify and PhoneId get the breaker of their host and endpoint from {@link CircuitBreakerRegistry#getDefault()}.
+	 *
+	 * @param circuitBreaker [Optional] The CircuitBreaker to use. Set this value to null to send without a breaker.
+	 */
+	public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+
+		this.circuitBreaker = circuitBreaker;
+	}
+
+	/**
+	 * @return The breaker that this request goes through, or null.
+	 */
+	public CircuitBreaker getCircuitBreaker() {
+
+		return circuitBreaker;
+	}
+
+	/**
+	 * Sets the policy that sends this request a second time when its Response is late. A POST request is never hedged.
+	 * The hedge delay follows the latencies of all the requests given this policy by this method; requests created from a
+	 * {@link RequestTemplate} keep the latencies of their endpoint instead.
+	 *
+	 * @param hedgePolicy [Optional] The HedgePolicy to use. Set this value to null to send the request once.
+	 */
+	public void setHedgePolicy(HedgePolicy hedgePolicy) {
+
+		setHedging(hedgePolicy, (hedgePolicy != null) ? hedgePolicy.sharedDelay() : null);
+	}
+
+	void setHedging(HedgePolicy hedgePolicy, HedgePolicy.Delay hedgeDelay) {
+
+		this.hedgePolicy = hedgePolicy;
+		this.hedgeDelay = hedgeDelay;
+	}
+
+	/**
+	 * @return The policy that hedges this request, or null.
+	 */
+	public HedgePolicy getHedgePolicy() {
+
+		return hedgePolicy;
+	}
+
 	/**
 	 * Creates and sends the REST request.
 	 *
@@ -370,10 +557,467 @@ public class TeleSignRequest {
 	 *			 error occurred while attempting to sign the Request.
 	 */
 	public String executeRequest() throws IOException {
+
+		TransportResponse response = send();
+
+		if (response == null) {
+
+			return null;
+		}
+
+		return readBody(response);
+	}
+
+	/**
+	 * Creates and sends the REST request, and parses the JSON-formatted Response into an object of the given type.
+	 * The body is decoded as UTF-8 and parsed as it arrives, without building an intermediate String.
+	 *
+	 * @param gson
+	 *			[Required] The Gson instance that parses the Response.
+	 * @param responseType
+	 *			[Required] The class of the object to parse the Response into.
+	 * @return The parsed Response, or null if the request could not be signed or the Response has no body.
+	 * @throws IOException
+	 *			 If the request could not be sent, or the Response could not be read.
+	 */
+	public <T> T executeRequest(Gson gson, Class<T> responseType) throws IOException {
+
+		TransportResponse response = send();
+
+		if (response == null) {
+
+			return null;
+		}
+
+		return parse(response, gson, responseType);
+	}
+
+	/**
+	 * Creates and sends the REST request without blocking the calling thread.
+	 * The request is signed on the calling thread. Transports that do not block, such as {@link NioEngine}, hold no thread while the
+	 * request is in flight; otherwise the blocking request runs on {@link TeleSignExecutors#getDefault()}.
+	 *
+	 * @return A CompletableFuture that completes with the TeleSign web server's Response.
+	 */
+	public CompletableFuture<String> executeRequestAsync() {
+
+		return executeRequestAsync(TeleSignExecutors.getDefault());
+	}
+
+	/**
+	 * Creates and sends the REST request without blocking the calling thread.
+	 * The request is signed on the calling thread. Transports that do not block, such as {@link NioEngine}, hold no thread while the
+	 * request is in flight; otherwise the blocking request runs on the given executor.
+	 *
+	 * @param executor
+	 *			[Required] The Executor that runs the request when the Transport blocks.
+	 * @return A CompletableFuture that completes with the TeleSign web server's Response.
+	 */
+	public CompletableFuture<String> executeRequestAsync(final Executor executor) {
+
+		return sendAsync(executor).thenApply(response -> {
+
+			try {
+
+				return (response == null) ? null : readBody(response);
+			}
+			catch (IOException e) {
+
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	/**
+	 * Creates and sends the REST request without blocking the calling thread, and parses the JSON-formatted Response into an object
+	 * of the given type, without building an intermediate String.
+	 *
+	 * @param gson
+	 *			[Required] The Gson instance that parses the Response.
+	 * @param responseType
+	 *			[Required] The class of the object to parse the Response into.
+	 * @param executor
+	 *			[Required] The Executor that runs the request when the Transport blocks.
+	 * @return A CompletableFuture that completes with the parsed Response.
+	 */
+	public <T> CompletableFuture<T> executeRequestAsync(final Gson gson, final Class<T> responseType, final Executor executor) {
+
+		return sendAsync(executor).thenApply(response -> {
+
+			try {
+
+				return (response == null) ? null : parse(response, gson, responseType);
+			}
+			catch (IOException e) {
+
+				throw new CompletionException(e);
+			}
+		});
+	}
+
+	/**
+	 * Sends the request, making as many attempts as the retry policy allows. Each attempt takes its own rate limit permit, and is
+	 * signed again, so that its date is current.
+	 *
+	 * @return The Response of the last attempt, or null if the request could not be signed.
+	 * @throws IOException
+	 *			 The error of the last attempt.
+	 */
+	private TransportResponse send() throws IOException {
+
+		try {
+
+			return sendWithRetries();
+		}
+		catch (CircuitBreakerOpenException e) {
+
+			return fallback(e);
+		}
+	}
+
+	private TransportResponse sendWithRetries() throws IOException {
+
+		RetryPolicy.Attempts attempts = startAttempts();
+
+		while (true) {
+
+			acquirePermit();
+
+			TransportRequest request = prepareRequest(attempts);
+
+			if (request == null) {
+
+				return null;
+			}
+
+			long delay;
+
+			try {
+
+				TransportResponse response = sendThroughBreaker(request);
+
+				if (attempts == null || (delay = attempts.delayAfter(response)) < 0) {
+
+					return response;
+				}
+
+				response.close();
+			}
+			catch (IOException e) {
+
+				if (attempts == null || (delay = attempts.delayAfter(e)) < 0) {
+
+					throw e;
+				}
+			}
+
+			pause(delay);
+		}
+	}
+
+	private CompletableFuture<TransportResponse> sendAsync(Executor executor) {
+
+		return sendAsync(executor, startAttempts()).handle((response, error) -> {
+
+			Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+
+			if (cause instanceof CircuitBreakerOpenException) {
+
+				try {
+
+					return CompletableFuture.completedFuture(fallback((CircuitBreakerOpenException) cause));
+				}
+				catch (CircuitBreakerOpenException e) {
+
+					return Futures.<TransportResponse>failed(e);
+				}
+			}
+
+			return (error != null) ? Futures.<TransportResponse>failed(error) : CompletableFuture.completedFuture(response);
+		}).thenCompose(next -> next);
+	}
+
+	private CompletableFuture<TransportResponse> sendAsync(final Executor executor, final RetryPolicy.Attempts attempts) {
+
+		CompletableFuture<TransportResponse> attempt;
+
+		if (rateLimiter != null) {
+
+			// The Request is signed once its permit is due, so that its date is current.
+			attempt = rateLimiter.acquireAsync().thenCompose(permit -> attemptAsync(executor, attempts));
+		}
+		else {
+
+			attempt = attemptAsync(executor, attempts);
+		}
+
+		if (attempts == null) {
+
+			return attempt;
+		}
+
+		return attempt.handle((response, error) -> {
+
+			long delay;
+
+			if (error != null) {
+
+				Throwable cause = (error instanceof CompletionException && error.getCause() != null) ? error.getCause() : error;
+
+				if ((delay = attempts.delayAfter(cause)) < 0) {
+
+					return Futures.<TransportResponse>failed(cause);
+				}
+			}
+			else if (response == null || (delay = attempts.delayAfter(response)) < 0) {
+
+				return CompletableFuture.completedFuture(response);
+			}
+			else {
+
+				closeQuietly(response);
+			}
+
+			return CompletableFuture.runAsync(() -> { }, CompletableFuture.delayedExecutor(delay, TimeUnit.NANOSECONDS))
+					.thenCompose(ignored -> sendAsync(executor, attempts));
+		}).thenCompose(next -> next);
+	}
+
+	private CompletableFuture<TransportResponse> attemptAsync(Executor executor, RetryPolicy.Attempts attempts) {
+
+		TransportRequest request;
+
+		try {
+
+			request = prepareRequest(attempts);
+		}
+		catch (IOException e) {
+
+			return Futures.failed(e);
+		}
+
+		if (request == null) {
+
+			return CompletableFuture.completedFuture(null);
+		}
+
+		final CircuitBreaker breaker = circuitBreaker;
+
+		if (breaker == null) {
+
+			return sendOnceAsync(request, executor);
+		}
+
+		if (!breaker.tryAcquirePermission()) {
+
+			return Futures.failed(new CircuitBreakerOpenException(breaker));
+		}
+
+		final long started = System.nanoTime();
+		CompletableFuture<TransportResponse> sent;
+
+		try {
+
+			sent = sendOnceAsync(request, executor);
+		}
+		catch (RuntimeException e) {
+
+			breaker.record(System.nanoTime() - started, true);
+
+			throw e;
+		}
+
+		return sent.whenComplete((response, error) -> breaker.record(System.nanoTime() - started, error != null || response.getStatus() >= 500));
+	}
+
+	/**
+	 * Sends one attempt through the breaker of this request, if it has one, and records its outcome.
+	 *
+	 * @throws CircuitBreakerOpenException
+	 *			 If the breaker is open.
+	 */
+	private TransportResponse sendThroughBreaker(TransportRequest request) throws IOException {
+
+		CircuitBreaker breaker = circuitBreaker;
+
+		if (breaker == null) {
+
+			return sendOnce(request);
+		}
+
+		if (!breaker.tryAcquirePermission()) {
+
+			throw new CircuitBreakerOpenException(breaker);
+		}
+
+		long started = System.nanoTime();
+		boolean failed = true;
+
+		try {
+
+			TransportResponse response = sendOnce(request);
+			failed = response.getStatus() >= 500;
+
+			return response;
+		}
+		finally {
+
+			breaker.record(System.nanoTime() - started, failed);
+		}
+	}
+
+	/** Sends one attempt, hedged if this is a GET request with a HedgePolicy. A hedged Response is already buffered. */
+	private TransportResponse sendOnce(TransportRequest request) throws IOException {
+
+		if (hedgePolicy != null && !post) {
+
+			return Futures.await(hedgePolicy.send(transport, request, TeleSignExecutors.getDefault(), hedgeDelay));
+		}
+
+		return transport.send(request);
+	}
+
+	private CompletableFuture<TransportResponse> sendOnceAsync(TransportRequest request, Executor executor) {
+
+		if (hedgePolicy != null && !post) {
+
+			return hedgePolicy.send(transport, request, executor, hedgeDelay);
+		}
+
+		return transport.sendAsync(request, executor);
+	}
+
+	/**
+	 * Answers a request that an open breaker did not let through. This is done once the attempts have ended, so that the retry
+	 * policy never sees the answer of a Fallback.
+	 *
+	 * @return The Response built from the body of the Fallback. Its status is 503, as the web service did not answer.
+	 * @throws CircuitBreakerOpenException
+	 *			 The given exception, if the breaker has no Fallback, or the Fallback has no body for the request.
+	 */
+	private TransportResponse fallback(CircuitBreakerOpenException open) throws CircuitBreakerOpenException {
+
+		CircuitBreaker.Fallback fallback = open.getBreaker().getFallback();
+		String body = (fallback != null) ? fallback.respond(resource) : null;
+
+		if (body == null) {
+
+			throw open;
+		}
+
+		return new TransportResponse(503, Collections.<String, String>emptyMap(), body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Starts counting the attempts of this request, when its retry policy may send it more than once. A POST request that is retried
+	 * gets a fixed nonce first, so that the web service can refuse a repeated attempt whose predecessor already arrived.
+	 *
+	 * @return The state of the attempts, or null when the request is sent once.
+	 */
+	private RetryPolicy.Attempts startAttempts() {
+
+		if (!retryPolicy.retries(post)) {
+
+			return null;
+		}
+
+		if (post && !hasNonce()) {
+
+			setNonce(UUID.randomUUID().toString());
+		}
+
+		return retryPolicy.start();
+	}
+
+	private boolean hasNonce() {
+
+		for (String key : ts_headers.keySet()) {
+
+			if (key.equalsIgnoreCase("x-ts-nonce")) {
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Waits between two attempts.
+	 *
+	 * @throws InterruptedIOException
+	 *			 If the thread is interrupted while it waits.
+	 */
+	private static void pause(long delayNanos) throws InterruptedIOException {
+
+		try {
+
+			TimeUnit.NANOSECONDS.sleep(delayNanos);
+		}
+		catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+
+			throw new InterruptedIOException("Interrupted while waiting to retry the request");
+		}
+	}
+
+	private static void closeQuietly(TransportResponse response) {
+
+		try {
+
+			response.close();
+		}
+		catch (IOException e) {
+
+			// The Response is discarded; a connection that cannot be closed cleanly is not reused.
+		}
+	}
+
+	/**
+	 * Waits for a permit of the rate limiter, if this request has one.
+	 *
+	 * @throws InterruptedIOException
+	 *			 If the thread is interrupted while it waits.
+	 */
+	private void acquirePermit() throws InterruptedIOException {
+
+		if (rateLimiter != null) {
+
+			try {
+
+				rateLimiter.acquire();
+			}
+			catch (InterruptedException e) {
+
+				Thread.currentThread().interrupt();
+
+				throw new InterruptedIOException("Interrupted while waiting for a rate limit permit");
+			}
+		}
+	}
+
+	/**
+	 * Signs the request, and builds the message that the Transport sends.
+	 * This is a <em>helper method</em>, used internally by the {@link TeleSignRequest#executeRequest()} method.
+	 *
+	 * @param attempts	[Optional] The attempts of a retried request, whose deadline budget caps the timeouts. Null when it is sent once.
+	 * @return The signed request, or null if the request could not be signed.
+	 * @throws IOException
+	 *			 If the URL is malformed, or if the deadline budget of the attempts has been spent.
+	 */
+	private TransportRequest prepareRequest(RetryPolicy.Attempts attempts) throws IOException {
+
+		// A Transport that cannot send the Date header gets the TeleSign-specific date instead, refreshed on each execution.
+		if (!transport.acceptsDateHeader() && (!ts_date || generated_ts_date)) {
+
+			addHeader("x-ts-date", HttpDateClock.getDefault().now());
+			generated_ts_date = true;
+		}
+
 		setSigningMethod(auth);
-		String signingString = getSigningString(customer_id);
+		SigningString signingString = getSigningString(customer_id);
 		String signature;
-		String url_output = "";
 
 		// Create the absolute form of the resource URI, and place it in a string buffer.
 		StringBuffer full_url = new StringBuffer(base).append(resource);
@@ -408,63 +1052,74 @@ public class TeleSignRequest {
 			return null;
 		}
 
-		String auth_header = "TSA " + customer_id + ":" + signature;
+		Map<String, String> requestHeaders = new LinkedHashMap<String, String>();
+		requestHeaders.put("Authorization", "TSA " + customer_id + ":" + signature);
 
-		connection = (HttpURLConnection) url.openConnection();
-		connection.setConnectTimeout(connectTimeout);
-		connection.setReadTimeout(readTimeout);
-		connection.setRequestProperty("Authorization", auth_header);
-		setTLSProtocol();
-		
+		// The content type is part of the signature, so it is sent explicitly rather than left to the Transport.
 		if (post) {
 
-			connection.setRequestProperty("Content-Length", Integer.toString(body.length()));
+			requestHeaders.put("Content-Type", "application/x-www-form-urlencoded");
 		}
 
-		for (String key : ts_headers.keySet()){
+		requestHeaders.putAll(ts_headers);
+		requestHeaders.putAll(headers);
 
-			connection.setRequestProperty(key, ts_headers.get(key));
-		}
+		byte[] entity = null;
 
+		if (post) {
+
+			entity = (bodyBytes != null) ? bodyBytes : body.getBytes(StandardCharsets.UTF_8);
+		}
 
-		for (String key : headers.keySet()) {
+		if (attempts == null) {
 
-			connection.setRequestProperty(key, headers.get(key));
+			return new TransportRequest(post ? "POST" : "GET", url, requestHeaders, entity, connectTimeout, readTimeout, httpsProtocol);
 		}
 
-		if (post) {
+		return new TransportRequest(post ? "POST" : "GET", url, requestHeaders, entity, attempts.timeout(connectTimeout), attempts.timeout(readTimeout),
+				httpsProtocol);
+	}
+
+	/**
+	 * Reads the body of a Response to the end, and closes it, so that the Transport can reuse the connection.
+	 * The body is decoded as UTF-8 once it has been read in full.
+	 */
+	private static String readBody(TransportResponse response) throws IOException {
+
+		ByteArrayOutputStream url_output = new ByteArrayOutputStream(512);
 
-			connection.setDoOutput(true);
-			DataOutputStream wr = new DataOutputStream(connection.getOutputStream());
+		try (InputStream in = response.getBody()) {
 
-			wr.writeBytes(body);
-			wr.flush();
-			wr.close();
+			byte[] buffer = new byte[2048];
+
+			for (int count; (count = in.read(buffer)) != -1; ) {
+
+				url_output.write(buffer, 0, count);
+			}
 		}
 
-		int response = connection.getResponseCode();
+		return new String(url_output.toByteArray(), StandardCharsets.UTF_8);
+	}
 
-		BufferedReader in;
+	/**
+	 * Parses the body of a Response as it is read, and closes it, so that the Transport can reuse the connection.
+	 */
+	private static <T> T parse(TransportResponse response, Gson gson, Class<T> responseType) throws IOException {
 
-		try {
+		try (JsonReader reader = new JsonReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8))) {
 
-			InputStream isr = (response == 200) ? connection.getInputStream() : connection.getErrorStream();
-			in = new BufferedReader(new InputStreamReader(isr));
-			String urlReturn;
+			return gson.fromJson(reader, responseType);
+		}
+		catch (JsonIOException e) {
 
-			while ((urlReturn = in.readLine()) != null) {
+			// Gson reports a failed read as an unchecked exception; the blocking API reports it as the IOException it was.
+			if (e.getCause() instanceof IOException) {
 
-				url_output += urlReturn;
+				throw (IOException) e.getCause();
 			}
 
-			in.close();
-		}
-		catch (IOException e) {
-			System.err.println("IOException while reading from input stream " + e.getMessage());
-			throw new RuntimeException(e);
+			throw e;
 		}
-
-		return url_output;
 	}
 
 	/**
@@ -497,29 +1152,18 @@ public class TeleSignRequest {
 	 * @param customer_id
 	 *			[Required] A string representing your TeleSign Customer ID.
 	 *			This represents your TeleSign account number.
-	 * @return A string representing the signing string used to create a
-	 *		 Signature object, for the authenticate the REST request.
+	 * @return The signing string used to create a Signature object, for
+	 *		 the authenticate the REST request.
 	 */
-	private String getSigningString(String customer_id) {
-
-		String stringToSign = post ? "POST\n" : "GET\n";
-		String content_type = post ? "application/x-www-form-urlencoded\n" : "\n";
+	private SigningString getSigningString(String customer_id) {
 
-		stringToSign += content_type;
+		String date = "";
 
-		if (ts_date) {
+		if (!ts_date) {
 
-			stringToSign += "\n";
-		}
-		else {
-
-			Date now = new Date();
-
-			SimpleDateFormat rfc2616 = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss ZZZZ", Locale.US);
-			String date = rfc2616.format(now);
+			// The date is formatted once per second, and shared by every Request signed in that second.
+			date = HttpDateClock.getDefault().now();
 			addHeader("Date", date);
-
-			stringToSign += date + "\n";
 		}
 
 		/*
@@ -530,20 +1174,20 @@ public class TeleSignRequest {
 		 * (newline) with a single space, and Removing white space surrounding
 		 * the colon that appears between each header name/value pair.
 		 */
-		Set<String> orderedKeys = ts_headers.keySet();
+		SigningString stringToSign = new SigningString(post ? "POST" : "GET", post ? "application/x-www-form-urlencoded" : "", date, ts_headers, resource);
 
-		for (String key : orderedKeys) {
+		if (post) {
 
-			stringToSign += key.toLowerCase() + ":" + ts_headers.get(key) + "\n";
-		}
+			if (bodyBytes != null) {
 
-		if (post) {
+				stringToSign.body(bodyBytes);
+			}
+			else {
 
-			stringToSign += body + "\n";
+				stringToSign.body(body);
+			}
 		}
 
-		stringToSign += resource;
-
 		return stringToSign;
 	}
 
@@ -564,54 +1208,15 @@ public class TeleSignRequest {
 	 *			 Failed to generate HMAC. IllegalArgumentException - if
 	 *			 algorithm is null or key is null or empty.
 	 */
-	private String encode(String data, String key)  throws java.security.SignatureException {
-
-		String result;
+	private String encode(SigningString data, String key)  throws java.security.SignatureException {
 
-		byte[] decoded_key = Base64.decodeBase64(key);
+		// The signer of a template keeps the decoded key, initialized Mac instances and their buffers between Requests.
+		if (signer == null) {
 
-		try {
-			// Get an hmac_sha key from the raw key bytes.
-			SecretKeySpec signingKey = new SecretKeySpec(decoded_key, auth.value());
-
-			// Get an hmac_sha Mac instance, and initialize it with the signing key.
-			Mac mac = Mac.getInstance(auth.value());
-			mac.init(signingKey);
-
-			// Compute the HMAC on input data bytes.
-			byte[] rawHmac = mac.doFinal(data.getBytes());
-
-			// Base64-encode the HMAC.
-			result =  new String(Base64.encodeBase64(rawHmac));
-
-		}
-		catch (Exception e) {
-
-			throw new SignatureException("Failed to generate HMAC : " + e.getMessage());
+			signer = new RequestSigner(key);
 		}
 
-		return result;
+		return signer.sign(auth, data);
 	}
-	
-	/**
-	 * Set the TLS protocol to TLSv1.2
-	 */
-	private void setTLSProtocol() {
-		SSLContext sslContext;
-		try {			
-			// setting ssl instance to TLSv1.x
-			sslContext = SSLContext.getInstance(httpsProtocol);
-			
-			// sslContext initialize
-			sslContext.init(null,null,new SecureRandom());
 
-			// typecasting ssl with HttpsUrlConnection and setting sslcontext
-			((HttpsURLConnection)connection).setSSLSocketFactory(sslContext.getSocketFactory());			
-		} catch (NoSuchAlgorithmException e1) {
-			System.err.println("Received No Such Alogorithm Exception " + e1.getMessage());
-		}
-		catch (KeyManagementException e) {
-			System.err.println("Key Management Exception received " + e.getMessage());
-		}
-	}
 }
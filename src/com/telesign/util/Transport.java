@@ -0,0 +1,63 @@
+package com.telesign.util;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+
+/**
+ * A Transport carries a signed {@link TransportRequest} to the TeleSign web server, and returns its {@link TransportResponse}.
+ * <p>
+ * {@link TeleSignRequest} signs every Request itself, so a Transport only moves bytes. The SDK ships {@link UrlConnectionTransport}
+ * (the default), {@link NioEngine}, {@link Http2Engine} and {@link LoopbackTransport}, which serves canned Responses without a socket.
+ * A Transport is shared by many Requests, and must be safe for use by multiple threads.
+ * </p>
+ */
+public interface Transport {
+
+	/**
+	 * Sends a Request, and waits for the status line and header fields of its Response.
+	 *
+	 * @param request [Required] The signed Request.
+	 * @return The Response. The caller reads its body, and must close it.
+	 * @throws IOException If the Request could not be sent, or no Response was received.
+	 */
+	TransportResponse send(TransportRequest request) throws IOException;
+
+	/**
+	 * Sends a Request without blocking the calling thread. The body of the Response is fully received when the future completes,
+	 * so it may be read on any thread.
+	 * <p>
+	 * The default implementation runs {@link #send(TransportRequest)} on the given executor, and buffers the body.
+	 * </p>
+	 *
+	 * @param request	[Required] The signed Request.
+	 * @param executor	[Required] The Executor for Transports that block while a Request is in flight.
+	 * @return A CompletableFuture that completes with the Response, or exceptionally with an IOException.
+	 */
+	default CompletableFuture<TransportResponse> sendAsync(final TransportRequest request, Executor executor) {
+
+		return CompletableFuture.supplyAsync(() -> {
+
+			try {
+
+				return send(request).buffer();
+			}
+			catch (IOException e) {
+
+				throw new CompletionException(e);
+			}
+		}, executor);
+	}
+
+	/**
+	 * Tells whether this Transport can send the standard Date header field. A TeleSignRequest sent by a Transport that cannot is
+	 * signed with the <em>x-ts-date</em> header instead.
+	 *
+	 * @return True, unless the Transport refuses the Date header.
+	 */
+	default boolean acceptsDateHeader() {
+
+		return true;
+	}
+}
@@ -0,0 +1,84 @@
+package com.telesign.util;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A signed Request, ready to be sent by a {@link Transport}. TransportRequest objects are immutable.
+ */
+public final class TransportRequest {
+
+	private final String method;
+	private final URL url;
+	private final Map<String, String> headers;
+	private final byte[] body;
+	private final int connectTimeout;
+	private final int readTimeout;
+	private final String httpsProtocol;
+
+	/**
+	 * The TransportRequest class constructor.
+	 *
+	 * @param method			[Required] The Request method, GET or POST.
+	 * @param url				[Required] The absolute URL, including the query string.
+	 * @param headers			[Required] The Request header fields, including Authorization. The map is copied.
+	 * @param body				[Optional] The entity body, or null for none. The array is not copied.
+	 * @param connectTimeout	[Required] The connect timeout in milliseconds, zero for none.
+	 * @param readTimeout		[Required] The read timeout in milliseconds, zero for none.
+	 * @param httpsProtocol		[Required] The TLS protocol, for example TLSv1.2.
+	 */
+	public TransportRequest(String method, URL url, Map<String, String> headers, byte[] body, int connectTimeout, int readTimeout, String httpsProtocol) {
+
+		this.method = method;
+		this.url = url;
+		this.headers = Collections.unmodifiableMap(new LinkedHashMap<String, String>(headers));
+		this.body = body;
+		this.connectTimeout = connectTimeout;
+		this.readTimeout = readTimeout;
+		this.httpsProtocol = httpsProtocol;
+	}
+
+	/** @return The Request method, GET or POST. */
+	public String getMethod() {
+
+		return method;
+	}
+
+	/** @return The absolute URL, including the query string. */
+	public URL getUrl() {
+
+		return url;
+	}
+
+	/** @return The Request header fields, including Authorization. */
+	public Map<String, String> getHeaders() {
+
+		return headers;
+	}
+
+	/** @return The entity body, or null for none. */
+	public byte[] getBody() {
+
+		return body;
+	}
+
+	/** @return The connect timeout in milliseconds, zero for none. */
+	public int getConnectTimeout() {
+
+		return connectTimeout;
+	}
+
+	/** @return The read timeout in milliseconds, zero for none. */
+	public int getReadTimeout() {
+
+		return readTimeout;
+	}
+
+	/** @return The TLS protocol, for example TLSv1.2. */
+	public String getHttpsProtocol() {
+
+		return httpsProtocol;
+	}
+}
@@ -0,0 +1,107 @@
+package com.telesign.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The Response that a {@link Transport} received: a status code, header fields, and a stream over the entity body.
+ * Closing the Response closes the body, which lets the Transport reuse its connection once the body has been read to the end.
+ */
+public class TransportResponse implements Closeable {
+
+	private final int status;
+	private final Map<String, String> headers;
+	private final InputStream body;
+
+	/**
+	 * The TransportResponse class constructor.
+	 *
+	 * @param status	[Required] The HTTP status code.
+	 * @param headers	[Required] The Response header fields. The map is copied, and its names become case-insensitive.
+	 * @param body		[Required] The stream over the entity body. Use an empty stream for a Response without a body.
+	 */
+	public TransportResponse(int status, Map<String, String> headers, InputStream body) {
+
+		TreeMap<String, String> copy = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+		copy.putAll(headers);
+
+		this.status = status;
+		this.headers = Collections.unmodifiableMap(copy);
+		this.body = body;
+	}
+
+	/**
+	 * Creates a Response whose body is already in memory.
+	 *
+	 * @param status	[Required] The HTTP status code.
+	 * @param headers	[Required] The Response header fields.
+	 * @param body		[Required] The entity body. The array is not copied.
+	 */
+	public TransportResponse(int status, Map<String, String> headers, byte[] body) {
+
+		this(status, headers, new ByteArrayInputStream(body));
+	}
+
+	/** @return The HTTP status code. */
+	public int getStatus() {
+
+		return status;
+	}
+
+	/** @return The Response header fields, with case-insensitive names. */
+	public Map<String, String> getHeaders() {
+
+		return headers;
+	}
+
+	/** @return The stream over the entity body. */
+	public InputStream getBody() {
+
+		return body;
+	}
+
+	/**
+	 * Reads the whole body into memory, and closes this Response.
+	 *
+	 * @return A Response with the same status and header fields, whose body can be read without touching the network.
+	 * @throws IOException If the body could not be read.
+	 */
+	public TransportResponse buffer() throws IOException {
+
+		if (body instanceof ByteArrayInputStream) {
+
+			return this;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+
+		try {
+
+			byte[] chunk = new byte[4096];
+
+			for (int count; (count = body.read(chunk)) != -1; ) {
+
+				bytes.write(chunk, 0, count);
+			}
+		}
+		finally {
+
+			close();
+		}
+
+		return new TransportResponse(status, headers, bytes.toByteArray());
+	}
+
+	/** Closes the body. */
+	@Override
+	public void close() throws IOException {
+
+		body.close();
+	}
+}
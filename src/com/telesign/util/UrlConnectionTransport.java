@@ -0,0 +1,158 @@
+package com.telesign.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.net.ssl.HttpsURLConnection;
+
+/**
+ * The UrlConnectionTransport class sends Requests with {@link HttpURLConnection}. It is the Transport a {@link TeleSignRequest}
+ * uses unless it is given another one.
+ * <p>
+ * Every Request holds a lease from a {@link ConnectionPool} until the body of its Response is closed, and HTTPS connections use the
+ * shared socket factory of the {@link SSLContextCache}, so the JDK keep-alive cache can hand the connection to the next Request.
+ * </p>
+ */
+public class UrlConnectionTransport implements Transport {
+
+	private static final UrlConnectionTransport DEFAULT = new UrlConnectionTransport(ConnectionPool.getDefault());
+
+	private final ConnectionPool connectionPool;
+
+	/**
+	 * Returns the Transport that uses the default {@link ConnectionPool}.
+	 *
+	 * @return The default UrlConnectionTransport.
+	 */
+	public static UrlConnectionTransport getDefault() {
+
+		return DEFAULT;
+	}
+
+	/**
+	 * The UrlConnectionTransport class constructor.
+	 *
+	 * @param connectionPool [Required] The pool that bounds the connections opened by this Transport.
+	 */
+	public UrlConnectionTransport(ConnectionPool connectionPool) {
+
+		if (connectionPool == null) {
+
+			throw new IllegalArgumentException("connectionPool must not be null");
+		}
+
+		this.connectionPool = connectionPool;
+	}
+
+	/** @return The pool that bounds the connections opened by this Transport. */
+	public ConnectionPool getConnectionPool() {
+
+		return connectionPool;
+	}
+
+	@Override
+	public TransportResponse send(TransportRequest request) throws IOException {
+
+		final ConnectionPool.Lease lease = connectionPool.acquire(request.getUrl());
+
+		try {
+
+			HttpURLConnection connection = (HttpURLConnection) request.getUrl().openConnection();
+			connection.setConnectTimeout(request.getConnectTimeout());
+			connection.setReadTimeout(request.getReadTimeout());
+			connection.setRequestMethod(request.getMethod());
+
+			if (connection instanceof HttpsURLConnection) {
+
+				setSocketFactory((HttpsURLConnection) connection, request.getHttpsProtocol());
+			}
+
+			for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+
+				connection.setRequestProperty(header.getKey(), header.getValue());
+			}
+
+			byte[] entity = request.getBody();
+
+			if (entity != null) {
+
+				// With the exact length known up front, the connection streams the body instead of buffering a copy of it.
+				connection.setDoOutput(true);
+				connection.setFixedLengthStreamingMode(entity.length);
+				OutputStream out = connection.getOutputStream();
+
+				out.write(entity);
+				out.close();
+			}
+
+			int status = connection.getResponseCode();
+
+			// An error response is read from the error stream, which is null when the error response has no body.
+			InputStream in = (status < 400) ? connection.getInputStream() : connection.getErrorStream();
+
+			if (in == null) {
+
+				in = new ByteArrayInputStream(new byte[0]);
+			}
+
+			InputStream body = new FilterInputStream(in) {
+
+				@Override
+				public void close() throws IOException {
+
+					try {
+
+						super.close();
+					}
+					finally {
+
+						lease.release();
+					}
+				}
+			};
+
+			return new TransportResponse(status, headers(connection), body);
+		}
+		catch (IOException | RuntimeException e) {
+
+			lease.release();
+			throw e;
+		}
+	}
+
+	private static Map<String, String> headers(HttpURLConnection connection) {
+
+		Map<String, String> headers = new HashMap<String, String>();
+
+		for (Map.Entry<String, List<String>> field : connection.getHeaderFields().entrySet()) {
+
+			// The status line is reported under a null name.
+			if (field.getKey() != null) {
+
+				headers.put(field.getKey(), String.join(", ", field.getValue()));
+			}
+		}
+
+		return headers;
+	}
+
+	private static void setSocketFactory(HttpsURLConnection connection, String httpsProtocol) {
+
+		try {
+
+			// The shared factory lets the JDK keep-alive cache reuse the connection.
+			connection.setSSLSocketFactory(SSLContextCache.getDefault().getSocketFactory(httpsProtocol));
+		}
+		catch (GeneralSecurityException e) {
+
+			System.err.println("Could not set up " + httpsProtocol + ": " + e.getMessage());
+		}
+	}
+}
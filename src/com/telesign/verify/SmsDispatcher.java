@@ -0,0 +1,348 @@
+package com.telesign.verify;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import com.telesign.verify.response.VerifyResponse;
+
+/**
+ * The SmsDispatcher class queues Verify SMS requests, and sends them from a fixed number of worker threads at a configured rate.
+ * <p>
+ * A burst of requests waits in a bounded queue instead of piling up threads on socket reads, while the workers keep up to their
+ * number of calls in flight to TeleSign. When the queue is full, a new request is handled by the {@link Overflow} policy: the producer
+ * waits, the request is rejected, or the oldest waiting request is shed to make room.
+ * </p>
+ */
+public class SmsDispatcher implements Closeable {
+
+	/** What happens to a new request when the queue is full. */
+	public enum Overflow {
+
+		/** The producer waits until there is room in the queue. */
+		BLOCK,
+
+		/** The producer gets a {@link RejectedExecutionException}. */
+		FAIL,
+
+		/** The oldest waiting request fails with a {@link RejectedExecutionException}, and the new request takes its place. */
+		SHED
+	}
+
+	private final Verify verify;
+
+	private final BlockingQueue<Task> queue;
+
+	private final Overflow overflow;
+
+	/** The minimum time between two sends, in nanoseconds. Zero means no limit. */
+	private final long intervalNanos;
+
+	/** The earliest time at which the next send may start. */
+	private final AtomicLong nextSend = new AtomicLong(System.nanoTime());
+
+	private final List<Thread> workers = new ArrayList<Thread>();
+
+	private volatile boolean closed = false;
+
+	private final AtomicLong sent = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+
+	/**
+	 * Creates a dispatcher without a rate limit, whose producers wait when the queue is full.
+	 *
+	 * @param verify		[Required] The Verify object that sends the messages.
+	 * @param queueCapacity	[Required] The number of requests that can wait to be sent.
+	 * @param workers		[Required] The number of messages sent at once.
+	 */
+	public SmsDispatcher(Verify verify, int queueCapacity, int workers) {
+
+		this(verify, queueCapacity, workers, 0, Overflow.BLOCK);
+	}
+
+	/**
+	 * The SmsDispatcher class constructor. The worker threads are started at once.
+	 *
+	 * @param verify			[Required] The Verify object that sends the messages.
+	 * @param queueCapacity		[Required] The number of requests that can wait to be sent.
+	 * @param workers			[Required] The number of messages sent at once.
+	 * @param messagesPerSecond	[Required] The highest rate at which messages are sent. Zero means no limit.
+	 * @param overflow			[Required] What happens to a new request when the queue is full.
+	 */
+	public SmsDispatcher(Verify verify, int queueCapacity, int workers, double messagesPerSecond, Overflow overflow) {
+
+		if (verify == null || overflow == null) {
+
+			throw new IllegalArgumentException("verify and overflow must not be null");
+		}
+
+		if (queueCapacity < 1 || workers < 1 || messagesPerSecond < 0) {
+
+			throw new IllegalArgumentException("queueCapacity and workers must be positive, and messagesPerSecond must not be negative");
+		}
+
+		this.verify = verify;
+		this.queue = new ArrayBlockingQueue<Task>(queueCapacity);
+		this.overflow = overflow;
+		this.intervalNanos = (messagesPerSecond == 0) ? 0 : (long) (TimeUnit.SECONDS.toNanos(1) / messagesPerSecond);
+
+		for (int i = 1; i <= workers; i++) {
+
+			Thread worker = new Thread(this::work, "telesign-sms-" + i);
+			worker.setDaemon(true);
+			worker.start();
+
+			this.workers.add(worker);
+		}
+	}
+
+	/**
+	 * Queues a Verify SMS request.
+	 *
+	 * @param phone_number [Required] The phone number to send the message to.
+	 * @return A CompletableFuture that completes with the {@link VerifyResponse}, or exceptionally if the request failed or was shed.
+	 * @throws RejectedExecutionException If the dispatcher is closed, or the queue is full and the policy is {@link Overflow#FAIL}.
+	 */
+	public CompletableFuture<VerifyResponse> sms(String phone_number) {
+
+		return sms(phone_number, null, null, null, null, null);
+	}
+
+	/**
+	 * Queues a Verify SMS request. The parameters are described at
+	 * {@link Verify#sms(String, String, String, String, String, String)}.
+	 *
+	 * @return A CompletableFuture that completes with the {@link VerifyResponse}, or exceptionally if the request failed or was shed.
+	 * @throws RejectedExecutionException If the dispatcher is closed, or the queue is full and the policy is {@link Overflow#FAIL}.
+	 */
+	public CompletableFuture<VerifyResponse> sms(String phone_number, String language, String verify_code, String template,
+			String originating_ip, String session_id) {
+
+		Task task = new Task(phone_number, language, verify_code, template, originating_ip, session_id);
+
+		if (closed) {
+
+			throw reject("The dispatcher is closed");
+		}
+
+		switch (overflow) {
+
+			case BLOCK:
+
+				try {
+
+					queue.put(task);
+				}
+				catch (InterruptedException e) {
+
+					Thread.currentThread().interrupt();
+					task.future.completeExceptionally(e);
+				}
+
+				break;
+
+			case FAIL:
+
+				if (!queue.offer(task)) {
+
+					throw reject("The queue is full");
+				}
+
+				break;
+
+			case SHED:
+
+				while (!queue.offer(task)) {
+
+					Task oldest = queue.poll();
+
+					if (oldest != null) {
+
+						oldest.future.completeExceptionally(reject("Shed to make room for a newer request"));
+					}
+				}
+
+				break;
+		}
+
+		// The workers may have seen an empty queue and ended after the check above.
+		if (closed && queue.remove(task)) {
+
+			throw reject("The dispatcher is closed");
+		}
+
+		return task.future;
+	}
+
+	/** @return The number of requests waiting to be sent. */
+	public int getQueuedCount() {
+
+		return queue.size();
+	}
+
+	/** @return The number of requests sent, whether they succeeded or not. */
+	public long getSentCount() {
+
+		return sent.get();
+	}
+
+	/** @return The number of requests rejected or shed. */
+	public long getRejectedCount() {
+
+		return rejected.get();
+	}
+
+	/**
+	 * Stops accepting requests. The requests already queued are still sent, and the worker threads then end.
+	 */
+	@Override
+	public void close() {
+
+		closed = true;
+	}
+
+	/**
+	 * Closes the dispatcher, and waits for the queued requests to be sent.
+	 *
+	 * @param timeout	[Required] The longest time to wait.
+	 * @param unit		[Required] The unit of the timeout.
+	 * @return True if every worker thread ended in time.
+	 * @throws InterruptedException If the calling thread is interrupted while it waits.
+	 */
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+
+		close();
+
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		for (Thread worker : workers) {
+
+			long remaining = deadline - System.nanoTime();
+
+			if (remaining > 0) {
+
+				TimeUnit.NANOSECONDS.timedJoin(worker, remaining);
+			}
+
+			if (worker.isAlive()) {
+
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private RejectedExecutionException reject(String message) {
+
+		rejected.incrementAndGet();
+
+		return new RejectedExecutionException(message);
+	}
+
+	private void work() {
+
+		while (true) {
+
+			Task task;
+
+			try {
+
+				task = queue.poll(100, TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+
+				return;
+			}
+
+			if (task == null) {
+
+				if (closed) {
+
+					return;
+				}
+
+				continue;
+			}
+
+			awaitSendSlot();
+
+			VerifyResponse response;
+
+			try {
+
+				response = verify.sms(task.phone_number, task.language, task.verify_code, task.template, task.originating_ip, task.session_id);
+			}
+			catch (RuntimeException e) {
+
+				sent.incrementAndGet();
+				task.future.completeExceptionally(e);
+
+				continue;
+			}
+
+			// The count is updated first, so that it includes every request whose future has completed.
+			sent.incrementAndGet();
+			task.future.complete(response);
+		}
+	}
+
+	/** Claims the next send slot, and waits for it, so that the sends keep to the configured rate. */
+	private void awaitSendSlot() {
+
+		if (intervalNanos == 0) {
+
+			return;
+		}
+
+		long now = System.nanoTime();
+		long slot;
+
+		while (true) {
+
+			long next = nextSend.get();
+
+			// A slot is not saved up while the dispatcher is idle, so a burst after a quiet period is still paced.
+			slot = Math.max(next, now);
+
+			if (nextSend.compareAndSet(next, slot + intervalNanos)) {
+
+				break;
+			}
+		}
+
+		for (long wait; (wait = slot - System.nanoTime()) > 0; ) {
+
+			LockSupport.parkNanos(wait);
+		}
+	}
+
+	/** A queued request. */
+	private static class Task {
+
+		private final String phone_number;
+		private final String language;
+		private final String verify_code;
+		private final String template;
+		private final String originating_ip;
+		private final String session_id;
+		private final CompletableFuture<VerifyResponse> future = new CompletableFuture<VerifyResponse>();
+
+		Task(String phone_number, String language, String verify_code, String template, String originating_ip, String session_id) {
+
+			this.phone_number = phone_number;
+			this.language = language;
+			this.verify_code = verify_code;
+			this.template = template;
+			this.originating_ip = originating_ip;
+			this.session_id = session_id;
+		}
+	}
+}
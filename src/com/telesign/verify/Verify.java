@@ -10,11 +10,23 @@
 package com.telesign.verify;
 
 import com.google.gson.Gson;
+import com.telesign.util.FormBody;
 import com.telesign.util.IpValidator;
+import com.telesign.util.CircuitBreakerRegistry;
+import com.telesign.util.HedgePolicy;
+import com.telesign.util.NegativeCache;
+import com.telesign.util.RateLimiterRegistry;
+import com.telesign.util.RequestSigner;
+import com.telesign.util.RequestTemplate;
+import com.telesign.util.RetryPolicy;
+import com.telesign.util.TeleSignExecutors;
 import com.telesign.util.TeleSignRequest;
+import com.telesign.util.Transport;
+import com.telesign.util.UrlConnectionTransport;
 import com.telesign.verify.response.VerifyResponse;
 import java.io.IOException;
-import java.net.URLEncoder;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -30,6 +42,9 @@ public class Verify {
 	private int readTimeout = 30000;
 	private String httpsProtocol = "TLSv1.2";
 
+	/** The signer of the Secret Key, shared by the templates of all endpoints. */
+	private final RequestSigner signer;
+
 	private static final String API_BASE_URL   = "https://rest.telesign.com";
 	private static final String API_MOBILE_URL = "https://rest-mobile.telesign.com";
 	
@@ -43,6 +58,24 @@ public class Verify {
 	private static final String V2_VERIFY_REGISTRATION = "/v2/verify/registration/";
 	
 	private final Gson gson = new Gson();
+
+	/** The executor that runs the asynchronous calls. Null means {@link TeleSignExecutors#getDefault()}. */
+	private volatile Executor executor;
+
+	/** The Transport that sends the requests. */
+	private Transport transport = UrlConnectionTransport.getDefault();
+
+	/** The policy that retries the requests after a connection failure, or a 5xx or 429 response. */
+	private volatile RetryPolicy retryPolicy = RetryPolicy.getDefault();
+
+	/** The policy that hedges the GET requests. Null means no hedging. */
+	private volatile HedgePolicy hedgePolicy;
+
+	/** The cache of the phone numbers that were rejected by sms and call. Null means none. */
+	private volatile NegativeCache negativeCache;
+
+	/** The request templates of the endpoints, created on first use from the settings of this Verify. */
+	private volatile Templates templates;
 	
 	/**
 	 * The Verify class constructor.
@@ -54,6 +87,7 @@ public class Verify {
 
 		this.customer_id = customer_id;
 		this.secret_key = secret_key;
+		this.signer = new RequestSigner(secret_key);
 	}
 	
 	/**
@@ -67,6 +101,7 @@ public class Verify {
 
 		this.customer_id = customer_id;
 		this.secret_key = secret_key;
+		this.signer = new RequestSigner(secret_key);
 		this.httpsProtocol = httpsProtocol;
 	}
 	
@@ -84,6 +119,7 @@ public class Verify {
 
 		this.customer_id = customer_id;
 		this.secret_key = secret_key;
+		this.signer = new RequestSigner(secret_key);
 		this.connectTimeout = connectTimeout;
 		this.readTimeout = readTimeout;
 	}
@@ -103,11 +139,98 @@ public class Verify {
 
 		this.customer_id = customer_id;
 		this.secret_key = secret_key;
+		this.signer = new RequestSigner(secret_key);
 		this.connectTimeout = connectTimeout;
 		this.readTimeout = readTimeout;
 		this.httpsProtocol = httpsProtocol;
 	}
 
+	/**
+	 * The Verify class constructor.
+	 * Once you instantiate a Verify object, you can use it to make instance calls to <em>Verify SMS</em> and <em>Verify Call</em>.
+	 * @param customer_id	[Required]	A string containing your TeleSign Customer ID (your TeleSign account number).
+	 * @param secret_key	[Required]	A string containing your TeleSign Secret Key (a bese64-encoded string valu, available from the TeleSign Client Portal).
+	 * @param transport		[Required]	The {@link Transport} that sends the requests, for example a {@link com.telesign.util.NioEngine}.
+	 */
+	public Verify(String customer_id, String secret_key, Transport transport) {
+
+		this(customer_id, secret_key, 30000, 30000, "TLSv1.2", transport);
+	}
+
+	/**
+	 * The Verify class constructor.
+	 * Once you instantiate a Verify object, you can use it to make instance calls to <em>Verify SMS</em> and <em>Verify Call</em>.
+	 * @param customer_id	[Required]	A string containing your TeleSign Customer ID (your TeleSign account number).
+	 * @param secret_key	[Required]	A string containing your TeleSign Secret Key (a bese64-encoded string valu, available from the TeleSign Client Portal).
+	 * @param connectTimeout 
+	 * 			[Required] A integer representing connection timeout value while connecting to Telesign api.
+	 * @param readTimeout
+	 * 			[Required] A integer representing read timeout value while reading response returned from Telesign api.
+	 * @param httpsProtocol [Optional]	Specify the protocol version to use. ex: TLSv1.1, TLSv1.2. default is TLSv1.2
+	 * @param transport		[Required]	The {@link Transport} that sends the requests, for example a {@link com.telesign.util.NioEngine}.
+	 */
+	public Verify(String customer_id, String secret_key, int connectTimeout, int readTimeout, String httpsProtocol, Transport transport) {
+
+		this(customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
+
+		if (transport == null) {
+
+			throw new IllegalArgumentException("transport must not be null");
+		}
+
+		this.transport = transport;
+	}
+
+	/**
+	 * Sets the executor that runs the asynchronous calls of this Verify object, such as {@link #smsAsync(String)}.
+	 * By default they run on {@link TeleSignExecutors#getDefault()}.
+	 * @param executor	[Optional]	The Executor to use. Set this value to null to restore the default.
+	 */
+	public void setExecutor(Executor executor) {
+
+		this.executor = executor;
+	}
+
+	/**
+	 * Sets the policy that retries the requests of this Verify object, such as {@link #status(String)}, after a connection
+	 * failure or a 5xx or 429 response. By default the GET requests are retried with {@link RetryPolicy#getDefault()}. The POST
+	 * requests are only retried by a policy whose idempotency guard is on. The default policy has no deadline; a policy with one cuts
+	 * the connect and read timeouts of this Verify object to the rest of its budget on every attempt.
+	 * @param retryPolicy	[Required]	The RetryPolicy to use, or {@link RetryPolicy#NONE} to send each request once.
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+
+		if (retryPolicy == null) {
+
+			throw new IllegalArgumentException("retryPolicy must not be null");
+		}
+
+		this.retryPolicy = retryPolicy;
+		templates = null;
+	}
+
+	/**
+	 * Sets the policy that sends {@link #status(String)} and {@link #registration(String)} a second time when the response is late, and keeps the response that arrives first.
+	 * Hedging is off by default. The hedge rate and win rate can be read from the policy.
+	 * @param hedgePolicy	[Optional]	The HedgePolicy to use. Set this value to null to turn hedging off.
+	 */
+	public void setHedgePolicy(HedgePolicy hedgePolicy) {
+
+		this.hedgePolicy = hedgePolicy;
+		templates = null;
+	}
+
+	/**
+	 * Sets the cache that answers {@link #sms(String)} and {@link #call(String)} for the phone numbers that were rejected, without a
+	 * request, for as long as the time to live of the error. The numbers are keyed by endpoint, so a number rejected by
+	 * {@link #sms(String)} is still sent to {@link #call(String)}. It is off by default.
+	 * @param negativeCache	[Optional]	The NegativeCache to use. Set this value to null to send a request every time.
+	 */
+	public void setNegativeCache(NegativeCache negativeCache) {
+
+		this.negativeCache = negativeCache;
+	}
+
 	/**
 	 * Delivers a verification code to the end user by sending it in a text message.
 	 * This is the simplest of the three overloads of this method. This overload takes the only required paramter�the end user's phone number. 
@@ -166,52 +289,61 @@ public class Verify {
 	 */
 	public VerifyResponse sms(String phone_number, String language, String verify_code, String template, String originating_ip, String session_id) {
 
-		String result = null;
+		VerifyResponse response = rejected(RateLimiterRegistry.VERIFY_SMS, phone_number);
+
+		if (response != null) {
+
+			return response;
+		}
 
 		try {
 
-			TeleSignRequest tr = new TeleSignRequest(API_BASE_URL, V1_VERIFY_SMS, "POST", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-			String body = "phone_number=" + URLEncoder.encode(phone_number, "UTF-8");
-			
-			if(language != null) {
+			TeleSignRequest tr = smsRequest(phone_number, language, verify_code, template, originating_ip, session_id);
+			response = reject(RateLimiterRegistry.VERIFY_SMS, phone_number, tr.executeRequest(gson, VerifyResponse.class));
+		}
+		catch (IOException e) {
 
-				body += "&language=" + URLEncoder.encode(language, "UTF-8");
-			}
-			
-			if(verify_code != null) {
+			System.err.println("IOException while executing Verify SMS API: " + e.getMessage());
+			throw new RuntimeException(e);
+		}
+		
+		return response;
+	}
 
-				body += "&verify_code=" + URLEncoder.encode(verify_code, "UTF-8");
-			}
-			
-			if(template != null) {
+	private TeleSignRequest smsRequest(String phone_number, String language, String verify_code, String template, String originating_ip, String session_id) throws IOException {
 
-				body += "&template=" + URLEncoder.encode(template, "UTF-8");
-			}
-			
-			if(originating_ip != null && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+		TeleSignRequest tr = templates().sms.newRequest();
+		FormBody body = new FormBody().add("phone_number", phone_number);
+		
+		if(language != null) {
 
-				body += "&originating_ip=" + URLEncoder.encode(originating_ip, "UTF-8");
-			}
-			
-			if(session_id != null && !session_id.isEmpty()) {
+			body.add("language", language);
+		}
+		
+		if(verify_code != null) {
 
-				body += "&session_id=" + URLEncoder.encode(session_id, "UTF-8");
-			}
-			
-			
-			tr.setPostBody(body);
-			
-			result = tr.executeRequest();
+			body.add("verify_code", verify_code);
 		}
-		catch (IOException e) {
+		
+		if(template != null) {
 
-			System.err.println("IOException while executing Verify SMS API: " + e.getMessage());
-			throw new RuntimeException(e);
+			body.add("template", template);
+		}
+		
+		if(originating_ip != null && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+
+			body.add("originating_ip", originating_ip);
 		}
 		
-		VerifyResponse response = gson.fromJson(result, VerifyResponse.class);
+		if(session_id != null && !session_id.isEmpty()) {
+
+			body.add("session_id", session_id);
+		}
 		
-		return response;
+		
+		tr.setPostBody(body);
+
+		return tr;
 	}
 	
 	/**
@@ -372,76 +504,86 @@ public class Verify {
 	public VerifyResponse call(String phone_number , String language, String verify_code, String verify_method, int extension_type, String extension_template, boolean redial, 
 			String originating_ip, String session_id, String call_forward_action, String ttsMessage) {
 
-		String result = null;
+		VerifyResponse response = rejected(RateLimiterRegistry.VERIFY_CALL, phone_number);
 
-		try {
+		if (response != null) {
 
-			TeleSignRequest tr = new TeleSignRequest(API_BASE_URL, V1_VERIFY_CALL, "POST", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-			String body = "phone_number=" + URLEncoder.encode(phone_number, "UTF-8");
-			
-			if(language != null) {
+			return response;
+		}
 
-				body += "&language=" + URLEncoder.encode(language, "UTF-8");
-			}
-			
-			if(verify_code != null) {
+		try {
 
-				body += "&verify_code=" + URLEncoder.encode(verify_code, "UTF-8");
-			}
-			
-			if(verify_method != null && verify_method.equalsIgnoreCase("keypress")) {
+			TeleSignRequest tr = callRequest(phone_number, language, verify_code, verify_method, extension_type, extension_template, redial, originating_ip, session_id, call_forward_action, ttsMessage);
+			response = reject(RateLimiterRegistry.VERIFY_CALL, phone_number, tr.executeRequest(gson, VerifyResponse.class));
+		}
+		catch (IOException e) {
 
-				body += "&verify_method=" + URLEncoder.encode(verify_method, "UTF-8");
-			}
+			System.err.println("IOException while executing verify call API: " + e.getMessage());
+			throw new RuntimeException(e);
+		}
+		
+		return response;
+	}
 
-			if(extension_type > 0 && extension_type < 3) {
+	private TeleSignRequest callRequest(String phone_number, String language, String verify_code, String verify_method, int extension_type, String extension_template, boolean redial, String originating_ip, String session_id, String call_forward_action, String ttsMessage) throws IOException {
 
-				body += "&extension_type=" + URLEncoder.encode(Integer.toString(extension_type), "UTF-8");
-			}
-			if(extension_template != null) {
+		TeleSignRequest tr = templates().call.newRequest();
+		FormBody body = new FormBody().add("phone_number", phone_number);
+		
+		if(language != null) {
 
-				body += "&extension_template=" + URLEncoder.encode(extension_template, "UTF-8");
-			}
-			if(originating_ip != null && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+			body.add("language", language);
+		}
+		
+		if(verify_code != null) {
 
-				body += "&originating_ip=" + URLEncoder.encode(originating_ip, "UTF-8");
-			}
-			if(session_id != null && !session_id.isEmpty()) {
+			body.add("verify_code", verify_code);
+		}
+		
+		if(verify_method != null && verify_method.equalsIgnoreCase("keypress")) {
 
-				body += "&session_id=" + URLEncoder.encode(session_id, "UTF-8");
-			}
-			if(!redial) {
+			body.add("verify_method", verify_method);
+		}
 
-				body += "&redial=" + URLEncoder.encode(Boolean.toString(redial), "UTF-8");
-			}
-			
-			if (null != call_forward_action) {				
-				if ("block".equalsIgnoreCase(call_forward_action)) {
+		if(extension_type > 0 && extension_type < 3) {
 
-					body += "&call_forward_action=" + URLEncoder.encode("Block", "UTF-8");
+			body.add("extension_type", Integer.toString(extension_type));
+		}
+		if(extension_template != null) {
 
-				} else if ("flag".equalsIgnoreCase(call_forward_action)) {
+			body.add("extension_template", extension_template);
+		}
+		if(originating_ip != null && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
 
-					body += "&call_forward_action=" + URLEncoder.encode("Flag", "UTF-8");
+			body.add("originating_ip", originating_ip);
+		}
+		if(session_id != null && !session_id.isEmpty()) {
 
-				}
-			}
-			
-			if(null != ttsMessage && !ttsMessage.isEmpty())
-				body += "&tts_message=" + URLEncoder.encode(ttsMessage, "UTF-8");
-			
-			tr.setPostBody(body);
-			result = tr.executeRequest();
+			body.add("session_id", session_id);
 		}
-		catch (IOException e) {
+		if(!redial) {
 
-			System.err.println("IOException while executing verify call API: " + e.getMessage());
-			throw new RuntimeException(e);
+			body.add("redial", Boolean.toString(redial));
 		}
 		
-		VerifyResponse response = gson.fromJson(result, VerifyResponse.class);
+		if (null != call_forward_action) {				
+			if ("block".equalsIgnoreCase(call_forward_action)) {
+
+				body.add("call_forward_action", "Block");
+
+			} else if ("flag".equalsIgnoreCase(call_forward_action)) {
+
+				body.add("call_forward_action", "Flag");
+
+			}
+		}
 		
-		return response;
+		if(null != ttsMessage && !ttsMessage.isEmpty())
+			body.add("tts_message", ttsMessage);
+		
+		tr.setPostBody(body);
+
+		return tr;
 	}
 	
 	/**
@@ -461,7 +603,7 @@ public class Verify {
 	 * After sending an end user a verification code, wait a minute or two to allow them to receive it and then respond, and then call this method to find out if the end user passed the code challenge.
 	 * This method takes only one parameter�the ID of this particular web service transaction.
 	 * @param resource_id	[Required]	The string returned in the Response Message that TeleSign sends upon receipt of your HTTP 1.1 Request Message - for either {@link com.telesign.verify#sms()} or {@link com.telesign.verify#call()}.
-	 * @param verify_code	[Required]	The verification code received from the user.
+	 * @param verify_code	[Required]	The verification code received from the end user.
 	 * @return A {@link com.telesign.verify.response.VerifyResponse} object, which contains the JSON-formatted response body from the TeleSign server.
 	 */
 	public VerifyResponse status(String resource_id, String verify_code) {
@@ -473,7 +615,7 @@ public class Verify {
 	 * After sending an end user a verification code, wait a minute or two to allow them to receive it and then respond, and then call this method to find out if the end user passed the code challenge.
 	 * This method takes only one parameter�the ID of this particular web service transaction.
 	 * @param resource_id	[Required]	The string returned in the Response Message that TeleSign sends upon receipt of your HTTP 1.1 Request Message - for either {@link com.telesign.verify#sms()} or {@link com.telesign.verify#call()}.
-	 * @param verify_code	[Required]	The verification code received from the user.
+	 * @param verify_code	[Required]	The verification code received from the end user.
 	 * @param originating_ip [Optional] Your end users IP Address. This value must be in the format defined by IETF in the 
 	 * 								   Internet-Draft document titled Textual Representation of IPv4 and IPv6 Addresses. Ex: originating_ip=192.168.123.456.
 	 * 								   Set it to null if not sending originating ip.
@@ -482,26 +624,12 @@ public class Verify {
 	 */
 	public VerifyResponse status(String resource_id, String verify_code, String originating_ip, String session_id) {
 
-		String result = null;
+		VerifyResponse response = null;
 		
 		try {
 
-			TeleSignRequest tr = new TeleSignRequest(API_BASE_URL, V1_VERIFY + resource_id, "GET", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-
-			if (verify_code != null)
-				tr.addParam("verify_code", verify_code);
-			
-			if(originating_ip != null && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
-
-				tr.addParam("originating_ip", originating_ip);
-			}
-			
-			if(session_id != null && !session_id.isEmpty()) {
-
-				tr.addParam("session_id", session_id);
-			}
-
-			result = tr.executeRequest();
+			TeleSignRequest tr = statusRequest(resource_id, verify_code, originating_ip, session_id);
+			response = tr.executeRequest(gson, VerifyResponse.class);
 		}
 		catch (IOException e) {
 
@@ -509,10 +637,28 @@ public class Verify {
 			throw new RuntimeException(e);
 		}
 		
-		VerifyResponse response = gson.fromJson(result, VerifyResponse.class);
-		
 		return response;
 	}
+
+	private TeleSignRequest statusRequest(String resource_id, String verify_code, String originating_ip, String session_id) throws IOException {
+
+		TeleSignRequest tr = templates().status.newRequest(resource_id);
+
+		if (verify_code != null)
+			tr.addParam("verify_code", verify_code);
+		
+		if(originating_ip != null && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+
+			tr.addParam("originating_ip", originating_ip);
+		}
+		
+		if(session_id != null && !session_id.isEmpty()) {
+
+			tr.addParam("session_id", session_id);
+		}
+
+		return tr;
+	}
 	
 	/**
 	 * Requests the verification result from TeleSign.
@@ -549,27 +695,11 @@ public class Verify {
 	 * @return  A {@link com.telesign.verify.response.VerifyResponse} object, which contains the JSON-formatted response body from the TeleSign server.
 	 */
 	public VerifyResponse registration(String phone_number, String bundle_id, String originating_ip, String session_id){
-		String result = null;
+		VerifyResponse response = null;
 
 		try {
-			TeleSignRequest tr = new TeleSignRequest(API_MOBILE_URL, V2_VERIFY_REGISTRATION + phone_number, "GET", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-			
-			if(null != bundle_id && !bundle_id.isEmpty()) {
-
-				tr.addParam("bundle_id", bundle_id);
-			}
-
-			if(originating_ip != null && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
-
-				tr.addParam("originating_ip", originating_ip);
-			}
-			
-			if(session_id != null && !session_id.isEmpty()) {
-
-				tr.addParam("session_id", session_id);
-			}
-			
-			result = tr.executeRequest();
+			TeleSignRequest tr = registrationRequest(phone_number, bundle_id, originating_ip, session_id);
+			response = tr.executeRequest(gson, VerifyResponse.class);
 		}
 		catch (IOException e) {
 
@@ -577,10 +707,30 @@ public class Verify {
 			throw new RuntimeException(e);
 		}
 			
-		VerifyResponse response = gson.fromJson(result, VerifyResponse.class);
-		
 		return response;
 	}
+
+	private TeleSignRequest registrationRequest(String phone_number, String bundle_id, String originating_ip, String session_id) throws IOException {
+
+		TeleSignRequest tr = templates().registration.newRequest(phone_number);
+		
+		if(null != bundle_id && !bundle_id.isEmpty()) {
+
+			tr.addParam("bundle_id", bundle_id);
+		}
+
+		if(originating_ip != null && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+
+			tr.addParam("originating_ip", originating_ip);
+		}
+		
+		if(session_id != null && !session_id.isEmpty()) {
+
+			tr.addParam("session_id", session_id);
+		}
+
+		return tr;
+	}
 	
 	/**
 	 * @param phone_number [Required] Your end user's phone number, including the country code.
@@ -632,73 +782,78 @@ public class Verify {
 	 * @return	A {@link com.telesign.verify.response.VerifyResponse} object, which contains the JSON-formatted response body from the TeleSign server.
 	 */
 	public VerifyResponse smartVerify(String phone_number, String ucid, String caller_id, String language, String verify_code, String preference, String ignore_risk, String originating_ip, String session_id, String ttsMessage, String pushMessage, String smsMessage){
-		String result = null;
+		VerifyResponse response = null;
 
 		try {
 
-			TeleSignRequest tr = new TeleSignRequest(API_BASE_URL, V1_VERIFY_SMART, "POST", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-			String body = "phone_number=" + URLEncoder.encode(phone_number, "UTF-8");
-
-			if(null != ucid) {
+			TeleSignRequest tr = smartVerifyRequest(phone_number, ucid, caller_id, language, verify_code, preference, ignore_risk, originating_ip, session_id, ttsMessage, pushMessage, smsMessage);
+			response = tr.executeRequest(gson, VerifyResponse.class);
+		}
+		catch (IOException e) {
 
-				body += "&ucid=" + URLEncoder.encode(ucid, "UTF-8");
-			}
-			
-			if(null != caller_id) {
+			System.err.println("IOException while executing smart verify API: " + e.getMessage());
+			throw new RuntimeException(e);
+		}	
+		
+		return response;
+	}
 
-				body += "&caller_id=" + URLEncoder.encode(caller_id, "UTF-8");
-			}
-			
-			if(null != language) {
+	private TeleSignRequest smartVerifyRequest(String phone_number, String ucid, String caller_id, String language, String verify_code, String preference, String ignore_risk, String originating_ip, String session_id, String ttsMessage, String pushMessage, String smsMessage) throws IOException {
 
-				body += "&language=" + URLEncoder.encode(language, "UTF-8");
-			}
-			
-			if(null != verify_code) {
+		TeleSignRequest tr = templates().smart.newRequest();
+		FormBody body = new FormBody().add("phone_number", phone_number);
 
-				body += "&verify_code=" + URLEncoder.encode(verify_code, "UTF-8");
-			}
-			
-			if(null != preference) {
+		if(null != ucid) {
 
-				body += "&preference=" + URLEncoder.encode(preference, "UTF-8");
-			}
-			
-			if(null != ignore_risk) {
+			body.add("ucid", ucid);
+		}
+		
+		if(null != caller_id) {
 
-				body += "&ignore_risk=" + URLEncoder.encode(ignore_risk, "UTF-8");
-			}
-			
-			if(null != ttsMessage && !ttsMessage.isEmpty())
-				body += "&tts_message=" + URLEncoder.encode(ttsMessage, "UTF-8");
-			
-			if(null != pushMessage && !pushMessage.isEmpty())
-				body += "&push_message=" + URLEncoder.encode(pushMessage, "UTF-8");
-			
-			if(null != smsMessage && !smsMessage.isEmpty())
-				body += "&sms_message=" + URLEncoder.encode(smsMessage, "UTF-8");
-			
-			if(null != originating_ip && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+			body.add("caller_id", caller_id);
+		}
+		
+		if(null != language) {
 
-				body += "&originating_ip=" + URLEncoder.encode(originating_ip, "UTF-8");
-			}
-			if(null != session_id && !session_id.isEmpty()) {
+			body.add("language", language);
+		}
+		
+		if(null != verify_code) {
 
-				body += "&session_id=" + URLEncoder.encode(session_id, "UTF-8");
-			}
+			body.add("verify_code", verify_code);
+		}
+		
+		if(null != preference) {
 
-			tr.setPostBody(body);			
-			result = tr.executeRequest();
+			body.add("preference", preference);
 		}
-		catch (IOException e) {
+		
+		if(null != ignore_risk) {
 
-			System.err.println("IOException while executing smart verify API: " + e.getMessage());
-			throw new RuntimeException(e);
-		}	
+			body.add("ignore_risk", ignore_risk);
+		}
 		
-		VerifyResponse response = gson.fromJson(result, VerifyResponse.class);
+		if(null != ttsMessage && !ttsMessage.isEmpty())
+			body.add("tts_message", ttsMessage);
 		
-		return response;
+		if(null != pushMessage && !pushMessage.isEmpty())
+			body.add("push_message", pushMessage);
+		
+		if(null != smsMessage && !smsMessage.isEmpty())
+			body.add("sms_message", smsMessage);
+		
+		if(null != originating_ip && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+
+			body.add("originating_ip", originating_ip);
+		}
+		if(null != session_id && !session_id.isEmpty()) {
+
+			body.add("session_id", session_id);
+		}
+
+		tr.setPostBody(body);
+
+		return tr;
 	}
 	
 	/**
@@ -739,54 +894,59 @@ public class Verify {
 	 */
 	public VerifyResponse push(String phone_number, String notification_type, String notification_value, String bundle_id, String message, 
 			String originating_ip, String session_id){
-		String result = null;
+		VerifyResponse response = null;
 
 		try {			
-			TeleSignRequest tr = new TeleSignRequest(API_MOBILE_URL, V2_VERIFY_PUSH, "POST", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-			String body = "phone_number=" + URLEncoder.encode(phone_number, "UTF-8");			
+			TeleSignRequest tr = pushRequest(phone_number, notification_type, notification_value, bundle_id, message, originating_ip, session_id);
+			response = tr.executeRequest(gson, VerifyResponse.class);
+		}
+		catch (IOException e) {
+
+			System.err.println("IOException while executing Verify push API: " + e.getMessage());
+			throw new RuntimeException(e);
+		}		
+		
+		return response;
+	}
+
+	private TeleSignRequest pushRequest(String phone_number, String notification_type, String notification_value, String bundle_id, String message, String originating_ip, String session_id) throws IOException {
+
+		TeleSignRequest tr = templates().push.newRequest();
+		FormBody body = new FormBody().add("phone_number", phone_number);			
+		
+		if(null == notification_type || notification_type.isEmpty()){
 			
-			if(null == notification_type || notification_type.isEmpty()){
-				
-				notification_type = "SIMPLE";
-				body += "&notification_type=" + URLEncoder.encode(notification_type, "UTF-8");
-				
-			} else if("CODE".equalsIgnoreCase(notification_type)) {
-				
-				body += "&notification_type=" + URLEncoder.encode(notification_type.toUpperCase(), "UTF-8");
-				body += "&notification_value=" + URLEncoder.encode(isValidNotificationValue(notification_value)?notification_value:null, "UTF-8");
-			}						
-
-			if(null != bundle_id) {
-
-				body += "&bundle_id=" + URLEncoder.encode(bundle_id, "UTF-8");
-			}
+			notification_type = "SIMPLE";
+			body.add("notification_type", notification_type);
 			
-			if(null != message) {
-
-				body += "&message=" + URLEncoder.encode(message, "UTF-8");
-			}
+		} else if("CODE".equalsIgnoreCase(notification_type)) {
 			
-			if(null != originating_ip && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+			body.add("notification_type", notification_type.toUpperCase());
+			body.add("notification_value", isValidNotificationValue(notification_value)?notification_value:null);
+		}						
 
-				body += "&originating_ip=" + URLEncoder.encode(originating_ip, "UTF-8");
-			}
-			if(null != session_id && !session_id.isEmpty()) {
+		if(null != bundle_id) {
 
-				body += "&session_id=" + URLEncoder.encode(session_id, "UTF-8");
-			}
-			
-			tr.setPostBody(body);
-			result = tr.executeRequest();
+			body.add("bundle_id", bundle_id);
 		}
-		catch (IOException e) {
+		
+		if(null != message) {
 
-			System.err.println("IOException while executing Verify push API: " + e.getMessage());
-			throw new RuntimeException(e);
-		}		
+			body.add("message", message);
+		}
 		
-		VerifyResponse response = gson.fromJson(result, VerifyResponse.class);
+		if(null != originating_ip && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+
+			body.add("originating_ip", originating_ip);
+		}
+		if(null != session_id && !session_id.isEmpty()) {
+
+			body.add("session_id", session_id);
+		}
 		
-		return response;
+		tr.setPostBody(body);
+
+		return tr;
 	}
 	
 	/**
@@ -810,49 +970,332 @@ public class Verify {
 	 * @return A {@link com.telesign.verify.response.VerifyResponse} object, which contains the JSON-formatted response body from the TeleSign server.
 	 */
 	public VerifyResponse softToken(String phone_number, String soft_token_id, String verify_code, String bundle_id, String originating_ip, String session_id){
-		String result = null;
+		VerifyResponse response = null;
 
 		try {			
-			TeleSignRequest tr = new TeleSignRequest(API_MOBILE_URL, V2_VERIFY_TOKEN, "POST", customer_id, secret_key, connectTimeout, readTimeout, httpsProtocol);
-			String body = "phone_number=" + URLEncoder.encode(phone_number, "UTF-8");		
+			TeleSignRequest tr = softTokenRequest(phone_number, soft_token_id, verify_code, bundle_id, originating_ip, session_id);
+			response = tr.executeRequest(gson, VerifyResponse.class);
+		}
+		catch (IOException e) {
+			System.err.println("IOException while executing Verify soft token API: " + e.getMessage());
+			throw new RuntimeException(e);
+			}
+		
+		return response;
+		}
 
-			if(null != soft_token_id) {
+	private TeleSignRequest softTokenRequest(String phone_number, String soft_token_id, String verify_code, String bundle_id, String originating_ip, String session_id) throws IOException {
 
-				body += "&soft_token_id=" + URLEncoder.encode(soft_token_id, "UTF-8");
-			}
-			
-			if(null != verify_code) {
+		TeleSignRequest tr = templates().softToken.newRequest();
+		FormBody body = new FormBody().add("phone_number", phone_number);		
 
-				body += "&verify_code=" + URLEncoder.encode(verify_code, "UTF-8");
-			}
-			
-			if(null != bundle_id) {
+		if(null != soft_token_id) {
 
-				body += "&bundle_id=" + URLEncoder.encode(bundle_id, "UTF-8");
-			}
-			
-			if(null != originating_ip && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+			body.add("soft_token_id", soft_token_id);
+		}
+		
+		if(null != verify_code) {
 
-				body += "&originating_ip=" + URLEncoder.encode(originating_ip, "UTF-8");
-			}
-			
-			if(null != session_id && !session_id.isEmpty()) {
+			body.add("verify_code", verify_code);
+		}
+		
+		if(null != bundle_id) {
 
-				body += "&session_id=" + URLEncoder.encode(session_id, "UTF-8");
-			}
-			
-			tr.setPostBody(body);
-			result = tr.executeRequest();
+			body.add("bundle_id", bundle_id);
 		}
-		catch (IOException e) {
-			System.err.println("IOException while executing Verify soft token API: " + e.getMessage());
-			throw new RuntimeException(e);
-			}
 		
-		VerifyResponse response = gson.fromJson(result, VerifyResponse.class);
+		if(null != originating_ip && !originating_ip.isEmpty() && IpValidator.isValidIpAddress(originating_ip)) {
+
+			body.add("originating_ip", originating_ip);
+		}
 		
+		if(null != session_id && !session_id.isEmpty()) {
+
+			body.add("session_id", session_id);
+		}
+		
+		tr.setPostBody(body);
+
+		return tr;
+	}
+
+	/**
+	 * The asynchronous form of {@link #sms(String)}.
+	 * @param phone_number	[Required] A string containing the user's phone number.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> smsAsync(String phone_number) {
+
+		return smsAsync(phone_number, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #sms(String, String)}.
+	 * @param phone_number	[Required]	A string containing the user's phone number.
+	 * @param language		[Optional]	A string containing the IETF language tag. Set this value to "null" to use English (the default).
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> smsAsync(String phone_number, String language) {
+
+		return smsAsync(phone_number, language, null, null, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #sms(String, String, String, String, String, String)}. The parameters are described there.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> smsAsync(final String phone_number, final String language, final String verify_code, final String template, final String originating_ip, final String session_id) {
+
+		VerifyResponse response = rejected(RateLimiterRegistry.VERIFY_SMS, phone_number);
+
+		if (response != null) {
+
+			return CompletableFuture.completedFuture(response);
+		}
+
+		return executeAsync(() -> smsRequest(phone_number, language, verify_code, template, originating_ip, session_id), VerifyResponse.class)
+				.thenApply(sent -> reject(RateLimiterRegistry.VERIFY_SMS, phone_number, sent));
+	}
+
+	/**
+	 * The asynchronous form of {@link #call(String)}.
+	 * @param phone_number	[Required]	A string containing the user's phone number.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> callAsync(String phone_number) {
+
+		return callAsync(phone_number, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #call(String, String)}.
+	 * @param phone_number	[Required]	A string containing the user's phone number.
+	 * @param language		[Optional]	A string containing the IETF language tag. Set this value to "null" to use English (the default).
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> callAsync(String phone_number, String language) {
+
+		return callAsync(phone_number, language, null, null, 0, null, true, null, null, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #call(String, String, String, String, int, String, boolean, String, String, String, String)}. The parameters are described there.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> callAsync(final String phone_number, final String language, final String verify_code, final String verify_method, final int extension_type, final String extension_template, final boolean redial,
+			final String originating_ip, final String session_id, final String call_forward_action, final String ttsMessage) {
+
+		VerifyResponse response = rejected(RateLimiterRegistry.VERIFY_CALL, phone_number);
+
+		if (response != null) {
+
+			return CompletableFuture.completedFuture(response);
+		}
+
+		return executeAsync(() -> callRequest(phone_number, language, verify_code, verify_method, extension_type, extension_template, redial, originating_ip, session_id, call_forward_action, ttsMessage), VerifyResponse.class)
+				.thenApply(sent -> reject(RateLimiterRegistry.VERIFY_CALL, phone_number, sent));
+	}
+
+	/**
+	 * The asynchronous form of {@link #status(String)}.
+	 * @param resource_id	[Required]	The reference_id returned in the Response to {@link #sms(String)} or {@link #call(String)}. It identifies the transaction.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> statusAsync(String resource_id) {
+
+		return statusAsync(resource_id, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #status(String, String)}.
+	 * @param resource_id	[Required]	The reference_id returned in the Response to {@link #sms(String)} or {@link #call(String)}. It identifies the transaction.
+	 * @param verify_code	[Optional]	The verification code received from the end user. Set this value to "null" to only check the status.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> statusAsync(String resource_id, String verify_code) {
+
+		return statusAsync(resource_id, verify_code, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #status(String, String, String, String)}. The parameters are described there.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> statusAsync(final String resource_id, final String verify_code, final String originating_ip, final String session_id) {
+
+		return executeAsync(() -> statusRequest(resource_id, verify_code, originating_ip, session_id), VerifyResponse.class);
+	}
+
+	/**
+	 * The asynchronous form of {@link #registration(String, String)}.
+	 * @param phone_number	[Required]	A string containing the user's phone number.
+	 * @param bundle_id		[Optional]	The identifier associated with your whitelabel app (your customized/branded version of the AuthID application).
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> registrationAsync(String phone_number, String bundle_id) {
+
+		return registrationAsync(phone_number, bundle_id, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #registration(String, String, String, String)}. The parameters are described there.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> registrationAsync(final String phone_number, final String bundle_id, final String originating_ip, final String session_id) {
+
+		return executeAsync(() -> registrationRequest(phone_number, bundle_id, originating_ip, session_id), VerifyResponse.class);
+	}
+
+	/**
+	 * The asynchronous form of {@link #smartVerify(String, String, String, String, String, String, String)}. The parameters are described there.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> smartVerifyAsync(String phone_number, String ucid, String caller_id, String language, String verify_code, String preference, String ignore_risk) {
+
+		return smartVerifyAsync(phone_number, ucid, caller_id, language, verify_code, preference, ignore_risk, null, null, null, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #smartVerify(String, String, String, String, String, String, String, String, String, String, String, String)}. The parameters are described there.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> smartVerifyAsync(final String phone_number, final String ucid, final String caller_id, final String language, final String verify_code, final String preference, final String ignore_risk,
+			final String originating_ip, final String session_id, final String ttsMessage, final String pushMessage, final String smsMessage) {
+
+		return executeAsync(() -> smartVerifyRequest(phone_number, ucid, caller_id, language, verify_code, preference, ignore_risk, originating_ip, session_id, ttsMessage, pushMessage, smsMessage), VerifyResponse.class);
+	}
+
+	/**
+	 * The asynchronous form of {@link #push(String, String)}.
+	 * @param phone_number	[Required]	A string containing the user's phone number.
+	 * @param bundle_id		[Optional]	The identifier associated with your whitelabel app (your customized/branded version of the AuthID application).
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> pushAsync(String phone_number, String bundle_id) {
+
+		return pushAsync(phone_number, null, null, bundle_id, null, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #push(String, String, String, String, String, String, String)}. The parameters are described there.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> pushAsync(final String phone_number, final String notification_type, final String notification_value, final String bundle_id, final String message,
+			final String originating_ip, final String session_id) {
+
+		return executeAsync(() -> pushRequest(phone_number, notification_type, notification_value, bundle_id, message, originating_ip, session_id), VerifyResponse.class);
+	}
+
+	/**
+	 * The asynchronous form of {@link #softToken(String, String, String, String)}.
+	 * @param phone_number	[Required]	A string containing the user's phone number.
+	 * @param soft_token_id	[Optional]	The alphanumeric string that uniquely identifies your TeleSign soft token subscription.
+	 * @param verify_code	[Required]	The verification code received from the end user.
+	 * @param bundle_id		[Optional]	The identifier associated with your whitelabel app (your customized/branded version of the AuthID application).
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> softTokenAsync(String phone_number, String soft_token_id, String verify_code, String bundle_id) {
+
+		return softTokenAsync(phone_number, soft_token_id, verify_code, bundle_id, null, null);
+	}
+
+	/**
+	 * The asynchronous form of {@link #softToken(String, String, String, String, String, String)}. The parameters are described there.
+	 * @return A CompletableFuture that completes with the {@link com.telesign.verify.response.VerifyResponse}, or exceptionally if the request failed.
+	 */
+	public CompletableFuture<VerifyResponse> softTokenAsync(final String phone_number, final String soft_token_id, final String verify_code, final String bundle_id, final String originating_ip, final String session_id) {
+
+		return executeAsync(() -> softTokenRequest(phone_number, soft_token_id, verify_code, bundle_id, originating_ip, session_id), VerifyResponse.class);
+	}
+
+	private Executor executor() {
+
+		Executor current = executor;
+
+		return (current != null) ? current : TeleSignExecutors.getDefault();
+	}
+
+	private Templates templates() {
+
+		Templates current = templates;
+
+		// Templates are immutable, so a race only builds a second, identical set.
+		if (current == null) {
+
+			current = new Templates();
+			templates = current;
+		}
+
+		return current;
+	}
+
+	/** The request template of each endpoint. */
+	private final class Templates {
+
+		final RequestTemplate sms = template(API_BASE_URL, V1_VERIFY_SMS, "POST", RateLimiterRegistry.VERIFY_SMS);
+		final RequestTemplate call = template(API_BASE_URL, V1_VERIFY_CALL, "POST", RateLimiterRegistry.VERIFY_CALL);
+		final RequestTemplate smart = template(API_BASE_URL, V1_VERIFY_SMART, "POST", RateLimiterRegistry.VERIFY_SMART);
+		final RequestTemplate status = template(API_BASE_URL, V1_VERIFY, "GET", RateLimiterRegistry.VERIFY_STATUS);
+		final RequestTemplate push = template(API_MOBILE_URL, V2_VERIFY_PUSH, "POST", RateLimiterRegistry.VERIFY_PUSH);
+		final RequestTemplate softToken = template(API_MOBILE_URL, V2_VERIFY_TOKEN, "POST", RateLimiterRegistry.VERIFY_SOFT_TOKEN);
+		final RequestTemplate registration = template(API_MOBILE_URL, V2_VERIFY_REGISTRATION, "GET", RateLimiterRegistry.VERIFY_REGISTRATION);
+
+		private RequestTemplate template(String base, String resource, String method, String endpoint) {
+
+			RequestTemplate template = new RequestTemplate(base, resource, method, customer_id, secret_key, signer, connectTimeout, readTimeout,
+					httpsProtocol, transport)
+					.withRateLimit(RateLimiterRegistry.getDefault(), endpoint)
+					.withRetryPolicy(retryPolicy)
+					.withCircuitBreaker(CircuitBreakerRegistry.getDefault(), endpoint);
+			HedgePolicy hedging = hedgePolicy;
+
+			// Only the status and registration lookups are hedged; sending a code twice is not.
+			return (hedging != null && method.equals("GET")) ? template.withHedging(hedging) : template;
+		}
+	}
+
+	/** @return The remembered answer of an endpoint for a rejected phone number, or null. */
+	private VerifyResponse rejected(String endpoint, String phone_number) {
+
+		NegativeCache current = negativeCache;
+
+		return (current == null) ? null : current.get(endpoint, phone_number, VerifyResponse.class);
+	}
+
+	/** Remembers the phone number of a response of an endpoint with errors, and returns the response. */
+	private VerifyResponse reject(String endpoint, String phone_number, VerifyResponse response) {
+
+		NegativeCache current = negativeCache;
+
+		if (current != null && response != null && response.errors != null && response.errors.length > 0) {
+
+			current.put(endpoint, phone_number, response);
+		}
+
 		return response;
+	}
+
+	/** Builds the request of an asynchronous call; may fail while encoding its parameters. */
+	private interface RequestBuilder {
+
+		TeleSignRequest build() throws IOException;
+	}
+
+	private <T> CompletableFuture<T> executeAsync(RequestBuilder builder, final Class<T> responseType) {
+
+		try {
+
+			return builder.build().executeRequestAsync(gson, responseType, executor());
 		}
+		catch (IOException e) {
+
+			CompletableFuture<T> failed = new CompletableFuture<T>();
+			failed.completeExceptionally(e);
+
+			return failed;
+		}
+	}
+
 	/**
 	 * Matches the notification_value for a string having 6-8 digits 
 	 * @param notification_value
@@ -0,0 +1,146 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.telesign.phoneid.BulkPhoneId;
+import com.telesign.phoneid.PhoneId;
+import com.telesign.phoneid.response.PhoneIdScoreResponse;
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.util.Transport;
+import com.telesign.util.TransportRequest;
+import com.telesign.util.TransportResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class BulkPhoneIdTest {
+
+	private final ScheduledExecutorService timer = Executors.newScheduledThreadPool(4);
+
+	@After
+	public void stopTimer() {
+		timer.shutdownNow();
+	}
+
+	@Test
+	public void resultsComeBackInOrderWithPerItemErrors() throws Exception {
+		DelayedTransport transport = new DelayedTransport("13105550013");
+		BulkPhoneId bulk = new BulkPhoneId(new PhoneId("CUSTOMER", "c2VjcmV0", transport), 4);
+
+		List<String> phone_numbers = new ArrayList<String>();
+		for (int i = 0; i < 40; i++) {
+			phone_numbers.add("131055500" + (i < 10 ? "0" : "") + i);
+		}
+
+		List<BulkPhoneId.Item<PhoneIdStandardResponse>> items = bulk.lookupAll(BulkPhoneId.Lookup.STANDARD, phone_numbers, null);
+
+		assertEquals(40, items.size());
+		for (int i = 0; i < 40; i++) {
+			BulkPhoneId.Item<PhoneIdStandardResponse> item = items.get(i);
+			assertEquals(i, item.getIndex());
+			assertEquals(phone_numbers.get(i), item.getPhoneNumber());
+			if (i == 13) {
+				assertFalse(item.isSuccessful());
+				assertTrue(item.getError() instanceof IOException);
+			}
+			else {
+				assertEquals(phone_numbers.get(i), item.getResponse().reference_id);
+			}
+		}
+		assertTrue(transport.maxInFlight.get() <= 4);
+	}
+
+	@Test
+	public void resultsCanBeDeliveredAsTheyComplete() throws Exception {
+		DelayedTransport transport = new DelayedTransport();
+		BulkPhoneId bulk = new BulkPhoneId(new PhoneId("CUSTOMER", "c2VjcmV0", transport), 8);
+
+		List<String> phone_numbers = new ArrayList<String>();
+		for (int i = 0; i < 200; i++) {
+			phone_numbers.add(Integer.toString(1310555000 + i));
+		}
+
+		final Set<String> seen = Collections.synchronizedSet(new HashSet<String>());
+		BulkPhoneId.Summary summary = bulk.run(BulkPhoneId.Lookup.SCORE, phone_numbers.iterator(), "BACF", false,
+				new BulkPhoneId.Listener<PhoneIdScoreResponse>() {
+					@Override
+					public void onItem(BulkPhoneId.Item<PhoneIdScoreResponse> item) {
+						seen.add(item.getResponse().reference_id);
+					}
+				});
+
+		assertEquals(200, summary.getCount());
+		assertEquals(0, summary.getFailedCount());
+		assertTrue(summary.getThroughput() > 0);
+		assertEquals(new HashSet<String>(phone_numbers), seen);
+		assertTrue(transport.maxInFlight.get() <= 8);
+		assertEquals(200, transport.calls.get());
+	}
+
+	/** Answers each Request after a random delay, with the phone number as the reference ID, and fails the given numbers. */
+	private class DelayedTransport implements Transport {
+
+		private final Set<String> failing;
+		final AtomicInteger calls = new AtomicInteger();
+		final AtomicInteger inFlight = new AtomicInteger();
+		final AtomicInteger maxInFlight = new AtomicInteger();
+
+		DelayedTransport(String... failing) {
+			this.failing = new HashSet<String>(java.util.Arrays.asList(failing));
+		}
+
+		@Override
+		public TransportResponse send(TransportRequest request) throws IOException {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public CompletableFuture<TransportResponse> sendAsync(final TransportRequest request, Executor executor) {
+			final CompletableFuture<TransportResponse> response = new CompletableFuture<TransportResponse>();
+			String path = request.getUrl().getPath();
+			final String phone_number = path.substring(path.lastIndexOf('/') + 1);
+
+			calls.incrementAndGet();
+			int current = inFlight.incrementAndGet();
+			maxInFlight.accumulateAndGet(current, Math::max);
+
+			timer.schedule(new Runnable() {
+				@Override
+				public void run() {
+					inFlight.decrementAndGet();
+					if (failing.contains(phone_number)) {
+						response.completeExceptionally(new IOException("Connection reset"));
+					}
+					else {
+						byte[] json = ("{\"reference_id\":\"" + phone_number + "\",\"status\":{\"code\":300}}").getBytes(StandardCharsets.UTF_8);
+						response.complete(new TransportResponse(200, Collections.<String, String>emptyMap(), json));
+					}
+				}
+			}, ThreadLocalRandom.current().nextInt(1, 10), TimeUnit.MILLISECONDS);
+
+			return response;
+		}
+	}
+}
@@ -0,0 +1,123 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.telesign.phoneid.PhoneId;
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.util.CircuitBreaker;
+import com.telesign.util.CircuitBreaker.State;
+import com.telesign.util.CircuitBreakerOpenException;
+import com.telesign.util.CircuitBreakerRegistry;
+import com.telesign.util.LoopbackTransport;
+import com.telesign.util.RateLimiterRegistry;
+import com.telesign.util.RetryPolicy;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class CircuitBreakerTest {
+
+	private static final String ERROR_RESPONSE = "{\"status\":{\"code\":503,\"description\":\"Service unavailable\"}}";
+
+	private static final String FALLBACK_RESPONSE = "{\"status\":{\"code\":300,\"description\":\"Transaction successfully completed\"}}";
+
+	@Test
+	public void failuresOpenTheBreakerAndProbesCloseIt() throws Exception {
+		final AtomicLong now = new AtomicLong();
+		CircuitBreaker breaker = new CircuitBreaker("test", new CircuitBreaker.Config(4, 50, 100, 10, 500, TimeUnit.MILLISECONDS), now::get);
+		final List<String> changes = Collections.synchronizedList(new ArrayList<String>());
+		breaker.addListener((b, from, to) -> changes.add(from + ">" + to));
+
+		breaker.record(0, false);
+		breaker.record(0, false);
+		breaker.record(0, true);
+		assertEquals(State.CLOSED, breaker.getState());
+		breaker.record(0, true);
+		assertEquals(State.OPEN, breaker.getState());
+		assertFalse(breaker.tryAcquirePermission());
+
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(499));
+		assertFalse(breaker.tryAcquirePermission());
+		assertEquals(State.OPEN, breaker.getState());
+
+		now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+		assertTrue(breaker.tryAcquirePermission());
+		assertTrue(breaker.tryAcquirePermission());
+		assertTrue(breaker.tryAcquirePermission());
+		assertFalse(breaker.tryAcquirePermission());
+		assertEquals(State.HALF_OPEN, breaker.getState());
+
+		breaker.record(0, false);
+		breaker.record(0, false);
+		breaker.record(0, false);
+		assertEquals(State.CLOSED, breaker.getState());
+		assertEquals(3, breaker.getRejectedCount());
+		assertEquals("[CLOSED>OPEN, OPEN>HALF_OPEN, HALF_OPEN>CLOSED]", changes.toString());
+	}
+
+	@Test
+	public void slowCallsOpenTheBreaker() {
+		CircuitBreaker breaker = new CircuitBreaker("test", new CircuitBreaker.Config(2, 100, 50, 10, 1000, TimeUnit.MILLISECONDS));
+
+		breaker.record(TimeUnit.MILLISECONDS.toNanos(1), false);
+		breaker.record(TimeUnit.MILLISECONDS.toNanos(20), false);
+
+		assertEquals(State.OPEN, breaker.getState());
+	}
+
+	@Test
+	public void anOpenBreakerFailsFastOrFallsBack() throws Exception {
+		CircuitBreakerRegistry registry = CircuitBreakerRegistry.getDefault();
+		LoopbackTransport transport = new LoopbackTransport().respond("GET", "/v1/phoneid/standard/", 503, ERROR_RESPONSE);
+		PhoneId phoneId = new PhoneId("BROKEN", "c2VjcmV0", transport);
+		phoneId.setRetryPolicy(RetryPolicy.NONE);
+		registry.setConfig(new CircuitBreaker.Config(2, 50, 100, 10, 60, TimeUnit.SECONDS));
+
+		try {
+			assertEquals(503, phoneId.standard("13105551212").status.code);
+			assertEquals(503, phoneId.standard("13105551212").status.code);
+
+			CircuitBreaker breaker = registry.get("rest.telesign.com", RateLimiterRegistry.PHONEID_STANDARD);
+			assertEquals(State.OPEN, breaker.getState());
+
+			try {
+				phoneId.standard("13105551212");
+				fail("The open breaker let the request through");
+			}
+			catch (RuntimeException e) {
+				assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+			}
+			try {
+				phoneId.standardAsync("13105551212").get(5, TimeUnit.SECONDS);
+				fail("The open breaker let the request through");
+			}
+			catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof CircuitBreakerOpenException);
+			}
+
+			registry.setFallback(RateLimiterRegistry.PHONEID_STANDARD, resource -> FALLBACK_RESPONSE);
+			assertEquals(300, phoneId.standard("13105551212").status.code);
+			PhoneIdStandardResponse response = phoneId.standardAsync("13105551212").get(5, TimeUnit.SECONDS);
+			assertEquals(300, response.status.code);
+			assertEquals(4, breaker.getRejectedCount());
+		}
+		finally {
+			registry.setFallback(RateLimiterRegistry.PHONEID_STANDARD, null);
+			registry.setConfig(CircuitBreaker.Config.getDefault());
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.URL;
+
+import org.junit.Test;
+
+import com.telesign.util.ConnectionPool;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class ConnectionPoolTest {
+
+	@Test
+	public void leasesAreBoundedPerHost() throws IOException {
+		ConnectionPool pool = new ConnectionPool();
+		pool.setMaxConnectionsPerHost(2);
+		pool.setPoolWaitTimeout(0);
+
+		URL rest = new URL("https://rest.telesign.com/v1/phoneid/standard/15551234567");
+		URL mobile = new URL("https://rest-mobile.telesign.com/v2/verify/push");
+
+		ConnectionPool.Lease first = pool.acquire(rest);
+		ConnectionPool.Lease second = pool.acquire(rest);
+		ConnectionPool.Lease other = pool.acquire(mobile);
+
+		assertEquals(2, pool.getInUse("rest.telesign.com:443"));
+		assertEquals(3, pool.getInUse());
+
+		try {
+			pool.acquire(rest);
+			fail("A third lease to the same host should have timed out");
+		} catch (IOException expected) {
+			assertEquals(1, pool.getWaitTimeoutCount());
+		}
+
+		first.release();
+		first.release();
+		assertEquals(1, pool.getInUse("rest.telesign.com:443"));
+
+		pool.acquire(rest).release();
+		second.release();
+		other.release();
+
+		assertEquals(0, pool.getInUse());
+		assertEquals(4, pool.getLeaseCount());
+		assertTrue(pool.getWaitCount() >= 1);
+	}
+
+	@Test
+	public void limitCanBeRaisedWhileLeased() throws IOException {
+		ConnectionPool pool = new ConnectionPool();
+		pool.setMaxConnectionsPerHost(1);
+		pool.setPoolWaitTimeout(0);
+
+		URL rest = new URL("https://rest.telesign.com/v1/verify/sms");
+		ConnectionPool.Lease first = pool.acquire(rest);
+
+		pool.setMaxConnectionsPerHost(2);
+		ConnectionPool.Lease second = pool.acquire(rest);
+		assertEquals(2, pool.getInUse("rest.telesign.com:443"));
+
+		first.release();
+		second.release();
+		assertEquals(0, pool.getInUse());
+	}
+
+	@Test
+	public void theKeepAliveCacheIsLeftAloneUnlessAsked() {
+		ConnectionPool.getDefault();
+		assertNull(System.getProperty("http.maxConnections"));
+	}
+}
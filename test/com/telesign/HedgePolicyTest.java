@@ -0,0 +1,92 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.telesign.phoneid.PhoneId;
+import com.telesign.util.HedgePolicy;
+import com.telesign.util.Transport;
+import com.telesign.util.TransportRequest;
+import com.telesign.util.TransportResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class HedgePolicyTest {
+
+	private static final String OK_RESPONSE = "{\"status\":{\"code\":300,\"description\":\"Transaction successfully completed\"}}";
+
+	@Test
+	public void aLateRequestIsHedgedAndTheFirstResponseWins() throws Exception {
+		SlowTransport transport = new SlowTransport(1, 2000);
+		PhoneId phoneId = new PhoneId("HEDGED", "c2VjcmV0", transport);
+		HedgePolicy policy = new HedgePolicy(95, 20, TimeUnit.MILLISECONDS, 1.0);
+		phoneId.setHedgePolicy(policy);
+
+		long start = System.nanoTime();
+		assertEquals(300, phoneId.standard("13105551212").status.code);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue("took " + elapsed + " ms", elapsed < 1000);
+		assertEquals(2, transport.calls.get());
+		assertEquals(1, policy.getHedgeCount());
+		assertEquals(1.0, policy.getWinRate(), 0);
+
+		transport.slowCalls.set(1);
+		assertEquals(300, phoneId.standardAsync("13105551212").get(1, TimeUnit.SECONDS).status.code);
+		assertEquals(2, policy.getWinCount());
+	}
+
+	@Test
+	public void hedgesKeepWithinTheirBudget() throws Exception {
+		SlowTransport transport = new SlowTransport(Integer.MAX_VALUE, 15);
+		PhoneId phoneId = new PhoneId("HEDGED", "c2VjcmV0", transport);
+		HedgePolicy policy = new HedgePolicy(95, 1, TimeUnit.MILLISECONDS, 0.1);
+		phoneId.setHedgePolicy(policy);
+
+		for (int i = 0; i < 20; i++) {
+			phoneId.standard("13105551212");
+		}
+
+		assertEquals(20, policy.getRequestCount());
+		assertEquals(2, policy.getHedgeCount());
+		assertTrue(policy.getHedgeRate() <= 0.1);
+	}
+
+	/** Answers the first calls slowly, and the others at once. */
+	private static class SlowTransport implements Transport {
+
+		final AtomicInteger calls = new AtomicInteger();
+		final AtomicInteger slowCalls;
+		private final long delayMillis;
+
+		SlowTransport(int slowCalls, long delayMillis) {
+			this.slowCalls = new AtomicInteger(slowCalls);
+			this.delayMillis = delayMillis;
+		}
+
+		@Override
+		public TransportResponse send(TransportRequest request) throws IOException {
+			calls.incrementAndGet();
+			if (slowCalls.getAndDecrement() > 0) {
+				try {
+					Thread.sleep(delayMillis);
+				}
+				catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			return new TransportResponse(200, Collections.<String, String>emptyMap(), OK_RESPONSE.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
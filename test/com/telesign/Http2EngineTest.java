@@ -0,0 +1,183 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.telesign.util.Http2Engine;
+import com.telesign.util.RetryPolicy;
+import com.telesign.util.SSLContextCache;
+import com.telesign.util.TeleSignRequest;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class Http2EngineTest {
+
+	/** Answers with the x-ts-date, Date and Content-Type header fields of the Request. */
+	private final HttpHandler handler = new HttpHandler() {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			exchange.getRequestBody().close();
+			String reply = exchange.getRequestHeaders().getFirst("x-ts-date") + "|" + exchange.getRequestHeaders().getFirst("Date")
+					+ "|" + exchange.getRequestHeaders().getFirst("Content-Type");
+			byte[] bytes = reply.getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		}
+	};
+
+	private HttpServer server;
+	private String base;
+
+	@Before
+	public void setUp() throws IOException {
+		// The stand-in only speaks HTTP 1.1, so every request exercises the fallback.
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/", handler);
+		server.start();
+
+		base = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@After
+	public void tearDown() {
+		server.stop(0);
+	}
+
+	@Test
+	public void fallsBackToHttp11AndSignsWithTsDate() throws Exception {
+		Http2Engine engine = new Http2Engine();
+
+		TeleSignRequest tr = new TeleSignRequest(base, "/v1/verify/sms", "POST", "CUSTOMER", "c2VjcmV0", 5000, 5000, "TLSv1.2");
+		tr.setTransport(engine);
+		tr.setPostBody("phone_number=13105551212");
+
+		String[] reply = tr.executeRequestAsync().get(10, TimeUnit.SECONDS).split("\\|");
+
+		assertNotNull(reply[0]);
+		assertTrue(reply[0], reply[0].matches("\\w{3}, \\d{2} \\w{3} \\d{4} .*"));
+		assertEquals("null", reply[1]);
+		assertEquals("application/x-www-form-urlencoded", reply[2]);
+
+		assertEquals("null", tr.executeRequest().split("\\|")[1]);
+		assertEquals(0, engine.getHttp2ResponseCount());
+		assertEquals(2, engine.getHttp11ResponseCount());
+	}
+
+	@Test
+	public void fallsBackToHttp11OverTls() throws Exception {
+		// The stand-in offers no ALPN protocol, so the client keeps to HTTP 1.1 after the handshake.
+		SelfSignedServer https = new SelfSignedServer("TLSv1.2", handler);
+		Http2Engine engine = new Http2Engine(null, new SSLContextCache());
+		try {
+			TeleSignRequest tr = new TeleSignRequest(https.getBase(), "/v1/phoneid/standard/13105551212", "GET", "CUSTOMER", "c2VjcmV0", 5000, 5000, "TLSv1.2");
+			tr.setTransport(engine);
+
+			String[] reply = tr.executeRequestAsync().get(10, TimeUnit.SECONDS).split("\\|");
+			assertTrue(reply[0], reply[0].matches("\\w{3}, \\d{2} \\w{3} \\d{4} .*"));
+			assertEquals("null", reply[1]);
+			assertEquals(0, engine.getHttp2ResponseCount());
+			assertEquals(1, engine.getHttp11ResponseCount());
+		} finally {
+			https.stop();
+		}
+	}
+
+	@Test
+	public void concurrentFirstRequestsBuildOneClient() throws Exception {
+		final Http2Engine engine = new Http2Engine();
+		final URL url = new URL(base + "/v1/phoneid/standard/13105551212");
+		int before = selectorThreads();
+
+		final CyclicBarrier start = new CyclicBarrier(16);
+		ExecutorService callers = Executors.newFixedThreadPool(16);
+		try {
+			List<Future<HttpResponse<byte[]>>> responses = new ArrayList<Future<HttpResponse<byte[]>>>();
+			for (int i = 0; i < 16; i++) {
+				responses.add(callers.submit(new Callable<HttpResponse<byte[]>>() {
+					@Override
+					public HttpResponse<byte[]> call() throws Exception {
+						start.await();
+						return engine.execute("GET", url, Collections.<String, String>emptyMap(), null, 4321, 5000, "TLSv1.2").get(10, TimeUnit.SECONDS);
+					}
+				}));
+			}
+			for (Future<HttpResponse<byte[]>> response : responses) {
+				assertEquals(200, response.get(10, TimeUnit.SECONDS).statusCode());
+			}
+		} finally {
+			callers.shutdown();
+		}
+
+		assertEquals(1, selectorThreads() - before);
+	}
+
+	@Test
+	public void retriedRequestsShareOneClient() throws Exception {
+		// Every third attempt succeeds, so each Request is sent three times.
+		final AtomicInteger attempts = new AtomicInteger();
+		server.createContext("/flaky", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getRequestBody().close();
+				exchange.sendResponseHeaders(attempts.incrementAndGet() % 3 == 0 ? 200 : 503, -1);
+				exchange.close();
+			}
+		});
+		Http2Engine engine = new Http2Engine();
+		int before = selectorThreads();
+
+		// The deadline cuts the timeouts of every attempt to the rest of the budget, so no two attempts have the same timeouts.
+		RetryPolicy policy = new RetryPolicy(3, 1, 5, 20000, TimeUnit.MILLISECONDS);
+		for (int i = 0; i < 4; i++) {
+			TeleSignRequest tr = new TeleSignRequest(base, "/flaky", "GET", "CUSTOMER", "c2VjcmV0", 30000, 30000, "TLSv1.2");
+			tr.setTransport(engine);
+			tr.setRetryPolicy(policy);
+			tr.executeRequest();
+		}
+
+		assertEquals(12, attempts.get());
+		assertEquals(12, engine.getHttp11ResponseCount());
+		assertEquals(1, selectorThreads() - before);
+	}
+
+	/** @return The number of live selector threads of HttpClients. */
+	private static int selectorThreads() {
+		int count = 0;
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			if (thread.isAlive() && thread.getName().endsWith("SelectorManager")) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
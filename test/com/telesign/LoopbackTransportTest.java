@@ -0,0 +1,86 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URLEncoder;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.telesign.phoneid.PhoneId;
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.util.LoopbackTransport;
+import com.telesign.util.TeleSignRequest;
+import com.telesign.util.TransportRequest;
+import com.telesign.verify.Verify;
+import com.telesign.verify.response.VerifyResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class LoopbackTransportTest {
+
+	private static final String SMS_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"updated_on\":\"2016-01-01T00:00:00.000000Z\",\"code\":290,\"description\":\"Message in progress\"}}";
+
+	@Test
+	public void verifyCallsAreSignedAndAnsweredWithoutASocket() throws Exception {
+		LoopbackTransport transport = new LoopbackTransport()
+				.respond("POST", "/v1/verify/sms", 200, SMS_RESPONSE)
+				.respond("GET", "/v1/verify/", 200, SMS_RESPONSE);
+		Verify verify = new Verify("CUSTOMER", "c2VjcmV0", transport);
+
+		VerifyResponse response = verify.sms("13105551212");
+
+		assertEquals(290, response.status.code);
+		assertEquals("0123456789ABCDEF0123456789ABCDEF", response.reference_id);
+
+		TransportRequest request = transport.getLastRequest();
+		assertEquals("POST", request.getMethod());
+		assertEquals("https://rest.telesign.com/v1/verify/sms", request.getUrl().toString());
+		assertEquals("application/x-www-form-urlencoded", request.getHeaders().get("Content-Type"));
+		assertTrue(request.getHeaders().get("Authorization").startsWith("TSA CUSTOMER:"));
+		assertEquals("phone_number=13105551212", new String(request.getBody(), "UTF-8"));
+
+		assertEquals(290, verify.statusAsync(response.reference_id).get(5, TimeUnit.SECONDS).status.code);
+		assertEquals(2, transport.getRequestCount());
+	}
+
+	@Test
+	public void responsesAreDecodedAsUtf8() throws Exception {
+		String json = "{\"reference_id\":\"ABC\",\n\"status\":{\"code\":290,\"description\":\"Nachricht \u00fcbermittelt \u2713\"}}";
+		LoopbackTransport transport = new LoopbackTransport().respond("POST", "/v1/verify/sms", 200, json);
+
+		VerifyResponse response = new Verify("CUSTOMER", "c2VjcmV0", transport).sms("13105551212");
+		assertEquals("Nachricht \u00fcbermittelt \u2713", response.status.description);
+
+		TeleSignRequest tr = new TeleSignRequest("https://rest.telesign.com", "/v1/verify/sms", "POST", "CUSTOMER", "c2VjcmV0");
+		tr.setTransport(transport);
+		assertEquals(json, tr.executeRequest());
+	}
+
+	@Test
+	public void localizedMessagesAreEncodedLikeUrlEncoder() throws Exception {
+		String message = "Ihr Code lautet 12345 \u2013 G\u00fcltig f\u00fcr 5 Min. \u4f60\u597d \ud83d\udd11 & mehr=100% \ud800";
+		LoopbackTransport transport = new LoopbackTransport().respond("POST", "/v1/verify/call", 200, SMS_RESPONSE);
+
+		new Verify("CUSTOMER", "c2VjcmV0", transport).call("13105551212", null, null, null, 0, null, false, null, null, null, message);
+
+		String expected = "phone_number=13105551212&redial=false&tts_message=" + URLEncoder.encode(message, "UTF-8");
+		assertEquals(expected, new String(transport.getLastRequest().getBody(), "US-ASCII"));
+		assertEquals(expected.length(), transport.getLastRequest().getBody().length);
+	}
+
+	@Test
+	public void unmatchedRequestsGetAnError() {
+		PhoneId phoneId = new PhoneId("CUSTOMER", "c2VjcmV0", new LoopbackTransport());
+
+		PhoneIdStandardResponse response = phoneId.standard("13105551212");
+
+		assertEquals(1, response.errors.length);
+		assertTrue(response.errors[0].description.contains("GET /v1/phoneid/standard/13105551212"));
+	}
+}
@@ -0,0 +1,128 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.telesign.phoneid.PhoneId;
+import com.telesign.phoneid.response.PhoneIdScoreResponse;
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.util.NegativeCache;
+import com.telesign.util.RateLimiterRegistry;
+import com.telesign.util.Transport;
+import com.telesign.util.TransportRequest;
+import com.telesign.util.TransportResponse;
+import com.telesign.verify.Verify;
+import com.telesign.verify.response.VerifyResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class NegativeCacheTest {
+
+	private static final int INVALID_NUMBER = -40008;
+
+	private static final String OK_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"code\":300,\"description\":\"Transaction successfully completed\"}}";
+
+	private static final String REJECTED_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"code\":11000,\"description\":\"Invalid Request\"},"
+			+ "\"errors\":[{\"code\":-40008,\"description\":\"Invalid phone number\"}]}";
+
+	private static final String THROTTLED_RESPONSE = "{\"status\":{\"code\":11000,\"description\":\"Invalid Request\"},"
+			+ "\"errors\":[{\"code\":-40008,\"description\":\"Invalid phone number\"},{\"code\":-60000,\"description\":\"Throttled\"}]}";
+
+	@Test
+	public void rejectedNumbersAreAnsweredLocallyByTheSameEndpoint() throws Exception {
+		ScriptedTransport transport = new ScriptedTransport();
+		NegativeCache rejected = new NegativeCache(1000);
+		rejected.setTimeToLive(INVALID_NUMBER, 200, TimeUnit.MILLISECONDS);
+		PhoneId phoneId = new PhoneId("REJECTED", "c2VjcmV0", transport);
+		phoneId.setNegativeCache(rejected);
+
+		assertEquals(INVALID_NUMBER, phoneId.standard("13105550000").errors[0].code);
+		PhoneIdStandardResponse answer = phoneId.standard("+1 310-555-0000");
+		assertEquals(1, transport.calls.get());
+		assertEquals(INVALID_NUMBER, answer.errors[0].code);
+		assertEquals(11000, answer.status.code);
+		assertNull(answer.reference_id);
+
+		// Each PhoneID product asks the web service once for itself.
+		phoneId.scoreAsync("13105550000", "BACF").get(5, TimeUnit.SECONDS);
+		PhoneIdScoreResponse score = phoneId.scoreAsync("13105550000", "BACF").get(5, TimeUnit.SECONDS);
+		assertEquals(2, transport.calls.get());
+		assertEquals("Invalid phone number", score.errors[0].description);
+		assertEquals(2, rejected.getSavedCount());
+
+		// A number rejected by sms is still called, and the reverse.
+		Verify verify = new Verify("REJECTED", "c2VjcmV0", transport);
+		verify.setNegativeCache(rejected);
+		assertEquals(INVALID_NUMBER, verify.sms("13105550000").errors[0].code);
+		assertEquals(3, transport.calls.get());
+		assertEquals(INVALID_NUMBER, verify.sms("13105550000").errors[0].code);
+		assertEquals(INVALID_NUMBER, verify.callAsync("13105550000").get(5, TimeUnit.SECONDS).errors[0].code);
+		assertEquals(4, transport.calls.get());
+		assertEquals(300, verify.sms("13105551212").status.code);
+		assertEquals(300, verify.sms("13105551212").status.code);
+		assertEquals(6, transport.calls.get());
+
+		Thread.sleep(250);
+		phoneId.standard("13105550000");
+		assertEquals(7, transport.calls.get());
+	}
+
+	@Test
+	public void onlyResponsesWhoseErrorsAllHaveATimeToLiveAreRemembered() throws Exception {
+		NegativeCache rejected = new NegativeCache(32);
+		rejected.setTimeToLive(INVALID_NUMBER, 1, TimeUnit.HOURS);
+
+		PhoneIdStandardResponse throttled = parse(THROTTLED_RESPONSE);
+		assertFalse(rejected.put(RateLimiterRegistry.PHONEID_STANDARD, "13105550000", throttled));
+		assertFalse(rejected.put(RateLimiterRegistry.PHONEID_STANDARD, "555-CALL-NOW", parse(REJECTED_RESPONSE)));
+		assertFalse(rejected.put(RateLimiterRegistry.PHONEID_STANDARD, "13105550000", parse(OK_RESPONSE)));
+
+		for (int i = 0; i < 1000; i++) {
+			assertTrue(rejected.put(RateLimiterRegistry.VERIFY_SMS, "1310555" + (1000 + i), parse(REJECTED_RESPONSE)));
+		}
+		assertTrue("size " + rejected.size(), rejected.size() <= 32);
+		assertEquals(1000 - rejected.size(), rejected.getEvictionCount());
+		assertTrue(rejected.get(RateLimiterRegistry.VERIFY_SMS, "13105551999", VerifyResponse.class) != null);
+		assertNull(rejected.get(RateLimiterRegistry.VERIFY_CALL, "13105551999", VerifyResponse.class));
+
+		assertTrue(rejected.put(RateLimiterRegistry.VERIFY_CALL, "13105551999", parse(REJECTED_RESPONSE)));
+		rejected.invalidate("13105551999");
+		assertNull(rejected.get(RateLimiterRegistry.VERIFY_SMS, "13105551999", VerifyResponse.class));
+		assertNull(rejected.get(RateLimiterRegistry.VERIFY_CALL, "13105551999", VerifyResponse.class));
+	}
+
+	private static PhoneIdStandardResponse parse(String body) {
+		return new Gson().fromJson(body, PhoneIdStandardResponse.class);
+	}
+
+	/** Rejects the numbers that end with 0000, answers the others, and counts the Requests. */
+	private static class ScriptedTransport implements Transport {
+
+		final AtomicInteger calls = new AtomicInteger();
+
+		@Override
+		public TransportResponse send(TransportRequest request) throws IOException {
+			calls.incrementAndGet();
+			String target = request.getUrl().getPath() + new String(request.getBody() == null ? new byte[0] : request.getBody(), StandardCharsets.UTF_8);
+			boolean invalid = target.contains("0000");
+			String body = invalid ? REJECTED_RESPONSE : OK_RESPONSE;
+			return new TransportResponse(invalid ? 400 : 200, Collections.<String, String>emptyMap(), body.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,320 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.telesign.util.NioEngine;
+import com.telesign.util.SSLContextCache;
+import com.telesign.util.TeleSignRequest;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class NioEngineTest {
+
+	/** Echoes the method, URI, Content-Type, Authorization and body of each Request. */
+	private final HttpHandler echo = new HttpHandler() {
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			ByteArrayOutputStream received = new ByteArrayOutputStream();
+			InputStream in = exchange.getRequestBody();
+			byte[] buffer = new byte[1024];
+			for (int count; (count = in.read(buffer)) > 0; ) {
+				received.write(buffer, 0, count);
+			}
+
+			String reply = exchange.getRequestMethod() + " " + exchange.getRequestURI()
+					+ " " + exchange.getRequestHeaders().getFirst("Content-Type")
+					+ " " + exchange.getRequestHeaders().getFirst("Authorization")
+					+ " " + new String(received.toByteArray(), StandardCharsets.UTF_8);
+			byte[] bytes = reply.getBytes(StandardCharsets.UTF_8);
+
+			// Chunked when the path asks for it, fixed length otherwise.
+			exchange.sendResponseHeaders(200, exchange.getRequestURI().getPath().endsWith("chunked") ? 0 : bytes.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(bytes);
+			out.close();
+		}
+	};
+
+	private HttpServer server;
+	private NioEngine engine;
+	private String base;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setExecutor(Executors.newFixedThreadPool(8));
+		server.createContext("/", echo);
+		server.start();
+
+		base = "http://127.0.0.1:" + server.getAddress().getPort();
+		engine = new NioEngine(2);
+	}
+
+	@After
+	public void tearDown() {
+		engine.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void concurrentRequestsShareKeptAliveConnections() throws Exception {
+		engine.setMaxConnectionsPerHost(4);
+
+		List<CompletableFuture<NioEngine.Response>> futures = new ArrayList<CompletableFuture<NioEngine.Response>>();
+		for (int i = 0; i < 200; i++) {
+			futures.add(engine.execute("GET", new URL(base + "/n/" + i + (i % 2 == 0 ? "/chunked" : "")),
+					Collections.<String, String>emptyMap(), null, 5000, 5000, "TLSv1.2"));
+		}
+
+		for (int i = 0; i < futures.size(); i++) {
+			NioEngine.Response response = futures.get(i).get(10, TimeUnit.SECONDS);
+			assertEquals(200, response.getStatus());
+			assertTrue(new String(response.getBody(), StandardCharsets.UTF_8).startsWith("GET /n/" + i));
+		}
+
+		assertTrue(engine.getOpenConnections() <= 8);
+	}
+
+	@Test
+	public void signedPostIsSentThroughTheEngine() throws Exception {
+		TeleSignRequest tr = new TeleSignRequest(base, "/v1/verify/sms", "POST", "CUSTOMER", "c2VjcmV0", 5000, 5000, "TLSv1.2");
+		tr.setTransport(engine);
+		tr.setPostBody("phone_number=13105551212");
+
+		String reply = tr.executeRequestAsync().get(10, TimeUnit.SECONDS);
+
+		assertTrue(reply, reply.startsWith("POST /v1/verify/sms application/x-www-form-urlencoded TSA CUSTOMER:"));
+		assertTrue(reply, reply.endsWith(" phone_number=13105551212"));
+		assertTrue(tr.executeRequest().endsWith(" phone_number=13105551212"));
+	}
+
+	@Test
+	public void requestsAreSentOverTls() throws Exception {
+		for (String protocol : new String[] { "TLSv1.2", "TLSv1.3" }) {
+			SelfSignedServer https = new SelfSignedServer(protocol, echo);
+			SSLContextCache cache = new SSLContextCache();
+			NioEngine tls = new NioEngine(2, cache);
+			tls.setMaxConnectionsPerHost(4);
+
+			try {
+				List<CompletableFuture<NioEngine.Response>> futures = new ArrayList<CompletableFuture<NioEngine.Response>>();
+				for (int i = 0; i < 100; i++) {
+					futures.add(tls.execute("POST", new URL(https.getBase() + "/n/" + i + (i % 2 == 0 ? "/chunked" : "")),
+							Collections.<String, String>emptyMap(), ("body=" + i).getBytes(StandardCharsets.UTF_8), 5000, 5000, protocol));
+				}
+
+				for (int i = 0; i < futures.size(); i++) {
+					NioEngine.Response response = futures.get(i).get(10, TimeUnit.SECONDS);
+					assertEquals(200, response.getStatus());
+					String reply = new String(response.getBody(), StandardCharsets.UTF_8);
+					assertTrue(reply, reply.startsWith("POST /n/" + i) && reply.endsWith(" body=" + i));
+				}
+
+				assertTrue(protocol, cache.getFullHandshakeCount() >= 1 && cache.getFullHandshakeCount() <= 8);
+			} finally {
+				tls.close();
+				https.stop();
+			}
+		}
+	}
+
+	@Test
+	public void readTimeoutFailsALateResponse() throws Exception {
+		server.createContext("/late", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					Thread.sleep(2000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				exchange.close();
+			}
+		});
+
+		long start = System.nanoTime();
+		try {
+			engine.execute("GET", new URL(base + "/late"), Collections.<String, String>emptyMap(), null, 5000, 200, "TLSv1.2").get(10, TimeUnit.SECONDS);
+			fail("The late response should have timed out");
+		} catch (ExecutionException e) {
+			assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof SocketTimeoutException);
+			assertTrue(e.getCause().getMessage(), e.getCause().getMessage().startsWith("Read timed out"));
+		}
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+	}
+
+	@Test
+	public void connectTimeoutFailsAnUnansweredConnect() throws Exception {
+		// A listener that never accepts: once its backlog is full, the kernel drops further connection attempts.
+		ServerSocket listener = new ServerSocket(0, 1, InetAddress.getByName("127.0.0.1"));
+		List<Socket> backlog = new ArrayList<Socket>();
+		try {
+			while (backlog.size() < 16) {
+				Socket socket = new Socket();
+				try {
+					socket.connect(listener.getLocalSocketAddress(), 200);
+				} catch (SocketTimeoutException full) {
+					socket.close();
+					break;
+				}
+				backlog.add(socket);
+			}
+
+			long start = System.nanoTime();
+			try {
+				engine.execute("GET", new URL("http://127.0.0.1:" + listener.getLocalPort() + "/"), Collections.<String, String>emptyMap(), null, 300, 5000, "TLSv1.2")
+						.get(10, TimeUnit.SECONDS);
+				fail("The connect should have timed out");
+			} catch (ExecutionException e) {
+				assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof SocketTimeoutException);
+				assertTrue(e.getCause().getMessage(), e.getCause().getMessage().startsWith("Connect timed out"));
+			}
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+		} finally {
+			for (Socket socket : backlog) {
+				socket.close();
+			}
+			listener.close();
+		}
+	}
+
+	@Test
+	public void aGetIsRetriedWhenAKeptAliveConnectionWasClosed() throws Exception {
+		OneAnswerServer oneAnswer = new OneAnswerServer();
+		// One event loop, so that each Request finds the connection of the one before.
+		NioEngine single = new NioEngine(1);
+		try {
+			URL url = new URL("http://127.0.0.1:" + oneAnswer.getPort() + "/v1/phoneid/standard/13105551212");
+			for (int i = 0; i < 3; i++) {
+				NioEngine.Response response = single.execute("GET", url, Collections.<String, String>emptyMap(), null, 5000, 5000, "TLSv1.2")
+						.get(10, TimeUnit.SECONDS);
+				assertEquals(200, response.getStatus());
+			}
+			// The first connection answers once. Each later GET reuses the connection of the one before, is dropped, and is sent again.
+			assertEquals(3, oneAnswer.accepted.get());
+		} finally {
+			single.close();
+			oneAnswer.close();
+		}
+	}
+
+	@Test
+	public void aPostIsNotRetriedWhenAKeptAliveConnectionWasClosed() throws Exception {
+		OneAnswerServer oneAnswer = new OneAnswerServer();
+		// One event loop, so that each Request finds the connection of the one before.
+		NioEngine single = new NioEngine(1);
+		try {
+			URL url = new URL("http://127.0.0.1:" + oneAnswer.getPort() + "/v1/verify/sms");
+			byte[] body = "phone_number=13105551212".getBytes(StandardCharsets.UTF_8);
+			assertEquals(200, single.execute("POST", url, Collections.<String, String>emptyMap(), body, 5000, 5000, "TLSv1.2").get(10, TimeUnit.SECONDS).getStatus());
+
+			try {
+				single.execute("POST", url, Collections.<String, String>emptyMap(), body, 5000, 5000, "TLSv1.2").get(10, TimeUnit.SECONDS);
+				fail("A POST the server may have acted on should not be sent twice");
+			} catch (ExecutionException e) {
+				assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof IOException);
+			}
+			assertEquals(1, oneAnswer.accepted.get());
+		} finally {
+			single.close();
+			oneAnswer.close();
+		}
+	}
+
+	/** Answers the first Request of each connection with keep-alive, and closes the connection when a second one arrives. */
+	private static class OneAnswerServer implements Runnable {
+
+		final ServerSocket listener = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		final AtomicInteger accepted = new AtomicInteger();
+		final Thread thread = new Thread(this, "one-answer-server");
+
+		OneAnswerServer() throws IOException {
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		int getPort() {
+			return listener.getLocalPort();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (true) {
+					Socket socket = listener.accept();
+					accepted.incrementAndGet();
+					try {
+						InputStream in = socket.getInputStream();
+						readRequest(in);
+						OutputStream out = socket.getOutputStream();
+						out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: keep-alive\r\n\r\nOK".getBytes(StandardCharsets.ISO_8859_1));
+						out.flush();
+						readRequest(in);
+					} catch (IOException e) {
+						// The client went away.
+					} finally {
+						socket.close();
+					}
+				}
+			} catch (IOException e) {
+				// The listener was closed.
+			}
+		}
+
+		/** Reads a Request head, and its body when it has a Content-Length. */
+		private static void readRequest(InputStream in) throws IOException {
+			StringBuilder head = new StringBuilder();
+			while (head.indexOf("\r\n\r\n") < 0) {
+				int c = in.read();
+				if (c < 0) {
+					throw new EOFException();
+				}
+				head.append((char) c);
+			}
+			int at = head.indexOf("Content-Length: ");
+			if (at >= 0) {
+				int length = Integer.parseInt(head.substring(at + 16, head.indexOf("\r\n", at)));
+				for (int i = 0; i < length; i++) {
+					in.read();
+				}
+			}
+		}
+
+		void close() throws IOException {
+			listener.close();
+		}
+	}
+}
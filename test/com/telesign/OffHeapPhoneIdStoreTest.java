@@ -0,0 +1,99 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.telesign.phoneid.OffHeapPhoneIdStore;
+import com.telesign.phoneid.PhoneId;
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.util.LoopbackTransport;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class OffHeapPhoneIdStoreTest {
+
+	private static final String STANDARD_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"code\":300,\"description\":\"Transaction successfully completed\"},"
+			+ "\"numbering\":{\"original\":{\"complete_phone_number\":\"13105551212\",\"country_code\":\"1\",\"phone_number\":\"3105551212\"}},"
+			+ "\"location\":{\"city\":\"Marina Del Rey\",\"coordinates\":{\"latitude\":33.97964,\"longitude\":-118.45041}},"
+			+ "\"carrier\":{\"name\":\"Verizon Wireless\"}}";
+
+	private static final String FULL_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\",\"resource_uri\":null,\"sub_resource\":\"standard\","
+			+ "\"errors\":[],\"phone_type\":{\"code\":2,\"description\":\"MOBILE\"},\"signature_string\":\"\","
+			+ "\"status\":{\"updated_on\":\"2016-01-01T00:00:00.000000Z\",\"code\":300,\"description\":\"Transaction successfully completed\"},"
+			+ "\"numbering\":{\"original\":{\"complete_phone_number\":\"4915123456789\",\"country_code\":\"49\",\"phone_number\":\"15123456789\"},"
+			+ "\"cleansing\":{\"call\":{\"cleansed_code\":100,\"country_code\":\"49\",\"max_length\":11,\"min_length\":10,\"phone_number\":\"15123456789\"},"
+			+ "\"sms\":{\"cleansed_code\":105,\"country_code\":\"49\",\"max_length\":11,\"min_length\":10,\"phone_number\":\"15123456789\"}}},"
+			+ "\"location\":{\"city\":\"M\u00fcnchen\",\"county\":\"\",\"state\":null,\"zip\":\"\",\"metro_code\":\"\","
+			+ "\"country\":{\"iso2\":\"DE\",\"iso3\":\"DEU\",\"name\":\"Germany\"},"
+			+ "\"time_zone\":{\"name\":\"Europe/Berlin\",\"utc_offset_min\":\"+1\",\"utc_offset_max\":\"+2\"},"
+			+ "\"coordinates\":{\"latitude\":48.13743,\"longitude\":11.57549}},"
+			+ "\"carrier\":{\"name\":\"Telekom Deutschland\"}}";
+
+	@Test
+	public void storedResponsesAreDecodedAgainOnEveryHit() throws Exception {
+		LoopbackTransport transport = new LoopbackTransport().respond("GET", "/v1/phoneid/standard/", 200, STANDARD_RESPONSE);
+		OffHeapPhoneIdStore store = new OffHeapPhoneIdStore(new PhoneId("STORED", "c2VjcmV0", transport), 1000, 1 << 20, 1, TimeUnit.HOURS);
+
+		PhoneIdStandardResponse first = store.standard("13105551212");
+		PhoneIdStandardResponse second = store.standard("+13105551212");
+		PhoneIdStandardResponse third = store.standardAsync("13105551212").get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, transport.getRequestCount());
+		assertEquals(2, store.getHitCount());
+		assertNotSame(second, third);
+		assertEquals("Marina Del Rey", third.location.city);
+		assertEquals(-118.45041, third.location.coordinates.longitude, 0);
+		assertEquals(first.numbering.original.complete_phone_number, third.numbering.original.complete_phone_number);
+		assertEquals("Verizon Wireless", third.carrier.name);
+
+		// Formatting does not matter, while numbers with no E.164 key go to the web service every time.
+		store.standard("+1 (310) 555-1212");
+		store.standard("555-CALL-NOW");
+		store.standard("555-CALL-NOW");
+		assertEquals(3, transport.getRequestCount());
+	}
+
+	@Test
+	public void everyFieldSurvivesTheBinaryRecord() throws Exception {
+		LoopbackTransport transport = new LoopbackTransport().respond("GET", "/v1/phoneid/standard/", 200, FULL_RESPONSE);
+		OffHeapPhoneIdStore store = new OffHeapPhoneIdStore(new PhoneId("STORED", "c2VjcmV0", transport), 1000, 1 << 20, 1, TimeUnit.HOURS);
+
+		assertEquals(-1, store.getPhoneTypeCode("4915123456789"));
+		PhoneIdStandardResponse fetched = store.standard("4915123456789");
+		PhoneIdStandardResponse stored = store.get("+49 151 23456789");
+
+		assertNotSame(fetched, stored);
+		assertEquals(fetched.toString(), stored.toString());
+		assertEquals("M\u00fcnchen", stored.location.city);
+		assertNull(stored.location.state);
+		assertEquals(0, stored.errors.length);
+		assertEquals(2, store.getPhoneTypeCode("4915123456789"));
+		assertEquals(1, transport.getRequestCount());
+	}
+
+	@Test
+	public void theOldestResponsesAreOverwrittenWhenTheMemoryIsFull() throws Exception {
+		LoopbackTransport transport = new LoopbackTransport().respond("GET", "/v1/phoneid/standard/", 200, STANDARD_RESPONSE);
+		OffHeapPhoneIdStore store = new OffHeapPhoneIdStore(new PhoneId("STORED", "c2VjcmV0", transport), 8, 4096, 1, TimeUnit.HOURS);
+
+		for (int i = 0; i < 200; i++) {
+			store.standard("1310555" + (1000 + i));
+		}
+
+		assertEquals(200, store.getStoredCount());
+		assertNull(store.get("13105551000"));
+		assertNotNull(store.get("13105551199"));
+		assertFalse(store.put("13105551000", new PhoneIdStandardResponse()));
+	}
+}
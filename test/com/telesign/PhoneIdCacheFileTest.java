@@ -0,0 +1,90 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.Test;
+
+import com.telesign.phoneid.PhoneId;
+import com.telesign.phoneid.PhoneIdCache;
+import com.telesign.phoneid.PhoneIdCacheFile;
+import com.telesign.util.LoopbackTransport;
+import com.telesign.util.Transport;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class PhoneIdCacheFileTest {
+
+	private static final String SCORE_RESPONSE = "{\"status\":{\"code\":300,\"description\":\"Transaction successfully completed\"},"
+			+ "\"risk\":{\"level\":\"low\",\"recommendation\":\"allow\",\"score\":1}}";
+
+	@Test
+	public void responsesSurviveARestartAndATornRecordIsDropped() throws Exception {
+		File path = File.createTempFile("phoneid", ".cache");
+		try {
+			LoopbackTransport transport = new LoopbackTransport().respond("GET", "/v1/phoneid/score/", 200, SCORE_RESPONSE);
+			PhoneIdCacheFile file = new PhoneIdCacheFile(path, 1 << 16);
+			lookUp(file, transport, "13105551212");
+			lookUp(file, transport, "13105551213");
+			int used = file.getUsedBytes();
+			file.close();
+			assertEquals(2, transport.getRequestCount());
+
+			// A crash in the middle of the last write leaves a record that fails its checksum.
+			try (RandomAccessFile raf = new RandomAccessFile(path, "rw")) {
+				raf.seek(used - 3);
+				raf.write('#');
+			}
+
+			file = new PhoneIdCacheFile(path, 1 << 16);
+			assertEquals(1, file.getRecoveredCount());
+			assertEquals(1, lookUp(file, transport, "13105551212").getHitCount());
+			assertEquals(2, transport.getRequestCount());
+			lookUp(file, transport, "13105551213");
+			assertEquals(3, transport.getRequestCount());
+			file.close();
+		}
+		finally {
+			path.delete();
+		}
+	}
+
+	@Test
+	public void aFullFileIsCompactedInPlace() throws Exception {
+		File path = File.createTempFile("phoneid", ".cache");
+		try {
+			LoopbackTransport transport = new LoopbackTransport().respond("GET", "/v1/phoneid/score/", 200, SCORE_RESPONSE);
+			PhoneIdCacheFile file = new PhoneIdCacheFile(path, 4096);
+			for (int i = 0; i < 100; i++) {
+				lookUp(file, transport, "1310555" + (1000 + i));
+			}
+			assertTrue(file.getUsedBytes() <= 4096);
+			assertTrue(file.size() < 100);
+			assertFalse(new File(path.getPath() + ".compact").exists());
+
+			lookUp(file, transport, "13105551099");
+			assertEquals(100, transport.getRequestCount());
+			file.close();
+		}
+		finally {
+			path.delete();
+		}
+	}
+
+	/** Looks up a number with a new PhoneId object and an empty cache in front of the file, as a restarted process would. */
+	private static PhoneIdCache lookUp(PhoneIdCacheFile file, Transport transport, String phoneNumber) {
+		PhoneIdCache cache = new PhoneIdCache(1000);
+		cache.setFile(file);
+		PhoneId phoneId = new PhoneId("PERSISTED", "c2VjcmV0", transport);
+		phoneId.setCache(cache);
+		assertEquals(300, phoneId.score(phoneNumber, "BACF").status.code);
+		return cache;
+	}
+}
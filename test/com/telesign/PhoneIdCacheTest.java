@@ -0,0 +1,185 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.telesign.phoneid.PhoneId;
+import com.telesign.phoneid.PhoneIdCache;
+import com.telesign.phoneid.response.PhoneIdScoreResponse;
+import com.telesign.util.RateLimiterRegistry;
+import com.telesign.util.Transport;
+import com.telesign.util.TransportRequest;
+import com.telesign.util.TransportResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class PhoneIdCacheTest {
+
+	private static final String OK_RESPONSE = "{\"status\":{\"code\":300,\"description\":\"Transaction successfully completed\"},"
+			+ "\"risk\":{\"level\":\"low\",\"recommendation\":\"allow\",\"score\":1}}";
+
+	private static final String ERROR_RESPONSE = "{\"status\":{\"code\":501,\"description\":\"Not authorized\"},"
+			+ "\"errors\":[{\"code\":-10001,\"description\":\"Invalid Request: PhoneNumber Parameter: 1234\"}]}";
+
+	@Test
+	public void repeatedLookupsAreAnsweredFromTheCacheUntilTheyExpire() throws Exception {
+		CountingTransport transport = new CountingTransport();
+		PhoneId phoneId = new PhoneId("CACHED", "c2VjcmV0", transport);
+		PhoneIdCache cache = new PhoneIdCache(1000);
+		cache.setTimeToLive(PhoneIdCache.Product.SCORE, 200, TimeUnit.MILLISECONDS);
+		phoneId.setCache(cache);
+
+		PhoneIdScoreResponse first = phoneId.score("13105551212", "BACF");
+		assertSame(first, phoneId.score("13105551212", "BACF"));
+		assertSame(first, phoneId.scoreAsync("13105551212", "BACF").get(5, TimeUnit.SECONDS));
+		assertEquals(1, transport.calls.get());
+
+		// Every parameter is part of the key, and Live responses are not cached by default.
+		phoneId.score("13105551212", "ATCK");
+		phoneId.live("13105551212", "BACF");
+		phoneId.live("13105551212", "BACF");
+		assertEquals(4, transport.calls.get());
+		assertEquals(2, cache.getHitCount());
+
+		Thread.sleep(250);
+		assertNotSame(first, phoneId.score("13105551212", "BACF"));
+		assertEquals(5, transport.calls.get());
+		assertEquals(1, cache.getExpiredCount());
+	}
+
+	@Test
+	public void aFullStripeEvictsItsEldestEntry() throws Exception {
+		CountingTransport transport = new CountingTransport();
+		PhoneId phoneId = new PhoneId("CACHED", "c2VjcmV0", transport);
+		PhoneIdCache cache = new PhoneIdCache(16);
+		phoneId.setCache(cache);
+
+		// Sixteen stripes of one entry each: seventeen numbers overflow at least one of them.
+		for (int i = 0; i < 17; i++) {
+			phoneId.standard("1310555" + (1000 + i));
+		}
+		assertTrue(cache.getEvictionCount() >= 1);
+		assertEquals(17, cache.size() + cache.getEvictionCount());
+
+		// The newest number of its stripe is the one kept.
+		phoneId.standard("13105551016");
+		assertEquals(1, cache.getHitCount());
+		assertEquals(17, transport.calls.get());
+	}
+
+	@Test
+	public void leastRecentlyUsedResponsesAreEvictedAndErrorsAreNotCached() throws Exception {
+		CountingTransport transport = new CountingTransport();
+		PhoneId phoneId = new PhoneId("CACHED", "c2VjcmV0", transport);
+		PhoneIdCache cache = new PhoneIdCache(16);
+		phoneId.setCache(cache);
+
+		for (int i = 0; i < 100; i++) {
+			phoneId.standard("1310555" + (1000 + i));
+		}
+		assertTrue("size " + cache.size(), cache.size() <= 16);
+		assertEquals(100 - cache.size(), cache.getEvictionCount());
+
+		phoneId.standard("1234");
+		phoneId.standard("1234");
+		assertEquals(102, transport.calls.get());
+		assertEquals(0, cache.getHitCount());
+	}
+
+	@Test
+	public void aResponseDueForRefreshIsReturnedWhileItIsReplaced() throws Exception {
+		CountingTransport transport = new CountingTransport();
+		PhoneId phoneId = new PhoneId("REFRESHED", "c2VjcmV0", transport);
+		PhoneIdCache cache = new PhoneIdCache(1000);
+		cache.setTimeToLive(PhoneIdCache.Product.SCORE, 400, TimeUnit.MILLISECONDS);
+		cache.setRefreshAhead(0.5);
+		phoneId.setCache(cache);
+
+		PhoneIdScoreResponse first = phoneId.score("13105551212", "BACF");
+		Thread.sleep(250);
+
+		// The refresh is held by the Transport, and the lookups do not wait for it.
+		transport.gate = new CountDownLatch(1);
+		long start = System.nanoTime();
+		assertSame(first, phoneId.score("13105551212", "BACF"));
+		assertSame(first, phoneId.scoreAsync("13105551212", "BACF").get(5, TimeUnit.SECONDS));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 100);
+		assertEquals(1, cache.getRefreshCount());
+
+		transport.gate.countDown();
+		while (phoneId.score("13105551212", "BACF") == first) {
+			Thread.sleep(5);
+		}
+		assertEquals(2, transport.calls.get());
+		assertEquals(1, cache.getRefreshCount());
+	}
+
+	@Test
+	public void aStaleResponseIsRefreshedWhenTheRateLimitHasAFreePermit() throws Exception {
+		CountingTransport transport = new CountingTransport();
+		PhoneId phoneId = new PhoneId("STALE", "c2VjcmV0", transport);
+		PhoneIdCache cache = new PhoneIdCache(1000);
+		cache.setTimeToLive(PhoneIdCache.Product.SCORE, 100, TimeUnit.MILLISECONDS);
+		cache.setStaleWhileRevalidate(5, TimeUnit.SECONDS);
+		phoneId.setCache(cache);
+		RateLimiterRegistry.getDefault().setLimit("STALE", RateLimiterRegistry.PHONEID_SCORE, 2, 1);
+		try {
+			PhoneIdScoreResponse first = phoneId.score("13105551212", "BACF");
+			Thread.sleep(150);
+
+			assertSame(first, phoneId.score("13105551212", "BACF"));
+			assertEquals(1, cache.getStaleHitCount());
+			assertTrue(cache.getDeferredRefreshCount() >= 1);
+			assertEquals(1, transport.calls.get());
+
+			long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+			while (phoneId.score("13105551212", "BACF") == first && System.nanoTime() < deadline) {
+				Thread.sleep(5);
+			}
+			assertEquals(2, transport.calls.get());
+			assertEquals(1, cache.getRefreshCount());
+		}
+		finally {
+			RateLimiterRegistry.getDefault().removeLimit("STALE", RateLimiterRegistry.PHONEID_SCORE);
+		}
+	}
+
+	/** Answers every Request, with an error for the number 1234, and counts them. Holds the Requests while a gate is set. */
+	private static class CountingTransport implements Transport {
+
+		final AtomicInteger calls = new AtomicInteger();
+
+		volatile CountDownLatch gate;
+
+		@Override
+		public TransportResponse send(TransportRequest request) throws IOException {
+			calls.incrementAndGet();
+			CountDownLatch current = gate;
+			if (current != null) {
+				try {
+					current.await();
+				}
+				catch (InterruptedException e) {
+					throw new IOException(e);
+				}
+			}
+			boolean invalid = request.getUrl().getPath().endsWith("/1234");
+			String body = invalid ? ERROR_RESPONSE : OK_RESPONSE;
+			return new TransportResponse(invalid ? 400 : 200, Collections.<String, String>emptyMap(), body.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,73 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.telesign.util.LongHashMap;
+import com.telesign.util.PhoneNumbers;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class PhoneNumbersTest {
+
+	@Test
+	public void formattedNumbersHaveTheSameKey() {
+		long key = 13105551212L;
+		assertEquals(key, PhoneNumbers.toKey("13105551212"));
+		assertEquals(key, PhoneNumbers.toKey("+1 (310) 555-1212"));
+		assertEquals(key, PhoneNumbers.toKey("1.310.555.1212"));
+		assertEquals(key, PhoneNumbers.toKey("001 310/555 1212"));
+		assertEquals(447700900123L, PhoneNumbers.toKey("+44 7700 900123"));
+		assertEquals("13105551212", PhoneNumbers.toDigits(key));
+
+		assertEquals(PhoneNumbers.INVALID, PhoneNumbers.toKey(null));
+		assertEquals(PhoneNumbers.INVALID, PhoneNumbers.toKey("555-CALL-NOW"));
+		assertEquals(PhoneNumbers.INVALID, PhoneNumbers.toKey("03105551212"));
+		assertEquals(PhoneNumbers.INVALID, PhoneNumbers.toKey("+0013105551212"));
+		assertEquals(PhoneNumbers.INVALID, PhoneNumbers.toKey("1+3105551212"));
+		assertEquals(PhoneNumbers.INVALID, PhoneNumbers.toKey("123456"));
+		assertEquals(PhoneNumbers.INVALID, PhoneNumbers.toKey("1234567890123456"));
+	}
+
+	@Test
+	public void longHashMapAgreesWithHashMap() {
+		LongHashMap<Integer> map = new LongHashMap<Integer>(4);
+		Map<Long, Integer> expected = new HashMap<Long, Integer>();
+		Random random = new Random(42);
+		for (int i = 0; i < 200000; i++) {
+			long key = random.nextInt(5000) - 10;
+			int operation = random.nextInt(3);
+			if (operation == 0) {
+				assertEquals(expected.put(key, i), map.put(key, i));
+			}
+			else if (operation == 1) {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			else {
+				assertEquals(expected.get(key), map.get(key));
+				assertEquals(expected.containsKey(key), map.containsKey(key));
+			}
+		}
+		assertEquals(expected.size(), map.size());
+
+		final Map<Long, Integer> visited = new HashMap<Long, Integer>();
+		map.forEach((key, value) -> visited.put(key, value));
+		assertEquals(expected, visited);
+
+		map.clear();
+		assertTrue(map.isEmpty());
+		assertFalse(map.containsKey(0));
+		assertNull(map.get(13105551212L));
+	}
+}
@@ -0,0 +1,104 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.telesign.phoneid.PhoneId;
+import com.telesign.util.LoopbackTransport;
+import com.telesign.util.RateLimiter;
+import com.telesign.util.RateLimiterRegistry;
+import com.telesign.verify.Verify;
+import com.telesign.verify.response.VerifyResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class RateLimiterTest {
+
+	private static final String SMS_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"updated_on\":\"2016-01-01T00:00:00.000000Z\",\"code\":290,\"description\":\"Message in progress\"}}";
+
+	@Test
+	public void aBurstIsAllowedAndThenRefused() {
+		RateLimiter limiter = new RateLimiter(1, 3);
+
+		assertEquals(3, limiter.getAvailablePermits());
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertTrue(limiter.tryAcquire());
+		assertFalse(limiter.tryAcquire());
+
+		assertEquals(0, limiter.getAvailablePermits());
+		assertEquals(3, limiter.getGrantedCount());
+		assertEquals(1, limiter.getRefusedCount());
+	}
+
+	@Test
+	public void waitingPermitsKeepToTheRate() throws Exception {
+		RateLimiter limiter = new RateLimiter(50, 1);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 6; i++) {
+			limiter.acquire();
+		}
+		List<CompletableFuture<Void>> permits = new ArrayList<CompletableFuture<Void>>();
+		for (int i = 0; i < 5; i++) {
+			permits.add(limiter.acquireAsync());
+		}
+		assertFalse(permits.get(4).isDone());
+		CompletableFuture.allOf(permits.toArray(new CompletableFuture<?>[0])).get(5, TimeUnit.SECONDS);
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// Eleven permits at 50 per second, with a burst of one, span at least 200 ms.
+		assertTrue("took " + elapsed + " ms", elapsed >= 190);
+		assertEquals(10, limiter.getDelayedCount());
+	}
+
+	@Test
+	public void verifyAndPhoneIdUseTheLimitsOfTheirAccount() throws Exception {
+		RateLimiterRegistry registry = RateLimiterRegistry.getDefault();
+		LoopbackTransport transport = new LoopbackTransport()
+				.respond("POST", "/v1/verify/sms", 200, SMS_RESPONSE)
+				.respond("GET", "/v1/phoneid/standard/", 200, SMS_RESPONSE);
+		Verify verify = new Verify("RATE-LIMITED", "c2VjcmV0", transport);
+		PhoneId phoneId = new PhoneId("RATE-LIMITED", "c2VjcmV0", transport);
+
+		RateLimiter sms = registry.setLimit("RATE-LIMITED", RateLimiterRegistry.VERIFY_SMS, 25, 1);
+		RateLimiter account = registry.setLimit("RATE-LIMITED", RateLimiterRegistry.ALL_ENDPOINTS, 1000, 1000);
+
+		try {
+			assertSame(sms, registry.find("RATE-LIMITED", RateLimiterRegistry.VERIFY_SMS));
+			assertSame(account, registry.find("RATE-LIMITED", RateLimiterRegistry.PHONEID_STANDARD));
+			assertNull(registry.find("SOMEONE-ELSE", RateLimiterRegistry.VERIFY_SMS));
+
+			long start = System.nanoTime();
+			verify.sms("13105551212");
+			verify.sms("13105551212");
+			VerifyResponse last = verify.smsAsync("13105551212").get(5, TimeUnit.SECONDS);
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+			assertEquals(290, last.status.code);
+			assertTrue("took " + elapsed + " ms", elapsed >= 75);
+			assertEquals(3, sms.getGrantedCount());
+
+			phoneId.standard("13105551212");
+			assertEquals(1, account.getGrantedCount());
+		}
+		finally {
+			registry.removeLimit("RATE-LIMITED", RateLimiterRegistry.VERIFY_SMS);
+			registry.removeLimit("RATE-LIMITED", RateLimiterRegistry.ALL_ENDPOINTS);
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.security.SignatureException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.junit.Test;
+
+import com.telesign.util.AuthMethod;
+import com.telesign.util.FormBody;
+import com.telesign.util.HttpDateClock;
+import com.telesign.util.RequestSigner;
+import com.telesign.util.SigningString;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class RequestSignerTest {
+
+	private static final String KEY = "dGVzdCBzZWNyZXQga2V5IGZvciB0aGUgc2lnbmVy";
+
+	private static final String STRING_TO_SIGN = "POST\napplication/x-www-form-urlencoded\n\nx-ts-auth-method:hmac-sha256\n"
+			+ "x-ts-date:Mon, 01 Aug 2016 12:00:00 GMT\nphone_number=13105551212&template=Code+%C3%BC\n/v1/verify/sms";
+
+	@Test
+	public void signaturesMatchAFreshMac() throws Exception {
+		RequestSigner signer = new RequestSigner(KEY);
+
+		for (AuthMethod auth : AuthMethod.values()) {
+			assertEquals(reference(auth, STRING_TO_SIGN), signer.sign(auth, STRING_TO_SIGN));
+			assertEquals(reference(auth, "GET\n\n\n/v1/phoneid/standard/13105551212"), signer.sign(auth, "GET\n\n\n/v1/phoneid/standard/13105551212"));
+		}
+	}
+
+	@Test
+	public void pooledMacsCanBeUsedConcurrently() throws Exception {
+		final RequestSigner signer = new RequestSigner(KEY);
+		final String expected = reference(AuthMethod.SHA256, STRING_TO_SIGN);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+
+			for (int t = 0; t < 8; t++) {
+				results.add(pool.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						int matches = 0;
+						for (int i = 0; i < 2000; i++) {
+							if (expected.equals(signer.sign(AuthMethod.SHA256, STRING_TO_SIGN))) {
+								matches++;
+							}
+						}
+						return matches;
+					}
+				}));
+			}
+
+			for (Future<Integer> result : results) {
+				assertEquals(2000, result.get().intValue());
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void signingStringsAreWrittenInCanonicalForm() throws Exception {
+		TreeMap<String, String> tsHeaders = new TreeMap<String, String>();
+		tsHeaders.put("x-ts-date", "Mon, 01 Aug 2016 12:00:00 GMT");
+		tsHeaders.put("X-TS-Auth-Method", "hmac-sha256");
+		String template = "Ihr Code: $$CODE$$ \u2713";
+
+		SigningString fromText = new SigningString("POST", "application/x-www-form-urlencoded", "", tsHeaders, "/v1/verify/sms")
+				.body("phone_number=13105551212&template=" + template);
+		SigningString fromForm = new SigningString("POST", "application/x-www-form-urlencoded", "", tsHeaders, "/v1/verify/sms")
+				.body(new FormBody().add("phone_number", "13105551212").toByteArray());
+
+		assertEquals("POST\napplication/x-www-form-urlencoded\n\nx-ts-auth-method:hmac-sha256\nx-ts-date:Mon, 01 Aug 2016 12:00:00 GMT\n"
+				+ "phone_number=13105551212&template=" + template + "\n/v1/verify/sms", fromText.toString());
+		assertEquals(reference(AuthMethod.SHA256, fromText.toString()), new RequestSigner(KEY).sign(AuthMethod.SHA256, fromText));
+		assertEquals(reference(AuthMethod.SHA1, fromForm.toString()), new RequestSigner(KEY).sign(AuthMethod.SHA1, fromForm));
+
+		SigningString get = new SigningString("GET", "", "Mon, 01 Aug 2016 12:00:00 GMT", new TreeMap<String, String>(), "/v1/phoneid/standard/13105551212");
+		assertEquals("GET\n\nMon, 01 Aug 2016 12:00:00 GMT\n/v1/phoneid/standard/13105551212", get.toString());
+	}
+
+	@Test
+	public void theDateIsFormattedOncePerSecond() {
+		HttpDateClock clock = new HttpDateClock();
+		long millis = 1470052800000L;
+
+		String date = clock.format(millis);
+
+		assertEquals(new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss ZZZZ", Locale.US).format(new Date(millis)), date);
+		assertSame(date, clock.format(millis + 999));
+		assertNotEquals(date, clock.format(millis + 1000));
+	}
+
+	@Test(expected = SignatureException.class)
+	public void anEmptyKeyCannotSign() throws Exception {
+		new RequestSigner("").sign(AuthMethod.SHA1, STRING_TO_SIGN);
+	}
+
+	private static String reference(AuthMethod auth, String data) throws Exception {
+		Mac mac = Mac.getInstance(auth.value());
+		mac.init(new SecretKeySpec(Base64.decodeBase64(KEY), auth.value()));
+		return new String(Base64.encodeBase64(mac.doFinal(data.getBytes(StandardCharsets.UTF_8))), StandardCharsets.US_ASCII);
+	}
+}
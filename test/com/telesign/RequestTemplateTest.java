@@ -0,0 +1,98 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.util.LoopbackTransport;
+import com.telesign.util.RequestTemplate;
+import com.telesign.util.TeleSignRequest;
+import com.telesign.util.TransportRequest;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class RequestTemplateTest {
+
+	private static final String STANDARD_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"updated_on\":\"2016-01-01T00:00:00.000000Z\",\"code\":300,\"description\":\"Transaction successfully completed\"}}";
+
+	@Test
+	public void requestsFillInOnlyTheirOwnParts() throws Exception {
+		LoopbackTransport transport = new LoopbackTransport().respond("GET", "/v1/phoneid/standard/", 200, STANDARD_RESPONSE);
+		RequestTemplate plain = new RequestTemplate("https://rest.telesign.com", "/v1/phoneid/standard/", "get", "CUSTOMER", "c2VjcmV0",
+				5000, 6000, "TLSv1.2", transport);
+		RequestTemplate template = plain.withHeader("x-ts-nonce", "abc");
+
+		assertNotSame(plain, template);
+		assertTrue(plain.getHeaders().isEmpty());
+		assertEquals("GET", template.getMethod());
+
+		TeleSignRequest tr = template.newRequest("13105551212");
+		tr.addParam("session_id", "S1");
+		PhoneIdStandardResponse response = tr.executeRequest(new Gson(), PhoneIdStandardResponse.class);
+
+		assertEquals(300, response.status.code);
+
+		TransportRequest request = transport.getLastRequest();
+		assertEquals("/v1/phoneid/standard/13105551212", request.getUrl().getPath());
+		assertTrue(request.getUrl().getQuery().endsWith("session_id=S1"));
+		assertEquals("abc", request.getHeaders().get("x-ts-nonce"));
+		assertTrue(request.getHeaders().get("Authorization").startsWith("TSA CUSTOMER:"));
+		assertEquals(5000, request.getConnectTimeout());
+		assertEquals(6000, request.getReadTimeout());
+		assertTrue(template.newRequest().getAllParams().isEmpty());
+	}
+
+	@Test
+	public void oneTemplateServesManyThreads() throws Exception {
+		final LoopbackTransport transport = new LoopbackTransport().respond("GET", "/v1/phoneid/standard/", 200, STANDARD_RESPONSE);
+		final RequestTemplate template = new RequestTemplate("https://rest.telesign.com", "/v1/phoneid/standard/", "GET", "CUSTOMER", "c2VjcmV0",
+				30000, 30000, "TLSv1.2", transport);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+
+		try {
+			List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+
+			for (int t = 0; t < 8; t++) {
+				final String phone_number = "1310555120" + t;
+				results.add(pool.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						int answered = 0;
+						for (int i = 0; i < 250; i++) {
+							TeleSignRequest tr = template.newRequest(phone_number);
+							if (tr.executeRequest(new Gson(), PhoneIdStandardResponse.class).status.code == 300) {
+								answered++;
+							}
+						}
+						return answered;
+					}
+				}));
+			}
+
+			for (Future<Integer> result : results) {
+				assertEquals(250, result.get().intValue());
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+
+		assertEquals(2000, transport.getRequestCount());
+		assertTrue(template.getHeaders().isEmpty());
+	}
+}
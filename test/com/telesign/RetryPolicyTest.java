@@ -0,0 +1,210 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import com.telesign.phoneid.PhoneId;
+import com.telesign.phoneid.response.PhoneIdStandardResponse;
+import com.telesign.util.RetryPolicy;
+import com.telesign.util.TeleSignRequest;
+import com.telesign.util.Transport;
+import com.telesign.util.TransportRequest;
+import com.telesign.util.TransportResponse;
+import com.telesign.verify.Verify;
+import com.telesign.verify.response.VerifyResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class RetryPolicyTest {
+
+	private static final String OK_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"updated_on\":\"2016-01-01T00:00:00.000000Z\",\"code\":290,\"description\":\"Message in progress\"}}";
+
+	private static final String ERROR_RESPONSE = "{\"status\":{\"code\":503,\"description\":\"Service unavailable\"}}";
+
+	private static final RetryPolicy FAST = new RetryPolicy(4, 1, 5, 5000, TimeUnit.MILLISECONDS);
+
+	@Test
+	public void getsAreRetriedAfterConnectFailuresAndServerErrors() throws Exception {
+		FlakyTransport transport = new FlakyTransport(new ConnectException("Connection refused"), 503, new SocketException("Connection reset"), 200);
+		PhoneId phoneId = new PhoneId("RETRIED", "c2VjcmV0", transport);
+		phoneId.setRetryPolicy(FAST);
+
+		PhoneIdStandardResponse response = phoneId.standard("13105551212");
+
+		assertEquals(290, response.status.code);
+		assertEquals(4, transport.requests.size());
+
+		transport.script(503, 429, 200);
+		response = phoneId.standardAsync("13105551212").get(5, TimeUnit.SECONDS);
+
+		assertEquals(290, response.status.code);
+		assertEquals(7, transport.requests.size());
+	}
+
+	@Test
+	public void theDefaultPolicyKeepsTheTimeoutsOfEveryAttempt() throws Exception {
+		FlakyTransport transport = new FlakyTransport(503, 503, 200);
+		PhoneId phoneId = new PhoneId("RETRIED", "c2VjcmV0", 30000, 30000, "TLSv1.2", transport);
+
+		assertEquals(290, phoneId.standard("13105551212").status.code);
+		assertEquals(3, transport.requests.size());
+		for (TransportRequest request : transport.requests) {
+			assertEquals(30000, request.getConnectTimeout());
+			assertEquals(30000, request.getReadTimeout());
+		}
+	}
+
+	@Test
+	public void postsAreRetriedOnlyWithTheIdempotencyGuard() throws Exception {
+		FlakyTransport transport = new FlakyTransport(503);
+		Verify verify = new Verify("RETRIED", "c2VjcmV0", transport);
+		verify.setRetryPolicy(FAST);
+
+		VerifyResponse response = verify.sms("13105551212");
+
+		assertEquals(503, response.status.code);
+		assertEquals(1, transport.requests.size());
+
+		transport.requests.clear();
+		transport.script(503, 200);
+		verify.setRetryPolicy(FAST.withIdempotencyGuard(true));
+		response = verify.sms("13105551212");
+
+		assertEquals(290, response.status.code);
+		assertEquals(2, transport.requests.size());
+
+		// Both attempts carry the same nonce, and each is signed again.
+		String nonce = transport.requests.get(0).getHeaders().get("x-ts-nonce");
+		assertNotNull(nonce);
+		assertEquals(nonce, transport.requests.get(1).getHeaders().get("x-ts-nonce"));
+	}
+
+	@Test
+	public void noAttemptStartsAfterTheDeadline() throws Exception {
+		FlakyTransport transport = new FlakyTransport(503, 503, 503, 503, 503, 503, 503, 503);
+		PhoneId phoneId = new PhoneId("RETRIED", "c2VjcmV0", transport);
+		phoneId.setRetryPolicy(new RetryPolicy(8, 40, 40, 60, TimeUnit.MILLISECONDS));
+
+		long start = System.nanoTime();
+		PhoneIdStandardResponse response = phoneId.standard("13105551212");
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// The last Response is returned as it is once the budget is spent.
+		assertEquals(503, response.status.code);
+		assertEquals(2, transport.requests.size());
+		assertTrue("took " + elapsed + " ms", elapsed < 1000);
+	}
+
+	@Test
+	public void anAttemptStillRunningAtTheDeadlineFails() throws Exception {
+		final AtomicInteger requests = new AtomicInteger();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		ExecutorService executor = Executors.newCachedThreadPool();
+		server.setExecutor(executor);
+		server.createContext("/late", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				requests.incrementAndGet();
+				try {
+					Thread.sleep(3000);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				exchange.close();
+			}
+		});
+		server.start();
+
+		try {
+			String base = "http://127.0.0.1:" + server.getAddress().getPort();
+			RetryPolicy policy = new RetryPolicy(3, 1, 5, 300, TimeUnit.MILLISECONDS);
+
+			// The read timeout of 30 s is cut to the 300 ms budget, and no attempt follows the one that timed out.
+			TeleSignRequest request = new TeleSignRequest(base, "/late", "GET", "CUSTOMER", "c2VjcmV0", 30000, 30000);
+			request.setRetryPolicy(policy);
+			long start = System.nanoTime();
+			try {
+				request.executeRequest();
+				fail("The attempt should have timed out at the deadline");
+			} catch (SocketTimeoutException e) {
+				// expected
+			}
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+			assertEquals(1, requests.get());
+
+			request = new TeleSignRequest(base, "/late", "GET", "CUSTOMER", "c2VjcmV0", 30000, 30000);
+			request.setRetryPolicy(policy);
+			start = System.nanoTime();
+			try {
+				request.executeRequestAsync().get(5, TimeUnit.SECONDS);
+				fail("The attempt should have timed out at the deadline");
+			} catch (ExecutionException e) {
+				assertTrue(String.valueOf(e.getCause()), e.getCause() instanceof SocketTimeoutException);
+			}
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1500);
+			assertEquals(2, requests.get());
+		} finally {
+			server.stop(0);
+			executor.shutdownNow();
+		}
+	}
+
+	/** Plays a script of errors and status codes, one per Request, and records the Requests. */
+	private static class FlakyTransport implements Transport {
+
+		final List<TransportRequest> requests = Collections.synchronizedList(new ArrayList<TransportRequest>());
+
+		private final LinkedList<Object> outcomes = new LinkedList<Object>();
+
+		FlakyTransport(Object... outcomes) {
+			script(outcomes);
+		}
+
+		synchronized void script(Object... outcomes) {
+			Collections.addAll(this.outcomes, outcomes);
+		}
+
+		@Override
+		public TransportResponse send(TransportRequest request) throws IOException {
+			requests.add(request);
+			Object outcome;
+			synchronized (this) {
+				outcome = outcomes.removeFirst();
+			}
+			if (outcome instanceof IOException) {
+				throw (IOException) outcome;
+			}
+			int status = (Integer) outcome;
+			String body = (status == 200) ? OK_RESPONSE : ERROR_RESPONSE;
+			return new TransportResponse(status, Collections.<String, String>emptyMap(), body.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
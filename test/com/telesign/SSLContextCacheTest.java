@@ -0,0 +1,101 @@
+package com.telesign;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.telesign.util.NioEngine;
+import com.telesign.util.SSLContextCache;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class SSLContextCacheTest {
+
+	@Test
+	public void factoryIsSharedPerProtocol() throws Exception {
+		SSLContextCache cache = new SSLContextCache();
+
+		SSLSocketFactory first = cache.getSocketFactory("TLSv1.2");
+
+		assertSame(first, cache.getSocketFactory("TLSv1.2"));
+		assertSame(cache.getContext("TLSv1.2"), cache.getContext("TLSv1.2"));
+		assertNotSame(first, cache.getSocketFactory("TLS"));
+	}
+
+	@Test
+	public void cipherSuitesAreAppliedToNewSockets() throws Exception {
+		SSLContextCache cache = new SSLContextCache();
+		SSLSocketFactory before = cache.getSocketFactory("TLSv1.2");
+
+		String[] suites = { "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256" };
+		cache.setCipherSuites(suites);
+
+		SSLSocketFactory after = cache.getSocketFactory("TLSv1.2");
+		assertNotSame(before, after);
+
+		SSLSocket socket = (SSLSocket) after.createSocket();
+		try {
+			assertArrayEquals(suites, socket.getEnabledCipherSuites());
+		} finally {
+			socket.close();
+		}
+	}
+
+	@Test(expected=IllegalArgumentException.class)
+	public void unknownCipherSuiteIsRejected() throws IOException {
+		new SSLContextCache().setCipherSuites("TLS_NOT_A_REAL_SUITE");
+	}
+
+	@Test
+	public void engineHandshakesAreCountedAsFullOrResumed() throws Exception {
+		assertHandshakesCounted("TLSv1.2");
+		assertHandshakesCounted("TLSv1.3");
+	}
+
+	private static void assertHandshakesCounted(String protocol) throws Exception {
+		SelfSignedServer server = new SelfSignedServer(protocol, new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.sendResponseHeaders(200, 2);
+				OutputStream out = exchange.getResponseBody();
+				out.write("OK".getBytes(StandardCharsets.UTF_8));
+				out.close();
+			}
+		});
+		SSLContextCache cache = new SSLContextCache();
+		NioEngine engine = new NioEngine(1, cache);
+		engine.setKeepAliveTime(0);
+
+		try {
+			for (int i = 0; i < 8; i++) {
+				NioEngine.Response response = engine.execute("GET", new URL(server.getBase() + "/" + i),
+						Collections.<String, String>emptyMap(), null, 5000, 5000, protocol).get(10, TimeUnit.SECONDS);
+				assertEquals(200, response.getStatus());
+			}
+		} finally {
+			engine.close();
+			server.stop();
+		}
+
+		assertEquals(protocol, 1, cache.getFullHandshakeCount());
+		assertEquals(protocol, 7, cache.getResumedHandshakeCount());
+	}
+}
@@ -0,0 +1,104 @@
+package com.telesign;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLParameters;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ *
+ *	An HttpsServer on 127.0.0.1 with a self-signed certificate that keytool makes once per JVM. The same key store is set as the
+ *	trust store of the JVM, so it must be started before the SSLContexts of the client are created.
+ */
+final class SelfSignedServer {
+
+	private static final String PASSWORD = "changeit";
+
+	private static File keyStore;
+
+	private final HttpsServer server;
+	private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+	SelfSignedServer(String protocol, HttpHandler handler) throws IOException, GeneralSecurityException, InterruptedException {
+		SSLContext context = SSLContext.getInstance(protocol);
+		KeyManagerFactory keys = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+		keys.init(load(keyStore()), PASSWORD.toCharArray());
+		context.init(keys.getKeyManagers(), null, null);
+
+		final String[] protocols = { protocol };
+		server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.setHttpsConfigurator(new HttpsConfigurator(context) {
+			@Override
+			public void configure(HttpsParameters params) {
+				SSLParameters parameters = getSSLContext().getDefaultSSLParameters();
+				parameters.setProtocols(protocols);
+				params.setSSLParameters(parameters);
+			}
+		});
+		server.setExecutor(executor);
+		server.createContext("/", handler);
+		server.start();
+	}
+
+	String getBase() {
+		return "https://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	void stop() throws InterruptedException {
+		server.stop(0);
+		executor.shutdownNow();
+		executor.awaitTermination(5, TimeUnit.SECONDS);
+	}
+
+	private static synchronized File keyStore() throws IOException, InterruptedException {
+		if (keyStore == null) {
+			File file = File.createTempFile("telesign-test", ".p12");
+			file.delete();
+			file.deleteOnExit();
+
+			String keytool = System.getProperty("java.home") + File.separator + "bin" + File.separator + "keytool";
+			Process process = new ProcessBuilder(keytool, "-genkeypair", "-alias", "server", "-keyalg", "EC", "-groupname", "secp256r1",
+					"-dname", "CN=127.0.0.1", "-ext", "san=ip:127.0.0.1", "-validity", "2", "-storetype", "PKCS12",
+					"-keystore", file.getPath(), "-storepass", PASSWORD).redirectErrorStream(true).start();
+			process.getInputStream().close();
+			if (process.waitFor() != 0) {
+				throw new IOException("keytool failed with exit code " + process.exitValue());
+			}
+
+			System.setProperty("javax.net.ssl.trustStore", file.getPath());
+			System.setProperty("javax.net.ssl.trustStorePassword", PASSWORD);
+			System.setProperty("javax.net.ssl.trustStoreType", "PKCS12");
+			keyStore = file;
+		}
+		return keyStore;
+	}
+
+	private static KeyStore load(File file) throws IOException, GeneralSecurityException {
+		KeyStore store = KeyStore.getInstance("PKCS12");
+		InputStream in = new FileInputStream(file);
+		try {
+			store.load(in, PASSWORD.toCharArray());
+		} finally {
+			in.close();
+		}
+		return store;
+	}
+}
@@ -0,0 +1,123 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.telesign.phoneid.PhoneId;
+import com.telesign.phoneid.response.PhoneIdScoreResponse;
+import com.telesign.util.SingleFlight;
+import com.telesign.util.Transport;
+import com.telesign.util.TransportRequest;
+import com.telesign.util.TransportResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class SingleFlightTest {
+
+	private static final String SCORE_RESPONSE = "{\"status\":{\"code\":300,\"description\":\"Transaction successfully completed\"},"
+			+ "\"risk\":{\"level\":\"low\",\"recommendation\":\"allow\",\"score\":1}}";
+
+	@Test
+	public void concurrentIdenticalLookupsShareOneRequest() throws Exception {
+		final GatedTransport transport = new GatedTransport();
+		final PhoneId phoneId = new PhoneId("COALESCED", "c2VjcmV0", transport);
+		phoneId.setCoalescing(true);
+
+		List<CompletableFuture<PhoneIdScoreResponse>> lookups = new ArrayList<CompletableFuture<PhoneIdScoreResponse>>();
+		for (int i = 0; i < 4; i++) {
+			lookups.add(CompletableFuture.supplyAsync(() -> phoneId.score("13105551212", "BACF")));
+		}
+		lookups.add(phoneId.scoreAsync("13105551212", "BACF"));
+		CompletableFuture<PhoneIdScoreResponse> other = phoneId.scoreAsync("13105551212", "ATCK");
+
+		Thread.sleep(200);
+		transport.release.countDown();
+
+		PhoneIdScoreResponse first = lookups.get(0).get(5, TimeUnit.SECONDS);
+		for (CompletableFuture<PhoneIdScoreResponse> lookup : lookups) {
+			assertSame(first, lookup.get(5, TimeUnit.SECONDS));
+		}
+		assertEquals(300, other.get(5, TimeUnit.SECONDS).status.code);
+		assertEquals(2, transport.calls.get());
+
+		// Nothing is cached: the next lookup sends a request of its own.
+		phoneId.score("13105551212", "BACF");
+		assertEquals(3, transport.calls.get());
+	}
+
+	@Test
+	public void everyCallerOfAFailedFlightGetsTheFailure() throws Exception {
+		final SingleFlight<String, String> flights = new SingleFlight<String, String>();
+		final CountDownLatch release = new CountDownLatch(1);
+
+		CompletableFuture<String> leader = CompletableFuture.supplyAsync(() -> {
+			try {
+				return flights.execute("key", () -> {
+					await(release);
+					throw new IOException("Connection reset");
+				});
+			}
+			catch (IOException e) {
+				return e.getMessage();
+			}
+		});
+		while (flights.getInFlightCount() == 0) {
+			Thread.sleep(1);
+		}
+		CompletableFuture<String> follower = flights.executeAsync("key", () -> CompletableFuture.completedFuture("not run"));
+		release.countDown();
+
+		assertEquals("Connection reset", leader.get(5, TimeUnit.SECONDS));
+		try {
+			follower.get(5, TimeUnit.SECONDS);
+			fail("The follower did not get the failure of the flight");
+		}
+		catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof IOException);
+		}
+		assertEquals(1, flights.getExecutedCount());
+		assertEquals(1, flights.getSharedCount());
+		assertEquals(0, flights.getInFlightCount());
+	}
+
+	private static void await(CountDownLatch latch) throws IOException {
+		try {
+			latch.await();
+		}
+		catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+	}
+
+	/** Holds every Request until it is released. */
+	private static class GatedTransport implements Transport {
+
+		final AtomicInteger calls = new AtomicInteger();
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public TransportResponse send(TransportRequest request) throws IOException {
+			calls.incrementAndGet();
+			await(release);
+			return new TransportResponse(200, Collections.<String, String>emptyMap(), SCORE_RESPONSE.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
@@ -0,0 +1,136 @@
+package com.telesign;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.telesign.util.LoopbackTransport;
+import com.telesign.util.Transport;
+import com.telesign.util.TransportRequest;
+import com.telesign.util.TransportResponse;
+import com.telesign.verify.SmsDispatcher;
+import com.telesign.verify.Verify;
+import com.telesign.verify.response.VerifyResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ */
+public class SmsDispatcherTest {
+
+	private static final String SMS_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"updated_on\":\"2016-01-01T00:00:00.000000Z\",\"code\":290,\"description\":\"Message in progress\"}}";
+
+	@Test
+	public void messagesAreSentAtTheConfiguredRate() throws Exception {
+		LoopbackTransport transport = new LoopbackTransport().respond("POST", "/v1/verify/sms", 200, SMS_RESPONSE);
+		SmsDispatcher dispatcher = new SmsDispatcher(new Verify("CUSTOMER", "c2VjcmV0", transport), 100, 4, 100, SmsDispatcher.Overflow.BLOCK);
+
+		long start = System.nanoTime();
+		List<CompletableFuture<VerifyResponse>> responses = new ArrayList<CompletableFuture<VerifyResponse>>();
+		for (int i = 0; i < 21; i++) {
+			responses.add(dispatcher.sms("1310555" + (1000 + i)));
+		}
+		for (CompletableFuture<VerifyResponse> response : responses) {
+			assertEquals(290, response.get(5, TimeUnit.SECONDS).status.code);
+		}
+		long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		// 21 sends at 100 per second span at least 200 ms.
+		assertTrue("took " + elapsed + " ms", elapsed >= 190);
+		assertEquals(21, dispatcher.getSentCount());
+		assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void aFullQueueFailsFast() throws Exception {
+		BlockingTransport transport = new BlockingTransport();
+		SmsDispatcher dispatcher = new SmsDispatcher(new Verify("CUSTOMER", "c2VjcmV0", transport), 2, 1, 0, SmsDispatcher.Overflow.FAIL);
+
+		CompletableFuture<VerifyResponse> inFlight = dispatcher.sms("13105551000");
+		assertTrue(transport.started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<VerifyResponse> first = dispatcher.sms("13105551001");
+		CompletableFuture<VerifyResponse> second = dispatcher.sms("13105551002");
+
+		try {
+			dispatcher.sms("13105551003");
+			fail("The queue was full");
+		}
+		catch (RejectedExecutionException expected) {
+			assertEquals(1, dispatcher.getRejectedCount());
+		}
+
+		transport.release.countDown();
+		assertEquals(290, inFlight.get(5, TimeUnit.SECONDS).status.code);
+		assertEquals(290, first.get(5, TimeUnit.SECONDS).status.code);
+		assertEquals(290, second.get(5, TimeUnit.SECONDS).status.code);
+		assertTrue(dispatcher.awaitTermination(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void sheddingDropsTheOldestWaitingRequest() throws Exception {
+		BlockingTransport transport = new BlockingTransport();
+		SmsDispatcher dispatcher = new SmsDispatcher(new Verify("CUSTOMER", "c2VjcmV0", transport), 2, 1, 0, SmsDispatcher.Overflow.SHED);
+
+		CompletableFuture<VerifyResponse> inFlight = dispatcher.sms("13105551000");
+		assertTrue(transport.started.await(5, TimeUnit.SECONDS));
+		CompletableFuture<VerifyResponse> oldest = dispatcher.sms("13105551001");
+		CompletableFuture<VerifyResponse> older = dispatcher.sms("13105551002");
+		CompletableFuture<VerifyResponse> newest = dispatcher.sms("13105551003");
+
+		try {
+			oldest.get(5, TimeUnit.SECONDS);
+			fail("The oldest request was shed");
+		}
+		catch (ExecutionException expected) {
+			assertTrue(expected.getCause() instanceof RejectedExecutionException);
+		}
+
+		transport.release.countDown();
+		assertEquals(290, inFlight.get(5, TimeUnit.SECONDS).status.code);
+		assertEquals(290, older.get(5, TimeUnit.SECONDS).status.code);
+		assertEquals(290, newest.get(5, TimeUnit.SECONDS).status.code);
+		assertEquals(3, dispatcher.getSentCount());
+
+		dispatcher.close();
+		try {
+			dispatcher.sms("13105551004");
+			fail("The dispatcher was closed");
+		}
+		catch (RejectedExecutionException expected) {
+		}
+	}
+
+	/** Holds every Request until it is released. */
+	private static class BlockingTransport implements Transport {
+
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@Override
+		public TransportResponse send(TransportRequest request) throws IOException {
+			started.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			return new TransportResponse(200, Collections.<String, String>emptyMap(), SMS_RESPONSE.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+}
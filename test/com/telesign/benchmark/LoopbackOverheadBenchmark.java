@@ -0,0 +1,73 @@
+package com.telesign.benchmark;
+
+import java.lang.management.ManagementFactory;
+
+import com.telesign.phoneid.PhoneId;
+import com.telesign.util.LoopbackTransport;
+import com.telesign.verify.Verify;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ *
+ *	Measures the SDK's own cost per call, with a LoopbackTransport in place of the network: building and signing the Request,
+ *	and parsing the canned Response. Reports the time and the bytes allocated per call on the calling thread.
+ *
+ *	Usage: LoopbackOverheadBenchmark [calls per round]
+ */
+public class LoopbackOverheadBenchmark {
+
+	private static final String SMS_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"updated_on\":\"2016-01-01T00:00:00.000000Z\",\"code\":290,\"description\":\"Message in progress\"}}";
+
+	private static final String STANDARD_RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\",\"sub_resource\":\"standard\","
+			+ "\"status\":{\"updated_on\":\"2016-01-01T00:00:00.000000Z\",\"code\":300,\"description\":\"Transaction successfully completed\"},"
+			+ "\"numbering\":{\"original\":{\"complete_phone_number\":\"13105551212\",\"country_code\":\"1\",\"phone_number\":\"3105551212\"},"
+			+ "\"cleansing\":{\"call\":{\"country_code\":\"1\",\"phone_number\":\"3105551212\",\"cleansed_code\":100,\"min_length\":10,\"max_length\":10}}},"
+			+ "\"phone_type\":{\"code\":\"2\",\"description\":\"MOBILE\"},"
+			+ "\"location\":{\"city\":\"Los Angeles\",\"state\":\"CA\",\"zip\":\"90066\",\"country\":{\"name\":\"United States\",\"iso2\":\"US\",\"iso3\":\"USA\"}}}";
+
+	public static void main(String[] args) {
+		int calls = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+		LoopbackTransport transport = new LoopbackTransport()
+				.respond("POST", "/v1/verify/sms", 200, SMS_RESPONSE)
+				.respond("GET", "/v1/phoneid/standard/", 200, STANDARD_RESPONSE);
+		final Verify verify = new Verify("BENCHMARK", "c2VjcmV0", transport);
+		final PhoneId phoneId = new PhoneId("BENCHMARK", "c2VjcmV0", transport);
+
+		for (int round = 0; round < 3; round++) {
+			String label = round == 0 ? "warm-up" : "round " + round;
+			measure(label + " verify.sms", calls, new Runnable() {
+				@Override
+				public void run() {
+					verify.sms("13105551212");
+				}
+			});
+			measure(label + " phoneId.standard", calls, new Runnable() {
+				@Override
+				public void run() {
+					phoneId.standard("13105551212");
+				}
+			});
+		}
+	}
+
+	private static void measure(String name, int calls, Runnable call) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		long allocated = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < calls; i++) {
+			call.run();
+		}
+
+		long elapsed = System.nanoTime() - start;
+		allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+
+		System.out.printf("%-32s %8.2f us/call  %8d bytes/call%n", name, elapsed / 1e3 / calls, allocated / calls);
+	}
+}
@@ -0,0 +1,105 @@
+package com.telesign.benchmark;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+
+import com.telesign.util.AuthMethod;
+import com.telesign.util.RequestSigner;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ *
+ *	Compares signatures per second when every Request decodes the key and looks up a new Mac, as TeleSignRequest used to, with the
+ *	pooled Mac instances of a RequestSigner. Both AuthMethods are measured on the given number of threads.
+ *
+ *	Usage: SigningBenchmark [seconds per run] [threads]
+ */
+public class SigningBenchmark {
+
+	private static final String KEY = "dGVzdCBzZWNyZXQga2V5IGZvciB0aGUgc2lnbmVy";
+
+	private static final String STRING_TO_SIGN = "POST\napplication/x-www-form-urlencoded\nMon, 01 Aug 2016 12:00:00 GMT\n"
+			+ "x-ts-auth-method:hmac-sha256\nx-ts-nonce:6c3b5a2e-3f4d-4c2b-9a8e-0d1f2e3c4b5a\n"
+			+ "phone_number=13105551212&language=en-US&template=Your+code+is+%24%24CODE%24%24\n/v1/verify/sms";
+
+	private interface Signer {
+		String sign(AuthMethod auth, String data) throws Exception;
+	}
+
+	public static void main(String[] args) throws Exception {
+		double seconds = args.length > 0 ? Double.parseDouble(args[0]) : 3;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		Signer perRequest = new Signer() {
+			@Override
+			public String sign(AuthMethod auth, String data) throws Exception {
+				Mac mac = Mac.getInstance(auth.value());
+				mac.init(new SecretKeySpec(Base64.decodeBase64(KEY), auth.value()));
+				return new String(Base64.encodeBase64(mac.doFinal(data.getBytes(StandardCharsets.UTF_8))));
+			}
+		};
+		final RequestSigner requestSigner = new RequestSigner(KEY);
+		Signer pooled = new Signer() {
+			@Override
+			public String sign(AuthMethod auth, String data) throws Exception {
+				return requestSigner.sign(auth, data);
+			}
+		};
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+		try {
+			for (int round = 0; round < 2; round++) {
+				String label = round == 0 ? "warm-up" : "measured";
+				for (AuthMethod auth : AuthMethod.values()) {
+					double before = measure(pool, threads, seconds, perRequest, auth);
+					double after = measure(pool, threads, seconds, pooled, auth);
+					System.out.printf("%-9s %-7s per-request Mac %,12.0f/s  RequestSigner %,12.0f/s  (x%.1f)%n",
+							label, auth, before, after, after / before);
+				}
+			}
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+
+	private static double measure(ExecutorService pool, int threads, double seconds, final Signer signer, final AuthMethod auth) throws Exception {
+		final long deadline = System.nanoTime() + (long) (seconds * 1e9);
+		long start = System.nanoTime();
+		List<Future<Long>> results = new ArrayList<Future<Long>>();
+
+		for (int t = 0; t < threads; t++) {
+			results.add(pool.submit(() -> {
+				long count = 0;
+				int length = 0;
+				while (System.nanoTime() < deadline) {
+					for (int i = 0; i < 100; i++) {
+						length += signer.sign(auth, STRING_TO_SIGN).length();
+					}
+					count += 100;
+				}
+				// Consume the signatures so that the calls cannot be optimized away.
+				return length == 0 ? -1 : count;
+			}));
+		}
+
+		long total = 0;
+		for (Future<Long> result : results) {
+			total += result.get();
+		}
+
+		return total / ((System.nanoTime() - start) / 1e9);
+	}
+}
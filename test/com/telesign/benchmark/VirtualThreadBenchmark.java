@@ -0,0 +1,141 @@
+package com.telesign.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.telesign.util.ConnectionPool;
+import com.telesign.util.TeleSignExecutors;
+import com.telesign.util.TeleSignRequest;
+import com.telesign.verify.response.VerifyResponse;
+
+/**
+ *	Copyright (c) TeleSign Corporation 2012.
+ *	License: MIT
+ *	Support email address "support@telesign.com"
+ *
+ *	Compares blocking Verify SMS calls on platform threads with the same calls on virtual threads, against a local stand-in for the
+ *	TeleSign web service that answers after a fixed latency. Every call is a signed TeleSignRequest, the blocking path that
+ *	Verify uses, parsed into a VerifyResponse.
+ *
+ *	Usage: VirtualThreadBenchmark [calls] [latency in milliseconds] [platform threads]
+ *	The defaults are 10000 calls, 50 ms, and one platform thread per call. Both ends of every connection live in this process,
+ *	so 10000 calls need about 20000 file descriptors. Virtual threads need JDK 21 or later; on older JDKs only the platform run is made.
+ */
+public class VirtualThreadBenchmark {
+
+	private static final String RESPONSE = "{\"reference_id\":\"0123456789ABCDEF0123456789ABCDEF\","
+			+ "\"status\":{\"updated_on\":\"2016-01-01T00:00:00.000000Z\",\"code\":290,\"description\":\"Message in progress\"}}";
+
+	private static final Gson gson = new Gson();
+
+	public static void main(String[] args) throws Exception {
+		int calls = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		final long latency = args.length > 1 ? Long.parseLong(args[1]) : 50;
+		int platformThreads = args.length > 2 ? Integer.parseInt(args[2]) : calls;
+
+		final ScheduledExecutorService delays = Executors.newSingleThreadScheduledExecutor();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), calls);
+		server.createContext("/", new HttpHandler() {
+			@Override
+			public void handle(final HttpExchange exchange) throws IOException {
+				exchange.getRequestBody().close();
+				// Answer later from the timer, so the stand-in never holds a thread per request.
+				delays.schedule(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							byte[] bytes = RESPONSE.getBytes(StandardCharsets.UTF_8);
+							exchange.getResponseHeaders().set("Content-Type", "application/json");
+							exchange.sendResponseHeaders(200, bytes.length);
+							OutputStream out = exchange.getResponseBody();
+							out.write(bytes);
+							out.close();
+						} catch (IOException e) {
+							exchange.close();
+						}
+					}
+				}, latency, TimeUnit.MILLISECONDS);
+			}
+		});
+		server.start();
+
+		String base = "http://127.0.0.1:" + server.getAddress().getPort();
+		ConnectionPool.setKeepAliveCacheSize(calls);
+		ConnectionPool.getDefault().setMaxConnectionsPerHost(calls);
+		ConnectionPool.getDefault().setPoolWaitTimeout(120000);
+
+		System.out.println(calls + " calls, " + latency + " ms server latency, JDK " + System.getProperty("java.version"));
+
+		// Warm up the signing, connection and parsing paths before measuring.
+		run("warm-up", base, Math.min(calls, 500), Executors.newFixedThreadPool(50));
+
+		run("platform threads (" + platformThreads + ")", base, calls, Executors.newFixedThreadPool(platformThreads));
+
+		if (TeleSignExecutors.isVirtualThreadSupported()) {
+			run("virtual threads", base, calls, TeleSignExecutors.newVirtualThreadPerTaskExecutor());
+		} else {
+			System.out.println("virtual threads: skipped, not supported on this JDK");
+		}
+
+		server.stop(0);
+		delays.shutdownNow();
+	}
+
+	private static void run(String name, final String base, int calls, ExecutorService executor) throws Exception {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		threads.resetPeakThreadCount();
+
+		List<Future<Long>> futures = new ArrayList<Future<Long>>(calls);
+		long start = System.nanoTime();
+
+		for (int i = 0; i < calls; i++) {
+			final String phone_number = "1310555" + String.format("%04d", i % 10000);
+			futures.add(executor.submit(() -> {
+				long begin = System.nanoTime();
+				TeleSignRequest tr = new TeleSignRequest(base, "/v1/verify/sms", "POST", "BENCHMARK", "c2VjcmV0", 120000, 120000, "TLSv1.2");
+				tr.setPostBody("phone_number=" + phone_number);
+				VerifyResponse response = gson.fromJson(tr.executeRequest(), VerifyResponse.class);
+				if (response.status.code != 290) {
+					throw new IllegalStateException("Unexpected status " + response.status.code);
+				}
+				return System.nanoTime() - begin;
+			}));
+		}
+
+		long[] latencies = new long[calls];
+		int failures = 0;
+		for (int i = 0; i < calls; i++) {
+			try {
+				latencies[i] = futures.get(i).get();
+			} catch (Exception e) {
+				failures++;
+				latencies[i] = Long.MAX_VALUE;
+			}
+		}
+
+		long elapsed = System.nanoTime() - start;
+		executor.shutdown();
+		Arrays.sort(latencies);
+
+		System.out.printf("%-28s %7.0f calls/s  wall %6d ms  p50 %5d ms  p99 %5d ms  peak threads %5d  failures %d%n",
+				name, calls / (elapsed / 1e9), TimeUnit.NANOSECONDS.toMillis(elapsed),
+				TimeUnit.NANOSECONDS.toMillis(latencies[calls / 2]), TimeUnit.NANOSECONDS.toMillis(latencies[(int) (calls * 0.99)]),
+				threads.getPeakThreadCount(), failures);
+	}
+}